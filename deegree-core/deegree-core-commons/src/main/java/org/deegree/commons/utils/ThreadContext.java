@@ -0,0 +1,121 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Carries the thread local state of a request (like the request parameters or the current scale) over to other
+ * threads. Modules keeping request state in a thread local register it once, code handing parts of a request to
+ * worker threads then captures the state in the requesting thread and applies it in the worker, without having to
+ * know the modules involved.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ThreadContext {
+
+    private static final CopyOnWriteArrayList<ThreadLocal<Object>> LOCALS;
+
+    static {
+        LOCALS = new CopyOnWriteArrayList<ThreadLocal<Object>>();
+        register( RequestUtils.getCurrentThreadRequestParameters() );
+    }
+
+    private final List<ThreadLocal<Object>> locals;
+
+    private final Object[] values;
+
+    private ThreadContext( List<ThreadLocal<Object>> locals, Object[] values ) {
+        this.locals = locals;
+        this.values = values;
+    }
+
+    /**
+     * Registers a thread local to be carried over to worker threads. Registering the same thread local again has no
+     * effect.
+     * 
+     * @param local
+     *            never <code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    public static void register( ThreadLocal<?> local ) {
+        LOCALS.addIfAbsent( (ThreadLocal<Object>) local );
+    }
+
+    /**
+     * @return the values of the registered thread locals in the current thread, never <code>null</code>
+     */
+    public static ThreadContext capture() {
+        List<ThreadLocal<Object>> locals = new ArrayList<ThreadLocal<Object>>( LOCALS );
+        Object[] values = new Object[locals.size()];
+        int i = 0;
+        for ( ThreadLocal<Object> local : locals ) {
+            values[i++] = local.get();
+        }
+        return new ThreadContext( locals, values );
+    }
+
+    /**
+     * Sets the captured values in the current thread. Call {@link #clear()} once done.
+     */
+    public void apply() {
+        int i = 0;
+        for ( ThreadLocal<Object> local : locals ) {
+            local.set( values[i++] );
+        }
+    }
+
+    /**
+     * Removes the captured thread locals from the current thread.
+     */
+    public void clear() {
+        for ( ThreadLocal<Object> local : locals ) {
+            local.remove();
+        }
+    }
+
+}
@@ -0,0 +1,564 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.utils.io;
+
+import static java.awt.image.BufferedImage.TYPE_3BYTE_BGR;
+import static java.awt.image.BufferedImage.TYPE_4BYTE_ABGR;
+import static java.awt.image.BufferedImage.TYPE_BYTE_INDEXED;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static java.util.zip.Deflater.DEFAULT_STRATEGY;
+import static java.util.zip.Deflater.FILTERED;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes images as png, reading the pixels directly from the raster of the image and streaming the compressed data to
+ * the output stream, without building the encoded image in memory.
+ * <p>
+ * Compared to the javax.imageio png writer, the deflate level and the row filter strategy can be configured. The
+ * {@link Deflater} and the row buffers are reused per thread. Instances are immutable and can be used concurrently.
+ * </p>
+ * <p>
+ * Integer (A)RGB, 3/4 byte (A)BGR and 8 bit indexed images are read directly from their data buffers, all other image
+ * types are converted row by row using {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PngEncoder {
+
+    /**
+     * The png row filters. {@link #ADAPTIVE} selects the filter per row, using the minimum sum of absolute differences
+     * heuristic.
+     */
+    public static enum Filter {
+        /***/
+        NONE, /***/
+        SUB, /***/
+        UP, /***/
+        AVERAGE, /***/
+        PAETH, /***/
+        ADAPTIVE
+    }
+
+    /**
+     * The deflate level used by default, a good compromise between speed and size for map images.
+     */
+    public static final int DEFAULT_LEVEL = 4;
+
+    private static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+
+    private static final byte[] IHDR = { 'I', 'H', 'D', 'R' };
+
+    private static final byte[] PLTE = { 'P', 'L', 'T', 'E' };
+
+    private static final byte[] TRNS = { 't', 'R', 'N', 'S' };
+
+    private static final byte[] IDAT = { 'I', 'D', 'A', 'T' };
+
+    private static final byte[] IEND = { 'I', 'E', 'N', 'D' };
+
+    private static final int COLOR_TYPE_RGB = 2;
+
+    private static final int COLOR_TYPE_INDEXED = 3;
+
+    private static final int COLOR_TYPE_RGBA = 6;
+
+    private static final int CHUNK_SIZE = 32 * 1024;
+
+    private static final ThreadLocal<EncoderState> STATE = new ThreadLocal<EncoderState>() {
+        @Override
+        protected EncoderState initialValue() {
+            return new EncoderState();
+        }
+    };
+
+    private final int level;
+
+    private final Filter filter;
+
+    /**
+     * Uses the {@link #DEFAULT_LEVEL} and no row filter, which works best for rendered maps with mostly flat colors.
+     * Imagery usually compresses better using {@link Filter#ADAPTIVE}.
+     */
+    public PngEncoder() {
+        this( DEFAULT_LEVEL, Filter.NONE );
+    }
+
+    /**
+     * @param level
+     *            the deflate level, 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+     * @param filter
+     *            the row filter to use, never <code>null</code>. Note that indexed images are always written unfiltered
+     *            if {@link Filter#ADAPTIVE} is given.
+     */
+    public PngEncoder( int level, Filter filter ) {
+        if ( level < -1 || level > 9 ) {
+            throw new IllegalArgumentException( "Invalid deflate level " + level + "." );
+        }
+        this.level = level;
+        this.filter = filter;
+    }
+
+    /**
+     * Writes the image as png. The stream is not closed.
+     * 
+     * @param img
+     *            the image to encode, never <code>null</code>
+     * @param out
+     *            the stream to write to, never <code>null</code>
+     * @throws IOException
+     */
+    public void encode( BufferedImage img, OutputStream out )
+                            throws IOException {
+        EncoderState state = STATE.get();
+        RowReader reader = createReader( img );
+        int width = img.getWidth();
+        int height = img.getHeight();
+        int bpp = reader.bytesPerPixel;
+        int rowLength = width * bpp;
+        Filter filter = this.filter;
+        if ( filter == Filter.ADAPTIVE && reader.colorType == COLOR_TYPE_INDEXED ) {
+            filter = Filter.NONE;
+        }
+
+        state.prepare( rowLength, level, filter == Filter.NONE ? DEFAULT_STRATEGY : FILTERED );
+
+        out.write( SIGNATURE );
+        byte[] header = state.header;
+        writeInt( header, 0, width );
+        writeInt( header, 4, height );
+        header[8] = 8;
+        header[9] = (byte) reader.colorType;
+        header[10] = 0;
+        header[11] = 0;
+        header[12] = 0;
+        writeChunk( out, state, IHDR, header, 0, 13 );
+        if ( reader.colorType == COLOR_TYPE_INDEXED ) {
+            writePalette( out, state, (IndexColorModel) img.getColorModel() );
+        }
+
+        byte[] prev = state.previous;
+        byte[] cur = state.current;
+        for ( int y = 0; y < height; ++y ) {
+            reader.read( y, cur, state.pixels );
+            byte[] filtered = filterRow( filter, cur, prev, rowLength, bpp, state );
+            Deflater deflater = state.deflater;
+            deflater.setInput( filtered, 0, rowLength + 1 );
+            while ( !deflater.needsInput() ) {
+                deflate( out, state );
+            }
+            byte[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+        }
+        state.deflater.finish();
+        while ( !state.deflater.finished() ) {
+            deflate( out, state );
+        }
+        if ( state.chunkLength > 0 ) {
+            writeChunk( out, state, IDAT, state.chunk, 0, state.chunkLength );
+            state.chunkLength = 0;
+        }
+        writeChunk( out, state, IEND, state.header, 0, 0 );
+        out.flush();
+    }
+
+    private static void deflate( OutputStream out, EncoderState state )
+                            throws IOException {
+        int n = state.deflater.deflate( state.chunk, state.chunkLength, CHUNK_SIZE - state.chunkLength );
+        state.chunkLength += n;
+        if ( state.chunkLength == CHUNK_SIZE ) {
+            writeChunk( out, state, IDAT, state.chunk, 0, CHUNK_SIZE );
+            state.chunkLength = 0;
+        }
+    }
+
+    private static void writePalette( OutputStream out, EncoderState state, IndexColorModel model )
+                            throws IOException {
+        int size = model.getMapSize();
+        byte[] r = new byte[size], g = new byte[size], b = new byte[size], a = new byte[size];
+        model.getReds( r );
+        model.getGreens( g );
+        model.getBlues( b );
+        model.getAlphas( a );
+        byte[] plte = new byte[size * 3];
+        int lastTranslucent = -1;
+        for ( int i = 0; i < size; ++i ) {
+            plte[i * 3] = r[i];
+            plte[i * 3 + 1] = g[i];
+            plte[i * 3 + 2] = b[i];
+            if ( a[i] != (byte) 255 ) {
+                lastTranslucent = i;
+            }
+        }
+        writeChunk( out, state, PLTE, plte, 0, plte.length );
+        if ( lastTranslucent >= 0 ) {
+            writeChunk( out, state, TRNS, a, 0, lastTranslucent + 1 );
+        }
+    }
+
+    private static byte[] filterRow( Filter filter, byte[] cur, byte[] prev, int len, int bpp, EncoderState state ) {
+        switch ( filter ) {
+        case NONE:
+            return applyFilter( 0, cur, prev, len, bpp, state.filtered[0] );
+        case SUB:
+            return applyFilter( 1, cur, prev, len, bpp, state.filtered[0] );
+        case UP:
+            return applyFilter( 2, cur, prev, len, bpp, state.filtered[0] );
+        case AVERAGE:
+            return applyFilter( 3, cur, prev, len, bpp, state.filtered[0] );
+        case PAETH:
+            return applyFilter( 4, cur, prev, len, bpp, state.filtered[0] );
+        default:
+            byte[] best = null;
+            long bestSum = Long.MAX_VALUE;
+            for ( int type = 0; type < 5; ++type ) {
+                byte[] res = applyFilter( type, cur, prev, len, bpp, state.filtered[type] );
+                long sum = 0;
+                for ( int i = 1; i <= len && sum < bestSum; ++i ) {
+                    sum += Math.abs( (int) res[i] );
+                }
+                if ( sum < bestSum ) {
+                    bestSum = sum;
+                    best = res;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Filters a row, the rows passed in have a leading zero byte so the left/upper neighbours can be accessed without
+     * bounds checks.
+     */
+    private static byte[] applyFilter( int type, byte[] cur, byte[] prev, int len, int bpp, byte[] res ) {
+        res[0] = (byte) type;
+        // the row data starts at offset bpp, the first bpp bytes are zero
+        switch ( type ) {
+        case 0:
+            System.arraycopy( cur, bpp, res, 1, len );
+            break;
+        case 1:
+            for ( int i = 0; i < len; ++i ) {
+                res[i + 1] = (byte) ( cur[i + bpp] - cur[i] );
+            }
+            break;
+        case 2:
+            for ( int i = 0; i < len; ++i ) {
+                res[i + 1] = (byte) ( cur[i + bpp] - prev[i + bpp] );
+            }
+            break;
+        case 3:
+            for ( int i = 0; i < len; ++i ) {
+                res[i + 1] = (byte) ( cur[i + bpp] - ( ( ( cur[i] & 0xff ) + ( prev[i + bpp] & 0xff ) ) >> 1 ) );
+            }
+            break;
+        default:
+            for ( int i = 0; i < len; ++i ) {
+                int a = cur[i] & 0xff;
+                int b = prev[i + bpp] & 0xff;
+                int c = prev[i] & 0xff;
+                int p = a + b - c;
+                int pa = Math.abs( p - a );
+                int pb = Math.abs( p - b );
+                int pc = Math.abs( p - c );
+                int pred = ( pa <= pb && pa <= pc ) ? a : ( pb <= pc ? b : c );
+                res[i + 1] = (byte) ( cur[i + bpp] - pred );
+            }
+        }
+        return res;
+    }
+
+    private static void writeChunk( OutputStream out, EncoderState state, byte[] type, byte[] data, int off, int len )
+                            throws IOException {
+        byte[] buf = state.chunkHeader;
+        writeInt( buf, 0, len );
+        out.write( buf, 0, 4 );
+        out.write( type );
+        out.write( data, off, len );
+        CRC32 crc = state.crc;
+        crc.reset();
+        crc.update( type );
+        crc.update( data, off, len );
+        writeInt( buf, 0, (int) crc.getValue() );
+        out.write( buf, 0, 4 );
+    }
+
+    private static void writeInt( byte[] buf, int off, int v ) {
+        buf[off] = (byte) ( v >>> 24 );
+        buf[off + 1] = (byte) ( v >>> 16 );
+        buf[off + 2] = (byte) ( v >>> 8 );
+        buf[off + 3] = (byte) v;
+    }
+
+    private static RowReader createReader( BufferedImage img ) {
+        WritableRaster raster = img.getRaster();
+        SampleModel sm = raster.getSampleModel();
+        int tx = raster.getSampleModelTranslateX();
+        int ty = raster.getSampleModelTranslateY();
+        int width = img.getWidth();
+        switch ( img.getType() ) {
+        case TYPE_INT_ARGB:
+        case TYPE_INT_RGB:
+            if ( sm instanceof SinglePixelPackedSampleModel ) {
+                DataBufferInt buf = (DataBufferInt) raster.getDataBuffer();
+                int stride = ( (SinglePixelPackedSampleModel) sm ).getScanlineStride();
+                return new IntRowReader( buf.getData(), buf.getOffset() - ty * stride - tx, stride, width,
+                                         img.getType() == TYPE_INT_ARGB );
+            }
+            break;
+        case TYPE_3BYTE_BGR:
+        case TYPE_4BYTE_ABGR:
+            if ( sm instanceof ComponentSampleModel ) {
+                ComponentSampleModel csm = (ComponentSampleModel) sm;
+                DataBufferByte buf = (DataBufferByte) raster.getDataBuffer();
+                int stride = csm.getScanlineStride();
+                int pixelStride = csm.getPixelStride();
+                return new ByteRowReader( buf.getData(), buf.getOffset() - ty * stride - tx * pixelStride, stride,
+                                          pixelStride, csm.getBandOffsets(), width );
+            }
+            break;
+        case TYPE_BYTE_INDEXED:
+            if ( sm instanceof ComponentSampleModel && img.getColorModel().getPixelSize() == 8 ) {
+                ComponentSampleModel csm = (ComponentSampleModel) sm;
+                DataBufferByte buf = (DataBufferByte) raster.getDataBuffer();
+                int stride = csm.getScanlineStride();
+                return new ByteRowReader( buf.getData(), buf.getOffset() - ty * stride - tx, stride, 1,
+                                          csm.getBandOffsets(), width );
+            }
+            break;
+        }
+        return new GenericRowReader( img );
+    }
+
+    /**
+     * Reads a row of the image into the png sample layout.
+     */
+    private abstract static class RowReader {
+
+        final int colorType;
+
+        final int bytesPerPixel;
+
+        RowReader( int colorType, int bytesPerPixel ) {
+            this.colorType = colorType;
+            this.bytesPerPixel = bytesPerPixel;
+        }
+
+        /**
+         * @param y
+         *            the row to read
+         * @param row
+         *            the target, filled beginning at offset bytesPerPixel
+         * @param pixels
+         *            a buffer with at least width entries
+         */
+        abstract void read( int y, byte[] row, int[] pixels );
+
+    }
+
+    private static class IntRowReader extends RowReader {
+
+        private final int[] data;
+
+        private final int offset, stride, width;
+
+        private final boolean alpha;
+
+        IntRowReader( int[] data, int offset, int stride, int width, boolean alpha ) {
+            super( alpha ? COLOR_TYPE_RGBA : COLOR_TYPE_RGB, alpha ? 4 : 3 );
+            this.data = data;
+            this.offset = offset;
+            this.stride = stride;
+            this.width = width;
+            this.alpha = alpha;
+        }
+
+        @Override
+        void read( int y, byte[] row, int[] pixels ) {
+            int src = offset + y * stride;
+            int dst = bytesPerPixel;
+            for ( int x = 0; x < width; ++x ) {
+                int argb = data[src + x];
+                row[dst++] = (byte) ( argb >> 16 );
+                row[dst++] = (byte) ( argb >> 8 );
+                row[dst++] = (byte) argb;
+                if ( alpha ) {
+                    row[dst++] = (byte) ( argb >>> 24 );
+                }
+            }
+        }
+
+    }
+
+    private static class ByteRowReader extends RowReader {
+
+        private final byte[] data;
+
+        private final int offset, stride, pixelStride, width;
+
+        private final int[] bandOffsets;
+
+        ByteRowReader( byte[] data, int offset, int stride, int pixelStride, int[] bandOffsets, int width ) {
+            super( bandOffsets.length == 1 ? COLOR_TYPE_INDEXED
+                                          : ( bandOffsets.length == 4 ? COLOR_TYPE_RGBA : COLOR_TYPE_RGB ),
+                   bandOffsets.length );
+            this.data = data;
+            this.offset = offset;
+            this.stride = stride;
+            this.pixelStride = pixelStride;
+            this.bandOffsets = bandOffsets;
+            this.width = width;
+        }
+
+        @Override
+        void read( int y, byte[] row, int[] pixels ) {
+            int src = offset + y * stride;
+            int bands = bandOffsets.length;
+            if ( bands == 1 && pixelStride == 1 ) {
+                System.arraycopy( data, src + bandOffsets[0], row, 1, width );
+                return;
+            }
+            int dst = bytesPerPixel;
+            for ( int x = 0; x < width; ++x ) {
+                for ( int b = 0; b < bands; ++b ) {
+                    row[dst++] = data[src + bandOffsets[b]];
+                }
+                src += pixelStride;
+            }
+        }
+
+    }
+
+    private static class GenericRowReader extends RowReader {
+
+        private final BufferedImage img;
+
+        private final boolean alpha;
+
+        GenericRowReader( BufferedImage img ) {
+            super( img.getColorModel().hasAlpha() ? COLOR_TYPE_RGBA : COLOR_TYPE_RGB,
+                   img.getColorModel().hasAlpha() ? 4 : 3 );
+            this.img = img;
+            this.alpha = img.getColorModel().hasAlpha();
+        }
+
+        @Override
+        void read( int y, byte[] row, int[] pixels ) {
+            int width = img.getWidth();
+            img.getRGB( 0, y, width, 1, pixels, 0, width );
+            int dst = bytesPerPixel;
+            for ( int x = 0; x < width; ++x ) {
+                int argb = pixels[x];
+                row[dst++] = (byte) ( argb >> 16 );
+                row[dst++] = (byte) ( argb >> 8 );
+                row[dst++] = (byte) argb;
+                if ( alpha ) {
+                    row[dst++] = (byte) ( argb >>> 24 );
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Buffers and deflater reused by all encodings of a thread.
+     */
+    private static class EncoderState {
+
+        final Deflater deflater = new Deflater();
+
+        final CRC32 crc = new CRC32();
+
+        final byte[] header = new byte[13];
+
+        final byte[] chunkHeader = new byte[4];
+
+        final byte[] chunk = new byte[CHUNK_SIZE];
+
+        int chunkLength;
+
+        byte[] current = new byte[0], previous = new byte[0];
+
+        byte[][] filtered = new byte[5][0];
+
+        int[] pixels = new int[0];
+
+        void prepare( int rowLength, int level, int strategy ) {
+            deflater.reset();
+            deflater.setLevel( level );
+            deflater.setStrategy( strategy );
+            chunkLength = 0;
+            // rows are prefixed with up to four zero bytes, see applyFilter
+            if ( current.length < rowLength + 4 ) {
+                current = new byte[rowLength + 4];
+                previous = new byte[rowLength + 4];
+                for ( int i = 0; i < filtered.length; ++i ) {
+                    filtered[i] = new byte[rowLength + 1];
+                }
+                pixels = new int[rowLength];
+            } else {
+                Arrays.fill( previous, (byte) 0 );
+                Arrays.fill( current, (byte) 0 );
+            }
+        }
+
+    }
+
+}
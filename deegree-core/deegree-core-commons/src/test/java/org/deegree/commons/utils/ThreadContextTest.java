@@ -0,0 +1,115 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.utils;
+
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link ThreadContext}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ThreadContextTest {
+
+    private static final ThreadLocal<Double> SCALE = new ThreadLocal<Double>();
+
+    static {
+        ThreadContext.register( SCALE );
+        // registering twice must not matter
+        ThreadContext.register( SCALE );
+    }
+
+    @Test
+    public void testCarryOver()
+                            throws Exception {
+        final Map<String, String> params = singletonMap( "LAYERS", "roads" );
+        RequestUtils.getCurrentThreadRequestParameters().set( params );
+        SCALE.set( 5000.0 );
+        final ThreadContext context;
+        try {
+            context = ThreadContext.capture();
+        } finally {
+            RequestUtils.getCurrentThreadRequestParameters().remove();
+            SCALE.remove();
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Object[] seen = executor.submit( new Callable<Object[]>() {
+                @Override
+                public Object[] call() {
+                    context.apply();
+                    try {
+                        return new Object[] { RequestUtils.getCurrentThreadRequestParameters().get(), SCALE.get() };
+                    } finally {
+                        context.clear();
+                    }
+                }
+            } ).get();
+            assertEquals( params, seen[0] );
+            assertEquals( 5000.0, seen[1] );
+
+            Object[] after = executor.submit( new Callable<Object[]>() {
+                @Override
+                public Object[] call() {
+                    return new Object[] { RequestUtils.getCurrentThreadRequestParameters().get(), SCALE.get() };
+                }
+            } ).get();
+            assertNull( after[0] );
+            assertNull( after[1] );
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.utils.io;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static org.deegree.commons.utils.io.PngEncoderTest.createTestImage;
+import static org.deegree.commons.utils.io.Utils.DEV_NULL;
+import static org.junit.Assert.assertEquals;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.deegree.commons.utils.io.PngEncoder.Filter;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+/**
+ * Compares the throughput and output size of the {@link PngEncoder} with the javax.imageio png writer, for typical
+ * tile and map sizes. Ignored in the build, as the timings are only meaningful when run manually.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PngEncoderBenchmark {
+
+    private static final Logger LOG = getLogger( PngEncoderBenchmark.class );
+
+    private static final int WARMUP = 50;
+
+    private static final int RUNS = 200;
+
+    @Ignore
+    @Test
+    public void testTile()
+                            throws IOException {
+        benchmark( "tile, transparent", createTestImage( 256, 256, TYPE_INT_ARGB, 50 ) );
+        benchmark( "tile, opaque", createTestImage( 256, 256, TYPE_INT_RGB, 50 ) );
+    }
+
+    @Ignore
+    @Test
+    public void testMap()
+                            throws IOException {
+        benchmark( "map, transparent", createTestImage( 1024, 768, TYPE_INT_ARGB, 300 ) );
+        benchmark( "map, opaque", createTestImage( 1024, 768, TYPE_INT_RGB, 300 ) );
+    }
+
+    private static void benchmark( String name, BufferedImage img )
+                            throws IOException {
+        LOG.info( "{} ({}x{}):", new Object[] { name, img.getWidth(), img.getHeight() } );
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ImageIO.write( img, "png", bos );
+        BufferedImage expected = ImageIO.read( new ByteArrayInputStream( bos.toByteArray() ) );
+
+        CountingStream out = new CountingStream();
+        for ( int i = 0; i < WARMUP; ++i ) {
+            ImageIO.write( img, "png", DEV_NULL );
+        }
+        long start = System.nanoTime();
+        for ( int i = 0; i < RUNS; ++i ) {
+            ImageIO.write( img, "png", out );
+        }
+        report( "ImageIO", start, out );
+
+        for ( int level : new int[] { 1, PngEncoder.DEFAULT_LEVEL, 6 } ) {
+            for ( Filter filter : new Filter[] { Filter.NONE, Filter.UP, Filter.ADAPTIVE } ) {
+                PngEncoder encoder = new PngEncoder( level, filter );
+                bos = new ByteArrayOutputStream();
+                encoder.encode( img, bos );
+                assertSamePixels( expected, ImageIO.read( new ByteArrayInputStream( bos.toByteArray() ) ) );
+
+                out = new CountingStream();
+                for ( int i = 0; i < WARMUP; ++i ) {
+                    encoder.encode( img, DEV_NULL );
+                }
+                start = System.nanoTime();
+                for ( int i = 0; i < RUNS; ++i ) {
+                    encoder.encode( img, out );
+                }
+                report( "PngEncoder level " + level + ", " + filter, start, out );
+            }
+        }
+    }
+
+    private static void assertSamePixels( BufferedImage expected, BufferedImage actual ) {
+        assertEquals( expected.getWidth(), actual.getWidth() );
+        assertEquals( expected.getHeight(), actual.getHeight() );
+        for ( int y = 0; y < expected.getHeight(); ++y ) {
+            for ( int x = 0; x < expected.getWidth(); ++x ) {
+                int e = expected.getRGB( x, y );
+                int a = actual.getRGB( x, y );
+                if ( ( e >>> 24 ) == 0 ) {
+                    // color of fully transparent pixels does not matter
+                    assertEquals( 0, a >>> 24 );
+                } else {
+                    assertEquals( e, a );
+                }
+            }
+        }
+    }
+
+    private static void report( String name, long start, CountingStream out ) {
+        double ms = ( System.nanoTime() - start ) / 1e6 / RUNS;
+        LOG.info( String.format( "  %-40s %8.3f ms/image %10d bytes/image", name, ms, out.count / RUNS ) );
+    }
+
+    private static class CountingStream extends OutputStream {
+
+        long count;
+
+        @Override
+        public void write( int b ) {
+            ++count;
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len ) {
+            count += len;
+        }
+
+    }
+
+}
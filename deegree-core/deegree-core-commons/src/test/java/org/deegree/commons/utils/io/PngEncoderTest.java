@@ -0,0 +1,146 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.utils.io;
+
+import static java.awt.RenderingHints.KEY_ANTIALIASING;
+import static java.awt.RenderingHints.VALUE_ANTIALIAS_ON;
+import static java.awt.image.BufferedImage.TYPE_3BYTE_BGR;
+import static java.awt.image.BufferedImage.TYPE_4BYTE_ABGR;
+import static java.awt.image.BufferedImage.TYPE_BYTE_INDEXED;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.deegree.commons.utils.io.PngEncoder.Filter;
+import org.junit.Test;
+
+/**
+ * Tests the {@link PngEncoder} by decoding the results with ImageIO.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PngEncoderTest {
+
+    private static final int[] TYPES = { TYPE_INT_ARGB, TYPE_INT_RGB, TYPE_3BYTE_BGR, TYPE_4BYTE_ABGR,
+                                        TYPE_BYTE_INDEXED, TYPE_INT_ARGB_PRE };
+
+    static BufferedImage createTestImage( int width, int height, int type, int lines ) {
+        BufferedImage img = new BufferedImage( width, height, type );
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint( KEY_ANTIALIASING, VALUE_ANTIALIAS_ON );
+        Random rnd = new Random( 1 );
+        for ( int i = 0; i < lines; ++i ) {
+            g.setColor( new Color( rnd.nextInt( 256 ), rnd.nextInt( 256 ), rnd.nextInt( 256 ), rnd.nextInt( 256 ) ) );
+            g.drawLine( rnd.nextInt( width ), rnd.nextInt( height ), rnd.nextInt( width ), rnd.nextInt( height ) );
+        }
+        g.dispose();
+        return img;
+    }
+
+    private static void assertRoundTrip( BufferedImage img, PngEncoder encoder )
+                            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode( img, out );
+        BufferedImage res = ImageIO.read( new ByteArrayInputStream( out.toByteArray() ) );
+        assertEquals( img.getWidth(), res.getWidth() );
+        assertEquals( img.getHeight(), res.getHeight() );
+        for ( int y = 0; y < img.getHeight(); ++y ) {
+            for ( int x = 0; x < img.getWidth(); ++x ) {
+                int expected = img.getRGB( x, y );
+                int actual = res.getRGB( x, y );
+                if ( ( expected >>> 24 ) == 0 ) {
+                    assertEquals( 0, actual >>> 24 );
+                } else {
+                    assertEquals( expected, actual );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAllFilters()
+                            throws IOException {
+        for ( Filter filter : Filter.values() ) {
+            for ( int type : TYPES ) {
+                assertRoundTrip( createTestImage( 301, 97, type, 200 ), new PngEncoder( 6, filter ) );
+            }
+        }
+    }
+
+    @Test
+    public void testSubimage()
+                            throws IOException {
+        for ( int type : TYPES ) {
+            BufferedImage img = createTestImage( 301, 97, type, 200 );
+            assertRoundTrip( img.getSubimage( 3, 5, 200, 50 ), new PngEncoder() );
+        }
+    }
+
+    @Test
+    public void testReuseWithDifferentSizes()
+                            throws IOException {
+        PngEncoder encoder = new PngEncoder( 1, Filter.PAETH );
+        assertRoundTrip( createTestImage( 512, 512, TYPE_INT_ARGB, 100 ), encoder );
+        assertRoundTrip( createTestImage( 17, 3, TYPE_INT_RGB, 10 ), encoder );
+        assertRoundTrip( createTestImage( 256, 256, TYPE_BYTE_INDEXED, 100 ), encoder );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLevel() {
+        new PngEncoder( 10, Filter.NONE );
+    }
+
+}
@@ -42,26 +42,33 @@
 package org.deegree.featureinfo.templating;
 
 import static java.util.Collections.singletonList;
+import static org.apache.commons.io.IOUtils.closeQuietly;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.antlr.runtime.ANTLRInputStream;
 import org.antlr.runtime.CharStream;
 import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.RecognitionException;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.featureinfo.FeatureInfoManager;
+import org.deegree.featureinfo.templating.lang.Definition;
 import org.deegree.featureinfo.templating.lang.PropertyTemplateCall;
+import org.deegree.featureinfo.templating.lang.TemplateContext;
 import org.slf4j.Logger;
 
 /**
- * Utility method to run a template against a feature collection.
+ * Utility method to run a template against a feature collection. Parsed templates are cached, template files are
+ * parsed again once they have been modified.
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: stranger $
@@ -72,28 +79,21 @@ public class TemplatingUtils {
 
     private static final Logger LOG = getLogger( TemplatingUtils.class );
 
+    private static final PropertyTemplateCall START = new PropertyTemplateCall( "start", singletonList( "*" ), false );
+
+    // maps template file names to parsed definitions
+    private static final Map<String, ParsedTemplate> TEMPLATES = new ConcurrentHashMap<String, ParsedTemplate>();
+
+    private static volatile Map<String, Definition> internalTemplate;
+
     public static void runTemplate( OutputStream response, String fiFile, FeatureCollection col, boolean geometries )
                             throws IOException {
         PrintWriter out = new PrintWriter( new OutputStreamWriter( response, "UTF-8" ) );
 
         try {
-            InputStream in;
-            if ( fiFile == null ) {
-                in = FeatureInfoManager.class.getResourceAsStream( "html.gfi" );
-            } else {
-                in = new FileInputStream( fiFile );
-            }
-
-            CharStream input = new ANTLRInputStream( in );
-            Templating2Lexer lexer = new Templating2Lexer( input );
-            CommonTokenStream cts = new CommonTokenStream( lexer );
-            cts.fill();
-            Templating2Parser parser = new Templating2Parser( cts );
-            HashMap<String, Object> defs = (HashMap) parser.definitions();
-
-            StringBuilder sb = new StringBuilder();
-            new PropertyTemplateCall( "start", singletonList( "*" ), false ).eval( sb, defs, col, geometries );
-            out.println( sb.toString() );
+            Map<String, Definition> defs = getDefinitions( fiFile );
+            START.eval( new TemplateContext( out, defs, geometries ), col );
+            out.println();
         } catch ( Throwable e ) {
             if ( fiFile == null ) {
                 LOG.error( "Could not load internal template for GFI response." );
@@ -106,4 +106,72 @@ public class TemplatingUtils {
         }
     }
 
+    /**
+     * @param fiFile
+     *            the template file, or <code>null</code> for the internal template
+     * @return the parsed template definitions, never <code>null</code>
+     * @throws IOException
+     * @throws RecognitionException
+     */
+    static Map<String, Definition> getDefinitions( String fiFile )
+                            throws IOException, RecognitionException {
+        if ( fiFile == null ) {
+            Map<String, Definition> defs = internalTemplate;
+            if ( defs == null ) {
+                InputStream in = FeatureInfoManager.class.getResourceAsStream( "html.gfi" );
+                try {
+                    defs = parse( in );
+                } finally {
+                    closeQuietly( in );
+                }
+                internalTemplate = defs;
+            }
+            return defs;
+        }
+
+        File file = new File( fiFile );
+        long modified = file.lastModified();
+        long length = file.length();
+        ParsedTemplate template = TEMPLATES.get( fiFile );
+        if ( template != null && template.modified == modified && template.length == length ) {
+            return template.definitions;
+        }
+
+        LOG.debug( "Parsing template '{}'.", fiFile );
+        InputStream in = new FileInputStream( file );
+        try {
+            template = new ParsedTemplate( parse( in ), modified, length );
+        } finally {
+            closeQuietly( in );
+        }
+        TEMPLATES.put( fiFile, template );
+        return template.definitions;
+    }
+
+    private static Map<String, Definition> parse( InputStream in )
+                            throws IOException, RecognitionException {
+        CharStream input = new ANTLRInputStream( in );
+        Templating2Lexer lexer = new Templating2Lexer( input );
+        CommonTokenStream cts = new CommonTokenStream( lexer );
+        cts.fill();
+        Templating2Parser parser = new Templating2Parser( cts );
+        return parser.definitions();
+    }
+
+    private static class ParsedTemplate {
+
+        final Map<String, Definition> definitions;
+
+        final long modified;
+
+        final long length;
+
+        ParsedTemplate( Map<String, Definition> definitions, long modified, long length ) {
+            this.definitions = definitions;
+            this.modified = modified;
+            this.length = length;
+        }
+
+    }
+
 }
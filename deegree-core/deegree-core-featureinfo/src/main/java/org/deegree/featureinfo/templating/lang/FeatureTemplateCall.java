@@ -39,8 +39,6 @@ import static org.deegree.commons.utils.JavaUtils.generateToString;
 import static org.deegree.featureinfo.templating.lang.Util.getMatchingObjects;
 import static org.slf4j.LoggerFactory.getLogger;
 
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 
 import org.deegree.feature.Feature;
@@ -63,8 +61,6 @@ public class FeatureTemplateCall {
 
     private List<String> patterns;
 
-    private HashSet<Object> visited = new HashSet<Object>();
-
     private boolean negate;
 
     /**
@@ -78,61 +74,57 @@ public class FeatureTemplateCall {
         this.negate = negate;
     }
 
-    private void eval( StringBuilder sb, HashMap<String, Object> defs, Feature f, TemplateDefinition t,
-                       List<Feature> list, boolean geometries ) {
-        if ( visited.contains( f ) ) {
+    private void eval( TemplateContext ctx, Feature f, TemplateDefinition t, List<Feature> list ) {
+        if ( !ctx.visit( this, f ) ) {
             // TODO add link?
             return;
         }
-        visited.add( f );
         for ( Object o : t.body ) {
             if ( o instanceof String ) {
-                sb.append( o );
+                ctx.out.print( o );
             }
             if ( o instanceof MapCall ) {
-                ( (MapCall) o ).eval( sb, defs, f );
+                ( (MapCall) o ).eval( ctx, f );
             }
             if ( o instanceof FeatureTemplateCall ) {
-                ( (FeatureTemplateCall) o ).eval( sb, defs, f, geometries );
+                ( (FeatureTemplateCall) o ).eval( ctx, f );
             }
             if ( o instanceof PropertyTemplateCall ) {
-                ( (PropertyTemplateCall) o ).eval( sb, defs, f, geometries );
+                ( (PropertyTemplateCall) o ).eval( ctx, f );
             }
             if ( o instanceof Name ) {
-                ( (Name) o ).eval( sb, f );
+                ( (Name) o ).eval( ctx.out, f );
             }
             if ( o instanceof Value ) {
-                ( (Value) o ).eval( sb, f );
+                ( (Value) o ).eval( ctx.out, f );
             }
             if ( o instanceof Link ) {
-                ( (Link) o ).eval( sb, f );
+                ( (Link) o ).eval( ctx.out, f );
             }
             if ( o instanceof Index ) {
-                ( (Index) o ).eval( sb, f, list );
+                ( (Index) o ).eval( ctx.out, f, list );
             }
             if ( o instanceof OddEven ) {
-                ( (OddEven) o ).eval( sb, defs, f, 1 + list.indexOf( f ), geometries );
+                ( (OddEven) o ).eval( ctx, f, 1 + list.indexOf( f ) );
             }
             if ( o instanceof GMLId ) {
-                ( (GMLId) o ).eval( sb, f, null );
+                ( (GMLId) o ).eval( ctx.out, f, null );
             }
         }
     }
 
     /**
-     * @param sb
-     * @param defs
+     * @param ctx
      * @param obj
-     * @param geometries
      */
-    public void eval( StringBuilder sb, HashMap<String, Object> defs, Object obj, boolean geometries ) {
+    public void eval( TemplateContext ctx, Object obj ) {
         if ( obj instanceof Feature ) {
             LOG.debug( "Feature template call '{}' with featureid '{}'", name, ( (Feature) obj ).getId() );
         } else {
             LOG.debug( "Feature template call '{}' with '{}'", name, obj );
         }
 
-        Object def = defs.get( name );
+        Object def = ctx.defs.get( name );
         if ( def == null ) {
             LOG.warn( "No template definition with name '{}'.", name );
             return;
@@ -142,16 +134,17 @@ public class FeatureTemplateCall {
         if ( obj instanceof FeatureCollection ) {
             Feature[] fs = new Feature[( (FeatureCollection) obj ).size()];
             List<Feature> list = getMatchingObjects( ( (FeatureCollection) obj ).toArray( fs ), patterns, negate,
-                                                     geometries );
+                                                     ctx.geometries );
             for ( Feature feat : list ) {
-                eval( sb, defs, feat, t, list, geometries );
+                eval( ctx, feat, t, list );
             }
             return;
         }
         if ( obj instanceof Feature ) {
-            List<Feature> feats = getMatchingObjects( new Feature[] { (Feature) obj }, patterns, negate, geometries );
+            List<Feature> feats = getMatchingObjects( new Feature[] { (Feature) obj }, patterns, negate,
+                                                      ctx.geometries );
             for ( Feature f : feats ) {
-                eval( sb, defs, f, t, feats, geometries );
+                eval( ctx, f, t, feats );
             }
         }
     }
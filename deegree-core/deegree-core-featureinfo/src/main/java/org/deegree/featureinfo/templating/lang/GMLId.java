@@ -37,6 +37,8 @@ package org.deegree.featureinfo.templating.lang;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.PrintWriter;
+
 import org.deegree.feature.Feature;
 import org.slf4j.Logger;
 
@@ -53,20 +55,20 @@ public class GMLId {
     private static final Logger LOG = getLogger( GMLId.class );
 
     /**
-     * @param sb
+     * @param out
      * @param o
      * @param parent
      */
-    public void eval( StringBuilder sb, Object o, Feature parent ) {
+    public void eval( PrintWriter out, Object o, Feature parent ) {
         if ( o instanceof Feature ) {
             String id = ( (Feature) o ).getId();
             if ( id != null && !id.isEmpty() ) {
-                sb.append( id );
+                out.print( id );
             }
         } else if ( parent != null ) {
             String id = parent.getId();
             if ( id != null && !id.isEmpty() ) {
-                sb.append( id );
+                out.print( id );
             }
         } else {
             LOG.warn( "Trying to get GML id from property without parent information." );
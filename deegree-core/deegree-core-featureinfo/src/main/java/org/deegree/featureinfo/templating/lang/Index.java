@@ -37,6 +37,7 @@ package org.deegree.featureinfo.templating.lang;
 
 import static org.deegree.commons.utils.JavaUtils.generateToString;
 
+import java.io.PrintWriter;
 import java.util.List;
 
 /**
@@ -51,12 +52,12 @@ public class Index {
 
     /**
      * @param <T>
-     * @param sb
+     * @param out
      * @param val
      * @param vals
      */
-    public <T> void eval( StringBuilder sb, T val, List<T> vals ) {
-        sb.append( vals.indexOf( val ) + 1 );
+    public <T> void eval( PrintWriter out, T val, List<T> vals ) {
+        out.print( vals.indexOf( val ) + 1 );
     }
 
     @Override
@@ -38,6 +38,8 @@ package org.deegree.featureinfo.templating.lang;
 import static org.deegree.commons.utils.JavaUtils.generateToString;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.PrintWriter;
+
 import org.deegree.commons.tom.gml.property.Property;
 import org.slf4j.Logger;
 
@@ -78,10 +80,10 @@ public class Link {
     }
 
     /**
-     * @param sb
+     * @param out
      * @param o
      */
-    public void eval( StringBuilder sb, Object o ) {
+    public void eval( PrintWriter out, Object o ) {
         if ( !( o instanceof Property ) ) {
             LOG.warn( "Trying to get value as link while current object is a feature." );
             return;
@@ -97,9 +99,9 @@ public class Link {
         }
         // TODO price question: what's the Java Way to sgml-quote?
         val = val.replace( "&", "&amp;" );
-        sb.append( "<a target='_blank' href='" ).append( val ).append( "'>" );
-        sb.append( text == null ? val : text );
-        sb.append( "</a>" );
+        out.append( "<a target='_blank' href='" ).append( val ).append( "'>" );
+        out.print( text == null ? val : text );
+        out.print( "</a>" );
     }
 
     @Override
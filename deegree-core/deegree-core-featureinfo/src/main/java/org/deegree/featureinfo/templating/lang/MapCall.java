@@ -38,8 +38,6 @@ package org.deegree.featureinfo.templating.lang;
 import static org.deegree.commons.utils.JavaUtils.generateToString;
 import static org.slf4j.LoggerFactory.getLogger;
 
-import java.util.HashMap;
-
 import org.deegree.commons.tom.gml.property.Property;
 import org.deegree.feature.Feature;
 import org.slf4j.Logger;
@@ -70,12 +68,11 @@ public class MapCall {
     }
 
     /**
-     * @param sb
-     * @param defs
+     * @param ctx
      * @param o
      */
-    public void eval( StringBuilder sb, HashMap<String, Object> defs, Object o ) {
-        Object def = defs.get( name );
+    public void eval( TemplateContext ctx, Object o ) {
+        Object def = ctx.defs.get( name );
         if ( def == null ) {
             LOG.warn( "No map template definition with name '{}'.", name );
             return;
@@ -117,10 +114,10 @@ public class MapCall {
 
         if ( !md.map.containsKey( key ) ) {
             LOG.warn( "Map template definition with name '{}' does not contain key '{}'.", name, key );
-            sb.append( key );
+            ctx.out.print( key );
             return;
         }
-        sb.append( md.map.get( key ) );
+        ctx.out.print( md.map.get( key ) );
     }
 
     /**
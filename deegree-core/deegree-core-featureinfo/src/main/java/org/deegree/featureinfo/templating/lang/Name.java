@@ -37,6 +37,8 @@ package org.deegree.featureinfo.templating.lang;
 
 import static org.deegree.commons.utils.JavaUtils.generateToString;
 
+import java.io.PrintWriter;
+
 import org.deegree.commons.tom.gml.property.Property;
 import org.deegree.feature.Feature;
 
@@ -51,15 +53,15 @@ import org.deegree.feature.Feature;
 public class Name {
 
     /**
-     * @param sb
+     * @param out
      * @param o
      */
-    public void eval( StringBuilder sb, Object o ) {
+    public void eval( PrintWriter out, Object o ) {
         if ( o instanceof Feature ) {
-            sb.append( ( (Feature) o ).getName().getLocalPart() );
+            out.print( ( (Feature) o ).getName().getLocalPart() );
         }
         if ( o instanceof Property ) {
-            sb.append( ( (Property) o ).getName().getLocalPart() );
+            out.print( ( (Property) o ).getName().getLocalPart() );
         }
     }
 
@@ -38,8 +38,6 @@ package org.deegree.featureinfo.templating.lang;
 import static java.util.Collections.singletonList;
 import static org.deegree.commons.utils.JavaUtils.generateToString;
 
-import java.util.HashMap;
-
 import org.deegree.commons.tom.gml.property.Property;
 import org.deegree.feature.Feature;
 
@@ -67,22 +65,20 @@ public class OddEven {
     }
 
     /**
-     * @param sb
-     * @param defs
+     * @param ctx
      * @param obj
      * @param idx
-     * @param geometries
      */
-    public void eval( StringBuilder sb, HashMap<String, Object> defs, Object obj, int idx, boolean geometries ) {
+    public void eval( TemplateContext ctx, Object obj, int idx ) {
         if ( idx % 2 == 0 ^ odd ) {
             return;
         }
 
         if ( obj instanceof Feature ) {
-            new FeatureTemplateCall( name, singletonList( "*" ), false ).eval( sb, defs, obj, geometries );
+            new FeatureTemplateCall( name, singletonList( "*" ), false ).eval( ctx, obj );
         }
         if ( obj instanceof Property ) {
-            new PropertyTemplateCall( name, singletonList( "*" ), false ).eval( sb, defs, obj, geometries );
+            new PropertyTemplateCall( name, singletonList( "*" ), false ).eval( ctx, obj );
         }
     }
 
@@ -40,8 +40,6 @@ import static org.deegree.featureinfo.templating.lang.Util.getMatchingObjects;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 
 import org.deegree.commons.tom.gml.property.Property;
@@ -66,8 +64,6 @@ public class PropertyTemplateCall {
 
     private List<String> patterns;
 
-    private HashSet<Object> visited = new HashSet<Object>();
-
     private final boolean negate;
 
     /**
@@ -81,20 +77,18 @@ public class PropertyTemplateCall {
         this.negate = negate;
     }
 
-    private void eval( StringBuilder sb, TemplateDefinition t, Object obj, HashMap<String, Object> defs,
-                       List<Property> list, Feature parent, boolean geometries ) {
+    private void eval( TemplateContext ctx, TemplateDefinition t, Object obj, List<Property> list, Feature parent ) {
         Property p = null;
         if ( obj instanceof Property ) {
             p = (Property) obj;
         }
         if ( p != null ) {
-            if ( visited.contains( p ) ) {
+            if ( !ctx.visit( this, p ) ) {
                 // TODO add link?
                 return;
             }
-            visited.add( p );
 
-            if ( p.getValue() instanceof Geometry && !geometries ) {
+            if ( p.getValue() instanceof Geometry && !ctx.geometries ) {
                 return;
             }
         }
@@ -102,54 +96,52 @@ public class PropertyTemplateCall {
         for ( Object o : t.body ) {
             if ( o instanceof FeatureTemplateCall ) {
                 if ( p != null && ( p.getValue() instanceof Feature ) ) {
-                    ( (FeatureTemplateCall) o ).eval( sb, defs, p.getValue(), geometries );
+                    ( (FeatureTemplateCall) o ).eval( ctx, p.getValue() );
                 }
                 if ( p == null && obj instanceof FeatureCollection ) {
-                    ( (FeatureTemplateCall) o ).eval( sb, defs, obj, geometries );
+                    ( (FeatureTemplateCall) o ).eval( ctx, obj );
                 }
             }
             if ( o instanceof String ) {
-                sb.append( o );
+                ctx.out.print( o );
             }
             if ( p == null ) {
                 continue;
             }
             if ( o instanceof MapCall ) {
-                ( (MapCall) o ).eval( sb, defs, p );
+                ( (MapCall) o ).eval( ctx, p );
             }
             if ( o instanceof PropertyTemplateCall ) {
                 LOG.warn( "Trying to call template '{}' as property template while current object is property.",
                           ( (PropertyTemplateCall) o ).name );
             }
             if ( o instanceof Name ) {
-                ( (Name) o ).eval( sb, p );
+                ( (Name) o ).eval( ctx.out, p );
             }
             if ( o instanceof Value ) {
-                ( (Value) o ).eval( sb, p );
+                ( (Value) o ).eval( ctx.out, p );
             }
             if ( o instanceof Link ) {
-                ( (Link) o ).eval( sb, p );
+                ( (Link) o ).eval( ctx.out, p );
             }
             if ( o instanceof Index ) {
-                ( (Index) o ).eval( sb, p, list );
+                ( (Index) o ).eval( ctx.out, p, list );
             }
             if ( o instanceof OddEven ) {
-                ( (OddEven) o ).eval( sb, defs, p, 1 + list.indexOf( p ), geometries );
+                ( (OddEven) o ).eval( ctx, p, 1 + list.indexOf( p ) );
             }
             if ( o instanceof GMLId ) {
-                ( (GMLId) o ).eval( sb, p, parent );
+                ( (GMLId) o ).eval( ctx.out, p, parent );
             }
         }
     }
 
     /**
-     * @param sb
-     * @param defs
+     * @param ctx
      * @param obj
-     * @param geometries
      */
-    public void eval( StringBuilder sb, HashMap<String, Object> defs, Object obj, boolean geometries ) {
-        Object def = defs.get( name );
+    public void eval( TemplateContext ctx, Object obj ) {
+        Object def = ctx.defs.get( name );
         if ( def == null ) {
             LOG.warn( "No template definition with name '{}'.", name );
             return;
@@ -157,22 +149,22 @@ public class PropertyTemplateCall {
         TemplateDefinition t = (TemplateDefinition) def;
 
         if ( obj instanceof Property ) {
-            eval( sb, t, obj, defs, Collections.<Property> singletonList( (Property) obj ), null, geometries );
+            eval( ctx, t, obj, Collections.<Property> singletonList( (Property) obj ), null );
             return;
         }
         if ( obj instanceof FeatureCollection ) {
-            eval( sb, t, obj, defs, null, (Feature) obj, geometries );
+            eval( ctx, t, obj, null, (Feature) obj );
             return;
         }
         List<Property> inputProps = ( (Feature) obj ).getProperties();
         Property[] propArray = inputProps.toArray( new Property[inputProps.size()] );
 
-        List<Property> props = getMatchingObjects( propArray, patterns, negate, geometries );
+        List<Property> props = getMatchingObjects( propArray, patterns, negate, ctx.geometries );
 
         LOG.debug( "Property template call '{}' matches objects '{}'.", name, props );
 
         for ( Property p : props ) {
-            eval( sb, t, p, defs, props, (Feature) obj, geometries );
+            eval( ctx, t, p, props, (Feature) obj );
         }
     }
 
@@ -0,0 +1,99 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.featureinfo.templating.lang;
+
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * State of one template evaluation. Parsed template definitions do not hold any evaluation state, so they can be
+ * cached and evaluated by several threads at the same time, each using its own context.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class TemplateContext {
+
+    final PrintWriter out;
+
+    final Map<String, ?> defs;
+
+    final boolean geometries;
+
+    // objects already processed, per template call
+    private final IdentityHashMap<Object, HashSet<Object>> visited = new IdentityHashMap<Object, HashSet<Object>>();
+
+    /**
+     * @param out
+     *            the output is written to this writer, never <code>null</code>
+     * @param defs
+     *            the template definitions, never <code>null</code>
+     * @param geometries
+     *            whether to output geometry properties
+     */
+    public TemplateContext( PrintWriter out, Map<String, ?> defs, boolean geometries ) {
+        this.out = out;
+        this.defs = defs;
+        this.geometries = geometries;
+    }
+
+    /**
+     * @param call
+     *            the template call processing the object
+     * @param o
+     *            the feature or property
+     * @return false, if the object has already been processed by the template call
+     */
+    boolean visit( Object call, Object o ) {
+        HashSet<Object> set = visited.get( call );
+        if ( set == null ) {
+            set = new HashSet<Object>();
+            visited.put( call, set );
+        }
+        return set.add( o );
+    }
+
+}
@@ -38,6 +38,8 @@ package org.deegree.featureinfo.templating.lang;
 import static org.deegree.commons.utils.JavaUtils.generateToString;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.PrintWriter;
+
 import org.deegree.commons.tom.gml.property.Property;
 import org.slf4j.Logger;
 
@@ -54,13 +56,13 @@ public class Value {
     private static final Logger LOG = getLogger( Value.class );
 
     /**
-     * @param sb
+     * @param out
      * @param o
      */
-    public void eval( StringBuilder sb, Object o ) {
+    public void eval( PrintWriter out, Object o ) {
         if ( o instanceof Property ) {
             try {
-                sb.append( ( (Property) o ).getValue() );
+                out.print( ( (Property) o ).getValue() );
             } catch ( UnsupportedOperationException e ) {
                 LOG.error( "The error '{}' occurred while converting a property to a string, "
                            + "probably the WKT writer cannot convert a geometry.", e.getLocalizedMessage() );
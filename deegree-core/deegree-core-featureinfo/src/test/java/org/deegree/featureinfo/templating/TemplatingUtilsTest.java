@@ -0,0 +1,94 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.featureinfo.templating;
+
+import static org.apache.commons.io.FileUtils.writeStringToFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.antlr.runtime.RecognitionException;
+import org.deegree.featureinfo.templating.lang.Definition;
+import org.junit.Test;
+
+/**
+ * Tests the caching of parsed templates in {@link TemplatingUtils}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class TemplatingUtilsTest {
+
+    @Test
+    public void testInternalTemplateCached()
+                            throws IOException, RecognitionException {
+        Map<String, Definition> defs = TemplatingUtils.getDefinitions( null );
+        assertEquals( 4, defs.size() );
+        assertSame( defs, TemplatingUtils.getDefinitions( null ) );
+    }
+
+    @Test
+    public void testReloadModifiedTemplate()
+                            throws IOException, RecognitionException {
+        File file = File.createTempFile( "template", ".gfi" );
+        file.deleteOnExit();
+        writeStringToFile( file, "<?map props>\nNAME=Name\n", "UTF-8" );
+        file.setLastModified( 1000000000000l );
+
+        Map<String, Definition> defs = TemplatingUtils.getDefinitions( file.toString() );
+        assertEquals( 1, defs.size() );
+        assertSame( defs, TemplatingUtils.getDefinitions( file.toString() ) );
+
+        writeStringToFile( file, "<?map props>\nNAME=Name\n\n<?map other>\nSTATE=State\n", "UTF-8" );
+        file.setLastModified( 1000000002000l );
+        Map<String, Definition> changed = TemplatingUtils.getDefinitions( file.toString() );
+        assertNotSame( defs, changed );
+        assertEquals( 2, changed.size() );
+    }
+
+}
@@ -50,6 +50,19 @@ import org.deegree.geometry.Geometry;
  */
 public interface GeometryParticleConverter extends ParticleConverter<Geometry> {
 
+    /**
+     * Returns an SQL snippet for selecting the geometries generalized on the database side, eg. for rendering.
+     * Implementations that don't support generalization return the same as {@link #getSelectSnippet(String)}.
+     * 
+     * @param tableAlias
+     *            alias of the table, can be <code>null</code>
+     * @param tolerance
+     *            maximum deviation of the returned geometries, in units of the storage crs, no generalization is
+     *            performed if not positive
+     * @return SQL snippet, never <code>null</code>
+     */
+    public String getSelectSnippet( String tableAlias, double tolerance );
+
     public String getSrid();
 
     public ICRS getCrs();
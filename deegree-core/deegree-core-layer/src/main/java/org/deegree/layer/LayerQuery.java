@@ -79,6 +79,8 @@ public class LayerQuery {
 
     private Envelope queryBox;
 
+    private long deadline = -1;
+
     /**
      * @param envelope
      * @param width
@@ -183,6 +185,23 @@ public class LayerQuery {
         return options;
     }
 
+    /**
+     * @param deadline
+     *            the time (as in {@link System#currentTimeMillis()}) after which the layers should stop working on the
+     *            query, -1 for no deadline
+     */
+    public void setDeadline( long deadline ) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return the time (as in {@link System#currentTimeMillis()}) after which the layers should stop working on the
+     *         query, -1, if no deadline has been set
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
     public Envelope calcClickBox( int radius ) {
         radius = parameters.get( "RADIUS" ) == null ? radius : parseInt( parameters.get( "RADIUS" ) );
         GeometryFactory fac = new GeometryFactory();
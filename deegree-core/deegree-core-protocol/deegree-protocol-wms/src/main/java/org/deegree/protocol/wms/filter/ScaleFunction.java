@@ -42,6 +42,7 @@ import org.deegree.commons.tom.TypedObjectNode;
 import org.deegree.commons.tom.primitive.BaseType;
 import org.deegree.commons.tom.primitive.PrimitiveType;
 import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.utils.ThreadContext;
 import org.deegree.filter.Expression;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.expression.Function;
@@ -60,6 +61,11 @@ public class ScaleFunction implements FunctionProvider {
 
     static final ThreadLocal<Double> scale = new ThreadLocal<Double>();
 
+    static {
+        // worker threads rendering parts of a request need the scale as well
+        ThreadContext.register( scale );
+    }
+
     public static ThreadLocal<Double> getCurrentScaleValue() {
         return scale;
     }
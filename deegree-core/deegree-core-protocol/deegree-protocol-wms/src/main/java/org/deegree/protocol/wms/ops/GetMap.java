@@ -77,6 +77,7 @@ import org.deegree.commons.utils.CollectionUtils;
 import org.deegree.commons.utils.Pair;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.persistence.CRSManager;
+import org.deegree.filter.OperatorFilter;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.GeometryFactory;
 import org.deegree.layer.LayerRef;
@@ -234,6 +235,46 @@ public class GetMap extends RequestBase {
         }
     }
 
+    /**
+     * Creates a copy of a request with a different extent and size, but the same scale, eg. to render an image that
+     * contains the originally requested one.
+     * 
+     * @param original
+     *            the request to copy, never <code>null</code>
+     * @param boundingBox
+     *            the new bbox, in the crs of the original request
+     * @param width
+     *            the new width
+     * @param height
+     *            the new height
+     */
+    public GetMap( GetMap original, Envelope boundingBox, int width, int height ) {
+        this.layers.addAll( original.layers );
+        this.styles.addAll( original.styles );
+        this.filters = original.filters == null ? null : new LinkedList<OperatorFilter>( original.filters );
+        this.dimensions.putAll( original.dimensions );
+        this.crs = original.crs;
+        this.bbox = boundingBox;
+        this.width = width;
+        this.height = height;
+        this.format = original.format;
+        this.transparent = original.transparent;
+        this.bgcolor = original.bgcolor;
+        this.scale = original.scale;
+        this.pixelSize = original.pixelSize;
+        this.resolution = original.resolution;
+        this.extensions = original.extensions;
+        this.queryBoxSize = original.queryBoxSize;
+        this.overriddenParameters = original.overriddenParameters;
+        parameterMap.putAll( original.parameterMap );
+        if ( parameterMap.containsKey( "BBOX" ) ) {
+            parameterMap.put( "BBOX", boundingBox.getMin().get0() + "," + boundingBox.getMin().get1() + ","
+                                      + boundingBox.getMax().get0() + "," + boundingBox.getMax().get1() );
+            parameterMap.put( "WIDTH", Integer.toString( width ) );
+            parameterMap.put( "HEIGHT", Integer.toString( height ) );
+        }
+    }
+
     private void parse111( Map<String, String> map, MapOptionsMaps exts )
                             throws OWSException {
         String c = map.get( "SRS" );
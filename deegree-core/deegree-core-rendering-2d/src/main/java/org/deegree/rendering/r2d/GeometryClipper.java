@@ -65,13 +65,24 @@ class GeometryClipper {
     private Polygon clippingArea;
 
     GeometryClipper( GeometryHelper helper, Envelope bbox, int width ) {
+        this( helper, bbox, width, 100 );
+    }
+
+    /**
+     * @param helper
+     * @param bbox
+     * @param width
+     * @param buffer
+     *            the number of pixels the clipping area extends beyond the bbox
+     */
+    GeometryClipper( GeometryHelper helper, Envelope bbox, int width, int buffer ) {
         this.helper = helper;
-        this.clippingArea = calculateClippingArea( bbox, width );
+        this.clippingArea = calculateClippingArea( bbox, width, buffer );
     }
 
-    private Polygon calculateClippingArea( Envelope bbox, int width ) {
+    private Polygon calculateClippingArea( Envelope bbox, int width, int buffer ) {
         double resolution = bbox.getSpan0() / width;
-        double delta = resolution * 100;
+        double delta = resolution * buffer;
         double[] minCords = new double[] { bbox.getMin().get0() - delta, bbox.getMin().get1() - delta };
         double[] maxCords = new double[] { bbox.getMax().get0() + delta, bbox.getMax().get1() + delta };
         Point min = new DefaultPoint( null, bbox.getCoordinateSystem(), null, minCords );
@@ -76,10 +76,19 @@ class GeometryHelper {
 
     private static final GeometryLinearizer linearizer = new GeometryLinearizer();
 
+    /**
+     * Vertices of lines and polygon rings closer than this number of pixels to the previously emitted vertex are
+     * skipped when building paths. Fixed for map rendering, as dropping vertices closer than a quarter pixel does not
+     * change the rendered image visibly.
+     */
+    static final double DEFAULT_DECIMATION_TOLERANCE = 0.25;
+
     private GeometryTransformer transformer;
 
     private AffineTransform worldToScreen;
 
+    private double decimationTolerance = DEFAULT_DECIMATION_TOLERANCE;
+
     GeometryHelper( Envelope bbox, int width, AffineTransform worldToScreen ) {
         this.worldToScreen = worldToScreen;
         try {
@@ -92,6 +101,15 @@ class GeometryHelper {
         }
     }
 
+    /**
+     * @param tolerance
+     *            vertices closer than this number of pixels to the previously emitted vertex are skipped when building
+     *            paths, 0 disables the decimation, the default is {@link #DEFAULT_DECIMATION_TOLERANCE}
+     */
+    void setDecimationTolerance( double tolerance ) {
+        this.decimationTolerance = tolerance;
+    }
+
     Double fromCurve( Curve curve, boolean close ) {
         Double line = new Double();
 
@@ -100,25 +118,38 @@ class GeometryHelper {
         curve = linearizer.linearize( curve, new NumPointsCriterion( 100 ) );
         curve.setCoordinateSystem( crs );
         Points points = curve.getControlPoints();
+
+        // the vertices are transformed while building the path, so they can be decimated in screen space
+        double m00 = worldToScreen.getScaleX(), m01 = worldToScreen.getShearX(), m02 = worldToScreen.getTranslateX();
+        double m10 = worldToScreen.getShearY(), m11 = worldToScreen.getScaleY(), m12 = worldToScreen.getTranslateY();
+        double tolerance = decimationTolerance * decimationTolerance;
+
         Iterator<Point> iter = points.iterator();
         Point p = iter.next();
         double x = p.get0(), y = p.get1();
-        line.moveTo( x, y );
+        double lastX = m00 * x + m01 * y + m02, lastY = m10 * x + m11 * y + m12;
+        line.moveTo( lastX, lastY );
         while ( iter.hasNext() ) {
             p = iter.next();
+            double px = p.get0(), py = p.get1();
+            double sx = m00 * px + m01 * py + m02, sy = m10 * px + m11 * py + m12;
             if ( iter.hasNext() ) {
-                line.lineTo( p.get0(), p.get1() );
+                double dx = sx - lastX, dy = sy - lastY;
+                if ( dx * dx + dy * dy >= tolerance ) {
+                    line.lineTo( sx, sy );
+                    lastX = sx;
+                    lastY = sy;
+                }
             } else {
-                if ( close && isZero( x - p.get0() ) && isZero( y - p.get1() ) ) {
+                // the last vertex is always kept, so rings stay closed
+                if ( close && isZero( x - px ) && isZero( y - py ) ) {
                     line.closePath();
                 } else {
-                    line.lineTo( p.get0(), p.get1() );
+                    line.lineTo( sx, sy );
                 }
             }
         }
 
-        line.transform( worldToScreen );
-
         return line;
     }
 
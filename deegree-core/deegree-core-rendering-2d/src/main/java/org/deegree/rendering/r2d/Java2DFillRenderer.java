@@ -70,27 +70,46 @@ class Java2DFillRenderer {
 
     private Graphics2D graphics;
 
-    Java2DFillRenderer( UomCalculator uomCalculator, Graphics2D graphics ) {
+    private SvgRenderer svgRenderer;
+
+    Java2DFillRenderer( UomCalculator uomCalculator, Graphics2D graphics, SvgRenderer svgRenderer ) {
         this.uomCalculator = uomCalculator;
         this.graphics = graphics;
+        this.svgRenderer = svgRenderer;
     }
 
     void applyGraphicFill( Graphic graphic, UOM uom ) {
-        BufferedImage img;
-
-        if ( graphic.image == null ) {
-            int size = round( uomCalculator.considerUOM( graphic.size, uom ) );
-            img = new BufferedImage( size, size, TYPE_INT_ARGB );
-            Graphics2D g = img.createGraphics();
-            Java2DRenderer renderer = new Java2DRenderer( g );
-            renderMark( graphic.mark, graphic.size < 0 ? 6 : size, uom, renderer.rendererContext, 0, 0,
-                        graphic.rotation );
-            g.dispose();
-        } else {
-            img = graphic.image;
+        Rectangle2D.Double bounds = getGraphicBounds( graphic, 0, 0, uom );
+        BufferedImage img = graphic.image;
+
+        if ( img == null && graphic.imageURL != null ) {
+            img = svgRenderer.prepareSvg( bounds, graphic );
+        }
+        if ( img == null ) {
+            img = getMarkImage( graphic, uom );
         }
 
-        graphics.setPaint( new TexturePaint( img, getGraphicBounds( graphic, 0, 0, uom ) ) );
+        graphics.setPaint( new TexturePaint( img, bounds ) );
+    }
+
+    private BufferedImage getMarkImage( Graphic graphic, UOM uom ) {
+        int size = graphic.size < 0 ? 6 : round( uomCalculator.considerUOM( graphic.size, uom ) );
+        SymbolCache.Key key = SymbolCache.getMarkKey( graphic.mark, size, uom, graphic.rotation );
+        SymbolCache cache = SymbolCache.getInstance();
+        BufferedImage img = key == null ? null : cache.getImage( key );
+        if ( img != null ) {
+            return img;
+        }
+
+        img = new BufferedImage( size, size, TYPE_INT_ARGB );
+        Graphics2D g = img.createGraphics();
+        Java2DRenderer renderer = new Java2DRenderer( g );
+        renderMark( graphic.mark, size, uom, renderer.rendererContext, 0, 0, graphic.rotation );
+        g.dispose();
+        if ( key != null ) {
+            cache.putImage( key, img );
+        }
+        return img;
     }
 
     void applyFill( Fill fill, UOM uom ) {
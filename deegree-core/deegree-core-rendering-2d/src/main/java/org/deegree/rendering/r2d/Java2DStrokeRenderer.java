@@ -113,8 +113,17 @@ class Java2DStrokeRenderer {
     private boolean applyGraphicStroke( Stroke stroke, UOM uom, Shape object, double perpendicularOffset,
                                         PerpendicularOffsetType type ) {
         if ( stroke.stroke.image == null && stroke.stroke.imageURL != null ) {
-            Shape shape = getShapeFromSvg( stroke.stroke.imageURL,
-                                           uomCalculator.considerUOM( stroke.stroke.size, uom ), stroke.stroke.rotation );
+            double size = uomCalculator.considerUOM( stroke.stroke.size, uom );
+            SymbolCache cache = SymbolCache.getInstance();
+            SymbolCache.Key key = new SymbolCache.Key( "svgshape", stroke.stroke.imageURL, size,
+                                                       stroke.stroke.rotation );
+            Shape shape = cache.getShape( key );
+            if ( shape == null ) {
+                shape = getShapeFromSvg( stroke.stroke.imageURL, size, stroke.stroke.rotation );
+                if ( shape != null ) {
+                    cache.putShape( key, shape );
+                }
+            }
             graphics.setStroke( new ShapeStroke( shape, uomCalculator.considerUOM( stroke.strokeGap
                                                                                    + stroke.stroke.size, uom ),
                                                  stroke.positionPercentage, stroke.strokeInitialGap ) );
@@ -86,6 +86,59 @@ public class Java2DTextRenderer implements TextRenderer {
         this.labelRenderer = new LabelRenderer( renderer );
     }
 
+    /**
+     * Enables or disables deferred label placement. If enabled, labels are only collected while rendering, and are
+     * placed without overlaps when {@link #placeLabels()} is called. Labels collected so far are placed when disabling.
+     * 
+     * @param deferred
+     */
+    public void setDeferredPlacement( boolean deferred ) {
+        if ( deferred && labelRenderer.getPlacer() == null ) {
+            labelRenderer.setPlacer( new LabelPlacer( labelRenderer, renderer.graphics ) );
+        } else if ( !deferred && labelRenderer.getPlacer() != null ) {
+            placeLabels();
+            labelRenderer.setPlacer( null );
+        }
+    }
+
+    /**
+     * @return true, if deferred label placement is enabled
+     */
+    public boolean isDeferredPlacement() {
+        return labelRenderer.getPlacer() != null;
+    }
+
+    /**
+     * Hands the labels collected so far over to another renderer with deferred placement, so they are placed together
+     * with the labels of the other renderer. Labels are placed right away if the other renderer does not defer the
+     * placement.
+     * 
+     * @param target
+     *            the renderer to place the labels, never <code>null</code>
+     */
+    public void moveLabels( Java2DTextRenderer target ) {
+        LabelPlacer placer = labelRenderer.getPlacer();
+        LabelPlacer targetPlacer = target.labelRenderer.getPlacer();
+        if ( placer == null ) {
+            return;
+        }
+        if ( targetPlacer == null ) {
+            placer.render();
+            return;
+        }
+        placer.moveTo( targetPlacer );
+    }
+
+    /**
+     * Places and draws the labels collected since the last call, if deferred placement is enabled.
+     */
+    public void placeLabels() {
+        LabelPlacer placer = labelRenderer.getPlacer();
+        if ( placer != null ) {
+            placer.render();
+        }
+    }
+
     @Override
     public void render( TextStyling styling, String text, Collection<Geometry> geoms ) {
         for ( Geometry g : geoms ) {
@@ -163,6 +216,19 @@ public class Java2DTextRenderer implements TextRenderer {
     }
 
     private Font convertFont( TextStyling styling ) {
+        int size = round( renderer.rendererContext.uomCalculator.considerUOM( styling.font.fontSize, styling.uom ) );
+        SymbolCache.Key key = new SymbolCache.Key( "font", styling.font.fontFamily.toArray(), styling.font.bold,
+                                                   styling.font.fontStyle, size );
+        TextCache cache = TextCache.getInstance();
+        Font font = cache.getFont( key );
+        if ( font == null ) {
+            font = createFont( styling, size );
+            cache.putFont( key, font );
+        }
+        return font;
+    }
+
+    private static Font createFont( TextStyling styling, int size ) {
         AffineTransform shear = null;
 
         int style = styling.font.bold ? BOLD : PLAIN;
@@ -181,7 +247,6 @@ public class Java2DTextRenderer implements TextRenderer {
         }
 
         // use the first matching name, or Dialog, if none was found
-        int size = round( renderer.rendererContext.uomCalculator.considerUOM( styling.font.fontSize, styling.uom ) );
         Font font = new Font( "", style, size );
         for ( String name : styling.font.fontFamily ) {
             font = new Font( name, style, size );
@@ -0,0 +1,139 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static java.lang.Math.floor;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grid based index over the screen space bounding boxes of placed labels, used to detect label collisions. Each box is
+ * registered in all grid cells it touches, so a collision check only needs to look at the boxes of these cells.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class LabelIndex {
+
+    private final double cellSize;
+
+    private final Map<Long, List<Rectangle2D>> cells = new HashMap<Long, List<Rectangle2D>>();
+
+    /**
+     * @param cellSize
+     *            the grid cell size in pixels, should be in the order of the typical label size
+     */
+    LabelIndex( double cellSize ) {
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * @param box
+     * @return true, if the box intersects any of the boxes inserted so far
+     */
+    boolean intersects( Rectangle2D box ) {
+        int minx = cell( box.getMinX() ), maxx = cell( box.getMaxX() );
+        int miny = cell( box.getMinY() ), maxy = cell( box.getMaxY() );
+        for ( int x = minx; x <= maxx; ++x ) {
+            for ( int y = miny; y <= maxy; ++y ) {
+                List<Rectangle2D> list = cells.get( key( x, y ) );
+                if ( list == null ) {
+                    continue;
+                }
+                for ( Rectangle2D r : list ) {
+                    if ( r.intersects( box ) ) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param boxes
+     * @return true, if any of the boxes intersects any of the boxes inserted so far
+     */
+    boolean intersects( List<Rectangle2D> boxes ) {
+        for ( Rectangle2D box : boxes ) {
+            if ( intersects( box ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param box
+     *            the box to add, will not be copied
+     */
+    void insert( Rectangle2D box ) {
+        int minx = cell( box.getMinX() ), maxx = cell( box.getMaxX() );
+        int miny = cell( box.getMinY() ), maxy = cell( box.getMaxY() );
+        for ( int x = minx; x <= maxx; ++x ) {
+            for ( int y = miny; y <= maxy; ++y ) {
+                Long key = key( x, y );
+                List<Rectangle2D> list = cells.get( key );
+                if ( list == null ) {
+                    list = new ArrayList<Rectangle2D>( 4 );
+                    cells.put( key, list );
+                }
+                list.add( box );
+            }
+        }
+    }
+
+    private int cell( double v ) {
+        return (int) floor( v / cellSize );
+    }
+
+    private static Long key( int x, int y ) {
+        return ( ( (long) x ) << 32 ) | ( y & 0xffffffffl );
+    }
+
+}
@@ -0,0 +1,258 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static java.awt.RenderingHints.KEY_ANTIALIASING;
+import static java.awt.RenderingHints.KEY_TEXT_ANTIALIASING;
+import static java.awt.geom.PathIterator.SEG_CLOSE;
+import static java.awt.geom.PathIterator.SEG_MOVETO;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.deegree.style.styling.TextStyling;
+import org.slf4j.Logger;
+
+/**
+ * Collects labels during rendering and places them afterwards. Labels are processed by priority (larger fonts first,
+ * then in the order they were added), a label is only laid out and drawn if its bounding box does not collide with an
+ * already placed label.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class LabelPlacer {
+
+    private static final Logger LOG = getLogger( LabelPlacer.class );
+
+    private static final double CELL_SIZE = 64;
+
+    private static final Comparator<Label> PRIORITY = new Comparator<Label>() {
+        @Override
+        public int compare( Label l1, Label l2 ) {
+            int c = Float.compare( l2.font.getSize2D(), l1.font.getSize2D() );
+            return c != 0 ? c : l1.sequence - l2.sequence;
+        }
+    };
+
+    private final LabelRenderer labelRenderer;
+
+    private final Graphics2D graphics;
+
+    private final List<Label> labels = new ArrayList<Label>();
+
+    LabelPlacer( LabelRenderer labelRenderer, Graphics2D graphics ) {
+        this.labelRenderer = labelRenderer;
+        this.graphics = graphics;
+    }
+
+    void add( TextStyling styling, Font font, String text, double x, double y ) {
+        labels.add( new Label( styling, font, text, x, y, null ) );
+    }
+
+    void add( TextStyling styling, Font font, String text, Path2D.Double line ) {
+        labels.add( new Label( styling, font, text, 0, 0, line ) );
+    }
+
+    /**
+     * Moves the collected labels to another placer. They are placed after the labels already collected by the other
+     * placer if they have the same priority.
+     * 
+     * @param target
+     */
+    void moveTo( LabelPlacer target ) {
+        for ( Label l : labels ) {
+            l.sequence = target.labels.size();
+            target.labels.add( l );
+        }
+        labels.clear();
+    }
+
+    /**
+     * Places and draws all collected labels, and clears the list of collected labels.
+     */
+    void render() {
+        if ( labels.isEmpty() ) {
+            return;
+        }
+        Collections.sort( labels, PRIORITY );
+
+        FontRenderContext frc;
+        synchronized ( FontRenderContext.class ) {
+            // see LabelRenderer
+            frc = graphics.getFontRenderContext();
+        }
+        Object antialias = graphics.getRenderingHint( KEY_ANTIALIASING );
+        Object textAntialias = graphics.getRenderingHint( KEY_TEXT_ANTIALIASING );
+
+        LabelIndex index = new LabelIndex( CELL_SIZE );
+        int placed = 0;
+        for ( Label l : labels ) {
+            if ( l.antialias != null ) {
+                graphics.setRenderingHint( KEY_ANTIALIASING, l.antialias );
+            }
+            if ( l.textAntialias != null ) {
+                graphics.setRenderingHint( KEY_TEXT_ANTIALIASING, l.textAntialias );
+            }
+            if ( l.line == null ) {
+                Rectangle2D box = labelRenderer.estimateBounds( l.styling, l.font, l.text, l.x, l.y, frc );
+                if ( index.intersects( box ) ) {
+                    continue;
+                }
+                index.insert( box );
+                labelRenderer.renderAt( l.styling, l.font, l.text, l.x, l.y );
+            } else {
+                Shape shape = labelRenderer.layoutAlong( l.styling, l.font, l.text, l.line );
+                if ( shape == null ) {
+                    continue;
+                }
+                List<Rectangle2D> boxes = getContourBounds( shape );
+                if ( boxes.isEmpty() || index.intersects( boxes ) ) {
+                    continue;
+                }
+                for ( Rectangle2D box : boxes ) {
+                    index.insert( box );
+                }
+                labelRenderer.fillAlong( l.styling, shape );
+            }
+            ++placed;
+        }
+
+        if ( antialias != null ) {
+            graphics.setRenderingHint( KEY_ANTIALIASING, antialias );
+        }
+        if ( textAntialias != null ) {
+            graphics.setRenderingHint( KEY_TEXT_ANTIALIASING, textAntialias );
+        }
+        LOG.debug( "Placed {} of {} labels.", placed, labels.size() );
+        labels.clear();
+    }
+
+    /**
+     * Calculates the bounds of each closed contour, ie. roughly of each glyph of a label placed along a line. Using
+     * the bounds of the whole label would block everything around curved or diagonal lines.
+     */
+    static List<Rectangle2D> getContourBounds( Shape shape ) {
+        List<Rectangle2D> list = new ArrayList<Rectangle2D>();
+        double[] coords = new double[6];
+        double minx = 0, miny = 0, maxx = 0, maxy = 0;
+        boolean open = false;
+        for ( PathIterator it = shape.getPathIterator( null ); !it.isDone(); it.next() ) {
+            int type = it.currentSegment( coords );
+            if ( type == SEG_MOVETO || type == SEG_CLOSE ) {
+                if ( open ) {
+                    list.add( new Rectangle2D.Double( minx, miny, maxx - minx, maxy - miny ) );
+                    open = false;
+                }
+                if ( type == SEG_CLOSE ) {
+                    continue;
+                }
+            }
+            int points = type == PathIterator.SEG_CUBICTO ? 3 : type == PathIterator.SEG_QUADTO ? 2 : 1;
+            for ( int i = 0; i < points; ++i ) {
+                double x = coords[2 * i], y = coords[2 * i + 1];
+                if ( !open ) {
+                    minx = maxx = x;
+                    miny = maxy = y;
+                    open = true;
+                } else {
+                    minx = min( minx, x );
+                    miny = min( miny, y );
+                    maxx = max( maxx, x );
+                    maxy = max( maxy, y );
+                }
+            }
+        }
+        if ( open ) {
+            list.add( new Rectangle2D.Double( minx, miny, maxx - minx, maxy - miny ) );
+        }
+        return list;
+    }
+
+    private class Label {
+
+        final TextStyling styling;
+
+        final Font font;
+
+        final String text;
+
+        final double x, y;
+
+        final Path2D.Double line;
+
+        int sequence;
+
+        final Object antialias;
+
+        final Object textAntialias;
+
+        Label( TextStyling styling, Font font, String text, double x, double y, Path2D.Double line ) {
+            this.styling = styling;
+            this.font = font;
+            this.text = text;
+            this.x = x;
+            this.y = y;
+            this.line = line;
+            this.sequence = labels.size();
+            // options may differ between layers, so keep the hints active when the label was added
+            this.antialias = graphics.getRenderingHint( KEY_ANTIALIASING );
+            this.textAntialias = graphics.getRenderingHint( KEY_TEXT_ANTIALIASING );
+        }
+
+    }
+
+}
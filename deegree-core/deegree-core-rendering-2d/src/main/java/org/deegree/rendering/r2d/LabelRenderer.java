@@ -43,6 +43,7 @@ package org.deegree.rendering.r2d;
 
 import static java.awt.BasicStroke.CAP_BUTT;
 import static java.awt.BasicStroke.JOIN_ROUND;
+import static java.awt.geom.AffineTransform.getRotateInstance;
 import static java.awt.geom.AffineTransform.getTranslateInstance;
 import static java.lang.Math.toRadians;
 import static org.deegree.commons.utils.math.MathUtils.isZero;
@@ -50,11 +51,13 @@ import static org.deegree.commons.utils.math.MathUtils.round;
 
 import java.awt.BasicStroke;
 import java.awt.Font;
+import java.awt.Shape;
 import java.awt.font.FontRenderContext;
 import java.awt.font.TextLayout;
 import java.awt.geom.AffineTransform;
-import java.awt.geom.Point2D;
 import java.awt.geom.Path2D.Double;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 
 import org.deegree.geometry.primitive.Curve;
 import org.deegree.geometry.primitive.Point;
@@ -63,7 +66,8 @@ import org.deegree.rendering.r2d.strokes.TextStroke;
 import org.deegree.style.styling.TextStyling;
 
 /**
- * Responsible for rendering a single label.
+ * Responsible for rendering a single label. If a {@link LabelPlacer} is set, labels are handed to the placer instead
+ * of being drawn immediately.
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: stranger $
@@ -76,26 +80,49 @@ class LabelRenderer {
 
     private RendererContext context;
 
+    private LabelPlacer placer;
+
     LabelRenderer( Java2DRenderer renderer ) {
         this.renderer = renderer;
         this.context = renderer.rendererContext;
     }
 
+    /**
+     * @param placer
+     *            the placer to collect labels, or null to draw labels immediately
+     */
+    void setPlacer( LabelPlacer placer ) {
+        this.placer = placer;
+    }
+
+    LabelPlacer getPlacer() {
+        return placer;
+    }
+
     void render( TextStyling styling, Font font, String text, Point p ) {
         Point2D.Double pt = (Point2D.Double) renderer.worldToScreen.transform( new Point2D.Double( p.get0(), p.get1() ),
                                                                                null );
         double x = pt.x + context.uomCalculator.considerUOM( styling.displacementX, styling.uom );
         double y = pt.y - context.uomCalculator.considerUOM( styling.displacementY, styling.uom );
+        if ( placer != null ) {
+            placer.add( styling, font, text, x, y );
+        } else {
+            renderAt( styling, font, text, x, y );
+        }
+    }
+
+    void renderAt( TextStyling styling, Font font, String text, double x, double y ) {
         renderer.graphics.setFont( font );
         AffineTransform transform = renderer.graphics.getTransform();
         renderer.graphics.rotate( toRadians( styling.rotation ), x, y );
         TextLayout layout;
+        FontRenderContext frc;
         synchronized ( FontRenderContext.class ) {
             // apparently getting the font render context is not threadsafe (despite having different graphics here)
             // so do this globally synchronized to fix:
             // http://tracker.deegree.org/deegree-core/ticket/200
-            FontRenderContext frc = renderer.graphics.getFontRenderContext();
-            layout = new TextLayout( text, font, frc );
+            frc = renderer.graphics.getFontRenderContext();
+            layout = TextCache.getInstance().getLayout( font, text, frc );
         }
         double width = layout.getBounds().getWidth();
         double height = layout.getBounds().getHeight();
@@ -109,7 +136,8 @@ class LabelRenderer {
                                                                                                 styling.uom ) ),
                                                   CAP_BUTT, JOIN_ROUND );
             renderer.graphics.setStroke( stroke );
-            renderer.graphics.draw( layout.getOutline( getTranslateInstance( px, py ) ) );
+            Shape outline = TextCache.getInstance().getLayoutOutline( font, text, frc );
+            renderer.graphics.draw( getTranslateInstance( px, py ).createTransformedShape( outline ) );
         }
 
         renderer.graphics.setStroke( new BasicStroke() );
@@ -120,21 +148,57 @@ class LabelRenderer {
         renderer.graphics.setTransform( transform );
     }
 
+    /**
+     * Estimates the screen space bounds of a point label without laying out the text.
+     */
+    Rectangle2D estimateBounds( TextStyling styling, Font font, String text, double x, double y,
+                                FontRenderContext frc ) {
+        Rectangle2D r = font.getStringBounds( text, frc );
+        double width = r.getWidth();
+        double height = r.getHeight();
+        double px = x - styling.anchorPointX * width;
+        double py = y + styling.anchorPointY * height;
+        Rectangle2D box = new Rectangle2D.Double( px, py - height, width, height );
+        if ( styling.halo != null ) {
+            double radius = context.uomCalculator.considerUOM( styling.halo.radius, styling.uom );
+            box.setRect( box.getX() - radius, box.getY() - radius, width + 2 * radius, height + 2 * radius );
+        }
+        if ( !isZero( styling.rotation ) ) {
+            box = getRotateInstance( toRadians( styling.rotation ), x, y ).createTransformedShape( box ).getBounds2D();
+        }
+        return box;
+    }
+
     void render( TextStyling styling, Font font, String text, Curve c ) {
-        context.fillRenderer.applyFill( styling.fill, styling.uom );
+        Double line = context.geomHelper.fromCurve( c, false );
+        if ( placer != null ) {
+            placer.add( styling, font, text, line );
+        } else {
+            Shape shape = layoutAlong( styling, font, text, line );
+            if ( shape != null ) {
+                fillAlong( styling, shape );
+            }
+        }
+    }
+
+    /**
+     * @return the glyph outlines placed along the line, or null, if the text has no height
+     */
+    Shape layoutAlong( TextStyling styling, Font font, String text, Double line ) {
         java.awt.Stroke stroke = new TextStroke( text, font, styling.linePlacement );
         if ( isZero( ( (TextStroke) stroke ).getLineHeight() ) ) {
-            return;
+            return null;
         }
         if ( !isZero( styling.linePlacement.perpendicularOffset ) ) {
             stroke = new OffsetStroke( styling.linePlacement.perpendicularOffset, stroke,
                                        styling.linePlacement.perpendicularOffsetType );
         }
+        return stroke.createStrokedShape( line );
+    }
 
-        renderer.graphics.setStroke( stroke );
-        Double line = context.geomHelper.fromCurve( c, false );
-
-        renderer.graphics.draw( line );
+    void fillAlong( TextStyling styling, Shape shape ) {
+        context.fillRenderer.applyFill( styling.fill, styling.uom );
+        renderer.graphics.fill( shape );
     }
 
 }
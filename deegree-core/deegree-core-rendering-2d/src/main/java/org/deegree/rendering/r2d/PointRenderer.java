@@ -41,22 +41,40 @@
 
 package org.deegree.rendering.r2d;
 
+import static java.awt.RenderingHints.KEY_ANTIALIASING;
+import static java.awt.geom.AffineTransform.TYPE_TRANSLATION;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.lang.Math.ceil;
+import static java.lang.Math.rint;
 import static java.lang.Math.toRadians;
 import static org.deegree.commons.utils.math.MathUtils.isZero;
 import static org.deegree.commons.utils.math.MathUtils.round;
 import static org.deegree.rendering.r2d.RenderHelper.renderMark;
+import static org.deegree.style.styling.components.Stroke.LineJoin.MITRE;
+import static org.deegree.style.utils.ShapeHelper.getShapeFromMark;
 
+import java.awt.Graphics2D;
+import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.HashSet;
 
 import org.deegree.style.styling.PointStyling;
 import org.deegree.style.styling.components.Graphic;
+import org.deegree.style.styling.components.Mark;
+import org.deegree.style.styling.components.Stroke;
+import org.deegree.style.styling.components.UOM;
 
 /**
  * <code>PointRenderer</code>
  * 
+ * Marks are rendered as pre-rasterized sprites once the same symbol (mark, size, fill, stroke and rotation rounded
+ * to whole degrees) has been seen twice. Sprites are shared process wide using the {@link SymbolCache}. Marks that
+ * cannot be cached (graphic fills/strokes, large or too many different symbols, scaled or rotated graphics) are
+ * rendered as vectors.
+ * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: mschneider $
  * 
@@ -64,10 +82,18 @@ import org.deegree.style.styling.components.Graphic;
  */
 class PointRenderer {
 
+    /** Marks larger than this (in pixels) are always rendered as vectors. */
+    static final int MAX_SPRITE_SIZE = 256;
+
+    /** Number of different symbols tracked per renderer, symbols seen after that are rendered as vectors. */
+    static final int MAX_SYMBOLS = 512;
+
     private AffineTransform worldToScreen;
 
     private RendererContext rendererContext;
 
+    private final HashSet<SymbolCache.Key> seen = new HashSet<SymbolCache.Key>();
+
     PointRenderer( AffineTransform worldToScreen, RendererContext rendererContext ) {
         this.worldToScreen = worldToScreen;
         this.rendererContext = rendererContext;
@@ -82,9 +108,10 @@ class PointRenderer {
         Rectangle2D.Double rect = rendererContext.fillRenderer.getGraphicBounds( g, x, y, styling.uom );
 
         if ( g.image == null && g.imageURL == null ) {
-            renderMark( g.mark, g.size < 0 ? 6
-                                          : round( rendererContext.uomCalculator.considerUOM( g.size, styling.uom ) ),
-                        styling.uom, rendererContext, rect.getMinX(), rect.getMinY(), g.rotation );
+            int size = g.size < 0 ? 6 : round( rendererContext.uomCalculator.considerUOM( g.size, styling.uom ) );
+            if ( !renderSprite( g.mark, size, styling.uom, rect.getMinX(), rect.getMinY(), g.rotation ) ) {
+                renderMark( g.mark, size, styling.uom, rendererContext, rect.getMinX(), rect.getMinY(), g.rotation );
+            }
             return;
         }
 
@@ -106,4 +133,101 @@ class PointRenderer {
         }
     }
 
+    /**
+     * @return false, if the mark needs to be rendered as vector
+     */
+    private boolean renderSprite( Mark mark, int size, UOM uom, double x, double y, double rotation ) {
+        Graphics2D graphics = rendererContext.graphics;
+        if ( size <= 0 || size > MAX_SPRITE_SIZE || ( mark.fill == null && mark.stroke == null )
+             || ( graphics.getTransform().getType() & ~TYPE_TRANSLATION ) != 0 ) {
+            return false;
+        }
+        double bucket = rint( rotation );
+        SymbolCache.Key markKey = SymbolCache.getMarkKey( mark, size, uom, bucket );
+        if ( markKey == null ) {
+            return false;
+        }
+        // stroke widths etc. depend on the resolution unless given in pixels
+        SymbolCache.Key key = new SymbolCache.Key( "sprite", markKey,
+                                                   rendererContext.uomCalculator.considerUOM( 1, uom ),
+                                                   graphics.getRenderingHint( KEY_ANTIALIASING ) );
+
+        SymbolCache cache = SymbolCache.getInstance();
+        SymbolCache.Sprite sprite = cache.getSprite( key );
+        if ( sprite == null ) {
+            // don't rasterize symbols only used once
+            if ( !seen.contains( key ) ) {
+                if ( seen.size() < MAX_SYMBOLS ) {
+                    seen.add( key );
+                }
+                return false;
+            }
+            sprite = createSprite( mark, size, uom, bucket );
+            cache.putSprite( key, sprite );
+        }
+        graphics.drawImage( sprite.image, round( x ) + sprite.x, round( y ) + sprite.y, null );
+        return true;
+    }
+
+    private SymbolCache.Sprite createSprite( Mark mark, int size, UOM uom, double rotation ) {
+        Stroke stroke = mark.stroke;
+        double width = stroke == null ? 0 : rendererContext.uomCalculator.considerUOM( stroke.width, uom );
+        // mitred corners reach out up to half the miter limit (10) times the stroke width, rotation up to
+        // (sqrt(2) - 1) / 2 times the size
+        boolean mitre = stroke != null && ( stroke.linejoin == null || stroke.linejoin == MITRE );
+        int pad = (int) ceil( width * ( mitre ? 5 : 1 ) + size * 0.21 ) + 2;
+        int dim = size + 2 * pad;
+
+        BufferedImage img = new BufferedImage( dim, dim, TYPE_INT_ARGB );
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHints( rendererContext.graphics.getRenderingHints() );
+        Java2DFillRenderer fillRenderer = new Java2DFillRenderer( rendererContext.uomCalculator, g,
+                                                                  rendererContext.svgRenderer );
+        Java2DStrokeRenderer strokeRenderer = new Java2DStrokeRenderer( g, rendererContext.uomCalculator,
+                                                                        fillRenderer );
+
+        Shape shape = getShapeFromMark( mark, size - 1, rotation, true, pad, pad );
+        if ( mark.fill != null ) {
+            fillRenderer.applyFill( mark.fill, uom );
+            g.fill( shape );
+        }
+        if ( stroke != null ) {
+            strokeRenderer.applyStroke( stroke, uom, shape, 0, null );
+        }
+        g.dispose();
+
+        return trim( img, pad, pad );
+    }
+
+    /**
+     * @param img
+     * @param x
+     *            the symbol origin within the image
+     * @param y
+     *            the symbol origin within the image
+     * @return a sprite containing the smallest part of the image with all non transparent pixels
+     */
+    static SymbolCache.Sprite trim( BufferedImage img, int x, int y ) {
+        int w = img.getWidth(), h = img.getHeight();
+        int[] argb = img.getRGB( 0, 0, w, h, null, 0, w );
+        int minx = w, miny = h, maxx = -1, maxy = -1;
+        for ( int j = 0; j < h; ++j ) {
+            for ( int i = 0; i < w; ++i ) {
+                if ( ( argb[j * w + i] >>> 24 ) != 0 ) {
+                    minx = Math.min( minx, i );
+                    maxx = Math.max( maxx, i );
+                    miny = Math.min( miny, j );
+                    maxy = Math.max( maxy, j );
+                }
+            }
+        }
+        if ( maxx < 0 ) {
+            return new SymbolCache.Sprite( new BufferedImage( 1, 1, TYPE_INT_ARGB ), 0, 0 );
+        }
+        int sw = maxx - minx + 1, sh = maxy - miny + 1;
+        BufferedImage sprite = new BufferedImage( sw, sh, TYPE_INT_ARGB );
+        sprite.setRGB( 0, 0, sw, sh, argb, miny * w + minx, w );
+        return new SymbolCache.Sprite( sprite, minx - x, miny - y );
+    }
+
 }
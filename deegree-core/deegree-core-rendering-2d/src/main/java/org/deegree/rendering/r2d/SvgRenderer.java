@@ -54,8 +54,6 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.LinkedHashMap;
-import java.util.Map;
 
 import javax.media.jai.RenderedOp;
 
@@ -63,14 +61,13 @@ import org.apache.batik.transcoder.TranscoderException;
 import org.apache.batik.transcoder.TranscoderInput;
 import org.apache.batik.transcoder.TranscoderOutput;
 import org.apache.batik.transcoder.image.PNGTranscoder;
-import org.deegree.commons.utils.ComparablePair;
 import org.deegree.style.styling.components.Graphic;
 import org.slf4j.Logger;
 
 import com.sun.media.jai.codec.MemoryCacheSeekableStream;
 
 /**
- * Renders svg images onto buffered images.
+ * Renders svg images onto buffered images. Rendered images are kept in the {@link SymbolCache}.
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: mschneider $
@@ -81,22 +78,11 @@ class SvgRenderer {
 
     private static final Logger LOG = getLogger( SvgRenderer.class );
 
-    final LinkedHashMap<ComparablePair<String, Integer>, BufferedImage> svgCache = new LinkedHashMap<ComparablePair<String, Integer>, BufferedImage>(
-                                                                                                                                                      256 ) {
-        private static final long serialVersionUID = -6847956873232942891L;
-
-        @Override
-        protected boolean removeEldestEntry( Map.Entry<ComparablePair<String, Integer>, BufferedImage> eldest ) {
-            return size() > 256; // yeah, hardcoded max size... TODO
-        }
-    };
-
     BufferedImage prepareSvg( Rectangle2D.Double rect, Graphic g ) {
-        BufferedImage img = null;
-        ComparablePair<String, Integer> cp = new ComparablePair<String, Integer>( g.imageURL, round( g.size ) );
-        if ( svgCache.containsKey( cp ) ) {
-            img = svgCache.get( cp );
-        } else {
+        SymbolCache cache = SymbolCache.getInstance();
+        SymbolCache.Key key = new SymbolCache.Key( "svg", g.imageURL, round( rect.width ), round( rect.height ) );
+        BufferedImage img = cache.getImage( key );
+        if ( img == null ) {
             PNGTranscoder t = new PNGTranscoder();
 
             t.addTranscodingHint( KEY_WIDTH, new Float( rect.width ) );
@@ -110,7 +96,6 @@ class SvgRenderer {
             TranscoderOutput output = new TranscoderOutput( out );
             InputStream in = null;
 
-            // TODO cache images
             try {
                 t.transcode( input, output );
                 out.flush();
@@ -118,7 +103,7 @@ class SvgRenderer {
                 MemoryCacheSeekableStream mcss = new MemoryCacheSeekableStream( in );
                 RenderedOp rop = create( "stream", mcss );
                 img = rop.getAsBufferedImage();
-                svgCache.put( cp, img );
+                cache.putImage( key, img );
             } catch ( TranscoderException e ) {
                 LOG.warn( "Could not rasterize svg '{}': {}", g.imageURL, e.getLocalizedMessage() );
             } catch ( IOException e ) {
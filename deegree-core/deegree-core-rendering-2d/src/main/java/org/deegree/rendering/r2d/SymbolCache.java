@@ -0,0 +1,344 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.deegree.style.styling.components.Fill;
+import org.deegree.style.styling.components.Mark;
+import org.deegree.style.styling.components.Stroke;
+import org.deegree.style.styling.components.UOM;
+import org.slf4j.Logger;
+
+/**
+ * Process wide cache for rasterized symbols (svg graphics, marks used as graphic fills, point sprites) and svg
+ * shapes. Entries are weighted by their estimated memory size, the least recently used entries are evicted once the
+ * configured maximum is exceeded. The cache is thread safe, but does not block concurrent creation of the same symbol
+ * (the symbol will just be created twice in that case).
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SymbolCache {
+
+    private static final Logger LOG = getLogger( SymbolCache.class );
+
+    /** Default maximum size of the cache, 32MB. */
+    public static final long DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+
+    private static final SymbolCache INSTANCE = new SymbolCache( DEFAULT_MAX_BYTES );
+
+    private final LinkedHashMap<Key, CacheEntry> entries = new LinkedHashMap<Key, CacheEntry>( 256, 0.75f, true );
+
+    private long maxBytes;
+
+    private long bytes;
+
+    private long hits, misses, evictions;
+
+    SymbolCache( long maxBytes ) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the process wide instance, never <code>null</code>
+     */
+    public static SymbolCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets a new maximum size. If the cache currently holds more, least recently used entries are evicted immediately.
+     * 
+     * @param maxBytes
+     *            the maximum estimated memory size in bytes, 0 disables caching
+     */
+    public synchronized void setMaxBytes( long maxBytes ) {
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    /**
+     * @return the maximum estimated memory size in bytes
+     */
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @param key
+     * @return the cached image, or <code>null</code>
+     */
+    BufferedImage getImage( Key key ) {
+        return (BufferedImage) get( key );
+    }
+
+    /**
+     * @param key
+     * @param img
+     *            may not be <code>null</code>
+     */
+    void putImage( Key key, BufferedImage img ) {
+        put( key, img, 4l * img.getWidth() * img.getHeight() );
+    }
+
+    /**
+     * @param key
+     * @return the cached shape, or <code>null</code>
+     */
+    Shape getShape( Key key ) {
+        return (Shape) get( key );
+    }
+
+    /**
+     * @param key
+     * @param shape
+     *            may not be <code>null</code>
+     */
+    void putShape( Key key, Shape shape ) {
+        // a path segment needs up to six coordinates plus the segment type
+        long segments = 0;
+        PathIterator it = shape.getPathIterator( null );
+        while ( !it.isDone() ) {
+            ++segments;
+            it.next();
+        }
+        put( key, shape, 64 + segments * 28 );
+    }
+
+    /**
+     * @param key
+     * @return the cached sprite, or <code>null</code>
+     */
+    Sprite getSprite( Key key ) {
+        return (Sprite) get( key );
+    }
+
+    /**
+     * @param key
+     * @param sprite
+     *            may not be <code>null</code>
+     */
+    void putSprite( Key key, Sprite sprite ) {
+        put( key, sprite, 16 + 4l * sprite.image.getWidth() * sprite.image.getHeight() );
+    }
+
+    /**
+     * Marks are copied for each feature when evaluating styles, so the key is built from the mark's content. Marks
+     * using graphic fills or strokes are not cached.
+     * 
+     * @param mark
+     * @param size
+     *            in pixels
+     * @param uom
+     * @param rotation
+     * @return a key for the rendered mark, or <code>null</code>, if the mark cannot be cached
+     */
+    static Key getMarkKey( Mark mark, int size, UOM uom, double rotation ) {
+        Fill fill = mark.fill;
+        Stroke stroke = mark.stroke;
+        if ( ( fill != null && fill.graphic != null )
+             || ( stroke != null && ( stroke.fill != null || stroke.stroke != null ) ) ) {
+            return null;
+        }
+        Object fillColor = fill == null ? null : fill.color;
+        Object[] strokeParts = stroke == null ? null : new Object[] { stroke.color, stroke.width, stroke.linejoin,
+                                                                     stroke.linecap, stroke.dasharray,
+                                                                     stroke.dashoffset };
+        return new Key( "mark", mark.wellKnown, mark.font, mark.markIndex, mark.shape, fillColor, strokeParts, size,
+                        uom, rotation );
+    }
+
+    private synchronized Object get( Key key ) {
+        CacheEntry e = entries.get( key );
+        if ( e == null ) {
+            ++misses;
+            return null;
+        }
+        ++hits;
+        return e.value;
+    }
+
+    private synchronized void put( Key key, Object value, long weight ) {
+        if ( weight > maxBytes ) {
+            LOG.debug( "Not caching symbol {}, it is larger than the cache.", key );
+            return;
+        }
+        CacheEntry old = entries.put( key, new CacheEntry( value, weight ) );
+        if ( old != null ) {
+            bytes -= old.weight;
+        }
+        bytes += weight;
+        evict();
+    }
+
+    private void evict() {
+        Iterator<CacheEntry> it = entries.values().iterator();
+        while ( bytes > maxBytes && it.hasNext() ) {
+            bytes -= it.next().weight;
+            it.remove();
+            ++evictions;
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return the number of cached symbols
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the estimated memory size of all cached symbols in bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the number of lookups that found a symbol
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that did not find a symbol
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of symbols removed to stay below the maximum size
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "symbols: " + entries.size() + ", bytes: " + bytes + "/" + maxBytes + ", hits: " + hits + ", misses: "
+               + misses + ", evictions: " + evictions;
+    }
+
+    /**
+     * Cache key consisting of the symbol source (eg. the url) and all parameters that influence the cached result
+     * (eg. the size in pixels).
+     */
+    static class Key {
+
+        private final Object[] parts;
+
+        private final int hash;
+
+        Key( Object... parts ) {
+            this.parts = parts;
+            this.hash = Arrays.deepHashCode( parts );
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            return obj instanceof Key && hash == ( (Key) obj ).hash && Arrays.deepEquals( parts, ( (Key) obj ).parts );
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.deepToString( parts );
+        }
+
+    }
+
+    /**
+     * A pre-rendered point symbol. The offsets are the position of the upper left pixel of the image relative to the
+     * upper left corner of the symbol's (unrotated) bounding box.
+     */
+    static class Sprite {
+
+        final BufferedImage image;
+
+        final int x, y;
+
+        Sprite( BufferedImage image, int x, int y ) {
+            this.image = image;
+            this.x = x;
+            this.y = y;
+        }
+
+    }
+
+    private static class CacheEntry {
+
+        final Object value;
+
+        final long weight;
+
+        CacheEntry( Object value, long weight ) {
+            this.value = value;
+            this.weight = weight;
+        }
+
+    }
+
+}
@@ -0,0 +1,293 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import java.awt.Font;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.TextLayout;
+import java.awt.geom.Point2D;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process wide cache for fonts, text layouts and shaped glyphs used for labels, so repeated labels (street names,
+ * house numbers) are only shaped once. Only immutable objects are handed out: {@link TextLayout}s are immutable,
+ * glyph vectors are not, so their results are copied into {@link GlyphRun}s. The number of entries is bounded, least
+ * recently used entries are removed first.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class TextCache {
+
+    /** Default maximum number of cached entries. */
+    public static final int DEFAULT_MAX_ENTRIES = 8192;
+
+    private static final TextCache INSTANCE = new TextCache( DEFAULT_MAX_ENTRIES );
+
+    private final LinkedHashMap<SymbolCache.Key, Object> entries;
+
+    private int maxEntries;
+
+    private long hits, misses;
+
+    TextCache( int maxEntries ) {
+        this.maxEntries = maxEntries;
+        entries = new LinkedHashMap<SymbolCache.Key, Object>( 256, 0.75f, true ) {
+            private static final long serialVersionUID = 5323413406738312541L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<SymbolCache.Key, Object> eldest ) {
+                return size() > TextCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the process wide instance, never <code>null</code>
+     */
+    public static TextCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param maxEntries
+     *            the new maximum number of entries, 0 disables caching
+     */
+    public synchronized void setMaxEntries( int maxEntries ) {
+        this.maxEntries = maxEntries;
+        while ( entries.size() > maxEntries ) {
+            entries.remove( entries.keySet().iterator().next() );
+        }
+    }
+
+    /**
+     * @param font
+     * @param text
+     * @param frc
+     * @return the (possibly cached) text layout, never <code>null</code>
+     */
+    public TextLayout getLayout( Font font, String text, FontRenderContext frc ) {
+        SymbolCache.Key key = new SymbolCache.Key( "layout", font, text, frc );
+        TextLayout layout = (TextLayout) get( key );
+        if ( layout == null ) {
+            layout = new TextLayout( text, font, frc );
+            put( key, layout );
+        }
+        return layout;
+    }
+
+    /**
+     * @param font
+     * @param text
+     * @param frc
+     * @return the outline of the text layout at 0/0 (eg. for halos), must not be modified
+     */
+    public Shape getLayoutOutline( Font font, String text, FontRenderContext frc ) {
+        SymbolCache.Key key = new SymbolCache.Key( "outline", font, text, frc );
+        Shape outline = (Shape) get( key );
+        if ( outline == null ) {
+            outline = getLayout( font, text, frc ).getOutline( null );
+            put( key, outline );
+        }
+        return outline;
+    }
+
+    /**
+     * @param font
+     * @param text
+     * @param frc
+     * @return the (possibly cached) shaped glyphs, never <code>null</code>
+     */
+    public GlyphRun getGlyphs( Font font, String text, FontRenderContext frc ) {
+        SymbolCache.Key key = new SymbolCache.Key( "glyphs", font, text, frc );
+        GlyphRun run = (GlyphRun) get( key );
+        if ( run == null ) {
+            run = new GlyphRun( font.createGlyphVector( frc, text ) );
+            put( key, run );
+        }
+        return run;
+    }
+
+    Font getFont( SymbolCache.Key key ) {
+        return (Font) get( key );
+    }
+
+    void putFont( SymbolCache.Key key, Font font ) {
+        put( key, font );
+    }
+
+    private synchronized Object get( SymbolCache.Key key ) {
+        Object o = entries.get( key );
+        if ( o == null ) {
+            ++misses;
+        } else {
+            ++hits;
+        }
+        return o;
+    }
+
+    private synchronized void put( SymbolCache.Key key, Object value ) {
+        if ( maxEntries > 0 ) {
+            entries.put( key, value );
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of cached entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of lookups that found an entry
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that did not find an entry
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Immutable copy of the information of a {@link GlyphVector} needed to place text along lines.
+     */
+    public static class GlyphRun {
+
+        private final Shape outline;
+
+        private final double outlineWidth;
+
+        private final double logicalWidth;
+
+        private final Shape[] glyphOutlines;
+
+        private final Point2D[] glyphPositions;
+
+        private final float[] advances;
+
+        GlyphRun( GlyphVector vec ) {
+            outline = vec.getOutline();
+            outlineWidth = outline.getBounds2D().getWidth();
+            logicalWidth = vec.getLogicalBounds().getWidth();
+            int num = vec.getNumGlyphs();
+            glyphOutlines = new Shape[num];
+            glyphPositions = new Point2D[num];
+            advances = new float[num];
+            for ( int i = 0; i < num; ++i ) {
+                glyphOutlines[i] = vec.getGlyphOutline( i );
+                glyphPositions[i] = vec.getGlyphPosition( i );
+                advances[i] = vec.getGlyphMetrics( i ).getAdvance();
+            }
+        }
+
+        /**
+         * @return the outline of all glyphs, must not be modified
+         */
+        public Shape getOutline() {
+            return outline;
+        }
+
+        /**
+         * @return the width of the outline bounds
+         */
+        public double getOutlineWidth() {
+            return outlineWidth;
+        }
+
+        /**
+         * @return the width of the logical bounds
+         */
+        public double getLogicalWidth() {
+            return logicalWidth;
+        }
+
+        /**
+         * @return the number of glyphs
+         */
+        public int getNumGlyphs() {
+            return glyphOutlines.length;
+        }
+
+        /**
+         * @param i
+         * @return the outline of the i-th glyph, must not be modified
+         */
+        public Shape getGlyphOutline( int i ) {
+            return glyphOutlines[i];
+        }
+
+        /**
+         * @param i
+         * @return the position of the i-th glyph, must not be modified
+         */
+        public Point2D getGlyphPosition( int i ) {
+            return glyphPositions[i];
+        }
+
+        /**
+         * @param i
+         * @return the advance of the i-th glyph
+         */
+        public float getAdvance( int i ) {
+            return advances[i];
+        }
+
+    }
+
+}
@@ -0,0 +1,552 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static java.lang.Math.round;
+import static org.deegree.rendering.r2d.GeometryHelper.DEFAULT_DECIMATION_TOLERANCE;
+import static org.deegree.rendering.r2d.RenderHelper.getWorldToScreenTransform;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.multi.MultiGeometry;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Surface;
+import org.deegree.geometry.primitive.patches.PolygonPatch;
+import org.deegree.geometry.primitive.patches.SurfacePatch;
+import org.deegree.geometry.refs.GeometryReference;
+
+/**
+ * Encodes features as a Mapbox vector tile (version 2). Geometries are clipped to the tile and its buffer, simplified
+ * to the tile resolution and quantized to the tile extent. Instances are not thread safe.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class VectorTileEncoder {
+
+    /** The default number of units per tile side. */
+    public static final int DEFAULT_EXTENT = 4096;
+
+    private static final int MOVE_TO = 1, LINE_TO = 2, CLOSE_PATH = 7;
+
+    private static final int POINT = 1, LINESTRING = 2, POLYGON = 3;
+
+    private final Map<String, Layer> layers = new LinkedHashMap<String, Layer>();
+
+    private final AffineTransform worldToScreen = new AffineTransform();
+
+    private final GeometryHelper helper;
+
+    private final GeometryClipper clipper;
+
+    private final int extent;
+
+    private final double margin;
+
+    /**
+     * @param bbox
+     *            the envelope of the tile, never <code>null</code>
+     * @param width
+     *            the width of the tile in pixels, used to determine the resolution
+     * @param extent
+     *            the number of units per tile side, typically {@link #DEFAULT_EXTENT}
+     * @param buffer
+     *            the number of pixels geometries may extend beyond the tile
+     */
+    public VectorTileEncoder( Envelope bbox, int width, int extent, int buffer ) {
+        this.extent = extent;
+        getWorldToScreenTransform( worldToScreen, bbox, extent, extent );
+        helper = new GeometryHelper( bbox, width, worldToScreen );
+        helper.setDecimationTolerance( DEFAULT_DECIMATION_TOLERANCE * extent / width );
+        clipper = new GeometryClipper( helper, bbox, width, buffer );
+        margin = (double) buffer * extent / width;
+    }
+
+    /**
+     * @param layer
+     *            the name of the tile layer, never <code>null</code>
+     * @param geom
+     *            the geometry of the feature, ignored if <code>null</code>
+     * @param attributes
+     *            the attributes of the feature, <code>null</code> values are skipped. Numbers and booleans are encoded
+     *            as such, anything else as string.
+     */
+    public void addFeature( String layer, Geometry geom, Map<String, ?> attributes ) {
+        if ( geom == null ) {
+            return;
+        }
+        if ( geom instanceof GeometryReference<?> ) {
+            geom = ( (GeometryReference<?>) geom ).getReferencedObject();
+        }
+        if ( !( geom instanceof Point ) ) {
+            geom = clipper.clipGeometry( geom );
+        }
+
+        List<int[]> points = new ArrayList<int[]>();
+        List<int[]> lines = new ArrayList<int[]>();
+        List<List<int[]>> polygons = new ArrayList<List<int[]>>();
+        collect( geom, points, lines, polygons );
+        if ( points.isEmpty() && lines.isEmpty() && polygons.isEmpty() ) {
+            return;
+        }
+
+        Layer l = layers.get( layer );
+        if ( l == null ) {
+            l = new Layer( layer );
+            layers.put( layer, l );
+        }
+        int[] tags = l.getTags( attributes );
+        if ( !points.isEmpty() ) {
+            l.features.add( encodeFeature( tags, POINT, encodePoints( points ) ) );
+        }
+        if ( !lines.isEmpty() ) {
+            l.features.add( encodeFeature( tags, LINESTRING, encodeLines( lines ) ) );
+        }
+        if ( !polygons.isEmpty() ) {
+            l.features.add( encodeFeature( tags, POLYGON, encodePolygons( polygons ) ) );
+        }
+    }
+
+    /**
+     * @return the encoded tile, layers without features are left out
+     */
+    public byte[] encode() {
+        Pbf tile = new Pbf();
+        for ( Layer l : layers.values() ) {
+            tile.bytes( 3, l.encode( extent ) );
+        }
+        return tile.toByteArray();
+    }
+
+    private void collect( Geometry geom, List<int[]> points, List<int[]> lines, List<List<int[]>> polygons ) {
+        if ( geom instanceof GeometryReference<?> ) {
+            geom = ( (GeometryReference<?>) geom ).getReferencedObject();
+        }
+        if ( geom instanceof Point ) {
+            Point p = helper.transform( (Point) geom );
+            Point2D.Double pt = new Point2D.Double( p.get0(), p.get1() );
+            worldToScreen.transform( pt, pt );
+            if ( pt.x >= -margin && pt.y >= -margin && pt.x <= extent + margin && pt.y <= extent + margin ) {
+                points.add( new int[] { (int) round( pt.x ), (int) round( pt.y ) } );
+            }
+        } else if ( geom instanceof Curve ) {
+            int[] line = quantize( helper.fromCurve( (Curve) geom, false ), false );
+            if ( line.length >= 4 ) {
+                lines.add( line );
+            }
+        } else if ( geom instanceof Surface ) {
+            for ( SurfacePatch patch : ( (Surface) geom ).getPatches() ) {
+                if ( patch instanceof PolygonPatch ) {
+                    List<int[]> rings = new ArrayList<int[]>();
+                    for ( Curve curve : ( (PolygonPatch) patch ).getBoundaryRings() ) {
+                        rings.add( quantize( helper.fromCurve( curve, true ), true ) );
+                    }
+                    rings = orient( rings );
+                    if ( rings != null ) {
+                        polygons.add( rings );
+                    }
+                }
+            }
+        } else if ( geom instanceof MultiGeometry<?> ) {
+            for ( Geometry g : (MultiGeometry<?>) geom ) {
+                collect( g, points, lines, polygons );
+            }
+        }
+    }
+
+    /**
+     * Rounds the vertices of a path to tile units and removes repeated vertices.
+     * 
+     * @return the x and y coordinates, alternating
+     */
+    private static int[] quantize( Path2D path, boolean ring ) {
+        IntList res = new IntList();
+        double[] coords = new double[6];
+        for ( PathIterator it = path.getPathIterator( null ); !it.isDone(); it.next() ) {
+            int type = it.currentSegment( coords );
+            if ( type != PathIterator.SEG_MOVETO && type != PathIterator.SEG_LINETO ) {
+                continue;
+            }
+            int x = (int) round( coords[0] ), y = (int) round( coords[1] );
+            int n = res.size;
+            if ( n == 0 || res.data[n - 2] != x || res.data[n - 1] != y ) {
+                res.add( x );
+                res.add( y );
+            }
+        }
+        if ( ring && res.size > 2 && res.data[0] == res.data[res.size - 2] && res.data[1] == res.data[res.size - 1] ) {
+            res.size -= 2;
+        }
+        return res.toArray();
+    }
+
+    /**
+     * Makes the exterior ring wind clockwise and the interior rings counter-clockwise (in tile coordinates, with the y
+     * axis pointing down), and removes degenerate rings.
+     * 
+     * @param rings
+     *            the exterior ring first, then the interior rings
+     * @return <code>null</code>, if the exterior ring is degenerate
+     */
+    static List<int[]> orient( List<int[]> rings ) {
+        List<int[]> res = new ArrayList<int[]>( rings.size() );
+        for ( int[] ring : rings ) {
+            long area = area( ring );
+            if ( ring.length < 6 || area == 0 ) {
+                if ( res.isEmpty() ) {
+                    return null;
+                }
+                continue;
+            }
+            boolean exterior = res.isEmpty();
+            if ( ( area > 0 ) != exterior ) {
+                ring = reverse( ring );
+            }
+            res.add( ring );
+        }
+        return res.isEmpty() ? null : res;
+    }
+
+    /**
+     * @return twice the signed area of the ring, positive for clockwise rings in tile coordinates
+     */
+    static long area( int[] ring ) {
+        long sum = 0;
+        int n = ring.length;
+        for ( int i = 0; i < n; i += 2 ) {
+            int j = ( i + 2 ) % n;
+            sum += (long) ring[i] * ring[j + 1] - (long) ring[j] * ring[i + 1];
+        }
+        return sum;
+    }
+
+    private static int[] reverse( int[] ring ) {
+        int[] res = new int[ring.length];
+        for ( int i = 0; i < ring.length; i += 2 ) {
+            res[ring.length - i - 2] = ring[i];
+            res[ring.length - i - 1] = ring[i + 1];
+        }
+        return res;
+    }
+
+    static int[] encodePoints( List<int[]> points ) {
+        Cursor c = new Cursor();
+        c.command( MOVE_TO, points.size() );
+        for ( int[] p : points ) {
+            c.moveTo( p[0], p[1] );
+        }
+        return c.commands.toArray();
+    }
+
+    static int[] encodeLines( List<int[]> lines ) {
+        Cursor c = new Cursor();
+        for ( int[] line : lines ) {
+            c.path( line, false );
+        }
+        return c.commands.toArray();
+    }
+
+    static int[] encodePolygons( List<List<int[]>> polygons ) {
+        Cursor c = new Cursor();
+        for ( List<int[]> rings : polygons ) {
+            for ( int[] ring : rings ) {
+                c.path( ring, true );
+            }
+        }
+        return c.commands.toArray();
+    }
+
+    private static byte[] encodeFeature( int[] tags, int type, int[] geometry ) {
+        Pbf feature = new Pbf();
+        if ( tags.length > 0 ) {
+            feature.packed( 2, tags, tags.length );
+        }
+        feature.varint( 3, type );
+        feature.packed( 4, geometry, geometry.length );
+        return feature.toByteArray();
+    }
+
+    /**
+     * Converts attribute values to the value types of vector tiles.
+     * 
+     * @return a Long, Float, Double, Boolean or String
+     */
+    static Object normalize( Object value ) {
+        if ( value instanceof Boolean || value instanceof Float || value instanceof Double || value instanceof Long ) {
+            return value;
+        }
+        if ( value instanceof Integer || value instanceof Short || value instanceof Byte ) {
+            return ( (Number) value ).longValue();
+        }
+        if ( value instanceof BigInteger ) {
+            BigInteger i = (BigInteger) value;
+            return i.bitLength() < 64 ? (Object) i.longValue() : i.toString();
+        }
+        if ( value instanceof BigDecimal ) {
+            BigDecimal d = (BigDecimal) value;
+            try {
+                return d.longValueExact();
+            } catch ( ArithmeticException e ) {
+                return d.doubleValue();
+            }
+        }
+        if ( value instanceof Number ) {
+            return ( (Number) value ).doubleValue();
+        }
+        return value.toString();
+    }
+
+    private static class Layer {
+
+        private final String name;
+
+        private final Map<String, Integer> keys = new LinkedHashMap<String, Integer>();
+
+        private final Map<Object, Integer> values = new LinkedHashMap<Object, Integer>();
+
+        private final List<byte[]> features = new ArrayList<byte[]>();
+
+        Layer( String name ) {
+            this.name = name;
+        }
+
+        int[] getTags( Map<String, ?> attributes ) {
+            if ( attributes == null ) {
+                return new int[0];
+            }
+            IntList tags = new IntList();
+            for ( Entry<String, ?> e : attributes.entrySet() ) {
+                if ( e.getValue() == null ) {
+                    continue;
+                }
+                tags.add( index( keys, e.getKey() ) );
+                tags.add( index( values, normalize( e.getValue() ) ) );
+            }
+            return tags.toArray();
+        }
+
+        private static <T> int index( Map<T, Integer> map, T o ) {
+            Integer idx = map.get( o );
+            if ( idx == null ) {
+                map.put( o, idx = map.size() );
+            }
+            return idx;
+        }
+
+        byte[] encode( int extent ) {
+            Pbf layer = new Pbf();
+            layer.string( 1, name );
+            for ( byte[] f : features ) {
+                layer.bytes( 2, f );
+            }
+            for ( String key : keys.keySet() ) {
+                layer.string( 3, key );
+            }
+            for ( Object o : values.keySet() ) {
+                Pbf value = new Pbf();
+                if ( o instanceof String ) {
+                    value.string( 1, (String) o );
+                } else if ( o instanceof Float ) {
+                    value.fixed32( 2, Float.floatToIntBits( (Float) o ) );
+                } else if ( o instanceof Double ) {
+                    value.fixed64( 3, Double.doubleToLongBits( (Double) o ) );
+                } else if ( o instanceof Long ) {
+                    long l = (Long) o;
+                    value.varint( 6, ( l << 1 ) ^ ( l >> 63 ) );
+                } else if ( o instanceof Boolean ) {
+                    value.varint( 7, (Boolean) o ? 1 : 0 );
+                }
+                layer.bytes( 4, value.toByteArray() );
+            }
+            layer.varint( 5, extent );
+            layer.varint( 15, 2 );
+            return layer.toByteArray();
+        }
+
+    }
+
+    /**
+     * Builds geometry command sequences, the coordinates are encoded relative to the previous position.
+     */
+    private static class Cursor {
+
+        final IntList commands = new IntList();
+
+        private int x, y;
+
+        void command( int id, int count ) {
+            commands.add( ( id & 0x7 ) | ( count << 3 ) );
+        }
+
+        void moveTo( int nx, int ny ) {
+            commands.add( zigZag( nx - x ) );
+            commands.add( zigZag( ny - y ) );
+            x = nx;
+            y = ny;
+        }
+
+        void path( int[] coords, boolean close ) {
+            command( MOVE_TO, 1 );
+            moveTo( coords[0], coords[1] );
+            command( LINE_TO, coords.length / 2 - 1 );
+            for ( int i = 2; i < coords.length; i += 2 ) {
+                moveTo( coords[i], coords[i + 1] );
+            }
+            if ( close ) {
+                command( CLOSE_PATH, 1 );
+            }
+        }
+
+        private static int zigZag( int n ) {
+            return ( n << 1 ) ^ ( n >> 31 );
+        }
+
+    }
+
+    private static class IntList {
+
+        int[] data = new int[16];
+
+        int size;
+
+        void add( int i ) {
+            if ( size == data.length ) {
+                int[] tmp = new int[size * 2];
+                System.arraycopy( data, 0, tmp, 0, size );
+                data = tmp;
+            }
+            data[size++] = i;
+        }
+
+        int[] toArray() {
+            int[] res = new int[size];
+            System.arraycopy( data, 0, res, 0, size );
+            return res;
+        }
+
+    }
+
+    /**
+     * Minimal protocol buffers writer.
+     */
+    private static class Pbf {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        private void tag( int field, int wireType ) {
+            raw( ( field << 3 ) | wireType );
+        }
+
+        private void raw( long value ) {
+            while ( ( value & ~0x7fL ) != 0 ) {
+                out.write( (int) ( ( value & 0x7f ) | 0x80 ) );
+                value >>>= 7;
+            }
+            out.write( (int) value );
+        }
+
+        void varint( int field, long value ) {
+            tag( field, 0 );
+            raw( value );
+        }
+
+        void fixed32( int field, int value ) {
+            tag( field, 5 );
+            for ( int i = 0; i < 4; ++i ) {
+                out.write( ( value >>> ( 8 * i ) ) & 0xff );
+            }
+        }
+
+        void fixed64( int field, long value ) {
+            tag( field, 1 );
+            for ( int i = 0; i < 8; ++i ) {
+                out.write( (int) ( ( value >>> ( 8 * i ) ) & 0xff ) );
+            }
+        }
+
+        void bytes( int field, byte[] bs ) {
+            tag( field, 2 );
+            raw( bs.length );
+            out.write( bs, 0, bs.length );
+        }
+
+        void string( int field, String s ) {
+            try {
+                bytes( field, s.getBytes( "UTF-8" ) );
+            } catch ( UnsupportedEncodingException e ) {
+                // UTF-8 is always supported
+                throw new IllegalStateException( e );
+            }
+        }
+
+        void packed( int field, int[] values, int length ) {
+            Pbf tmp = new Pbf();
+            for ( int i = 0; i < length; ++i ) {
+                tmp.raw( values[i] & 0xffffffffL );
+            }
+            bytes( field, tmp.toByteArray() );
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+    }
+
+}
@@ -57,10 +57,12 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import org.deegree.commons.utils.io.PngEncoder;
 import org.deegree.rendering.r2d.Java2DRasterRenderer;
 import org.deegree.rendering.r2d.Java2DRenderer;
 import org.deegree.rendering.r2d.Java2DTextRenderer;
 import org.deegree.rendering.r2d.Java2DTileRenderer;
+import org.deegree.style.utils.ColorQuantizer;
 import org.deegree.style.utils.ImageUtils;
 
 /**
@@ -88,10 +90,53 @@ public class DefaultRenderContext implements RenderContext {
 
     private String format;
 
+    private RenderingInfo info;
+
+    private PngEncoder pngEncoder;
+
+    private ColorQuantizer quantizer;
+
+    private ImagePool pool;
+
     public DefaultRenderContext( RenderingInfo info ) {
+        this( info, new PngEncoder(), new ColorQuantizer( 256, false ) );
+    }
+
+    /**
+     * @param info
+     *            never <code>null</code>
+     * @param pngEncoder
+     *            used to write png output, never <code>null</code>
+     * @param quantizer
+     *            used to reduce the colors for 8bit png output, never <code>null</code>
+     */
+    public DefaultRenderContext( RenderingInfo info, PngEncoder pngEncoder, ColorQuantizer quantizer ) {
+        this( info, pngEncoder, quantizer, null );
+    }
+
+    /**
+     * @param info
+     *            never <code>null</code>
+     * @param pngEncoder
+     *            used to write png output, never <code>null</code>
+     * @param quantizer
+     *            used to reduce the colors for 8bit png output, never <code>null</code>
+     * @param pool
+     *            if not <code>null</code>, the image is taken from and returned to this pool, see {@link #release()}
+     */
+    public DefaultRenderContext( RenderingInfo info, PngEncoder pngEncoder, ColorQuantizer quantizer, ImagePool pool ) {
+        this.info = info;
+        this.pngEncoder = pngEncoder;
+        this.quantizer = quantizer;
+        this.pool = pool;
         format = info.getFormat();
-        image = ImageUtils.prepareImage( format, info.getWidth(), info.getHeight(), info.getTransparent(),
-                                         info.getBgColor() );
+        if ( pool == null ) {
+            image = ImageUtils.prepareImage( format, info.getWidth(), info.getHeight(), info.getTransparent(),
+                                             info.getBgColor() );
+        } else {
+            image = pool.prepareImage( format, info.getWidth(), info.getHeight(), info.getTransparent(),
+                                       info.getBgColor() );
+        }
         graphics = image.createGraphics();
         renderer = new Java2DRenderer( graphics, info.getWidth(), info.getHeight(), info.getEnvelope(),
                                        info.getPixelSize() * 1000 );
@@ -125,27 +170,80 @@ public class DefaultRenderContext implements RenderContext {
         this.out = out;
     }
 
+    /**
+     * If an output has been set, the image is returned to the pool once it has been written. Else it is kept for
+     * {@link #getImage()} (deferred labels are placed there), and {@link #release()} should be called when it is no
+     * longer needed.
+     */
     @Override
     public boolean close()
                             throws IOException {
         try {
-            graphics.dispose();
             if ( out != null ) {
+                textRenderer.placeLabels();
+                graphics.dispose();
+                if ( ImageUtils.isPng8bit( this.format ) ) {
+                    pngEncoder.encode( quantizer.quantize( image ), out );
+                    return true;
+                }
+                if ( this.format.equals( "image/png" ) ) {
+                    pngEncoder.encode( image, out );
+                    return true;
+                }
                 String format = this.format.substring( this.format.indexOf( "/" ) + 1 );
                 if ( format.equals( "x-ms-bmp" ) ) {
                     format = "bmp";
                 }
-                if ( format.equals( "png; subtype=8bit" ) || format.equals( "png; mode=8bit" ) ) {
-                    format = "png";
-                }
                 return write( image, format, out );
             }
         } finally {
             closeQuietly( out );
+            if ( out != null ) {
+                release();
+            }
         }
         return false;
     }
 
+    /**
+     * Returns the image to the pool, if any. Neither the image nor this context may be used afterwards.
+     */
+    public void release() {
+        graphics.dispose();
+        if ( pool != null ) {
+            pool.release( image );
+            image = null;
+        }
+    }
+
+    /**
+     * Creates a new, transparent off-screen context with the same size, envelope and pixel size as this context. It
+     * can be used to render a single layer independently, the result can then be composited onto this context using
+     * {@link #paintImage(BufferedImage)} with the image obtained from {@link #getImage()}. It uses the same image pool
+     * as this context, so the off-screen context should be released afterwards. If this context uses deferred label
+     * placement, so does the off-screen context, and its labels can be placed together with the labels of this
+     * context using {@link Java2DTextRenderer#moveLabels(Java2DTextRenderer)} before obtaining the image.
+     * 
+     * @return a new off-screen context, never <code>null</code>
+     */
+    public DefaultRenderContext createOffscreenContext() {
+        RenderingInfo offscreen = new RenderingInfo( "image/png", info.getWidth(), info.getHeight(), true, null,
+                                                     info.getEnvelope(), info.getPixelSize(), info.getParameterMap() );
+        DefaultRenderContext ctx = new DefaultRenderContext( offscreen, pngEncoder, quantizer, pool );
+        ctx.textRenderer.setDeferredPlacement( textRenderer.isDeferredPlacement() );
+        return ctx;
+    }
+
+    /**
+     * Labels collected so far are drawn before the image is returned.
+     * 
+     * @return the image this context renders into, never <code>null</code>
+     */
+    public BufferedImage getImage() {
+        textRenderer.placeLabels();
+        return image;
+    }
+
     @Override
     public void paintImage( BufferedImage img ) {
         graphics.drawImage( img, 0, 0, null );
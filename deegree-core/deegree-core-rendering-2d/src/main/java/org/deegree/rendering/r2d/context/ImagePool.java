@@ -0,0 +1,232 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.context;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import org.deegree.style.utils.ImageUtils;
+import org.slf4j.Logger;
+
+/**
+ * Keeps released images around so they can be cleared and reused by later requests instead of allocating new ones.
+ * Only images of type {@link BufferedImage#TYPE_INT_ARGB} and {@link BufferedImage#TYPE_INT_RGB} are pooled, images
+ * for other formats (gif) are always allocated. The total size of the pooled images is limited, if the limit is
+ * exceeded, the images of the least recently used size are dropped first.
+ * <p>
+ * Released images must not be used by the caller anymore. This class is thread safe.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ImagePool {
+
+    private static final Logger LOG = getLogger( ImagePool.class );
+
+    // access ordered, the sizes that have not been requested for the longest time are evicted first
+    private final LinkedHashMap<Key, ArrayDeque<BufferedImage>> images;
+
+    private final long maxMemory;
+
+    private long memory;
+
+    /**
+     * @param maxMemory
+     *            the maximum number of bytes used by the pooled images, 0 disables pooling
+     */
+    public ImagePool( long maxMemory ) {
+        this.maxMemory = maxMemory;
+        images = new LinkedHashMap<Key, ArrayDeque<BufferedImage>>( 16, 0.75f, true );
+    }
+
+    /**
+     * Takes an image of the requested size from the pool, or creates a new one. The result is the same as with
+     * {@link ImageUtils#prepareImage(String, int, int, boolean, Color)}.
+     * 
+     * @param format
+     *            the requested mime type, never <code>null</code>
+     * @param width
+     * @param height
+     * @param transparent
+     * @param bgColor
+     *            the background color of non transparent images
+     * @return an empty image conforming to the parameters, never <code>null</code>
+     */
+    public BufferedImage prepareImage( String format, int width, int height, boolean transparent, Color bgColor ) {
+        if ( format.equals( "image/gif" ) ) {
+            return ImageUtils.prepareImage( format, width, height, transparent, bgColor );
+        }
+        int type = ImageUtils.getType( transparent, format );
+        BufferedImage img = take( new Key( width, height, type ) );
+        if ( img == null ) {
+            return ImageUtils.prepareImage( format, width, height, transparent, bgColor );
+        }
+        int color = 0;
+        if ( !transparent && bgColor != null ) {
+            color = bgColor.getRGB();
+        }
+        // the pooled images are always backed by a single int array without offsets
+        Arrays.fill( ( (DataBufferInt) img.getRaster().getDataBuffer() ).getData(), color );
+        return img;
+    }
+
+    private synchronized BufferedImage take( Key key ) {
+        ArrayDeque<BufferedImage> list = images.get( key );
+        if ( list == null || list.isEmpty() ) {
+            return null;
+        }
+        BufferedImage img = list.pop();
+        memory -= key.size;
+        return img;
+    }
+
+    /**
+     * Puts the image into the pool. Images that cannot be pooled are ignored.
+     * 
+     * @param img
+     *            the image to reuse, may be <code>null</code>
+     */
+    public void release( BufferedImage img ) {
+        if ( img == null || !isPoolable( img ) ) {
+            return;
+        }
+        Key key = new Key( img.getWidth(), img.getHeight(), img.getType() );
+        if ( key.size > maxMemory ) {
+            return;
+        }
+        synchronized ( this ) {
+            ArrayDeque<BufferedImage> list = images.get( key );
+            if ( list == null ) {
+                list = new ArrayDeque<BufferedImage>();
+                images.put( key, list );
+            }
+            list.push( img );
+            memory += key.size;
+            evict();
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry<Key, ArrayDeque<BufferedImage>>> iter = images.entrySet().iterator();
+        while ( memory > maxMemory && iter.hasNext() ) {
+            Entry<Key, ArrayDeque<BufferedImage>> e = iter.next();
+            ArrayDeque<BufferedImage> list = e.getValue();
+            while ( memory > maxMemory && !list.isEmpty() ) {
+                list.removeLast();
+                memory -= e.getKey().size;
+            }
+            if ( list.isEmpty() ) {
+                iter.remove();
+            }
+        }
+        LOG.trace( "Pooled images use {} bytes.", memory );
+    }
+
+    private static boolean isPoolable( BufferedImage img ) {
+        int type = img.getType();
+        if ( type != TYPE_INT_ARGB && type != TYPE_INT_RGB ) {
+            return false;
+        }
+        DataBuffer buf = img.getRaster().getDataBuffer();
+        return buf.getNumBanks() == 1 && buf.getOffset() == 0 && buf.getSize() == img.getWidth() * img.getHeight()
+               && img.getRaster().getParent() == null;
+    }
+
+    /**
+     * @return the number of bytes used by the pooled images
+     */
+    public synchronized long getMemory() {
+        return memory;
+    }
+
+    /**
+     * Drops all pooled images.
+     */
+    public synchronized void clear() {
+        images.clear();
+        memory = 0;
+    }
+
+    private static class Key {
+
+        final int width, height, type;
+
+        final long size;
+
+        Key( int width, int height, int type ) {
+            this.width = width;
+            this.height = height;
+            this.type = type;
+            this.size = 4L * width * height;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if ( !( obj instanceof Key ) ) {
+                return false;
+            }
+            Key k = (Key) obj;
+            return width == k.width && height == k.height && type == k.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return ( width * 31 + height ) * 31 + type;
+        }
+
+    }
+
+}
@@ -0,0 +1,237 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.context;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Map;
+
+import org.deegree.coverage.raster.AbstractRaster;
+import org.deegree.geometry.Geometry;
+import org.deegree.rendering.r2d.RasterRenderer;
+import org.deegree.rendering.r2d.Renderer;
+import org.deegree.rendering.r2d.TextRenderer;
+import org.deegree.rendering.r2d.TileRenderer;
+import org.deegree.rendering.r2d.VectorTileEncoder;
+import org.deegree.style.styling.LineStyling;
+import org.deegree.style.styling.PointStyling;
+import org.deegree.style.styling.PolygonStyling;
+import org.deegree.style.styling.RasterStyling;
+import org.deegree.style.styling.Styling;
+import org.deegree.style.styling.TextStyling;
+import org.deegree.tile.Tile;
+import org.slf4j.Logger;
+
+/**
+ * Render context producing Mapbox vector tiles. Layers that support it add their features using
+ * {@link #addFeature(String, Geometry, Map)}, everything drawn using the renderers of this context is discarded.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class VectorTileRenderContext implements RenderContext {
+
+    private static final Logger LOG = getLogger( VectorTileRenderContext.class );
+
+    /** The mime type of Mapbox vector tiles. */
+    public static final String FORMAT = "application/vnd.mapbox-vector-tile";
+
+    /** The default number of pixels geometries may extend beyond the tile. */
+    public static final int DEFAULT_BUFFER = 16;
+
+    private static final Discarding DISCARDING = new Discarding();
+
+    private final VectorTileEncoder encoder;
+
+    private OutputStream out;
+
+    /**
+     * Creates a context using the default extent and buffer.
+     * 
+     * @param info
+     *            never <code>null</code>
+     */
+    public VectorTileRenderContext( RenderingInfo info ) {
+        this( info, VectorTileEncoder.DEFAULT_EXTENT, DEFAULT_BUFFER );
+    }
+
+    /**
+     * @param info
+     *            never <code>null</code>
+     * @param extent
+     *            the number of units per tile side
+     * @param buffer
+     *            the number of pixels geometries may extend beyond the tile
+     */
+    public VectorTileRenderContext( RenderingInfo info, int extent, int buffer ) {
+        encoder = new VectorTileEncoder( info.getEnvelope(), info.getWidth(), extent, buffer );
+    }
+
+    /**
+     * @param format
+     *            a mime type, may be <code>null</code>
+     * @return true, if the format denotes vector tiles
+     */
+    public static boolean isVectorTileFormat( String format ) {
+        return FORMAT.equals( format ) || "application/x-protobuf".equals( format );
+    }
+
+    /**
+     * Adds a feature to the tile.
+     * 
+     * @param layer
+     *            the name of the tile layer, never <code>null</code>
+     * @param geom
+     *            the geometry, ignored if <code>null</code>
+     * @param attributes
+     *            the attributes of the feature, may be <code>null</code>
+     */
+    public synchronized void addFeature( String layer, Geometry geom, Map<String, ?> attributes ) {
+        encoder.addFeature( layer, geom, attributes );
+    }
+
+    @Override
+    public void setOutput( OutputStream out ) {
+        this.out = out;
+    }
+
+    @Override
+    public Renderer getVectorRenderer() {
+        return DISCARDING;
+    }
+
+    @Override
+    public TextRenderer getTextRenderer() {
+        return DISCARDING;
+    }
+
+    @Override
+    public RasterRenderer getRasterRenderer() {
+        return DISCARDING;
+    }
+
+    @Override
+    public TileRenderer getTileRenderer() {
+        return DISCARDING;
+    }
+
+    @Override
+    public void paintImage( BufferedImage img ) {
+        LOG.debug( "Images can not be added to vector tiles, ignoring it." );
+    }
+
+    @Override
+    public synchronized boolean close()
+                            throws IOException {
+        try {
+            if ( out != null ) {
+                out.write( encoder.encode() );
+                return true;
+            }
+        } finally {
+            closeQuietly( out );
+        }
+        return false;
+    }
+
+    @Override
+    public void applyOptions( MapOptions options ) {
+        // nothing to apply
+    }
+
+    private static class Discarding implements Renderer, TextRenderer, RasterRenderer, TileRenderer {
+
+        @Override
+        public void render( PointStyling styling, Geometry geom ) {
+            // discarded
+        }
+
+        @Override
+        public void render( LineStyling styling, Geometry geom ) {
+            // discarded
+        }
+
+        @Override
+        public void render( PolygonStyling styling, Geometry geom ) {
+            // discarded
+        }
+
+        @Override
+        public void render( Styling styling, Collection<Geometry> geoms ) {
+            // discarded
+        }
+
+        @Override
+        public void render( Styling styling, Geometry geom ) {
+            // discarded
+        }
+
+        @Override
+        public void render( TextStyling styling, String text, Geometry geom ) {
+            // discarded
+        }
+
+        @Override
+        public void render( TextStyling styling, String text, Collection<Geometry> geoms ) {
+            // discarded
+        }
+
+        @Override
+        public void render( RasterStyling styling, AbstractRaster raster ) {
+            LOG.debug( "Rasters can not be added to vector tiles, ignoring it." );
+        }
+
+        @Override
+        public void render( Tile tile ) {
+            LOG.debug( "Tiles can not be added to vector tiles, ignoring it." );
+        }
+
+    }
+
+}
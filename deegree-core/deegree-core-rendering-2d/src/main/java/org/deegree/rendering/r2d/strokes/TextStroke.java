@@ -64,7 +64,6 @@ import java.awt.Font;
 import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.font.FontRenderContext;
-import java.awt.font.GlyphVector;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.FlatteningPathIterator;
 import java.awt.geom.GeneralPath;
@@ -77,6 +76,8 @@ import java.util.LinkedList;
 import java.util.ListIterator;
 
 import org.deegree.commons.annotations.LoggingNotes;
+import org.deegree.rendering.r2d.TextCache;
+import org.deegree.rendering.r2d.TextCache.GlyphRun;
 import org.deegree.style.styling.components.LinePlacement;
 import org.slf4j.Logger;
 
@@ -145,7 +146,6 @@ public class TextStroke implements Stroke {
         // So if some gap[1]/word[1-*] combination fits the segment, all of them are added to the list, as well as an
         // end of line tag. Then, the next segment is considered. If repeat is on, the words list will never be empty
         // and the loop will run until the segment lengths list is empty.
-        // TODO: Optimization: do not add Strings, add the GlyphVectors
         if ( !prepareWordsToRender( words, wordsToRender, shape, wordsCopy ) ) {
             return null;
         }
@@ -218,8 +218,8 @@ public class TextStroke implements Stroke {
                 break;
             }
 
-            GlyphVector vec = font.createGlyphVector( frc, sog.string );
-            Shape text = vec.getOutline();
+            GlyphRun run = getGlyphs( sog.string );
+            Shape text = run.getOutline();
 
             // straightforward: move to the beginning of the segment
             // rotate so text direction fits the line
@@ -232,7 +232,7 @@ public class TextStroke implements Stroke {
 
             result.append( t.createTransformedShape( text ), false );
 
-            length += gap + text.getBounds2D().getWidth();
+            length += gap + run.getOutlineWidth();
 
             sog = wordsToRender.poll();
 
@@ -263,8 +263,7 @@ public class TextStroke implements Stroke {
 
         while ( words.size() > 0 && lengths.size() > 0 ) {
             String word = words.poll();
-            GlyphVector vec = font.createGlyphVector( frc, word );
-            double vecLength = currentGap + vec.getOutline().getBounds2D().getWidth();
+            double vecLength = currentGap + getGlyphs( word ).getOutlineWidth();
             double segLength = lengths.poll() - font.getSize2D(); // at least it works for line angles < 90°
 
             if ( vecLength > segLength ) {
@@ -310,7 +309,7 @@ public class TextStroke implements Stroke {
                 justInserted = true; // set this flag so the adding at the end of the loop won't happen again with
                 // the same string.
 
-                totalLength += font.createGlyphVector( frc, word ).getOutline().getBounds2D().getWidth();
+                totalLength += getGlyphs( word ).getOutlineWidth();
                 newWord = "";
                 if ( !isZero( linePlacement.gap ) ) {
                     sog = new StringOrGap();
@@ -328,7 +327,7 @@ public class TextStroke implements Stroke {
 
             newWord = ( newWord.equals( "" ) ? "" : newWord + " " ) + words.peek();
 
-            vecLength = font.createGlyphVector( frc, newWord ).getOutline().getBounds2D().getWidth();
+            vecLength = getGlyphs( newWord ).getOutlineWidth();
             if ( !justInserted && ( totalLength + vecLength >= segLength ) ) {
                 // the normal case, one or more words have been fit, and the current word does overflow the length
                 // -> add the word
@@ -439,9 +438,13 @@ public class TextStroke implements Stroke {
         return total;
     }
 
+    private GlyphRun getGlyphs( String str ) {
+        return TextCache.getInstance().getGlyphs( font, str, frc );
+    }
+
     public Shape createStrokedShape( Shape shape ) {
-        GlyphVector glyphVector = font.createGlyphVector( frc, text );
-        if ( glyphVector.getLogicalBounds().getWidth() > getShapeLength( shape ) ) {
+        GlyphRun glyphs = getGlyphs( text );
+        if ( glyphs.getLogicalWidth() > getShapeLength( shape ) ) {
             return new GeneralPath();
         }
 
@@ -454,10 +457,10 @@ public class TextStroke implements Stroke {
             }
             return path;
         }
-        return renderCharacterWise( shape, glyphVector );
+        return renderCharacterWise( shape, glyphs );
     }
 
-    private Shape renderCharacterWise( Shape shape, GlyphVector glyphVector ) {
+    private Shape renderCharacterWise( Shape shape, GlyphRun glyphs ) {
         GeneralPath result = new GeneralPath();
         PathIterator it = new FlatteningPathIterator( shape.getPathIterator( null ), FLATNESS );
         double points[] = new double[6];
@@ -465,7 +468,7 @@ public class TextStroke implements Stroke {
         double lastX = 0, lastY = 0;
         double thisX = 0, thisY = 0;
         int type = 0;
-        int length = glyphVector.getNumGlyphs();
+        int length = glyphs.getNumGlyphs();
 
         if ( length == 0 )
             return result;
@@ -479,7 +482,7 @@ public class TextStroke implements Stroke {
                 moveX = lastX = points[0];
                 moveY = lastY = points[1];
                 result.moveTo( moveX, moveY );
-                state.nextAdvance = glyphVector.getGlyphMetrics( state.currentChar ).getAdvance() * 0.5f;
+                state.nextAdvance = glyphs.getAdvance( state.currentChar ) * 0.5f;
                 state.next = state.nextAdvance + linePlacement.initialGap;
                 break;
 
@@ -497,7 +500,7 @@ public class TextStroke implements Stroke {
                 if ( distance >= state.next ) {
                     double r = 1.0f / distance;
                     double angle = atan2( dy, dx );
-                    nextSegment( state, length, distance, glyphVector, lastX, lastY, dx, dy, r, angle, result );
+                    nextSegment( state, length, distance, glyphs, lastX, lastY, dx, dy, r, angle, result );
                 }
                 state.next -= distance;
                 lastX = thisX;
@@ -514,18 +517,18 @@ public class TextStroke implements Stroke {
         return result;
     }
 
-    private void nextSegment( CharacterWiseState state, int length, double distance, GlyphVector glyphVector,
+    private void nextSegment( CharacterWiseState state, int length, double distance, GlyphRun glyphs,
                               double lastX, double lastY, double dx, double dy, double r, double angle,
                               GeneralPath result ) {
         while ( state.currentChar < length && distance >= state.next ) {
-            Shape glyph = glyphVector.getGlyphOutline( state.currentChar );
-            Point2D p = glyphVector.getGlyphPosition( state.currentChar );
+            Shape glyph = glyphs.getGlyphOutline( state.currentChar );
+            Point2D p = glyphs.getGlyphPosition( state.currentChar );
             double px = p.getX();
             double py = p.getY();
             double x = lastX + state.next * dx * r;
             double y = lastY + state.next * dy * r;
             double advance = state.nextAdvance;
-            state.nextAdvance = state.currentChar < length - 1 ? glyphVector.getGlyphMetrics( state.currentChar + 1 ).getAdvance() * 0.5f
+            state.nextAdvance = state.currentChar < length - 1 ? glyphs.getAdvance( state.currentChar + 1 ) * 0.5f
                                                               : advance;
             AffineTransform t = new AffineTransform();
             t.setToTranslation( x, y );
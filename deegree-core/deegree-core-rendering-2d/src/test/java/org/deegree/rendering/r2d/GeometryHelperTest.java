@@ -0,0 +1,127 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static java.awt.geom.PathIterator.SEG_CLOSE;
+import static java.awt.geom.PathIterator.SEG_LINETO;
+import static java.awt.geom.PathIterator.SEG_MOVETO;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.Point;
+import org.junit.Test;
+
+/**
+ * Tests the vertex decimation of the {@link GeometryHelper}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class GeometryHelperTest {
+
+    private static final GeometryFactory fac = new GeometryFactory();
+
+    private static GeometryHelper createHelper() {
+        // world coordinates are pixels
+        return new GeometryHelper( fac.createEnvelope( 0, 0, 100, 100, null ), 100, new AffineTransform() );
+    }
+
+    private static Curve createLine( double... coords ) {
+        List<Point> points = new ArrayList<Point>();
+        for ( int i = 0; i < coords.length; i += 2 ) {
+            points.add( fac.createPoint( null, coords[i], coords[i + 1], null ) );
+        }
+        return fac.createLineString( null, null, fac.createPoints( points ) );
+    }
+
+    private static List<Integer> getSegmentTypes( Path2D.Double path ) {
+        List<Integer> types = new ArrayList<Integer>();
+        double[] coords = new double[6];
+        for ( PathIterator it = path.getPathIterator( null ); !it.isDone(); it.next() ) {
+            types.add( it.currentSegment( coords ) );
+        }
+        return types;
+    }
+
+    @Test
+    public void testDenseVerticesAreSkipped() {
+        Curve line = createLine( 0, 0, 0.1, 0, 0.2, 0.1, 0.3, 0, 10, 10, 10.1, 10, 20, 20 );
+        List<Integer> types = getSegmentTypes( createHelper().fromCurve( line, false ) );
+        assertEquals( 4, types.size() );
+        assertEquals( SEG_MOVETO, (int) types.get( 0 ) );
+        assertEquals( SEG_LINETO, (int) types.get( 3 ) );
+    }
+
+    @Test
+    public void testLastVertexIsKept() {
+        Curve line = createLine( 0, 0, 5, 5, 5.01, 5.01 );
+        Path2D.Double path = createHelper().fromCurve( line, false );
+        assertEquals( 3, getSegmentTypes( path ).size() );
+        assertEquals( 5.01, path.getCurrentPoint().getX(), 1e-9 );
+    }
+
+    @Test
+    public void testRingStaysClosed() {
+        Curve ring = createLine( 0, 0, 10, 0, 10, 0.1, 10, 10, 0, 10, 0.1, 0.1, 0, 0 );
+        List<Integer> types = getSegmentTypes( createHelper().fromCurve( ring, true ) );
+        assertEquals( SEG_CLOSE, (int) types.get( types.size() - 1 ) );
+        assertEquals( 6, types.size() );
+    }
+
+    @Test
+    public void testDisabledDecimation() {
+        GeometryHelper helper = createHelper();
+        helper.setDecimationTolerance( 0 );
+        Curve line = createLine( 0, 0, 0.1, 0, 0.2, 0.1, 0.3, 0 );
+        assertEquals( 4, getSegmentTypes( helper.fromCurve( line, false ) ).size() );
+    }
+
+}
@@ -0,0 +1,93 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the collision detection of the {@link LabelIndex} and the contour bounds used for line labels.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class LabelIndexTest {
+
+    @Test
+    public void testCollision() {
+        LabelIndex index = new LabelIndex( 64 );
+        index.insert( new Rectangle2D.Double( 10, 10, 100, 20 ) );
+        assertTrue( index.intersects( new Rectangle2D.Double( 100, 25, 50, 20 ) ) );
+        assertFalse( index.intersects( new Rectangle2D.Double( 111, 10, 50, 20 ) ) );
+        assertFalse( index.intersects( new Rectangle2D.Double( 10, 31, 50, 20 ) ) );
+    }
+
+    @Test
+    public void testSpanningCells() {
+        LabelIndex index = new LabelIndex( 16 );
+        index.insert( new Rectangle2D.Double( -40, -40, 200, 10 ) );
+        assertTrue( index.intersects( new Rectangle2D.Double( 150, -35, 1, 1 ) ) );
+        assertTrue( index.intersects( new Rectangle2D.Double( -39, -39, 1, 1 ) ) );
+        assertFalse( index.intersects( new Rectangle2D.Double( 161, -35, 1, 1 ) ) );
+    }
+
+    @Test
+    public void testContourBounds() {
+        GeneralPath path = new GeneralPath();
+        path.append( new Rectangle2D.Double( 0, 0, 5, 10 ), false );
+        path.append( new Rectangle2D.Double( 20, 0, 5, 10 ), false );
+        List<Rectangle2D> boxes = LabelPlacer.getContourBounds( path );
+        assertEquals( 2, boxes.size() );
+        assertEquals( new Rectangle2D.Double( 0, 0, 5, 10 ), boxes.get( 0 ) );
+        assertEquals( new Rectangle2D.Double( 20, 0, 5, 10 ), boxes.get( 1 ) );
+    }
+
+}
@@ -0,0 +1,82 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+/**
+ * Tests the creation of point sprites in the {@link PointRenderer}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PointRendererTest {
+
+    @Test
+    public void testTrim() {
+        BufferedImage img = new BufferedImage( 20, 20, TYPE_INT_ARGB );
+        img.setRGB( 3, 4, 0xff000000 );
+        img.setRGB( 12, 9, 0x10ff0000 );
+        SymbolCache.Sprite sprite = PointRenderer.trim( img, 5, 5 );
+        assertEquals( 10, sprite.image.getWidth() );
+        assertEquals( 6, sprite.image.getHeight() );
+        assertEquals( -2, sprite.x );
+        assertEquals( -1, sprite.y );
+        assertEquals( 0xff000000, sprite.image.getRGB( 0, 0 ) );
+        assertEquals( 0x10ff0000, sprite.image.getRGB( 9, 5 ) );
+    }
+
+    @Test
+    public void testTrimTransparent() {
+        SymbolCache.Sprite sprite = PointRenderer.trim( new BufferedImage( 20, 20, TYPE_INT_ARGB ), 5, 5 );
+        assertEquals( 1, sprite.image.getWidth() );
+        assertEquals( 0, sprite.x );
+    }
+
+}
@@ -0,0 +1,130 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+/**
+ * Tests the eviction and metrics of the {@link SymbolCache}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SymbolCacheTest {
+
+    private static BufferedImage createImage() {
+        // 10x10 pixels are weighted 400 bytes
+        return new BufferedImage( 10, 10, TYPE_INT_ARGB );
+    }
+
+    @Test
+    public void testKeyEquality() {
+        SymbolCache.Key k1 = new SymbolCache.Key( "mark", 12, new double[] { 1, 2 }, null );
+        SymbolCache.Key k2 = new SymbolCache.Key( "mark", 12, new double[] { 1, 2 }, null );
+        SymbolCache.Key k3 = new SymbolCache.Key( "mark", 12, new double[] { 1, 3 }, null );
+        assertEquals( k1, k2 );
+        assertEquals( k1.hashCode(), k2.hashCode() );
+        assertEquals( false, k1.equals( k3 ) );
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        SymbolCache cache = new SymbolCache( 1000 );
+        SymbolCache.Key key = new SymbolCache.Key( "svg", "http://example.org/poi.svg", 10, 10 );
+        assertNull( cache.getImage( key ) );
+        BufferedImage img = createImage();
+        cache.putImage( key, img );
+        assertSame( img, cache.getImage( key ) );
+        assertEquals( 1, cache.getHits() );
+        assertEquals( 1, cache.getMisses() );
+        assertEquals( 400, cache.getBytes() );
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        SymbolCache cache = new SymbolCache( 1000 );
+        SymbolCache.Key k1 = new SymbolCache.Key( 1 );
+        SymbolCache.Key k2 = new SymbolCache.Key( 2 );
+        SymbolCache.Key k3 = new SymbolCache.Key( 3 );
+        cache.putImage( k1, createImage() );
+        cache.putImage( k2, createImage() );
+        cache.getImage( k1 );
+        cache.putImage( k3, createImage() );
+        assertEquals( 2, cache.size() );
+        assertEquals( 800, cache.getBytes() );
+        assertEquals( 1, cache.getEvictions() );
+        assertNotNull( cache.getImage( k1 ) );
+        assertNull( cache.getImage( k2 ) );
+        assertNotNull( cache.getImage( k3 ) );
+    }
+
+    @Test
+    public void testShrinking() {
+        SymbolCache cache = new SymbolCache( 1000 );
+        cache.putImage( new SymbolCache.Key( 1 ), createImage() );
+        cache.putShape( new SymbolCache.Key( 2 ), new Rectangle2D.Double( 0, 0, 1, 1 ) );
+        cache.setMaxBytes( 300 );
+        assertEquals( 1, cache.size() );
+        cache.setMaxBytes( 0 );
+        assertEquals( 0, cache.size() );
+        assertEquals( 0, cache.getBytes() );
+    }
+
+    @Test
+    public void testTooLarge() {
+        SymbolCache cache = new SymbolCache( 100 );
+        cache.putImage( new SymbolCache.Key( 1 ), createImage() );
+        assertEquals( 0, cache.size() );
+    }
+
+}
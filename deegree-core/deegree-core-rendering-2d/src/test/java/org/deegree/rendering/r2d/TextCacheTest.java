@@ -0,0 +1,102 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static java.awt.Font.PLAIN;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+
+import org.deegree.rendering.r2d.TextCache.GlyphRun;
+import org.junit.Test;
+
+/**
+ * Tests the {@link TextCache}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class TextCacheTest {
+
+    private static final Font FONT = new Font( "Dialog", PLAIN, 12 );
+
+    private static final FontRenderContext FRC = new FontRenderContext( null, false, false );
+
+    @Test
+    public void testLayoutIsShared() {
+        TextCache cache = new TextCache( 10 );
+        assertSame( cache.getLayout( FONT, "Hauptstraße", FRC ),
+                    cache.getLayout( FONT, "Hauptstraße", new FontRenderContext( null, false, false ) ) );
+        assertEquals( 1, cache.getHits() );
+        assertEquals( 1, cache.getMisses() );
+    }
+
+    @Test
+    public void testGlyphRun() {
+        GlyphVector vec = FONT.createGlyphVector( FRC, "Bonn" );
+        GlyphRun run = new TextCache( 10 ).getGlyphs( FONT, "Bonn", FRC );
+        assertEquals( vec.getNumGlyphs(), run.getNumGlyphs() );
+        assertEquals( vec.getLogicalBounds().getWidth(), run.getLogicalWidth(), 0 );
+        assertEquals( vec.getOutline().getBounds2D().getWidth(), run.getOutlineWidth(), 0 );
+        for ( int i = 0; i < vec.getNumGlyphs(); ++i ) {
+            assertEquals( vec.getGlyphMetrics( i ).getAdvance(), run.getAdvance( i ), 0 );
+            assertEquals( vec.getGlyphPosition( i ), run.getGlyphPosition( i ) );
+        }
+    }
+
+    @Test
+    public void testBounded() {
+        TextCache cache = new TextCache( 2 );
+        cache.getGlyphs( FONT, "a", FRC );
+        cache.getGlyphs( FONT, "b", FRC );
+        cache.getGlyphs( FONT, "c", FRC );
+        assertEquals( 2, cache.size() );
+        cache.setMaxEntries( 1 );
+        assertEquals( 1, cache.size() );
+    }
+
+}
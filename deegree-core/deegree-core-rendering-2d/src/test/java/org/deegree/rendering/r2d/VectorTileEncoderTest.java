@@ -0,0 +1,113 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the geometry and attribute encoding of the {@link VectorTileEncoder}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class VectorTileEncoderTest {
+
+    @Test
+    public void testOrient() {
+        // counter-clockwise exterior and clockwise interior ring, with y pointing down
+        int[] exterior = { 0, 0, 0, 10, 10, 10, 10, 0 };
+        int[] interior = { 2, 2, 4, 2, 4, 4, 2, 4 };
+        List<int[]> rings = VectorTileEncoder.orient( asList( exterior, interior ) );
+        assertEquals( 2, rings.size() );
+        assertTrue( VectorTileEncoder.area( rings.get( 0 ) ) > 0 );
+        assertTrue( VectorTileEncoder.area( rings.get( 1 ) ) < 0 );
+        assertArrayEquals( new int[] { 10, 0, 10, 10, 0, 10, 0, 0 }, rings.get( 0 ) );
+    }
+
+    @Test
+    public void testOrientDegenerate() {
+        int[] line = { 0, 0, 5, 5, 10, 10 };
+        assertNull( VectorTileEncoder.orient( Collections.singletonList( line ) ) );
+        int[] exterior = { 0, 0, 10, 0, 10, 10, 0, 10 };
+        assertEquals( 1, VectorTileEncoder.orient( asList( exterior, line ) ).size() );
+    }
+
+    @Test
+    public void testEncodePolygons() {
+        List<int[]> rings = Collections.singletonList( new int[] { 3, 6, 8, 12, 20, 34 } );
+        int[] cmds = VectorTileEncoder.encodePolygons( Collections.singletonList( rings ) );
+        // example from the vector tile specification
+        assertArrayEquals( new int[] { 9, 6, 12, 18, 10, 12, 24, 44, 15 }, cmds );
+    }
+
+    @Test
+    public void testEncodePoints() {
+        List<int[]> points = asList( new int[] { 5, 7 }, new int[] { 3, 2 } );
+        // example from the vector tile specification
+        assertArrayEquals( new int[] { 17, 10, 14, 3, 9 }, VectorTileEncoder.encodePoints( points ) );
+    }
+
+    @Test
+    public void testNormalize() {
+        assertEquals( 3L, VectorTileEncoder.normalize( 3 ) );
+        assertEquals( -7L, VectorTileEncoder.normalize( new BigDecimal( "-7" ) ) );
+        assertEquals( 1.5, VectorTileEncoder.normalize( new BigDecimal( "1.5" ) ) );
+        assertEquals( "123456789012345678901234567890",
+                      VectorTileEncoder.normalize( new BigInteger( "123456789012345678901234567890" ) ) );
+        assertEquals( Boolean.TRUE, VectorTileEncoder.normalize( true ) );
+        assertEquals( "x", VectorTileEncoder.normalize( new StringBuilder( "x" ) ) );
+    }
+
+}
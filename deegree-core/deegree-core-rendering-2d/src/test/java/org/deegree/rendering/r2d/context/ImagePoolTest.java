@@ -0,0 +1,123 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.context;
+
+import static java.awt.Color.RED;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+/**
+ * Tests the reuse and the memory limit of the {@link ImagePool}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ImagePoolTest {
+
+    @Test
+    public void testReuseClearsImage() {
+        ImagePool pool = new ImagePool( 1024 * 1024 );
+        BufferedImage img = pool.prepareImage( "image/png", 10, 10, true, null );
+        img.setRGB( 5, 5, 0xff00ff00 );
+        pool.release( img );
+        assertEquals( 400, pool.getMemory() );
+
+        BufferedImage reused = pool.prepareImage( "image/png", 10, 10, true, null );
+        assertSame( img, reused );
+        assertEquals( 0, reused.getRGB( 5, 5 ) );
+        assertEquals( 0, pool.getMemory() );
+
+        pool.release( reused );
+        reused = pool.prepareImage( "image/jpeg", 10, 10, false, RED );
+        assertNotSame( img, reused );
+        assertEquals( RED.getRGB(), reused.getRGB( 5, 5 ) );
+    }
+
+    @Test
+    public void testOpaqueBackground() {
+        ImagePool pool = new ImagePool( 1024 * 1024 );
+        BufferedImage img = pool.prepareImage( "image/jpeg", 10, 10, false, RED );
+        img.setRGB( 1, 1, 0xff000000 );
+        pool.release( img );
+        BufferedImage reused = pool.prepareImage( "image/jpeg", 10, 10, false, RED );
+        assertSame( img, reused );
+        assertEquals( RED.getRGB(), reused.getRGB( 1, 1 ) );
+    }
+
+    @Test
+    public void testMemoryLimit() {
+        ImagePool pool = new ImagePool( 1000 );
+        BufferedImage a = new BufferedImage( 10, 10, TYPE_INT_ARGB );
+        BufferedImage b = new BufferedImage( 10, 10, TYPE_INT_ARGB );
+        BufferedImage c = new BufferedImage( 12, 12, TYPE_INT_ARGB );
+        pool.release( a );
+        pool.release( b );
+        assertEquals( 800, pool.getMemory() );
+        // the least recently used size is evicted first
+        pool.release( c );
+        assertEquals( 976, pool.getMemory() );
+        assertSame( c, pool.prepareImage( "image/png", 12, 12, true, null ) );
+        assertSame( b, pool.prepareImage( "image/png", 10, 10, true, null ) );
+        assertEquals( 0, pool.getMemory() );
+
+        // larger than the limit
+        pool.release( new BufferedImage( 20, 20, TYPE_INT_ARGB ) );
+        assertEquals( 0, pool.getMemory() );
+    }
+
+    @Test
+    public void testSubimagesAreIgnored() {
+        ImagePool pool = new ImagePool( 1024 * 1024 );
+        BufferedImage img = new BufferedImage( 10, 10, TYPE_INT_ARGB );
+        pool.release( img.getSubimage( 0, 0, 5, 5 ) );
+        assertEquals( 0, pool.getMemory() );
+    }
+
+}
@@ -35,6 +35,8 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.sqldialect.oracle;
 
+import static org.deegree.cs.components.Unit.DEGREE;
+
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -105,6 +107,15 @@ public class OracleGeometryConverter implements GeometryParticleConverter {
         return column;
     }
 
+    @Override
+    public String getSelectSnippet( String tableAlias, double tolerance ) {
+        // SDO_UTIL.SIMPLIFY expects the threshold in meters for geodetic data
+        if ( tolerance <= 0 || crs == null || crs.getUnits()[0].equals( DEGREE ) ) {
+            return getSelectSnippet( tableAlias );
+        }
+        return "SDO_UTIL.SIMPLIFY(" + getSelectSnippet( tableAlias ) + "," + tolerance + ")";
+    }
+
     @Override
     public String getSetSnippet( Geometry particle ) {
         return "?";
@@ -97,6 +97,20 @@ public class PostGISGeometryConverter implements GeometryParticleConverter {
         return asewkb + "(" + column + ")";
     }
 
+    @Override
+    public String getSelectSnippet( String tableAlias, double tolerance ) {
+        if ( tolerance <= 0 ) {
+            return getSelectSnippet( tableAlias );
+        }
+        String col = tableAlias == null ? column : tableAlias + "." + column;
+        // snapping drops consecutive vertices that fall into the same grid cell
+        if ( useLegacyPredicates ) {
+            return "AsEWKB(SnapToGrid(" + col + "," + tolerance + "))";
+        }
+        return "ST_AsEWKB(ST_SimplifyPreserveTopology(ST_SnapToGrid(" + col + "," + tolerance + ")," + tolerance
+               + "))";
+    }
+
     @Override
     public Geometry toParticle( ResultSet rs, int colIndex )
                             throws SQLException {
@@ -389,9 +389,12 @@ class GraphicSymbologyParser {
                             StringBuffer sb = new StringBuffer();
                             sbcontn.evaluate( sb, f, evaluator );
                             String file = sb.toString();
-                            if ( cache.containsKey( file ) ) {
-                                base.add( cache.get( file ) );
-                                return;
+                            // the continuation is shared by all threads evaluating the style
+                            synchronized ( cache ) {
+                                if ( cache.containsKey( file ) ) {
+                                    base.add( cache.get( file ) );
+                                    return;
+                                }
                             }
                             try {
                                 BufferedImage i;
@@ -401,7 +404,9 @@ class GraphicSymbologyParser {
                                     i = ImageIO.read( resolve( file, in ) );
                                 }
                                 base.add( i );
-                                cache.put( file, i );
+                                synchronized ( cache ) {
+                                    cache.put( file, i );
+                                }
                             } catch ( MalformedURLException e ) {
                                 // TODO Auto-generated catch block
                                 e.printStackTrace();
@@ -0,0 +1,387 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.style.se.unevaluated;
+
+import static org.deegree.style.se.parser.SymbologyParser.ELSEFILTER;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.utils.DoublePair;
+import org.deegree.commons.utils.Pair;
+import org.deegree.commons.utils.Triple;
+import org.deegree.feature.Feature;
+import org.deegree.filter.Filter;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.Operator;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.comparison.BinaryComparisonOperator;
+import org.deegree.filter.comparison.ComparisonOperator;
+import org.deegree.filter.comparison.PropertyIsBetween;
+import org.deegree.filter.logical.And;
+import org.deegree.filter.logical.Not;
+import org.deegree.filter.logical.Or;
+import org.deegree.geometry.Geometry;
+import org.deegree.style.se.parser.SymbologyParser.FilterContinuation;
+import org.deegree.style.styling.Styling;
+import org.deegree.style.styling.TextStyling;
+import org.slf4j.Logger;
+
+/**
+ * Compiled form of a {@link Style}, obtained using {@link Style#compile()}. Rule filters are decomposed into their
+ * logical operators, and comparisons occurring in more than one rule (eg. the same property compared against the same
+ * literal in a number of thematic rules) are evaluated only once per feature. Symbolizers and label expressions of
+ * each rule are resolved up front, and results are passed to a {@link StylingCallback} instead of being collected in
+ * lists.
+ * <p>
+ * Instances keep per feature state and are not thread safe. Compile the style once per rendering thread, after
+ * filtering it for the current scale.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CompiledStyle {
+
+    private static final Logger LOG = getLogger( CompiledStyle.class );
+
+    private final Style defaultStyle;
+
+    private final QName featureType;
+
+    private final Rule[] rules;
+
+    private final Map<Symbolizer<TextStyling>, Continuation<StringBuffer>> labels;
+
+    private final int[] stamps;
+
+    private final boolean[] results;
+
+    private int stamp;
+
+    private final StringBuffer sb = new StringBuffer();
+
+    private final LinkedList<Symbolizer<?>> matchedSymbolizers = new LinkedList<Symbolizer<?>>();
+
+    CompiledStyle( Style style, List<Pair<Continuation<LinkedList<Symbolizer<?>>>, DoublePair>> rules,
+                   Map<Symbolizer<TextStyling>, Continuation<StringBuffer>> labels, QName featureType ) {
+        this.defaultStyle = style.isDefault() ? style : null;
+        this.featureType = featureType;
+        this.labels = labels;
+        Map<String, Integer> slots = new HashMap<String, Integer>();
+        List<Rule> list = new ArrayList<Rule>( rules.size() );
+        for ( Pair<Continuation<LinkedList<Symbolizer<?>>>, DoublePair> rule : rules ) {
+            list.add( compileRule( rule.first, slots ) );
+        }
+        this.rules = list.toArray( new Rule[list.size()] );
+        this.stamps = new int[slots.size()];
+        this.results = new boolean[slots.size()];
+        LOG.debug( "Compiled style with {} rules, {} distinct comparisons.", this.rules.length, slots.size() );
+    }
+
+    /**
+     * Evaluates the style for a feature.
+     * 
+     * @param f
+     *            the feature, must not be null
+     * @param evaluator
+     * @param callback
+     *            receives the stylings of all matching symbolizers, must not be null
+     */
+    public void evaluate( Feature f, XPathEvaluator<Feature> evaluator, StylingCallback callback ) {
+        if ( defaultStyle != null ) {
+            for ( Triple<Styling, LinkedList<Geometry>, String> t : defaultStyle.evaluate( f, evaluator ) ) {
+                callback.styling( t.first, t.second, t.third );
+            }
+            return;
+        }
+        if ( featureType != null && !f.getType().getName().equals( featureType ) ) {
+            LOG.debug( "Not using style because feature type constraint does not match." );
+            return;
+        }
+
+        if ( ++stamp == 0 ) {
+            Arrays.fill( stamps, 0 );
+            stamp = 1;
+        }
+
+        int matched = 0;
+        String text = null;
+        for ( Rule rule : rules ) {
+            if ( rule.continuation != null ) {
+                matchedSymbolizers.clear();
+                rule.continuation.evaluate( matchedSymbolizers, f, evaluator );
+                for ( Symbolizer<?> s : matchedSymbolizers ) {
+                    text = emit( s, labels.get( s ), text, f, evaluator, callback );
+                }
+                matched += matchedSymbolizers.size();
+                continue;
+            }
+            if ( !matches( rule, matched == 0, f, evaluator ) ) {
+                continue;
+            }
+            for ( int i = 0; i < rule.symbolizers.length; ++i ) {
+                text = emit( rule.symbolizers[i], rule.labels[i], text, f, evaluator, callback );
+            }
+            matched += rule.symbolizers.length;
+        }
+    }
+
+    private boolean matches( Rule rule, boolean nothingMatched, Feature f, XPathEvaluator<Feature> evaluator ) {
+        if ( rule.elseRule ) {
+            return nothingMatched;
+        }
+        if ( rule.condition == null ) {
+            return true;
+        }
+        try {
+            return rule.condition.evaluate( f, evaluator );
+        } catch ( FilterEvaluationException e ) {
+            LOG.warn( "Evaluating the following expression resulted in an error '{}':\n'{}'",
+                      e.getLocalizedMessage(), rule.filter );
+            LOG.debug( "Stack trace:", e );
+            return false;
+        }
+    }
+
+    private String emit( Symbolizer<?> s, Continuation<StringBuffer> label, String text, Feature f,
+                         XPathEvaluator<Feature> evaluator, StylingCallback callback ) {
+        LinkedList<Geometry> geoms = s.evaluateGeometries( f, evaluator );
+        Styling styling = s.evaluateStyling( f, evaluator );
+        if ( label != null ) {
+            sb.setLength( 0 );
+            label.evaluate( sb, f, evaluator );
+            text = sb.toString();
+        }
+        callback.styling( styling, geoms, text );
+        return text;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Rule compileRule( Continuation<LinkedList<Symbolizer<?>>> contn, Map<String, Integer> slots ) {
+        if ( !( contn instanceof FilterContinuation ) ) {
+            // generic continuations are evaluated as is
+            return new Rule( null, null, false, null, null, contn );
+        }
+        FilterContinuation fc = (FilterContinuation) contn;
+        List<Symbolizer<?>> syms = fc.getSymbolizers();
+        Symbolizer<?>[] symbolizers = syms.toArray( new Symbolizer<?>[syms.size()] );
+        Continuation<StringBuffer>[] labels = new Continuation[symbolizers.length];
+        for ( int i = 0; i < symbolizers.length; ++i ) {
+            labels[i] = this.labels.get( symbolizers[i] );
+        }
+        boolean elseRule = fc.filter == ELSEFILTER;
+        Condition condition = fc.filter == null || elseRule ? null : compile( fc.filter, slots );
+        return new Rule( fc.filter, condition, elseRule, symbolizers, labels, null );
+    }
+
+    private Condition compile( Filter filter, Map<String, Integer> slots ) {
+        if ( filter instanceof OperatorFilter ) {
+            return compile( ( (OperatorFilter) filter ).getOperator(), slots );
+        }
+        return new FilterCondition( filter );
+    }
+
+    private Condition compile( Operator op, Map<String, Integer> slots ) {
+        if ( op instanceof And || op instanceof Or ) {
+            Operator[] params = op instanceof And ? ( (And) op ).getParams() : ( (Or) op ).getParams();
+            Condition[] conditions = new Condition[params.length];
+            for ( int i = 0; i < params.length; ++i ) {
+                conditions[i] = compile( params[i], slots );
+            }
+            return new LogicalCondition( op instanceof And, conditions );
+        }
+        if ( op instanceof Not ) {
+            return new NotCondition( compile( ( (Not) op ).getParameter(), slots ) );
+        }
+        String key = getSharingKey( op );
+        if ( key == null ) {
+            return new OperatorCondition( op, -1 );
+        }
+        Integer slot = slots.get( key );
+        if ( slot == null ) {
+            slot = slots.size();
+            slots.put( key, slot );
+        }
+        return new OperatorCondition( op, slot );
+    }
+
+    /**
+     * Only comparisons are shared, as their string representation contains all parameters.
+     */
+    private static String getSharingKey( Operator op ) {
+        if ( op instanceof BinaryComparisonOperator || op instanceof PropertyIsBetween ) {
+            ComparisonOperator c = (ComparisonOperator) op;
+            return op.getClass().getName() + " " + c.isMatchCase() + " " + c.getMatchAction() + "\n"
+                   + op.toString( "" );
+        }
+        return null;
+    }
+
+    private static class Rule {
+
+        final Filter filter;
+
+        final Condition condition;
+
+        final boolean elseRule;
+
+        final Symbolizer<?>[] symbolizers;
+
+        final Continuation<StringBuffer>[] labels;
+
+        final Continuation<LinkedList<Symbolizer<?>>> continuation;
+
+        Rule( Filter filter, Condition condition, boolean elseRule, Symbolizer<?>[] symbolizers,
+              Continuation<StringBuffer>[] labels, Continuation<LinkedList<Symbolizer<?>>> continuation ) {
+            this.filter = filter;
+            this.condition = condition;
+            this.elseRule = elseRule;
+            this.symbolizers = symbolizers;
+            this.labels = labels;
+            this.continuation = continuation;
+        }
+
+    }
+
+    private abstract static class Condition {
+
+        abstract boolean evaluate( Feature f, XPathEvaluator<Feature> evaluator )
+                                throws FilterEvaluationException;
+
+    }
+
+    private static class LogicalCondition extends Condition {
+
+        private final boolean and;
+
+        private final Condition[] conditions;
+
+        LogicalCondition( boolean and, Condition[] conditions ) {
+            this.and = and;
+            this.conditions = conditions;
+        }
+
+        @Override
+        boolean evaluate( Feature f, XPathEvaluator<Feature> evaluator )
+                                throws FilterEvaluationException {
+            for ( Condition c : conditions ) {
+                if ( c.evaluate( f, evaluator ) != and ) {
+                    return !and;
+                }
+            }
+            return and;
+        }
+
+    }
+
+    private static class NotCondition extends Condition {
+
+        private final Condition condition;
+
+        NotCondition( Condition condition ) {
+            this.condition = condition;
+        }
+
+        @Override
+        boolean evaluate( Feature f, XPathEvaluator<Feature> evaluator )
+                                throws FilterEvaluationException {
+            return !condition.evaluate( f, evaluator );
+        }
+
+    }
+
+    private static class FilterCondition extends Condition {
+
+        private final Filter filter;
+
+        FilterCondition( Filter filter ) {
+            this.filter = filter;
+        }
+
+        @Override
+        boolean evaluate( Feature f, XPathEvaluator<Feature> evaluator )
+                                throws FilterEvaluationException {
+            return filter.evaluate( f, evaluator );
+        }
+
+    }
+
+    private class OperatorCondition extends Condition {
+
+        private final Operator op;
+
+        private final int slot;
+
+        OperatorCondition( Operator op, int slot ) {
+            this.op = op;
+            this.slot = slot;
+        }
+
+        @Override
+        boolean evaluate( Feature f, XPathEvaluator<Feature> evaluator )
+                                throws FilterEvaluationException {
+            if ( slot < 0 ) {
+                return op.evaluate( f, evaluator );
+            }
+            if ( stamps[slot] == stamp ) {
+                return results[slot];
+            }
+            boolean res = op.evaluate( f, evaluator );
+            stamps[slot] = stamp;
+            results[slot] = res;
+            return res;
+        }
+
+    }
+
+}
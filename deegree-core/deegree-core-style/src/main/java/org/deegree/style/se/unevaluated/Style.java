@@ -281,6 +281,16 @@ public class Style implements Copyable<Style> {
         return (LinkedList) res;
     }
 
+    /**
+     * Compiles the style for repeated evaluation. Use {@link #filter(double)} first, so rules not applicable for the
+     * current scale are dropped once, not checked for each feature.
+     * 
+     * @return a new compiled style, to be used by one thread only
+     */
+    public CompiledStyle compile() {
+        return new CompiledStyle( this, rules, labels, featureType );
+    }
+
     /**
      * @return the live list of rules
      */
@@ -173,6 +173,23 @@ public class Symbolizer<T extends Styling<T>> {
      * @return the styling with the geometries, p.second may be null if no geoms were found
      */
     public Pair<T, LinkedList<Geometry>> evaluate( Feature f, XPathEvaluator<Feature> evaluator ) {
+        LinkedList<Geometry> geoms = evaluateGeometries( f, evaluator );
+
+        if ( f == null ) {
+            return new Pair<T, LinkedList<Geometry>>( evaluated == null ? base.copy() : evaluated.copy(), geoms );
+        }
+
+        return new Pair<T, LinkedList<Geometry>>( evaluateStyling( f, evaluator ), geoms );
+    }
+
+    /**
+     * @param f
+     *            the feature to get the geometries from, may be null
+     * @param evaluator
+     * @return the geometries selected by the geometry expression (or all geometries of the feature, if not set), never
+     *         null
+     */
+    LinkedList<Geometry> evaluateGeometries( Feature f, XPathEvaluator<Feature> evaluator ) {
         LinkedList<Geometry> geoms = new LinkedList<Geometry>();
         if ( geometry != null && evaluator != null ) {
             try {
@@ -222,37 +239,28 @@ public class Symbolizer<T extends Styling<T>> {
                 LOG.warn( "Style was applied to a feature without a geometry." );
             }
         }
+        return geoms;
+    }
 
-        if ( f == null ) {
-            return new Pair<T, LinkedList<Geometry>>( evaluated == null ? base.copy() : evaluated.copy(), geoms );
-        }
-
-        // String id = f.getId();
-        // if ( id != null && cache.containsKey( id ) ) {
-        // return new Pair<T, LinkedList<Geometry>>( cache.get( id ), geoms );
-        // }
-
+    /**
+     * @param f
+     *            the feature to evaluate the styling for, must not be null
+     * @param evaluator
+     * @return the evaluated styling, the shared instance if the symbolizer is already evaluated
+     */
+    T evaluateStyling( Feature f, XPathEvaluator<Feature> evaluator ) {
         if ( evaluated != null ) {
-            Pair<T, LinkedList<Geometry>> pair = new Pair<T, LinkedList<Geometry>>( evaluated, geoms );
-            // if ( id != null ) {
-            // cache.put( id, pair.first );
-            // }
-            return pair;
+            return evaluated;
         }
 
         T evald = base.copy();
-        Pair<T, LinkedList<Geometry>> pair = new Pair<T, LinkedList<Geometry>>( evald, geoms );
         if ( next == null ) {
             LOG.warn( "Something wrong with SE/SLD parsing. No continuation found, and no evaluated style." );
-            return pair;
+            return evald;
         }
 
         next.evaluate( evald, f, evaluator );
-        // if ( id != null ) {
-        // cache.put( id, pair.first );
-        // }
-
-        return pair;
+        return evald;
     }
 
     /**
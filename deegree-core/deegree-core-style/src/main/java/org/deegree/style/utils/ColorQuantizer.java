@@ -0,0 +1,396 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.style.utils;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_INDEXED;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Reduces images to an indexed palette of at most 256 colors. The palette is determined using an octree that also
+ * takes the alpha channel into account (so actually each node has 16 children), so translucent pixels are preserved.
+ * Fully transparent pixels are always mapped to a dedicated palette entry. Optionally, Floyd-Steinberg dithering is
+ * applied when mapping the pixels to the palette.
+ * <p>
+ * Instances are immutable and can be used concurrently.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ColorQuantizer {
+
+    private static final int MAX_DEPTH = 5;
+
+    private static final int CACHE_SIZE = 4096;
+
+    private final int maxColors;
+
+    private final boolean dither;
+
+    /**
+     * @param maxColors
+     *            the maximum number of palette entries, including the one for transparent pixels, between 2 and 256
+     * @param dither
+     *            true, if Floyd-Steinberg dithering should be applied
+     */
+    public ColorQuantizer( int maxColors, boolean dither ) {
+        if ( maxColors < 2 || maxColors > 256 ) {
+            throw new IllegalArgumentException( "The number of colors must be between 2 and 256, but was " + maxColors
+                                                + "." );
+        }
+        this.maxColors = maxColors;
+        this.dither = dither;
+    }
+
+    /**
+     * @param img
+     *            the image to quantize, never <code>null</code>
+     * @return a new image of type {@link BufferedImage#TYPE_BYTE_INDEXED}, never <code>null</code>
+     */
+    public BufferedImage quantize( BufferedImage img ) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        int[] row = new int[width];
+
+        Octree tree = new Octree( maxColors - 1 );
+        boolean transparent = false;
+        for ( int y = 0; y < height; ++y ) {
+            readRow( img, y, row );
+            for ( int x = 0; x < width; ++x ) {
+                int argb = row[x];
+                if ( ( argb >>> 24 ) == 0 ) {
+                    transparent = true;
+                } else {
+                    tree.add( argb );
+                }
+            }
+        }
+
+        IndexColorModel model = tree.createColorModel( transparent );
+        BufferedImage res = new BufferedImage( width, height, TYPE_BYTE_INDEXED, model );
+        WritableRaster raster = res.getRaster();
+        byte[] data = ( (DataBufferByte) raster.getDataBuffer() ).getData();
+        int stride = ( (ComponentSampleModel) raster.getSampleModel() ).getScanlineStride();
+
+        if ( dither ) {
+            mapDithered( img, tree, data, stride, row );
+        } else {
+            for ( int y = 0; y < height; ++y ) {
+                readRow( img, y, row );
+                int offset = y * stride;
+                for ( int x = 0; x < width; ++x ) {
+                    int argb = row[x];
+                    data[offset + x] = (byte) ( ( argb >>> 24 ) == 0 ? 0 : tree.lookup( argb ) );
+                }
+            }
+        }
+        return res;
+    }
+
+    private static void mapDithered( BufferedImage img, Octree tree, byte[] data, int stride, int[] row ) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        // errors of the current and the next row, four channels per pixel, one pixel padding on each side
+        int[] current = new int[( width + 2 ) * 4];
+        int[] next = new int[( width + 2 ) * 4];
+        for ( int y = 0; y < height; ++y ) {
+            readRow( img, y, row );
+            int offset = y * stride;
+            for ( int x = 0; x < width; ++x ) {
+                int argb = row[x];
+                if ( ( argb >>> 24 ) == 0 ) {
+                    data[offset + x] = 0;
+                    continue;
+                }
+                int e = ( x + 1 ) * 4;
+                int a = clamp( ( argb >>> 24 ) + current[e] / 16 );
+                int r = clamp( ( ( argb >> 16 ) & 0xff ) + current[e + 1] / 16 );
+                int g = clamp( ( ( argb >> 8 ) & 0xff ) + current[e + 2] / 16 );
+                int b = clamp( ( argb & 0xff ) + current[e + 3] / 16 );
+                int index = tree.lookup( ( a << 24 ) | ( r << 16 ) | ( g << 8 ) | b );
+                data[offset + x] = (byte) index;
+                int[] entry = tree.palette[index];
+                diffuse( current, next, e, a - entry[0] );
+                diffuse( current, next, e + 1, r - entry[1] );
+                diffuse( current, next, e + 2, g - entry[2] );
+                diffuse( current, next, e + 3, b - entry[3] );
+            }
+            int[] tmp = current;
+            current = next;
+            next = tmp;
+            Arrays.fill( next, 0 );
+        }
+    }
+
+    private static void diffuse( int[] current, int[] next, int e, int err ) {
+        current[e + 4] += err * 7;
+        next[e - 4] += err * 3;
+        next[e] += err * 5;
+        next[e + 4] += err;
+    }
+
+    private static int clamp( int v ) {
+        return v < 0 ? 0 : ( v > 255 ? 255 : v );
+    }
+
+    /**
+     * Reads a row of pixels as ARGB, accessing the data buffer directly for the common integer image types.
+     */
+    private static void readRow( BufferedImage img, int y, int[] row ) {
+        int type = img.getType();
+        WritableRaster raster = img.getRaster();
+        if ( ( type == TYPE_INT_ARGB || type == TYPE_INT_RGB ) && raster.getParent() == null
+             && raster.getSampleModel() instanceof SinglePixelPackedSampleModel ) {
+            int[] pixels = ( (DataBufferInt) raster.getDataBuffer() ).getData();
+            int stride = ( (SinglePixelPackedSampleModel) raster.getSampleModel() ).getScanlineStride();
+            System.arraycopy( pixels, y * stride, row, 0, row.length );
+            if ( type == TYPE_INT_RGB ) {
+                for ( int i = 0; i < row.length; ++i ) {
+                    row[i] |= 0xff000000;
+                }
+            }
+            return;
+        }
+        img.getRGB( 0, y, row.length, 1, row, 0, row.length );
+    }
+
+    private static final class Node {
+
+        Node[] children;
+
+        boolean leaf;
+
+        long alpha, red, green, blue;
+
+        int count;
+
+        int index;
+
+        Node nextReducible;
+
+    }
+
+    /**
+     * Octree state of a single quantization run.
+     */
+    private static final class Octree {
+
+        private final int maxLeaves;
+
+        private final Node root = new Node();
+
+        private final Node[] reducible = new Node[MAX_DEPTH];
+
+        private int leaves;
+
+        private int[][] palette;
+
+        private int[] cacheKeys = new int[CACHE_SIZE];
+
+        // palette index + 1, 0 means empty
+        private int[] cacheValues = new int[CACHE_SIZE];
+
+        Octree( int maxLeaves ) {
+            this.maxLeaves = maxLeaves;
+        }
+
+        void add( int argb ) {
+            int a = argb >>> 24, r = ( argb >> 16 ) & 0xff, g = ( argb >> 8 ) & 0xff, b = argb & 0xff;
+            Node node = root;
+            for ( int level = 0;; ++level ) {
+                ++node.count;
+                if ( node.leaf ) {
+                    break;
+                }
+                if ( level == MAX_DEPTH ) {
+                    node.leaf = true;
+                    ++leaves;
+                    break;
+                }
+                if ( node.children == null ) {
+                    node.children = new Node[16];
+                    node.nextReducible = reducible[level];
+                    reducible[level] = node;
+                }
+                int idx = childIndex( a, r, g, b, level );
+                Node child = node.children[idx];
+                if ( child == null ) {
+                    child = node.children[idx] = new Node();
+                }
+                node = child;
+            }
+            node.alpha += a;
+            node.red += r;
+            node.green += g;
+            node.blue += b;
+            while ( leaves > maxLeaves ) {
+                reduce();
+            }
+        }
+
+        private void reduce() {
+            int level = MAX_DEPTH - 1;
+            while ( level > 0 && reducible[level] == null ) {
+                --level;
+            }
+            // merge the node with the fewest pixels, which has the smallest effect on the overall image
+            Node prev = null, minPrev = null, min = reducible[level];
+            for ( Node n = reducible[level]; n != null; prev = n, n = n.nextReducible ) {
+                if ( n.count < min.count ) {
+                    min = n;
+                    minPrev = prev;
+                }
+            }
+            if ( minPrev == null ) {
+                reducible[level] = min.nextReducible;
+            } else {
+                minPrev.nextReducible = min.nextReducible;
+            }
+            int merged = 0;
+            for ( Node child : min.children ) {
+                if ( child != null ) {
+                    min.alpha += child.alpha;
+                    min.red += child.red;
+                    min.green += child.green;
+                    min.blue += child.blue;
+                    ++merged;
+                }
+            }
+            min.children = null;
+            min.leaf = true;
+            leaves -= merged - 1;
+        }
+
+        IndexColorModel createColorModel( boolean transparent ) {
+            palette = new int[leaves + 1][];
+            palette[0] = new int[] { 0, 0, 0, 0 };
+            int size = assignIndices( root, 1 );
+            if ( size == 1 ) {
+                // only fully transparent pixels, still use a two entry palette
+                palette = new int[][] { palette[0], new int[] { 255, 0, 0, 0 } };
+                size = 2;
+            }
+            byte[] a = new byte[size], r = new byte[size], g = new byte[size], b = new byte[size];
+            for ( int i = 0; i < size; ++i ) {
+                a[i] = (byte) palette[i][0];
+                r[i] = (byte) palette[i][1];
+                g[i] = (byte) palette[i][2];
+                b[i] = (byte) palette[i][3];
+            }
+            if ( !transparent ) {
+                // entry 0 is unused, but keeps the indices stable
+                a[0] = (byte) 255;
+            }
+            return new IndexColorModel( 8, size, r, g, b, a );
+        }
+
+        private int assignIndices( Node node, int next ) {
+            if ( node.leaf ) {
+                node.index = next;
+                palette[next] = new int[] { (int) ( node.alpha / node.count ), (int) ( node.red / node.count ),
+                                           (int) ( node.green / node.count ), (int) ( node.blue / node.count ) };
+                return next + 1;
+            }
+            if ( node.children != null ) {
+                for ( Node child : node.children ) {
+                    if ( child != null ) {
+                        next = assignIndices( child, next );
+                    }
+                }
+            }
+            return next;
+        }
+
+        int lookup( int argb ) {
+            int a = argb >>> 24, r = ( argb >> 16 ) & 0xff, g = ( argb >> 8 ) & 0xff, b = argb & 0xff;
+            Node node = root;
+            for ( int level = 0; node != null; ++level ) {
+                if ( node.leaf ) {
+                    return node.index;
+                }
+                node = node.children == null ? null : node.children[childIndex( a, r, g, b, level )];
+            }
+            return nearest( argb, a, r, g, b );
+        }
+
+        private int nearest( int argb, int a, int r, int g, int b ) {
+            int slot = ( argb * 0x9E3779B1 ) >>> 20;
+            if ( cacheValues[slot] != 0 && cacheKeys[slot] == argb ) {
+                return cacheValues[slot] - 1;
+            }
+            int best = 1;
+            int bestDist = Integer.MAX_VALUE;
+            for ( int i = 1; i < palette.length && palette[i] != null; ++i ) {
+                int[] p = palette[i];
+                int da = a - p[0], dr = r - p[1], dg = g - p[2], db = b - p[3];
+                int dist = da * da + dr * dr + dg * dg + db * db;
+                if ( dist < bestDist ) {
+                    bestDist = dist;
+                    best = i;
+                }
+            }
+            cacheKeys[slot] = argb;
+            cacheValues[slot] = best + 1;
+            return best;
+        }
+
+        private static int childIndex( int a, int r, int g, int b, int level ) {
+            int shift = 7 - level;
+            return ( ( ( r >> shift ) & 1 ) << 3 ) | ( ( ( g >> shift ) & 1 ) << 2 ) | ( ( ( b >> shift ) & 1 ) << 1 )
+                   | ( ( a >> shift ) & 1 );
+        }
+
+    }
+
+}
@@ -63,7 +63,15 @@ import javax.media.jai.operator.ColorQuantizerDescriptor;
  */
 public class ImageUtils {
 
-    private static int getType( boolean transparent, String format ) {
+    /**
+     * @param transparent
+     *            whether the image needs an alpha channel
+     * @param format
+     *            the requested mime type, never <code>null</code>
+     * @return the {@link BufferedImage} type used by {@link #prepareImage(String, int, int, boolean, Color)} for all
+     *         formats except gif
+     */
+    public static int getType( boolean transparent, String format ) {
         int type = transparent ? TYPE_INT_ARGB : TYPE_INT_RGB;
         if ( format.equals( "image/x-ms-bmp" ) ) {
             type = TYPE_INT_RGB;
@@ -75,8 +83,7 @@ public class ImageUtils {
      * @return an empty image conforming to the request parameters
      */
     public static BufferedImage prepareImage( String format, int width, int height, boolean transparent, Color bgColor ) {
-        if ( format.equals( "image/png; mode=8bit" ) || format.equals( "image/png; subtype=8bit" )
-             || format.equals( "image/gif" ) ) {
+        if ( format.equals( "image/gif" ) ) {
             ColorModel cm = PlanarImage.getDefaultColorModel( TYPE_BYTE, 4 );
             return new BufferedImage( cm, createBandedRaster( TYPE_BYTE, width, height, 4, null ), false, null );
         }
@@ -92,6 +99,15 @@ public class ImageUtils {
         return img;
     }
 
+    /**
+     * @param format
+     *            the requested mime type, never <code>null</code>
+     * @return true, if the format denotes a palette based (8bit) png
+     */
+    public static boolean isPng8bit( String format ) {
+        return format.equals( "image/png; mode=8bit" ) || format.equals( "image/png; subtype=8bit" );
+    }
+
     /**
      * @param img
      * @return a new 8bit image, quantized
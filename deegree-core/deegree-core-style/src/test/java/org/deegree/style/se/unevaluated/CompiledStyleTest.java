@@ -0,0 +1,218 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.style.se.unevaluated;
+
+import static java.util.Arrays.asList;
+import static org.deegree.commons.tom.primitive.BaseType.INTEGER;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.PrimitiveType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.utils.Triple;
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeature;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.PropertyType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.geometry.Geometry;
+import org.deegree.style.se.parser.SymbologyParser;
+import org.deegree.style.styling.LineStyling;
+import org.deegree.style.styling.Styling;
+import org.junit.Test;
+
+/**
+ * Checks that {@link CompiledStyle} yields the same stylings as {@link Style#evaluate(Feature, XPathEvaluator)}, for
+ * else rules, scale dependent rules and rules sharing comparisons.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CompiledStyleTest {
+
+    private static final QName CLASS = new QName( "class" );
+
+    private static final QName SIZE = new QName( "size" );
+
+    private static final QName NAME = new QName( "name" );
+
+    private static final SimplePropertyType CLASS_TYPE = new SimplePropertyType( CLASS, 0, 1, STRING, null, null );
+
+    private static final SimplePropertyType SIZE_TYPE = new SimplePropertyType( SIZE, 0, 1, INTEGER, null, null );
+
+    private static final SimplePropertyType NAME_TYPE = new SimplePropertyType( NAME, 0, 1, STRING, null, null );
+
+    private static final GenericFeatureType TYPE = new GenericFeatureType( new QName( "road" ),
+                                                                           asList( (PropertyType) CLASS_TYPE,
+                                                                                   SIZE_TYPE, NAME_TYPE ), false );
+
+    // resolves simple property names, which is all the test style uses
+    private static final XPathEvaluator<Feature> EVALUATOR = new XPathEvaluator<Feature>() {
+        @Override
+        public TypedObjectNode[] eval( Feature f, ValueReference valueRef ) {
+            List<Property> props = f.getProperties( valueRef.getAsQName() );
+            TypedObjectNode[] values = new TypedObjectNode[props.size()];
+            for ( int i = 0; i < values.length; ++i ) {
+                values[i] = props.get( i ).getValue();
+            }
+            return values;
+        }
+
+        @Override
+        public String getId( Feature f ) {
+            return f.getId();
+        }
+    };
+
+    @Test
+    public void testSmallScale()
+                            throws Exception {
+        Style style = parse().filter( 5000 );
+        assertWidths( style, feature( "a", 10 ), 1, 3, 4 );
+        assertWidths( style, feature( "a", 1 ), 2, 4 );
+        assertWidths( style, feature( "b", 1 ), 3, 4 );
+        assertWidths( style, feature( "c", 1 ), 4, 7 );
+        assertWidths( style, feature( "c", 10 ), 3, 4, 7 );
+    }
+
+    @Test
+    public void testLargeScale()
+                            throws Exception {
+        Style style = parse().filter( 50000 );
+        assertWidths( style, feature( "a", 10 ), 1, 3, 5 );
+        assertWidths( style, feature( "a", 1 ), 2, 5 );
+        assertWidths( style, feature( "b", 1 ), 3 );
+        // only the else rule and the label rule match
+        assertWidths( style, feature( "c", 1 ), 6, 7 );
+        assertWidths( style, feature( "c", 10 ), 3, 7 );
+    }
+
+    @Test
+    public void testReuseAcrossFeatures()
+                            throws Exception {
+        // shared comparison results must not leak from one feature to the next
+        Style style = parse().filter( 50000 );
+        CompiledStyle compiled = style.compile();
+        for ( int i = 0; i < 3; ++i ) {
+            for ( Feature f : asList( feature( "a", 10 ), feature( "a", 1 ), feature( "c", 1 ), feature( "b", 7 ) ) ) {
+                assertEquals( evaluate( style, f ), evaluate( compiled, f ) );
+            }
+        }
+    }
+
+    private static void assertWidths( Style style, Feature f, double... widths ) {
+        List<String> expected = evaluate( style, f );
+        assertEquals( expected, evaluate( style.compile(), f ) );
+        List<Double> actual = new ArrayList<Double>();
+        for ( String s : expected ) {
+            if ( s.startsWith( "line " ) ) {
+                actual.add( Double.valueOf( s.split( " " )[1] ) );
+            }
+        }
+        List<Double> list = new ArrayList<Double>();
+        for ( double w : widths ) {
+            list.add( w );
+        }
+        assertEquals( list, actual );
+    }
+
+    private static List<String> evaluate( Style style, Feature f ) {
+        List<String> list = new ArrayList<String>();
+        for ( Triple<Styling, LinkedList<Geometry>, String> t : style.evaluate( f, EVALUATOR ) ) {
+            list.add( describe( t.first, t.third ) );
+        }
+        return list;
+    }
+
+    private static List<String> evaluate( CompiledStyle style, Feature f ) {
+        final List<String> list = new ArrayList<String>();
+        style.evaluate( f, EVALUATOR, new StylingCallback() {
+            @Override
+            public void styling( Styling styling, LinkedList<Geometry> geometries, String text ) {
+                list.add( describe( styling, text ) );
+            }
+        } );
+        return list;
+    }
+
+    private static String describe( Styling styling, String text ) {
+        if ( styling instanceof LineStyling ) {
+            return "line " + ( (LineStyling) styling ).stroke.width + " " + text;
+        }
+        return styling.getClass().getSimpleName() + " " + text;
+    }
+
+    private static Feature feature( String cls, int size ) {
+        List<Property> props = new ArrayList<Property>();
+        props.add( new GenericProperty( CLASS_TYPE, new PrimitiveValue( cls, new PrimitiveType( STRING ) ) ) );
+        props.add( new GenericProperty( SIZE_TYPE, new PrimitiveValue( "" + size, new PrimitiveType( INTEGER ) ) ) );
+        props.add( new GenericProperty( NAME_TYPE, new PrimitiveValue( cls + size, new PrimitiveType( STRING ) ) ) );
+        return new GenericFeature( TYPE, null, props, null );
+    }
+
+    private static Style parse()
+                            throws Exception {
+        Class<CompiledStyleTest> cls = CompiledStyleTest.class;
+        String file = "compiledstyle.xml";
+        XMLInputFactory fac = XMLInputFactory.newInstance();
+        XMLStreamReader in = fac.createXMLStreamReader( cls.getResource( file ).toString(),
+                                                        cls.getResourceAsStream( file ) );
+        in.next();
+        return SymbologyParser.INSTANCE.parse( in );
+    }
+
+}
@@ -0,0 +1,104 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.style.utils;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_INDEXED;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ColorQuantizer}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ColorQuantizerTest {
+
+    @Test
+    public void testFewColorsArePreservedExactly() {
+        BufferedImage img = new BufferedImage( 40, 20, TYPE_INT_ARGB );
+        Graphics2D g = img.createGraphics();
+        g.setColor( new Color( 255, 0, 0, 128 ) );
+        g.fillRect( 0, 0, 10, 20 );
+        g.setColor( Color.BLUE );
+        g.fillRect( 10, 0, 10, 20 );
+        g.dispose();
+
+        BufferedImage res = new ColorQuantizer( 256, false ).quantize( img );
+
+        assertEquals( TYPE_BYTE_INDEXED, res.getType() );
+        assertEquals( img.getRGB( 5, 5 ), res.getRGB( 5, 5 ) );
+        assertEquals( Color.BLUE.getRGB(), res.getRGB( 15, 5 ) );
+        assertEquals( 0, res.getRGB( 30, 5 ) >>> 24 );
+    }
+
+    @Test
+    public void testPaletteSizeIsBounded() {
+        BufferedImage img = new BufferedImage( 256, 256, TYPE_INT_ARGB );
+        for ( int y = 0; y < 256; ++y ) {
+            for ( int x = 0; x < 256; ++x ) {
+                img.setRGB( x, y, 0xff000000 | ( x << 16 ) | ( y << 8 ) | ( ( x + y ) & 0xff ) );
+            }
+        }
+        for ( boolean dither : new boolean[] { false, true } ) {
+            BufferedImage res = new ColorQuantizer( 16, dither ).quantize( img );
+            assertTrue( ( (IndexColorModel) res.getColorModel() ).getMapSize() <= 16 );
+            assertEquals( 0xff, res.getRGB( 100, 100 ) >>> 24 );
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidNumberOfColors() {
+        new ColorQuantizer( 257, false );
+    }
+
+}
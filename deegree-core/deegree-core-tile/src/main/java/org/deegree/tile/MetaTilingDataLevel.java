@@ -0,0 +1,75 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile;
+
+/**
+ * A {@link TileDataLevel} that can fetch a block of adjacent tiles with a single backend request (a meta tile), eg. one
+ * WMS GetMap request covering several tiles. Besides saving requests, this avoids cut or repeated labels at the tile
+ * borders.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public interface MetaTilingDataLevel extends TileDataLevel {
+
+    /**
+     * Fetches a block of tiles with one request. Parts of the block outside of the level are not fetched.
+     * 
+     * @param minx
+     *            the column index of the upper left tile of the block
+     * @param miny
+     *            the row index of the upper left tile of the block
+     * @param columns
+     *            the number of tile columns of the block
+     * @param rows
+     *            the number of tile rows of the block
+     * @return the tiles of the block, indexed by [row][column], entries are <code>null</code> for tiles outside of the
+     *         level, never <code>null</code>
+     * @throws TileIOException
+     *             if fetching the tiles failed
+     */
+    Tile[][] getTiles( long minx, long miny, int columns, int rows )
+                            throws TileIOException;
+
+}
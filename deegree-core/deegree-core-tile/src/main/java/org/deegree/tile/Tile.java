@@ -84,6 +84,22 @@ public interface Tile {
     InputStream getAsStream()
                             throws TileIOException;
 
+    /**
+     * Returns a validator of the encoded tile data, which changes whenever the data changes. It is used as HTTP entity
+     * tag, so that clients can revalidate their copy of the tile without downloading it again.
+     * 
+     * @return the validator, may be <code>null</code> if it cannot be determined cheaply
+     * @throws TileIOException
+     *             if accessing the tile data failed
+     */
+    String getETag()
+                            throws TileIOException;
+
+    /**
+     * @return the time of the last modification of the tile data in milliseconds since the epoch, -1 if unknown
+     */
+    long getLastModified();
+
     /**
      * Returns the envelope of the tile data, specified from the outer bounds of the border pixels.
      * 
@@ -41,6 +41,11 @@
 
 package org.deegree.tile;
 
+import java.io.File;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.GeometryFactory;
 
@@ -119,4 +124,37 @@ public class Tiles {
         double miny = env.getMax().get1() - height * y;
         return GEOMETRY_FACTORY.createEnvelope( minx, miny - height, minx + width, miny, env.getCoordinateSystem() );
     }
+
+    /**
+     * Creates a tile validator (see {@link Tile#getETag()}) from the modification time and size of a file.
+     * 
+     * @param file
+     *            the file containing the tile data, never <code>null</code>
+     * @return the validator, <code>null</code> if the file does not exist
+     */
+    public static String createFileETag( File file ) {
+        long modified = file.lastModified();
+        if ( modified == 0 ) {
+            return null;
+        }
+        return Long.toHexString( modified ) + "-" + Long.toHexString( file.length() );
+    }
+
+    /**
+     * Creates a tile validator (see {@link Tile#getETag()}) from a hash of the encoded tile data.
+     * 
+     * @param data
+     *            the encoded tile data, never <code>null</code>
+     * @return the validator, never <code>null</code>
+     */
+    public static String createContentETag( byte[] data ) {
+        try {
+            byte[] hash = MessageDigest.getInstance( "MD5" ).digest( data );
+            return new BigInteger( 1, hash ).toString( 16 );
+        } catch ( NoSuchAlgorithmException e ) {
+            // MD5 is required to be available on every Java platform
+            throw new IllegalStateException( e );
+        }
+    }
+
 }
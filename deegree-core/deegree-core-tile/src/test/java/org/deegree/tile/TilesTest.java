@@ -0,0 +1,91 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile;
+
+import static org.deegree.tile.Tiles.createContentETag;
+import static org.deegree.tile.Tiles.createFileETag;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Tests the tile validators created by {@link Tiles}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class TilesTest {
+
+    @Test
+    public void testContentETag() {
+        byte[] data = { 1, 2, 3 };
+        assertEquals( createContentETag( data ), createContentETag( new byte[] { 1, 2, 3 } ) );
+        assertFalse( createContentETag( data ).equals( createContentETag( new byte[] { 1, 2, 4 } ) ) );
+    }
+
+    @Test
+    public void testFileETag()
+                            throws IOException {
+        File file = File.createTempFile( "tile", ".png" );
+        try {
+            String etag = createFileETag( file );
+            assertNotNull( etag );
+            FileOutputStream out = new FileOutputStream( file, true );
+            out.write( 1 );
+            out.close();
+            assertFalse( etag.equals( createFileETag( file ) ) );
+        } finally {
+            file.delete();
+        }
+        assertNull( createFileETag( file ) );
+    }
+
+}
@@ -136,4 +136,18 @@ public class BBoxTracker {
     public Set<QName> getRecalcFeatureTypes() {
         return recalcFts;
     }
+
+    /**
+     * Returns all tracked changes, suitable for {@link FeatureStoreChanges#fireChangesCommitted(FeatureStore, Map)}.
+     * 
+     * @return feature type names mapped to the envelope of the changes, or to <code>null</code> if the extent is
+     *         unknown, never <code>null</code>
+     */
+    public Map<QName, Envelope> getChanges() {
+        Map<QName, Envelope> changes = new HashMap<QName, Envelope>( increaseBBoxes );
+        for ( QName ft : recalcFts ) {
+            changes.put( ft, null );
+        }
+        return changes;
+    }
 }
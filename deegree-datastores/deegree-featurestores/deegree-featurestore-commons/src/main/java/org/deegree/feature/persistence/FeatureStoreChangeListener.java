@@ -0,0 +1,73 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence;
+
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.geometry.Envelope;
+
+/**
+ * Is notified about changes committed to {@link FeatureStore}s, see {@link FeatureStoreChanges}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public interface FeatureStoreChangeListener {
+
+    /**
+     * Called after a {@link FeatureStoreTransaction} has been committed successfully. Implementations must be
+     * thread-safe and should return quickly, as they're called in the committing thread.
+     * 
+     * @param store
+     *            the store that was changed, never <code>null</code>
+     * @param changes
+     *            the names of the changed feature types, mapped to the envelope of the changes (in the storage crs).
+     *            An envelope is <code>null</code> if the extent of the changes is unknown. If the map itself is
+     *            <code>null</code>, any feature type of the store may have changed.
+     */
+    void changesCommitted( FeatureStore store, Map<QName, Envelope> changes );
+
+}
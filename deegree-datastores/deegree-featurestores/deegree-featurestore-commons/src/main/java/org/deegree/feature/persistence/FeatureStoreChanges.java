@@ -0,0 +1,106 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.geometry.Envelope;
+import org.slf4j.Logger;
+
+/**
+ * Distributes notifications about committed {@link FeatureStoreTransaction}s to registered
+ * {@link FeatureStoreChangeListener}s, eg. to invalidate caches of rendered data.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class FeatureStoreChanges {
+
+    private static final Logger LOG = getLogger( FeatureStoreChanges.class );
+
+    private static final List<FeatureStoreChangeListener> listeners = new CopyOnWriteArrayList<FeatureStoreChangeListener>();
+
+    /**
+     * @param listener
+     *            will be notified about all subsequent commits, never <code>null</code>
+     */
+    public static void addListener( FeatureStoreChangeListener listener ) {
+        listeners.add( listener );
+    }
+
+    /**
+     * @param listener
+     *            will not be notified any more
+     */
+    public static void removeListener( FeatureStoreChangeListener listener ) {
+        listeners.remove( listener );
+    }
+
+    /**
+     * To be called by {@link FeatureStoreTransaction} implementations after a successful commit. Errors of listeners
+     * are logged and otherwise ignored.
+     * 
+     * @param store
+     *            the changed store, never <code>null</code>
+     * @param changes
+     *            see {@link FeatureStoreChangeListener#changesCommitted(FeatureStore, Map)}
+     */
+    public static void fireChangesCommitted( FeatureStore store, Map<QName, Envelope> changes ) {
+        for ( FeatureStoreChangeListener l : listeners ) {
+            try {
+                l.changesCommitted( store, changes );
+            } catch ( Throwable t ) {
+                LOG.warn( "Feature store change listener failed: {}", t.getLocalizedMessage() );
+                LOG.trace( "Stack trace:", t );
+            }
+        }
+    }
+
+}
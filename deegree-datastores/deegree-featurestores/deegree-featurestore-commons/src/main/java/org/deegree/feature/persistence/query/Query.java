@@ -80,7 +80,11 @@ public class Query {
         /** If present, the store can use a different LOD for the scale. */
         HINT_SCALE,
         /** If present, the store can simplify geometries according to the resolution. */
-        HINT_RESOLUTION
+        HINT_RESOLUTION,
+        /**
+         * If present, the time (as in {@link System#currentTimeMillis()}) after which the store should abort the query.
+         */
+        HINT_DEADLINE
     }
 
     private final TypeName[] typeNames;
@@ -194,6 +198,20 @@ public class Query {
         return hints.get( code );
     }
 
+    /**
+     * @param code
+     *            the hint to set, never <code>null</code>
+     * @param value
+     *            the value of the hint, <code>null</code> removes the hint
+     */
+    public void setHint( QueryHint code, Object value ) {
+        if ( value == null ) {
+            hints.remove( code );
+        } else {
+            hints.put( code, value );
+        }
+    }
+
     /**
      * Tries to extract a {@link BBOX} constraint from the query {@link Filter} that can be used as a pre-filtering step
      * to narrow the result set.
@@ -39,6 +39,8 @@ import static org.deegree.commons.utils.JDBCUtils.close;
 import static org.deegree.commons.xml.CommonNamespaces.OGCNS;
 import static org.deegree.commons.xml.CommonNamespaces.XLNNS;
 import static org.deegree.commons.xml.CommonNamespaces.XSINS;
+import static org.deegree.feature.persistence.query.Query.QueryHint.HINT_DEADLINE;
+import static org.deegree.feature.persistence.query.Query.QueryHint.HINT_RESOLUTION;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.lang.reflect.Constructor;
@@ -1220,6 +1222,7 @@ public class SQLFeatureStore implements FeatureStore {
 
             begin = System.currentTimeMillis();
             stmt.setFetchSize( fetchSize );
+            applyDeadline( stmt, query );
             rs = stmt.executeQuery();
             LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
 
@@ -1273,8 +1276,11 @@ public class SQLFeatureStore implements FeatureStore {
             LOG.debug( "WHERE clause: " + wb.getWhere() );
             LOG.debug( "ORDER BY clause: " + wb.getOrderBy() );
 
+            Object resolution = query.getHint( HINT_RESOLUTION );
             FeatureBuilder builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, ftTableAlias,
-                                                                   escalationPolicy );
+                                                                   escalationPolicy,
+                                                                   resolution == null ? -1 : (Double) resolution,
+                                                                   query.getPrefilterBBoxEnvelope() );
             List<String> columns = builder.getInitialSelectColumns();
 
             BlobMapping blobMapping = getSchema().getBlobMapping();
@@ -1335,6 +1341,7 @@ public class SQLFeatureStore implements FeatureStore {
 
             begin = System.currentTimeMillis();
             stmt.setFetchSize( fetchSize );
+            applyDeadline( stmt, query );
             rs = stmt.executeQuery();
             LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
 
@@ -1357,6 +1364,23 @@ public class SQLFeatureStore implements FeatureStore {
         return result;
     }
 
+    /**
+     * Lets the database cancel the statement if the query has a deadline hint.
+     */
+    private static void applyDeadline( PreparedStatement stmt, Query query )
+                            throws SQLException, FeatureStoreException {
+        Object deadline = query.getHint( HINT_DEADLINE );
+        if ( deadline == null ) {
+            return;
+        }
+        long remaining = (Long) deadline - System.currentTimeMillis();
+        if ( remaining <= 0 ) {
+            throw new FeatureStoreException( "The deadline of the query has passed." );
+        }
+        // the timeout is given in seconds, zero would mean no timeout at all
+        stmt.setQueryTimeout( (int) ( ( remaining + 999 ) / 1000 ) );
+    }
+
     private FeatureInputStream queryMultipleFts( Query[] queries, Envelope looseBBox )
                             throws FeatureStoreException {
 
@@ -1413,6 +1437,7 @@ public class SQLFeatureStore implements FeatureStore {
             LOG.debug( "Query: {}", sql );
             LOG.debug( "Prepared: {}", stmt );
 
+            applyDeadline( stmt, queries[0] );
             rs = stmt.executeQuery();
             FeatureBuilder builder = new FeatureBuilderBlob( this, blobMapping );
             result = new IteratorFeatureInputStream( new FeatureResultSetIterator( builder, rs, conn, stmt ) );
@@ -73,6 +73,7 @@ import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.persistence.BBoxTracker;
 import org.deegree.feature.persistence.FeatureInspector;
 import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreChanges;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
 import org.deegree.feature.persistence.lock.Lock;
@@ -184,6 +185,7 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
                 LOG.error( "Error closing connection/removing it from the pool." );
             }
         }
+        FeatureStoreChanges.fireChangesCommitted( fs, bboxTracker.getChanges() );
     }
 
     private void updateBBoxCache()
@@ -68,6 +68,7 @@ import org.deegree.commons.tom.sql.ParticleConverter;
 import org.deegree.commons.utils.Pair;
 import org.deegree.commons.xml.CommonNamespaces;
 import org.deegree.commons.xml.NamespaceBindings;
+import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.feature.Feature;
 import org.deegree.feature.persistence.sql.FeatureBuilder;
 import org.deegree.feature.persistence.sql.FeatureTypeMapping;
@@ -78,12 +79,15 @@ import org.deegree.feature.property.GenericProperty;
 import org.deegree.feature.types.AppSchemaGeometryHierarchy;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.filter.expression.ValueReference;
+import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.GeometryTransformer;
 import org.deegree.geometry.primitive.LineString;
 import org.deegree.geometry.primitive.Polygon;
 import org.deegree.geometry.primitive.patches.SurfacePatch;
 import org.deegree.geometry.primitive.segments.CurveSegment;
+import org.deegree.geometry.utils.GeometryParticleConverter;
 import org.deegree.sqldialect.filter.DBField;
 import org.deegree.sqldialect.filter.MappingExpression;
 import org.jaxen.expr.Expr;
@@ -127,6 +131,13 @@ public class FeatureBuilderRelational implements FeatureBuilder {
 
     private VoidEscalationPolicyType escalationPolicy;
 
+    private final double resolution;
+
+    private final Envelope bbox;
+
+    // generalization tolerances in units of the storage crs
+    private final Map<ICRS, Double> tolerances = new HashMap<ICRS, Double>();
+
     /**
      * Creates a new {@link FeatureBuilderRelational} instance.
      * 
@@ -143,6 +154,34 @@ public class FeatureBuilderRelational implements FeatureBuilder {
      */
     public FeatureBuilderRelational( SQLFeatureStore fs, FeatureType ft, FeatureTypeMapping ftMapping, Connection conn,
                                      String ftTableAlias, VoidEscalationPolicyType escalationPolicy ) {
+        this( fs, ft, ftMapping, conn, ftTableAlias, escalationPolicy, -1, null );
+    }
+
+    /**
+     * Creates a new {@link FeatureBuilderRelational} instance that selects geometries generalized for the given
+     * resolution.
+     * 
+     * @param fs
+     *            feature store, must not be <code>null</code>
+     * @param ft
+     *            feature type, must not be <code>null</code>
+     * @param ftMapping
+     *            feature type mapping, must not be <code>null</code>
+     * @param conn
+     *            JDBC connection (used for performing subsequent SELECTs), must not be <code>null</code>
+     * @param escalationPolicy
+     *            the void escalation policy, must not be <code>null</code>
+     * @param resolution
+     *            size of a pixel in units of the crs of the bbox, no generalization is performed if not positive
+     * @param bbox
+     *            the queried bbox, used to convert the resolution to the storage crs, no generalization is performed
+     *            if <code>null</code>
+     */
+    public FeatureBuilderRelational( SQLFeatureStore fs, FeatureType ft, FeatureTypeMapping ftMapping, Connection conn,
+                                     String ftTableAlias, VoidEscalationPolicyType escalationPolicy, double resolution,
+                                     Envelope bbox ) {
+        this.resolution = resolution;
+        this.bbox = bbox;
         this.fs = fs;
         this.ft = ft;
         this.ftMapping = ftMapping;
@@ -211,7 +250,7 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                 }
             } else if ( mapping instanceof GeometryMapping ) {
                 if ( particleConverter != null ) {
-                    addColumn( colToRsIdx, particleConverter.getSelectSnippet( tableAlias ) );
+                    addColumn( colToRsIdx, getGeometrySelectSnippet( particleConverter ) );
                 } else {
                     LOG.info( "Omitting mapping '" + mapping + "' from SELECT list. Not mapped to column.'" );
                 }
@@ -234,6 +273,41 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         }
     }
 
+    private String getGeometrySelectSnippet( ParticleConverter<?> converter ) {
+        if ( !( converter instanceof GeometryParticleConverter ) ) {
+            return converter.getSelectSnippet( tableAlias );
+        }
+        GeometryParticleConverter geomConverter = (GeometryParticleConverter) converter;
+        ICRS storageCrs = geomConverter.getCrs();
+        Double tolerance = tolerances.get( storageCrs );
+        if ( tolerance == null ) {
+            tolerance = getTolerance( storageCrs );
+            tolerances.put( storageCrs, tolerance );
+        }
+        return geomConverter.getSelectSnippet( tableAlias, tolerance );
+    }
+
+    private double getTolerance( ICRS storageCrs ) {
+        if ( resolution <= 0 || bbox == null ) {
+            return -1;
+        }
+        double res = resolution;
+        ICRS crs = bbox.getCoordinateSystem();
+        if ( crs != null && storageCrs != null && !crs.equals( storageCrs ) ) {
+            try {
+                Envelope env = new GeometryTransformer( storageCrs ).transform( bbox );
+                // compare areas, so swapped axes don't matter
+                res *= Math.sqrt( ( env.getSpan0() * env.getSpan1() ) / ( bbox.getSpan0() * bbox.getSpan1() ) );
+            } catch ( Throwable t ) {
+                LOG.debug( "Not generalizing geometries, resolution could not be transformed: {}",
+                           t.getLocalizedMessage() );
+                return -1;
+            }
+        }
+        // deviations of half a pixel are not visible
+        return res / 2;
+    }
+
     @Override
     public Feature buildFeature( ResultSet rs )
                             throws SQLException {
@@ -367,7 +441,7 @@ public class FeatureBuilderRelational implements FeatureBuilder {
             GeometryMapping pm = (GeometryMapping) mapping;
             MappingExpression me = pm.getMapping();
             if ( me instanceof DBField ) {
-                String col = converter.getSelectSnippet( tableAlias );
+                String col = getGeometrySelectSnippet( converter );
                 int colIndex = colToRsIdx.get( col );
                 particle = converter.toParticle( rs, colIndex );
                 Geometry geom = ( (Geometry) particle );
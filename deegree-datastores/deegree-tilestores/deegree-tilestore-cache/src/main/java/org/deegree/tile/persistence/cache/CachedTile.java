@@ -41,6 +41,7 @@
 
 package org.deegree.tile.persistence.cache;
 
+import static org.deegree.tile.Tiles.createContentETag;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.awt.image.BufferedImage;
@@ -50,10 +51,8 @@ import java.io.InputStream;
 
 import javax.imageio.ImageIO;
 
-import net.sf.ehcache.Cache;
 import net.sf.ehcache.Element;
 
-import org.apache.commons.io.IOUtils;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
 import org.deegree.tile.Tile;
@@ -75,15 +74,19 @@ public class CachedTile implements Tile {
 
     private final Tile tile;
 
-    private final Cache cache;
+    private final CachedTileLoader loader;
 
     private final String key;
 
     private byte[] data;
 
-    public CachedTile( Tile tile, Cache cache, String key ) {
+    private long lastModified = -1;
+
+    private String etag;
+
+    CachedTile( Tile tile, CachedTileLoader loader, String key ) {
         this.tile = tile;
-        this.cache = cache;
+        this.loader = loader;
         this.key = key;
     }
 
@@ -104,6 +107,22 @@ public class CachedTile implements Tile {
         return new ByteArrayInputStream( getData() );
     }
 
+    @Override
+    public String getETag()
+                            throws TileIOException {
+        getData();
+        return etag;
+    }
+
+    /**
+     * @return the time the tile data was put into the cache
+     */
+    @Override
+    public long getLastModified() {
+        getData();
+        return lastModified;
+    }
+
     @Override
     public Envelope getEnvelope() {
         return tile.getEnvelope();
@@ -117,23 +136,17 @@ public class CachedTile implements Tile {
 
     private synchronized byte[] getData() {
         if ( data == null ) {
-            Element elem = cache.get( key );
-            if ( elem == null ) {
-                try {
-                    InputStream is = tile.getAsStream();
-                    if ( is == null ) {
-                        data = new byte[] {};
-                    } else {
-                        data = IOUtils.toByteArray( is );
-                    }
-                    cache.put( new Element( key, data ) );
-                } catch ( IOException e ) {
-                    LOG.trace( e.getMessage(), e );
-                    throw new TileIOException( e.getMessage(), e );
-                }
+            Element elem = loader.load( key, tile );
+            Object value = elem.getObjectValue();
+            if ( value instanceof CachedTileData ) {
+                data = ( (CachedTileData) value ).getData();
+                etag = ( (CachedTileData) value ).getETag();
             } else {
-                data = (byte[]) elem.getValue();
+                // element of a disk store written by an older version
+                data = (byte[]) value;
+                etag = createContentETag( data );
             }
+            lastModified = elem.getCreationTime();
         }
         return data;
     }
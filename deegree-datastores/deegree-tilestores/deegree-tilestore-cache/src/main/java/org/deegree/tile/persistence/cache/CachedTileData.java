@@ -0,0 +1,88 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import static org.deegree.tile.Tiles.createContentETag;
+
+import java.io.Serializable;
+
+/**
+ * The value of a cache element of the {@link CachingTileStore}: the encoded tile data and its validator, which is
+ * computed once when the tile is put into the cache.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class CachedTileData implements Serializable {
+
+    private static final long serialVersionUID = -3127489262150389125L;
+
+    private final byte[] data;
+
+    private final String etag;
+
+    /**
+     * @param data
+     *            the encoded tile data, an empty array if the tile has no data, never <code>null</code>
+     */
+    CachedTileData( byte[] data ) {
+        this.data = data;
+        this.etag = createContentETag( data );
+    }
+
+    /**
+     * @return the encoded tile data, never <code>null</code>
+     */
+    byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return the hash of the tile data, never <code>null</code>
+     */
+    String getETag() {
+        return etag;
+    }
+
+}
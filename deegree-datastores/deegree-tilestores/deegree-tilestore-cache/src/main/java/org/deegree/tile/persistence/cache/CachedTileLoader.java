@@ -0,0 +1,211 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+import static org.apache.commons.io.IOUtils.toByteArray;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileIOException;
+import org.slf4j.Logger;
+
+/**
+ * Loads the data of cached tiles, fetching missing tiles from the backend tile. Concurrent misses for the same key
+ * share one backend fetch, and the number of concurrent backend fetches can be limited. If the thread doing a shared
+ * fetch is interrupted, the threads waiting for it retry instead of failing. Tiles without data (no or an empty stream)
+ * can be cached with a separate time to live.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class CachedTileLoader {
+
+    private static final Logger LOG = getLogger( CachedTileLoader.class );
+
+    private final Cache cache;
+
+    private final ConcurrentMap<String, FutureTask<Element>> loads;
+
+    private final Semaphore permits;
+
+    private final int noDataTimeToLive;
+
+    /**
+     * @param cache
+     *            the cache to use, never <code>null</code>
+     * @param maxConcurrentLoads
+     *            the maximum number of concurrent backend fetches, -1 for no limit
+     * @param noDataTimeToLive
+     *            the time to live in seconds of cached tiles without data, 0 to not cache them, -1 to use the settings
+     *            of the cache
+     */
+    CachedTileLoader( Cache cache, int maxConcurrentLoads, int noDataTimeToLive ) {
+        this.cache = cache;
+        this.loads = new ConcurrentHashMap<String, FutureTask<Element>>();
+        this.permits = maxConcurrentLoads > 0 ? new Semaphore( maxConcurrentLoads, true ) : null;
+        this.noDataTimeToLive = noDataTimeToLive;
+    }
+
+    /**
+     * @param key
+     *            the cache key of the tile, never <code>null</code>
+     * @param tile
+     *            the backend tile to fetch the data from on a cache miss, never <code>null</code>
+     * @return the cache element holding the {@link CachedTileData} of the tile, never <code>null</code>
+     * @throws TileIOException
+     *             if fetching the tile failed
+     */
+    Element load( final String key, final Tile tile )
+                            throws TileIOException {
+        while ( true ) {
+            Element elem = cache.get( key );
+            if ( elem != null ) {
+                return elem;
+            }
+
+            FutureTask<Element> task = new FutureTask<Element>( new Callable<Element>() {
+                @Override
+                public Element call()
+                                        throws Exception {
+                    return fetch( key, tile );
+                }
+            } );
+            FutureTask<Element> running = loads.putIfAbsent( key, task );
+            if ( running == null ) {
+                try {
+                    task.run();
+                } finally {
+                    loads.remove( key, task );
+                }
+                running = task;
+            } else {
+                LOG.trace( "Waiting for concurrent load of tile {}.", key );
+            }
+
+            try {
+                return running.get();
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new TileIOException( "Interrupted while loading tile " + key + ".", e );
+            } catch ( ExecutionException e ) {
+                Throwable cause = e.getCause();
+                if ( running != task && isInterruption( cause ) ) {
+                    // the interrupt was meant for the thread that started the load, not for this one
+                    LOG.trace( "Concurrent load of tile {} was interrupted, retrying.", key );
+                    continue;
+                }
+                if ( cause instanceof TileIOException ) {
+                    throw (TileIOException) cause;
+                }
+                LOG.trace( cause.getMessage(), cause );
+                throw new TileIOException( cause.getMessage(), cause );
+            }
+        }
+    }
+
+    private static boolean isInterruption( Throwable t ) {
+        while ( t != null ) {
+            if ( t instanceof InterruptedException || t instanceof InterruptedIOException
+                 || t instanceof ClosedByInterruptException ) {
+                return true;
+            }
+            t = t.getCause();
+        }
+        return false;
+    }
+
+    private Element fetch( String key, Tile tile )
+                            throws IOException, InterruptedException {
+        // a concurrent load may have finished after the first lookup
+        Element elem = cache.get( key );
+        if ( elem != null ) {
+            return elem;
+        }
+
+        if ( permits != null ) {
+            permits.acquire();
+        }
+        byte[] data;
+        try {
+            InputStream is = tile.getAsStream();
+            try {
+                data = is == null ? new byte[] {} : toByteArray( is );
+            } finally {
+                closeQuietly( is );
+            }
+        } finally {
+            if ( permits != null ) {
+                permits.release();
+            }
+        }
+
+        elem = new Element( key, new CachedTileData( data ) );
+        if ( data.length == 0 ) {
+            if ( noDataTimeToLive == 0 ) {
+                return elem;
+            }
+            if ( noDataTimeToLive > 0 ) {
+                elem.setTimeToLive( noDataTimeToLive );
+            }
+        }
+        cache.put( elem );
+        return elem;
+    }
+
+}
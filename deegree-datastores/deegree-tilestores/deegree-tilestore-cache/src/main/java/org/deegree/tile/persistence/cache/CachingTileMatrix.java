@@ -41,8 +41,6 @@
 
 package org.deegree.tile.persistence.cache;
 
-import net.sf.ehcache.Cache;
-
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileMatrix;
@@ -60,13 +58,13 @@ public class CachingTileMatrix implements TileDataLevel {
 
     private final TileDataLevel tileMatrix;
 
-    private final Cache cache;
+    private final CachedTileLoader loader;
 
     private final String identifier;
 
-    public CachingTileMatrix( TileDataLevel tileMatrix, Cache cache ) {
+    CachingTileMatrix( TileDataLevel tileMatrix, CachedTileLoader loader ) {
         this.tileMatrix = tileMatrix;
-        this.cache = cache;
+        this.loader = loader;
         this.identifier = tileMatrix.getMetadata().getIdentifier();
     }
 
@@ -78,8 +76,11 @@ public class CachingTileMatrix implements TileDataLevel {
     @Override
     public Tile getTile( long x, long y ) {
         Tile tile = tileMatrix.getTile( x, y );
-        String key = identifier + "_" + x + "_" + y;
-        return new CachedTile( tile, cache, key );
+        if ( tile == null ) {
+            return null;
+        }
+        String key = CachingTileStore.createKey( identifier, x, y );
+        return new CachedTile( tile, loader, key );
     }
 
 }
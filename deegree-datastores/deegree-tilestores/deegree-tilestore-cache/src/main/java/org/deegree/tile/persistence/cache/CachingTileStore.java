@@ -77,16 +77,38 @@ public class CachingTileStore implements TileStore {
 
     private final Cache cache;
 
+    private final CachedTileLoader loader;
+
     private Map<String, TileDataSet> tileMatrixSets;
 
     private ResourceMetadata<TileStore> metadata;
 
     public CachingTileStore( TileStore tileStore, CacheManager cacheManager, String cacheName,
                              ResourceMetadata<TileStore> metadata ) {
+        this( tileStore, cacheManager, cacheName, metadata, -1, -1 );
+    }
+
+    /**
+     * @param tileStore
+     *            the tile store to cache, never <code>null</code>
+     * @param cacheManager
+     *            never <code>null</code>
+     * @param cacheName
+     *            the name of the cache to use, never <code>null</code>
+     * @param metadata
+     * @param maxConcurrentLoads
+     *            the maximum number of tiles fetched concurrently from the cached tile store, -1 for no limit
+     * @param noDataTimeToLive
+     *            the time to live in seconds of cached tiles without data, 0 to not cache them, -1 to use the settings
+     *            of the cache
+     */
+    public CachingTileStore( TileStore tileStore, CacheManager cacheManager, String cacheName,
+                             ResourceMetadata<TileStore> metadata, int maxConcurrentLoads, int noDataTimeToLive ) {
         this.tileStore = tileStore;
         this.cacheManager = cacheManager;
         this.metadata = metadata;
         this.cache = cacheManager.getCache( cacheName );
+        this.loader = new CachedTileLoader( cache, maxConcurrentLoads, noDataTimeToLive );
     }
 
     @Override
@@ -97,7 +119,7 @@ public class CachingTileStore implements TileStore {
             TileDataSet cachedDataset = tileStore.getTileDataSet( id );
             List<TileDataLevel> list = new ArrayList<TileDataLevel>();
             for ( TileDataLevel tm : cachedDataset.getTileDataLevels() ) {
-                list.add( new CachingTileMatrix( tm, cache ) );
+                list.add( new CachingTileMatrix( tm, loader ) );
             }
             TileDataSet cachingDataset = new DefaultTileDataSet( list, cachedDataset.getTileMatrixSet(),
                                                                  cachedDataset.getNativeImageFormat() );
@@ -155,7 +177,7 @@ public class CachingTileStore implements TileStore {
                 String id = tm.getMetadata().getIdentifier();
                 for ( long x = ts[0]; x <= ts[2]; ++x ) {
                     for ( long y = ts[1]; y <= ts[3]; ++y ) {
-                        if ( cache.remove( id + "_" + x + "_" + y ) ) {
+                        if ( cache.remove( createKey( id, x, y ) ) ) {
                             ++cnt;
                         }
                     }
@@ -165,9 +187,16 @@ public class CachingTileStore implements TileStore {
         return cnt;
     }
 
+    /**
+     * The returned transaction puts tiles directly into the cache, bypassing the cached tile store.
+     */
     @Override
     public TileStoreTransaction acquireTransaction( String id ) {
-        throw new UnsupportedOperationException( "CachingTileStore does not support transactions." );
+        return new CachingTileStoreTransaction( this, id, cache );
+    }
+
+    static String createKey( String tileDataLevel, long x, long y ) {
+        return tileDataLevel + "_" + x + "_" + y;
     }
 
     @Override
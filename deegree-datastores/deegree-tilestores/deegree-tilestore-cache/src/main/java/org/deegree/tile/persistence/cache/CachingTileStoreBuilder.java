@@ -72,7 +72,10 @@ public class CachingTileStoreBuilder implements ResourceBuilder<TileStore> {
 
             TileStore tileStore = workspace.getResource( TileStoreProvider.class, cfg.getTileStoreId() );
 
-            return new CachingTileStore( tileStore, cmgr, cfg.getCacheName(), metadata );
+            int maxLoads = cfg.getMaxConcurrentLoads() == null ? -1 : cfg.getMaxConcurrentLoads();
+            int noDataTtl = cfg.getNoDataTimeToLive() == null ? -1 : cfg.getNoDataTimeToLive();
+
+            return new CachingTileStore( tileStore, cmgr, cfg.getCacheName(), metadata, maxLoads, noDataTtl );
         } catch ( Exception e ) {
             throw new ResourceInitException( "Unable to create tile store.", e );
         }
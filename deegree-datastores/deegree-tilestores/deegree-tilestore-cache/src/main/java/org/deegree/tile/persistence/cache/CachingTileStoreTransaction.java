@@ -0,0 +1,96 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+import static org.apache.commons.io.IOUtils.toByteArray;
+import static org.deegree.tile.persistence.cache.CachingTileStore.createKey;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileIOException;
+import org.deegree.tile.persistence.AbstractTileStoreTransaction;
+
+/**
+ * {@link org.deegree.tile.persistence.TileStoreTransaction} for the {@link CachingTileStore}, puts tiles directly into
+ * the cache (eg. when seeding).
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class CachingTileStoreTransaction extends AbstractTileStoreTransaction {
+
+    private final Cache cache;
+
+    CachingTileStoreTransaction( CachingTileStore store, String id, Cache cache ) {
+        super( store, id );
+        this.cache = cache;
+    }
+
+    @Override
+    public void put( String tileDataLevel, Tile tile, long x, long y )
+                            throws TileIOException {
+        InputStream is = tile.getAsStream();
+        try {
+            byte[] data = is == null ? new byte[] {} : toByteArray( is );
+            cache.put( new Element( createKey( tileDataLevel, x, y ), new CachedTileData( data ) ) );
+        } catch ( IOException e ) {
+            throw new TileIOException( "Error reading tile: " + e.getMessage(), e );
+        } finally {
+            closeQuietly( is );
+        }
+    }
+
+    @Override
+    public void delete( String tileDataLevel, long x, long y )
+                            throws TileIOException {
+        cache.remove( createKey( tileDataLevel, x, y ) );
+    }
+
+}
@@ -0,0 +1,92 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.seeding;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Spreads backend requests of the {@link TileSeeder} evenly over time, so seeding does not overload the backend.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class RateLimiter {
+
+    private final long interval;
+
+    private long next = System.nanoTime();
+
+    /**
+     * @param permitsPerSecond
+     *            the maximum number of permits per second, zero or negative for no limit
+     */
+    RateLimiter( double permitsPerSecond ) {
+        interval = permitsPerSecond > 0 ? (long) ( 1000000000 / permitsPerSecond ) : 0;
+    }
+
+    /**
+     * Blocks until the next permit is available.
+     * 
+     * @throws InterruptedException
+     */
+    void acquire()
+                            throws InterruptedException {
+        if ( interval == 0 ) {
+            return;
+        }
+        long wait;
+        synchronized ( this ) {
+            long now = System.nanoTime();
+            if ( next - now < 0 ) {
+                next = now;
+            }
+            wait = next - now;
+            next += interval;
+        }
+        if ( wait > 0 ) {
+            NANOSECONDS.sleep( wait );
+        }
+    }
+
+}
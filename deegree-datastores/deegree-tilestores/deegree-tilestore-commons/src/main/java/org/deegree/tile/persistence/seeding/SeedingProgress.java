@@ -0,0 +1,187 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.seeding;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of a {@link TileSeeder} run. Completed rows of (meta) tiles are appended to a progress file, so an
+ * interrupted seeding job can be resumed by running it again with the same progress file.
+ * <p>
+ * The first line of the progress file contains a signature of the job (eg. the tile store, levels, area and meta tile
+ * size), it must only be used to resume the very same job.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SeedingProgress {
+
+    private final Set<String> done = Collections.synchronizedSet( new HashSet<String>() );
+
+    private final AtomicLong seeded = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong skipped = new AtomicLong();
+
+    private PrintWriter writer;
+
+    /**
+     * Creates a progress that is not persisted.
+     */
+    public SeedingProgress() {
+        // nothing to read
+    }
+
+    /**
+     * @param file
+     *            the progress file, if it exists, the rows recorded in it are skipped, must not be <code>null</code>
+     * @param signature
+     *            the signature of the seeding job, must not be <code>null</code>
+     * @throws IOException
+     *             if the progress file could not be read or written, or belongs to a different job
+     */
+    public SeedingProgress( File file, String signature ) throws IOException {
+        String header = "# " + signature.replaceAll( "\\s+", " " );
+        boolean resume = file.exists() && file.length() > 0;
+        if ( resume ) {
+            BufferedReader in = new BufferedReader( new InputStreamReader( new FileInputStream( file ), "UTF-8" ) );
+            try {
+                if ( !header.equals( in.readLine() ) ) {
+                    throw new IOException( "The progress file " + file + " belongs to a different seeding job." );
+                }
+                String line;
+                while ( ( line = in.readLine() ) != null ) {
+                    if ( !line.trim().isEmpty() ) {
+                        done.add( line.trim() );
+                    }
+                }
+            } finally {
+                closeQuietly( in );
+            }
+        }
+        writer = new PrintWriter( new OutputStreamWriter( new FileOutputStream( file, true ), "UTF-8" ) );
+        if ( !resume ) {
+            writer.println( header );
+            writer.flush();
+        }
+    }
+
+    /**
+     * @param level
+     *            the tile data level identifier
+     * @param row
+     *            the index of the first tile row
+     * @return true, if the row has been completed already
+     */
+    public boolean isDone( String level, long row ) {
+        return done.contains( level + " " + row );
+    }
+
+    void rowDone( String level, long row ) {
+        String key = level + " " + row;
+        synchronized ( this ) {
+            if ( done.add( key ) && writer != null ) {
+                writer.println( key );
+                writer.flush();
+            }
+        }
+    }
+
+    void tilesSeeded( long num ) {
+        seeded.addAndGet( num );
+    }
+
+    void tilesFailed( long num ) {
+        failed.addAndGet( num );
+    }
+
+    void tilesSkipped( long num ) {
+        skipped.addAndGet( num );
+    }
+
+    /**
+     * @return the number of tiles seeded so far
+     */
+    public long getSeeded() {
+        return seeded.get();
+    }
+
+    /**
+     * @return the number of tiles that could not be seeded
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return the number of tiles skipped because their row was completed by a previous run
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * Closes the progress file.
+     */
+    public synchronized void close() {
+        closeQuietly( writer );
+        writer = null;
+    }
+
+}
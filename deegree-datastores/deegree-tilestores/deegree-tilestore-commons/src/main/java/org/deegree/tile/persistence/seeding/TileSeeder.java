@@ -0,0 +1,351 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.seeding;
+
+import static java.lang.Math.min;
+import static org.apache.commons.io.IOUtils.closeQuietly;
+import static org.deegree.commons.utils.ArrayUtils.splitAsDoubles;
+import static org.deegree.tile.Tiles.calcTileEnvelope;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.io.WKTReader;
+import org.deegree.tile.MetaTilingDataLevel;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.TileMatrix;
+import org.deegree.tile.Tiles;
+import org.deegree.tile.persistence.TileStoreTransaction;
+import org.slf4j.Logger;
+
+import com.vividsolutions.jts.io.ParseException;
+
+/**
+ * Pre-generates the tiles of a {@link TileDataSet} within an area, using a number of worker threads.
+ * <p>
+ * The tiles are either put into a {@link TileStoreTransaction} (eg. to fill a file system tile store from a remote WMS
+ * tile store), or, if no transaction is given, just fetched from the data set (eg. to warm up a caching tile store).
+ * Levels are processed row by row of blocks of <code>metaTileSize</code> x <code>metaTileSize</code> tiles, completed
+ * rows are recorded in the {@link SeedingProgress}. If a level supports it (see {@link MetaTilingDataLevel}), each
+ * block is fetched with a single backend request.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class TileSeeder {
+
+    private static final Logger LOG = getLogger( TileSeeder.class );
+
+    private final TileDataSet dataSet;
+
+    private final TileStoreTransaction transaction;
+
+    private final int threads;
+
+    private final RateLimiter limiter;
+
+    private final int metaTileSize;
+
+    /**
+     * @param dataSet
+     *            the data set to fetch the tiles from, must not be <code>null</code>
+     * @param transaction
+     *            the transaction to put the tiles into, may be <code>null</code> in which case the tiles are only
+     *            fetched
+     * @param threads
+     *            the number of worker threads, must be positive
+     * @param maxRequestsPerSecond
+     *            the maximum number of backend requests per second, zero or negative for no limit
+     * @param metaTileSize
+     *            the number of tiles per side of the blocks, 1 disables meta tiling
+     */
+    public TileSeeder( TileDataSet dataSet, TileStoreTransaction transaction, int threads, double maxRequestsPerSecond,
+                       int metaTileSize ) {
+        if ( threads < 1 || metaTileSize < 1 ) {
+            throw new IllegalArgumentException( "The number of threads and the meta tile size must be positive." );
+        }
+        this.dataSet = dataSet;
+        this.transaction = transaction;
+        this.threads = threads;
+        this.limiter = new RateLimiter( maxRequestsPerSecond );
+        this.metaTileSize = metaTileSize;
+    }
+
+    /**
+     * Seeds the tiles of the given levels which intersect the area. Returns after all tiles have been processed, tiles
+     * that fail are logged and counted in the progress.
+     * 
+     * @param levels
+     *            the identifiers of the levels to seed, <code>null</code> for all levels
+     * @param area
+     *            the area to seed, in the crs of the tile matrix set, <code>null</code> for the whole extent
+     * @param progress
+     *            the progress to record completed rows in and skip rows already completed, must not be
+     *            <code>null</code>
+     * @throws InterruptedException
+     *             if interrupted while waiting for the workers, the workers are interrupted as well
+     */
+    public void seed( List<String> levels, final Geometry area, final SeedingProgress progress )
+                            throws InterruptedException {
+        List<TileDataLevel> list = new ArrayList<TileDataLevel>();
+        if ( levels == null ) {
+            list.addAll( dataSet.getTileDataLevels() );
+        } else {
+            for ( String id : levels ) {
+                TileDataLevel level = dataSet.getTileDataLevel( id );
+                if ( level == null ) {
+                    throw new IllegalArgumentException( "The tile data set has no level " + id + "." );
+                }
+                list.add( level );
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try {
+            for ( final TileDataLevel level : list ) {
+                TileMatrix md = level.getMetadata();
+                final long[] range;
+                if ( area == null ) {
+                    range = new long[] { 0, 0, md.getNumTilesX() - 1, md.getNumTilesY() - 1 };
+                } else {
+                    range = Tiles.getTileIndexRange( level, area.getEnvelope() );
+                    if ( range == null ) {
+                        continue;
+                    }
+                }
+                LOG.info( "Seeding tile rows {} to {} of level {}.",
+                          new Object[] { range[1], range[3], md.getIdentifier() } );
+                for ( long row = range[1]; row <= range[3]; row += metaTileSize ) {
+                    final long miny = row;
+                    final long maxy = min( row + metaTileSize - 1, range[3] );
+                    if ( progress.isDone( md.getIdentifier(), miny ) ) {
+                        progress.tilesSkipped( ( range[2] - range[0] + 1 ) * ( maxy - miny + 1 ) );
+                        continue;
+                    }
+                    executor.execute( new Runnable() {
+                        @Override
+                        public void run() {
+                            seedRow( level, range[0], range[2], miny, maxy, area, progress );
+                        }
+                    } );
+                }
+            }
+            executor.shutdown();
+            executor.awaitTermination( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void seedRow( TileDataLevel level, long minx, long maxx, long miny, long maxy, Geometry area,
+                          SeedingProgress progress ) {
+        String id = level.getMetadata().getIdentifier();
+        boolean complete = true;
+        try {
+            for ( long x = minx; x <= maxx; x += metaTileSize ) {
+                long blockMaxx = min( x + metaTileSize - 1, maxx );
+                complete &= seedBlock( level, x, blockMaxx, miny, maxy, area, progress );
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if ( complete ) {
+            progress.rowDone( id, miny );
+            LOG.debug( "Seeded tile rows {} to {} of level {}.", new Object[] { miny, maxy, id } );
+        }
+    }
+
+    private boolean seedBlock( TileDataLevel level, long minx, long maxx, long miny, long maxy, Geometry area,
+                               SeedingProgress progress )
+                            throws InterruptedException {
+        TileMatrix md = level.getMetadata();
+        int columns = (int) ( maxx - minx + 1 );
+        int rows = (int) ( maxy - miny + 1 );
+        boolean[][] needed = new boolean[rows][columns];
+        int count = 0;
+        for ( int row = 0; row < rows; ++row ) {
+            for ( int col = 0; col < columns; ++col ) {
+                needed[row][col] = area == null || area.intersects( calcTileEnvelope( md, minx + col, miny + row ) );
+                count += needed[row][col] ? 1 : 0;
+            }
+        }
+        if ( count == 0 ) {
+            return true;
+        }
+
+        if ( metaTileSize > 1 && level instanceof MetaTilingDataLevel ) {
+            limiter.acquire();
+            Tile[][] tiles;
+            try {
+                tiles = ( (MetaTilingDataLevel) level ).getTiles( minx, miny, columns, rows );
+            } catch ( Exception e ) {
+                fail( md, minx, miny, e );
+                progress.tilesFailed( count );
+                return false;
+            }
+            boolean complete = true;
+            for ( int row = 0; row < rows; ++row ) {
+                for ( int col = 0; col < columns; ++col ) {
+                    if ( needed[row][col] && tiles[row][col] != null ) {
+                        complete &= store( md, tiles[row][col], minx + col, miny + row, progress );
+                    }
+                }
+            }
+            return complete;
+        }
+
+        boolean complete = true;
+        for ( int row = 0; row < rows; ++row ) {
+            for ( int col = 0; col < columns; ++col ) {
+                if ( needed[row][col] ) {
+                    limiter.acquire();
+                    Tile tile = level.getTile( minx + col, miny + row );
+                    if ( tile != null ) {
+                        complete &= store( md, tile, minx + col, miny + row, progress );
+                    }
+                }
+            }
+        }
+        return complete;
+    }
+
+    private boolean store( TileMatrix md, Tile tile, long x, long y, SeedingProgress progress ) {
+        try {
+            if ( transaction != null ) {
+                transaction.put( md.getIdentifier(), tile, x, y );
+            } else {
+                InputStream in = tile.getAsStream();
+                closeQuietly( in );
+            }
+            progress.tilesSeeded( 1 );
+            return true;
+        } catch ( Exception e ) {
+            fail( md, x, y, e );
+            progress.tilesFailed( 1 );
+            return false;
+        }
+    }
+
+    /**
+     * Selects levels of a data set.
+     * 
+     * @param dataSet
+     *            the data set, must not be <code>null</code>
+     * @param levels
+     *            comma separated level identifiers or ranges of level identifiers (<code>from..to</code>, in the order
+     *            of the tile matrix set), may be <code>null</code>
+     * @return the selected level identifiers, <code>null</code> for all levels
+     * @throws IllegalArgumentException
+     *             if a level does not exist or a range is empty
+     */
+    public static List<String> parseLevels( TileDataSet dataSet, String levels ) {
+        if ( levels == null || levels.trim().isEmpty() ) {
+            return null;
+        }
+        List<String> ids = new ArrayList<String>();
+        for ( TileDataLevel level : dataSet.getTileDataLevels() ) {
+            ids.add( level.getMetadata().getIdentifier() );
+        }
+        List<String> list = new ArrayList<String>();
+        for ( String range : levels.split( "," ) ) {
+            int idx = range.indexOf( ".." );
+            int from = ids.indexOf( ( idx == -1 ? range : range.substring( 0, idx ) ).trim() );
+            int to = ids.indexOf( ( idx == -1 ? range : range.substring( idx + 2 ) ).trim() );
+            if ( from == -1 || to < from ) {
+                throw new IllegalArgumentException( "The level range " + range.trim() + " is invalid." );
+            }
+            list.addAll( ids.subList( from, to + 1 ) );
+        }
+        return list;
+    }
+
+    /**
+     * Parses the area to seed.
+     * 
+     * @param dataSet
+     *            the data set, must not be <code>null</code>
+     * @param area
+     *            a bounding box (<code>minx,miny,maxx,maxy</code>) or a WKT geometry, in the crs of the tile matrix
+     *            set, may be <code>null</code>
+     * @return the area, <code>null</code> for the whole extent
+     * @throws ParseException
+     *             if the WKT geometry could not be parsed
+     * @throws IllegalArgumentException
+     *             if the bounding box is invalid
+     */
+    public static Geometry parseArea( TileDataSet dataSet, String area )
+                            throws ParseException {
+        if ( area == null || area.trim().isEmpty() ) {
+            return null;
+        }
+        ICRS crs = dataSet.getTileMatrixSet().getSpatialMetadata().getCoordinateSystems().get( 0 );
+        if ( Character.isLetter( area.trim().charAt( 0 ) ) ) {
+            return new WKTReader( crs ).read( area );
+        }
+        double[] bbox = splitAsDoubles( area, "," );
+        if ( bbox.length != 4 ) {
+            throw new IllegalArgumentException( "The bounding box " + area + " must have four coordinates." );
+        }
+        return new GeometryFactory().createEnvelope( bbox[0], bbox[1], bbox[2], bbox[3], crs );
+    }
+
+    private static void fail( TileMatrix md, long x, long y, Exception e ) {
+        LOG.warn( "Could not seed tile {}/{} of level {}: {}",
+                  new Object[] { x, y, md.getIdentifier(), e.getLocalizedMessage() } );
+        LOG.trace( "Stack trace:", e );
+    }
+
+}
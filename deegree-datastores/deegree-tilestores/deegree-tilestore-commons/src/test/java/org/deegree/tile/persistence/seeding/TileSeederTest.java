@@ -0,0 +1,311 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.seeding;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.deegree.tile.persistence.seeding.TileSeeder.parseLevels;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.metadata.SpatialMetadata;
+import org.deegree.tile.DefaultTileDataSet;
+import org.deegree.tile.MetaTilingDataLevel;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileIOException;
+import org.deegree.tile.TileMatrix;
+import org.deegree.tile.persistence.TileStoreTransaction;
+import org.junit.Test;
+
+/**
+ * Tests seeding with the {@link TileSeeder}, including meta tiling and resuming.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class TileSeederTest {
+
+    private static final GeometryFactory FAC = new GeometryFactory();
+
+    private static final Envelope EXTENT = FAC.createEnvelope( 0, 0, 40, 40, null );
+
+    // 4 x 4 tiles of 10 x 10 units
+    private static final TileMatrix MATRIX = new TileMatrix( "0", new SpatialMetadata( EXTENT, null ), 256, 256,
+                                                             10.0 / 256, 4, 4 );
+
+    @Test
+    public void testSeedWholeLevel()
+                            throws InterruptedException {
+        TestLevel level = new TestLevel( -1, -1 );
+        RecordingTransaction ta = new RecordingTransaction();
+        SeedingProgress progress = new SeedingProgress();
+        seeder( level, ta, 1 ).seed( null, null, progress );
+        assertEquals( 16, ta.tiles.size() );
+        assertEquals( 16, level.requests.get() );
+        assertEquals( 16, progress.getSeeded() );
+        assertEquals( 0, progress.getFailed() );
+    }
+
+    @Test
+    public void testSeedArea()
+                            throws InterruptedException {
+        TestLevel level = new TestLevel( -1, -1 );
+        RecordingTransaction ta = new RecordingTransaction();
+        Envelope area = FAC.createEnvelope( 1, 31, 9, 39, null );
+        seeder( level, ta, 1 ).seed( singletonList( "0" ), area, new SeedingProgress() );
+        assertEquals( Collections.singleton( "0_0" ), ta.tiles );
+    }
+
+    @Test
+    public void testSeedMetaTiles()
+                            throws InterruptedException {
+        TestLevel level = new TestMetaTilingLevel();
+        RecordingTransaction ta = new RecordingTransaction();
+        seeder( level, ta, 2 ).seed( null, null, new SeedingProgress() );
+        assertEquals( 16, ta.tiles.size() );
+        assertEquals( 4, level.requests.get() );
+    }
+
+    @Test
+    public void testResume()
+                            throws InterruptedException, IOException {
+        File file = File.createTempFile( "seeding", ".progress" );
+        file.delete();
+        try {
+            TestLevel level = new TestLevel( 1, 2 );
+            RecordingTransaction ta = new RecordingTransaction();
+            SeedingProgress progress = new SeedingProgress( file, "job" );
+            seeder( level, ta, 1 ).seed( null, null, progress );
+            progress.close();
+            assertEquals( 15, progress.getSeeded() );
+            assertEquals( 1, progress.getFailed() );
+
+            level = new TestLevel( -1, -1 );
+            ta = new RecordingTransaction();
+            progress = new SeedingProgress( file, "job" );
+            seeder( level, ta, 1 ).seed( null, null, progress );
+            progress.close();
+            assertEquals( 4, progress.getSeeded() );
+            assertEquals( 12, progress.getSkipped() );
+            assertTrue( ta.tiles.contains( "1_2" ) );
+            assertTrue( progress.isDone( "0", 2 ) );
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testResumeOtherJob()
+                            throws IOException {
+        File file = File.createTempFile( "seeding", ".progress" );
+        try {
+            new SeedingProgress( file, "job" ).close();
+            new SeedingProgress( file, "other job" );
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testParseLevels() {
+        List<TileDataLevel> levels = new ArrayList<TileDataLevel>();
+        for ( String id : asList( "a", "b", "c", "d" ) ) {
+            levels.add( new TestLevel( new TileMatrix( id, new SpatialMetadata( EXTENT, null ), 256, 256, 1, 1, 1 ) ) );
+        }
+        DefaultTileDataSet dataSet = new DefaultTileDataSet( levels, null, "image/png" );
+        assertNull( parseLevels( dataSet, null ) );
+        assertEquals( asList( "b", "c", "d" ), parseLevels( dataSet, "b..d" ) );
+        assertEquals( asList( "a", "c", "d" ), parseLevels( dataSet, "a, c..d" ) );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseInvalidLevels() {
+        DefaultTileDataSet dataSet = new DefaultTileDataSet( singletonList( (TileDataLevel) new TestLevel( -1, -1 ) ),
+                                                             null, "image/png" );
+        parseLevels( dataSet, "0..1" );
+    }
+
+    private static TileSeeder seeder( TileDataLevel level, TileStoreTransaction ta, int metaTileSize ) {
+        DefaultTileDataSet dataSet = new DefaultTileDataSet( singletonList( level ), null, "image/png" );
+        return new TileSeeder( dataSet, ta, 4, 0, metaTileSize );
+    }
+
+    private static class TestLevel implements TileDataLevel {
+
+        final AtomicInteger requests = new AtomicInteger();
+
+        private final TileMatrix matrix;
+
+        private final long failx, faily;
+
+        TestLevel( long failx, long faily ) {
+            this.matrix = MATRIX;
+            this.failx = failx;
+            this.faily = faily;
+        }
+
+        TestLevel( TileMatrix matrix ) {
+            this.matrix = matrix;
+            this.failx = -1;
+            this.faily = -1;
+        }
+
+        @Override
+        public TileMatrix getMetadata() {
+            return matrix;
+        }
+
+        @Override
+        public Tile getTile( long x, long y ) {
+            requests.incrementAndGet();
+            return new TestTile( x == failx && y == faily );
+        }
+
+    }
+
+    private static class TestMetaTilingLevel extends TestLevel implements MetaTilingDataLevel {
+
+        TestMetaTilingLevel() {
+            super( -1, -1 );
+        }
+
+        @Override
+        public Tile[][] getTiles( long minx, long miny, int columns, int rows ) {
+            requests.incrementAndGet();
+            Tile[][] tiles = new Tile[rows][columns];
+            for ( int row = 0; row < rows; ++row ) {
+                for ( int col = 0; col < columns; ++col ) {
+                    tiles[row][col] = new TestTile( false );
+                }
+            }
+            return tiles;
+        }
+
+    }
+
+    private static class TestTile implements Tile {
+
+        private final boolean fail;
+
+        TestTile( boolean fail ) {
+            this.fail = fail;
+        }
+
+        @Override
+        public BufferedImage getAsImage() {
+            return new BufferedImage( 1, 1, BufferedImage.TYPE_INT_ARGB );
+        }
+
+        @Override
+        public InputStream getAsStream()
+                                throws TileIOException {
+            if ( fail ) {
+                throw new TileIOException( "Backend not available." );
+            }
+            return new ByteArrayInputStream( new byte[] { 1 } );
+        }
+
+        @Override
+        public String getETag() {
+            return null;
+        }
+
+        @Override
+        public long getLastModified() {
+            return -1;
+        }
+
+        @Override
+        public Envelope getEnvelope() {
+            return null;
+        }
+
+        @Override
+        public FeatureCollection getFeatures( int i, int j, int limit ) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    private static class RecordingTransaction implements TileStoreTransaction {
+
+        final Set<String> tiles = Collections.synchronizedSet( new HashSet<String>() );
+
+        @Override
+        public void put( String tileDataLevel, Tile tile, long x, long y )
+                                throws TileIOException {
+            tile.getAsStream();
+            tiles.add( x + "_" + y );
+        }
+
+        @Override
+        public void delete( String tileDataLevel, long x, long y ) {
+            tiles.remove( x + "_" + y );
+        }
+
+        @Override
+        public void delete( String tileDataLevel, Envelope envelope ) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
@@ -36,6 +36,7 @@
 package org.deegree.tile.persistence.filesystem;
 
 import static org.apache.commons.io.IOUtils.closeQuietly;
+import static org.deegree.tile.Tiles.createFileETag;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
@@ -48,6 +49,7 @@ import javax.imageio.ImageIO;
 
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
+import org.deegree.tile.FileTile;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileIOException;
 
@@ -59,7 +61,7 @@ import org.deegree.tile.TileIOException;
  * 
  * @version $Revision$, $Date$
  */
-class FileSystemTile implements Tile {
+class FileSystemTile implements FileTile {
 
     private final Envelope bbox;
 
@@ -102,6 +104,32 @@ class FileSystemTile implements Tile {
         }
     }
 
+    @Override
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public long getFileOffset() {
+        return 0;
+    }
+
+    @Override
+    public long getFileLength() {
+        return file.length();
+    }
+
+    @Override
+    public String getETag() {
+        return createFileETag( file );
+    }
+
+    @Override
+    public long getLastModified() {
+        long modified = file.lastModified();
+        return modified == 0 ? -1 : modified;
+    }
+
     @Override
     public Envelope getEnvelope() {
         return bbox;
@@ -35,6 +35,7 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.tile.persistence.filesystem;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -42,6 +43,7 @@ import java.io.IOException;
 import javax.imageio.ImageIO;
 
 import org.apache.commons.io.IOUtils;
+import org.deegree.commons.utils.io.PngEncoder;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileIOException;
 import org.deegree.tile.persistence.AbstractTileStoreTransaction;
@@ -59,6 +61,8 @@ class FileSystemTileStoreTransaction extends AbstractTileStoreTransaction {
 
     // private static final Logger LOG = getLogger( FileSystemTileStoreTransaction.class );
 
+    private static final PngEncoder PNG_ENCODER = new PngEncoder();
+
     /**
      * Creates a new {@link org.deegree.tile.persistence.TileStoreTransaction}.
      * 
@@ -82,7 +86,13 @@ class FileSystemTileStoreTransaction extends AbstractTileStoreTransaction {
                 }
             }
             fos = new FileOutputStream( file );
-            ImageIO.write( tile.getAsImage(), layout.getFileType(), fos );
+            if ( "png".equalsIgnoreCase( layout.getFileType() ) ) {
+                BufferedOutputStream bos = new BufferedOutputStream( fos );
+                PNG_ENCODER.encode( tile.getAsImage(), bos );
+                bos.flush();
+            } else {
+                ImageIO.write( tile.getAsImage(), layout.getFileType(), fos );
+            }
         } catch ( IOException e ) {
             throw new TileIOException( "Error retrieving image: " + e.getMessage(), e );
         } finally {
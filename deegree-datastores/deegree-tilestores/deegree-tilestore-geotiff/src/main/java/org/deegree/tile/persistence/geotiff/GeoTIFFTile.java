@@ -40,15 +40,17 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.tile.persistence.geotiff;
 
+import static org.deegree.tile.Tiles.createFileETag;
+
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Hashtable;
 
-import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
 
 import org.apache.commons.pool.impl.GenericObjectPool;
@@ -60,6 +62,10 @@ import org.deegree.tile.TileIOException;
 /**
  * A {@link Tile} that is read from a GeoTIFF/BigTIFF file, through ImageIO/imageio-ext. Uses an object pool to cache
  * readers (they take a long time to startup). </p>
+ * <p>
+ * If the internal jpeg compressed tiles of the file can be used as is, the stream of the tile is read directly from the
+ * file, without decoding and encoding the image.
+ * </p>
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: mschneider $
@@ -78,15 +84,38 @@ public class GeoTIFFTile implements Tile {
 
     private final GenericObjectPool readerPool;
 
-    public GeoTIFFTile( GenericObjectPool readerPool, int imageIndex, int x, int y, Envelope envelope, int sizeX,
-                        int sizeY ) {
+    private final File file;
+
+    private final TiffTileIndex index;
+
+    private final TileEncoder encoder;
+
+    /**
+     * @param readerPool
+     * @param file
+     * @param imageIndex
+     * @param x
+     * @param y
+     * @param envelope
+     * @param sizeX
+     * @param sizeY
+     * @param index
+     *            the index of the internal tiles if they can be passed through as jpeg, may be <code>null</code>
+     * @param encoder
+     *            used to encode the tile image, never <code>null</code>
+     */
+    GeoTIFFTile( GenericObjectPool readerPool, File file, int imageIndex, int x, int y, Envelope envelope, int sizeX,
+                 int sizeY, TiffTileIndex index, TileEncoder encoder ) {
         this.readerPool = readerPool;
+        this.file = file;
         this.imageIndex = imageIndex;
         this.x = x;
         this.y = y;
         this.envelope = envelope;
         this.sizeX = sizeX;
         this.sizeY = sizeY;
+        this.index = index;
+        this.encoder = encoder;
     }
 
     @Override
@@ -129,13 +158,38 @@ public class GeoTIFFTile implements Tile {
                             throws TileIOException {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         try {
-            ImageIO.write( getAsImage(), "png", bos );
+            if ( index != null ) {
+                byte[] bs = index.readJpeg( x, y );
+                if ( bs != null ) {
+                    return new ByteArrayInputStream( bs );
+                }
+            }
+            encoder.encode( getAsImage(), bos );
         } catch ( IOException e ) {
             throw new TileIOException( "Error retrieving image: " + e.getMessage(), e );
         }
         return new ByteArrayInputStream( bos.toByteArray() );
     }
 
+    /**
+     * @return the version of the GeoTIFF file, derived from its modification time and size, and the encoder settings
+     */
+    @Override
+    public String getETag() {
+        String etag = createFileETag( file );
+        if ( etag == null ) {
+            return null;
+        }
+        // passing the internal jpeg tiles through changes the encoded data, too
+        return etag + "-" + ( index != null ? "raw-" : "" ) + encoder.getSettings();
+    }
+
+    @Override
+    public long getLastModified() {
+        long modified = file.lastModified();
+        return modified == 0 ? -1 : modified;
+    }
+
     @Override
     public Envelope getEnvelope() {
         return envelope;
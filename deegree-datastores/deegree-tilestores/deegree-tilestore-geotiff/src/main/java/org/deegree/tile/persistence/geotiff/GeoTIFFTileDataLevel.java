@@ -40,13 +40,17 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.tile.persistence.geotiff;
 
+import static org.slf4j.LoggerFactory.getLogger;
+
 import java.io.File;
+import java.io.IOException;
 
 import org.apache.commons.pool.impl.GenericObjectPool;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.GeometryFactory;
 import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileMatrix;
+import org.slf4j.Logger;
 
 /**
  * The <code>GeoTIFFTileMatrix</code> is a tile matrix handing out GeoTIFFTile tiles. It uses an object pool shared
@@ -60,6 +64,8 @@ import org.deegree.tile.TileMatrix;
 
 public class GeoTIFFTileDataLevel implements TileDataLevel {
 
+    private static final Logger LOG = getLogger( GeoTIFFTileDataLevel.class );
+
     private final TileMatrix metadata;
 
     private final int imageIndex;
@@ -70,15 +76,56 @@ public class GeoTIFFTileDataLevel implements TileDataLevel {
 
     private final int xoff, yoff, numx, numy;
 
-    public GeoTIFFTileDataLevel( TileMatrix metadata, File file, int imageIndex, int xoff, int yoff, int numx, int numy ) {
+    private final File file;
+
+    private final TileEncoder encoder;
+
+    private TiffTileIndex index;
+
+    /**
+     * @param metadata
+     * @param file
+     * @param imageIndex
+     * @param xoff
+     * @param yoff
+     * @param numx
+     * @param numy
+     * @param encoder
+     *            used to encode the tiles, never <code>null</code>
+     * @param passThrough
+     *            whether internal jpeg tiles should be handed out without decoding them, if the output format is jpeg
+     */
+    GeoTIFFTileDataLevel( TileMatrix metadata, File file, int imageIndex, int xoff, int yoff, int numx, int numy,
+                          TileEncoder encoder, boolean passThrough ) {
         this.metadata = metadata;
         this.imageIndex = imageIndex;
+        this.file = file;
         ImageReaderFactory fac = new ImageReaderFactory( file );
         this.readerPool = new GenericObjectPool( fac );
         this.xoff = xoff;
         this.yoff = yoff;
         this.numx = numx;
         this.numy = numy;
+        this.encoder = encoder;
+        if ( passThrough && encoder.isJpeg() ) {
+            initPassThrough();
+        }
+    }
+
+    private void initPassThrough() {
+        try {
+            index = TiffTileIndex.read( file, imageIndex );
+        } catch ( IOException e ) {
+            LOG.warn( "Could not read the tile structure of {}: {}", file, e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+        }
+        int width = (int) metadata.getTilePixelsX();
+        int height = (int) metadata.getTilePixelsY();
+        if ( index != null && !index.isJpegPassThrough( width, height ) ) {
+            Object[] args = new Object[] { imageIndex, file, index.getCompression() };
+            LOG.debug( "The tiles of image {} of {} are re-encoded (compression {}).", args );
+            index = null;
+        }
     }
 
     @Override
@@ -107,7 +154,7 @@ public class GeoTIFFTileDataLevel implements TileDataLevel {
         double minx = width * x + env.getMin().get0();
         double miny = env.getMax().get1() - height * y;
         Envelope envelope = fac.createEnvelope( minx, miny, minx + width, miny - height, env.getCoordinateSystem() );
-        return new GeoTIFFTile( readerPool, imageIndex, (int) x, (int) y, envelope, (int) metadata.getTilePixelsX(),
-                                (int) metadata.getTilePixelsY() );
+        return new GeoTIFFTile( readerPool, file, imageIndex, (int) x, (int) y, envelope,
+                                (int) metadata.getTilePixelsX(), (int) metadata.getTilePixelsY(), index, encoder );
     }
 }
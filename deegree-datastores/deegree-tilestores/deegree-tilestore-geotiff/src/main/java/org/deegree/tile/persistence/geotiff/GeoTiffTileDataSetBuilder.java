@@ -45,6 +45,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.deegree.commons.utils.io.PngEncoder;
 import org.deegree.geometry.Envelope;
 import org.deegree.tile.DefaultTileDataSet;
 import org.deegree.tile.TileDataLevel;
@@ -87,16 +88,34 @@ class GeoTiffTileDataSetBuilder {
         double x = envelope.getMin().get0() - tms.getSpatialMetadata().getEnvelope().getMin().get0();
         double y = envelope.getMax().get1() - tms.getSpatialMetadata().getEnvelope().getMax().get1();
 
+        TileEncoder encoder = buildEncoder( format, cfg.getImageEncoding() );
+        boolean passThrough = true;
+        if ( cfg.getImageEncoding() != null && cfg.getImageEncoding().isPassThrough() != null ) {
+            passThrough = cfg.getImageEncoding().isPassThrough();
+        }
+
         int idx = 0;
         for ( TileMatrix tm : tms.getTileMatrices() ) {
             int xoff = (int) Math.round( x / tm.getTileWidth() );
             int yoff = (int) Math.round( y / tm.getTileHeight() );
             int numx = (int) Math.ceil( envelope.getSpan0() / tm.getTileWidth() );
             int numy = (int) Math.ceil( envelope.getSpan1() / tm.getTileHeight() );
-            levels.add( new GeoTIFFTileDataLevel( tm, file, idx++, xoff, yoff, numx, numy ) );
+            levels.add( new GeoTIFFTileDataLevel( tm, file, idx++, xoff, yoff, numx, numy, encoder, passThrough ) );
         }
 
         return new DefaultTileDataSet( levels, tms, format );
     }
 
+    private static TileEncoder buildEncoder( String format, GeoTIFFTileStoreJAXB.TileDataSet.ImageEncoding cfg ) {
+        float jpegQuality = TileEncoder.DEFAULT_JPEG_QUALITY;
+        int pngLevel = PngEncoder.DEFAULT_LEVEL;
+        if ( cfg != null && cfg.getJpegQuality() != null ) {
+            jpegQuality = cfg.getJpegQuality();
+        }
+        if ( cfg != null && cfg.getPngCompressionLevel() != null ) {
+            pngLevel = cfg.getPngCompressionLevel();
+        }
+        return new TileEncoder( format, jpegQuality, pngLevel );
+    }
+
 }
@@ -0,0 +1,495 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the location and the compression of the internal tiles of one image of a tiled (Big)TIFF file directly from
+ * its image file directory, so the compressed tile data can be handed out without decoding it.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class TiffTileIndex {
+
+    static final int COMPRESSION_JPEG = 7;
+
+    private static final int TAG_IMAGE_WIDTH = 256;
+
+    private static final int TAG_BITS_PER_SAMPLE = 258;
+
+    private static final int TAG_COMPRESSION = 259;
+
+    private static final int TAG_PHOTOMETRIC = 262;
+
+    private static final int TAG_SAMPLES_PER_PIXEL = 277;
+
+    private static final int TAG_PLANAR_CONFIGURATION = 284;
+
+    private static final int TAG_TILE_WIDTH = 322;
+
+    private static final int TAG_TILE_LENGTH = 323;
+
+    private static final int TAG_TILE_OFFSETS = 324;
+
+    private static final int TAG_TILE_BYTE_COUNTS = 325;
+
+    private static final int TAG_JPEG_TABLES = 347;
+
+    private static final int PHOTOMETRIC_MIN_IS_BLACK = 1;
+
+    private static final int PHOTOMETRIC_RGB = 2;
+
+    private static final int PHOTOMETRIC_YCBCR = 6;
+
+    // APP14 segment telling jpeg decoders that the components are not YCbCr encoded
+    private static final byte[] ADOBE_RGB = { (byte) 0xff, (byte) 0xee, 0, 14, 'A', 'd', 'o', 'b', 'e', 0, 100, 0, 0,
+                                             0, 0, 0 };
+
+    private final File file;
+
+    private final long[] offsets, byteCounts;
+
+    private final int tilesAcross, tileWidth, tileHeight;
+
+    private int compression = 1, photometric = -1, samplesPerPixel = 1, bitsPerSample = 1, planarConfiguration = 1;
+
+    private byte[] jpegTables;
+
+    private TiffTileIndex( File file, long imageWidth, int tileWidth, int tileHeight, long[] offsets,
+                           long[] byteCounts ) {
+        this.file = file;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.offsets = offsets;
+        this.byteCounts = byteCounts;
+        this.tilesAcross = (int) ( ( imageWidth + tileWidth - 1 ) / tileWidth );
+    }
+
+    /**
+     * @param file
+     *            the (Big)TIFF file, never <code>null</code>
+     * @param imageIndex
+     *            the index of the image file directory
+     * @return the tile index of the image, or <code>null</code>, if the file contains no such image or if the image is
+     *         not tiled
+     * @throws IOException
+     *             if the file could not be read or is not a TIFF file
+     */
+    static TiffTileIndex read( File file, int imageIndex )
+                            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try {
+            return read( file, raf.getChannel(), imageIndex );
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static TiffTileIndex read( File file, FileChannel channel, int imageIndex )
+                            throws IOException {
+        ByteBuffer header = read( channel, 0, 16, LITTLE_ENDIAN );
+        ByteOrder order;
+        if ( header.get( 0 ) == 'I' && header.get( 1 ) == 'I' ) {
+            order = LITTLE_ENDIAN;
+        } else if ( header.get( 0 ) == 'M' && header.get( 1 ) == 'M' ) {
+            order = BIG_ENDIAN;
+        } else {
+            throw new IOException( "The file " + file + " is not a TIFF file." );
+        }
+        header.order( order );
+        boolean big;
+        long ifd;
+        switch ( header.getShort( 2 ) ) {
+        case 42:
+            big = false;
+            ifd = header.getInt( 4 ) & 0xffffffffl;
+            break;
+        case 43:
+            big = true;
+            ifd = header.getLong( 8 );
+            break;
+        default:
+            throw new IOException( "The file " + file + " is not a TIFF file." );
+        }
+
+        int entrySize = big ? 20 : 12;
+        for ( int i = 0; i < imageIndex && ifd != 0; ++i ) {
+            long next = ifd + ( big ? 8 : 2 ) + readEntryCount( channel, ifd, big, order ) * entrySize;
+            if ( big ) {
+                ifd = read( channel, next, 8, order ).getLong( 0 );
+            } else {
+                ifd = read( channel, next, 4, order ).getInt( 0 ) & 0xffffffffl;
+            }
+        }
+        if ( ifd == 0 ) {
+            return null;
+        }
+
+        int count = (int) readEntryCount( channel, ifd, big, order );
+        ByteBuffer entries = read( channel, ifd + ( big ? 8 : 2 ), count * entrySize, order );
+
+        long imageWidth = -1;
+        int tileWidth = -1, tileHeight = -1, compression = 1, photometric = -1, samples = 1, bits = 1, planar = 1;
+        long[] offsets = null, byteCounts = null;
+        byte[] tables = null;
+        for ( int i = 0; i < count; ++i ) {
+            Entry e = new Entry( entries, i * entrySize, big );
+            switch ( e.tag ) {
+            case TAG_IMAGE_WIDTH:
+                imageWidth = e.readValues( channel, order )[0];
+                break;
+            case TAG_BITS_PER_SAMPLE:
+                bits = (int) e.readValues( channel, order )[0];
+                break;
+            case TAG_COMPRESSION:
+                compression = (int) e.readValues( channel, order )[0];
+                break;
+            case TAG_PHOTOMETRIC:
+                photometric = (int) e.readValues( channel, order )[0];
+                break;
+            case TAG_SAMPLES_PER_PIXEL:
+                samples = (int) e.readValues( channel, order )[0];
+                break;
+            case TAG_PLANAR_CONFIGURATION:
+                planar = (int) e.readValues( channel, order )[0];
+                break;
+            case TAG_TILE_WIDTH:
+                tileWidth = (int) e.readValues( channel, order )[0];
+                break;
+            case TAG_TILE_LENGTH:
+                tileHeight = (int) e.readValues( channel, order )[0];
+                break;
+            case TAG_TILE_OFFSETS:
+                offsets = e.readValues( channel, order );
+                break;
+            case TAG_TILE_BYTE_COUNTS:
+                byteCounts = e.readValues( channel, order );
+                break;
+            case TAG_JPEG_TABLES:
+                tables = e.readBytes( channel, order );
+                break;
+            }
+        }
+
+        if ( imageWidth <= 0 || tileWidth <= 0 || tileHeight <= 0 || offsets == null || byteCounts == null
+             || offsets.length != byteCounts.length ) {
+            return null;
+        }
+        TiffTileIndex index = new TiffTileIndex( file, imageWidth, tileWidth, tileHeight, offsets, byteCounts );
+        index.compression = compression;
+        index.photometric = photometric;
+        index.samplesPerPixel = samples;
+        index.bitsPerSample = bits;
+        index.planarConfiguration = planar;
+        index.jpegTables = tables;
+        return index;
+    }
+
+    private static long readEntryCount( FileChannel channel, long ifd, boolean big, ByteOrder order )
+                            throws IOException {
+        if ( big ) {
+            return read( channel, ifd, 8, order ).getLong( 0 );
+        }
+        return read( channel, ifd, 2, order ).getShort( 0 ) & 0xffff;
+    }
+
+    private static ByteBuffer read( FileChannel channel, long pos, int length, ByteOrder order )
+                            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate( length );
+        while ( buf.hasRemaining() ) {
+            if ( channel.read( buf, pos + buf.position() ) < 0 ) {
+                throw new IOException( "Unexpected end of TIFF file." );
+            }
+        }
+        buf.flip();
+        buf.order( order );
+        return buf;
+    }
+
+    /**
+     * @return the TIFF compression code of the tiles
+     */
+    int getCompression() {
+        return compression;
+    }
+
+    /**
+     * @param width
+     *            the tile width the tiles must have
+     * @param height
+     *            the tile height the tiles must have
+     * @return true, if the tiles are 8 bit gray, YCbCr or RGB jpeg images of the given size, which can be handed out as
+     *         jpeg without decoding them
+     */
+    boolean isJpegPassThrough( int width, int height ) {
+        if ( compression != COMPRESSION_JPEG || bitsPerSample != 8 || tileWidth != width || tileHeight != height ) {
+            return false;
+        }
+        if ( samplesPerPixel == 1 ) {
+            return photometric == PHOTOMETRIC_MIN_IS_BLACK;
+        }
+        return samplesPerPixel == 3 && planarConfiguration == 1
+               && ( photometric == PHOTOMETRIC_YCBCR || photometric == PHOTOMETRIC_RGB );
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @return the raw (compressed) data of the tile, or <code>null</code>, if the tile is not contained in the file
+     * @throws IOException
+     */
+    byte[] readTile( int x, int y )
+                            throws IOException {
+        if ( x < 0 || y < 0 || x >= tilesAcross ) {
+            return null;
+        }
+        long idx = (long) y * tilesAcross + x;
+        if ( idx >= offsets.length || offsets[(int) idx] == 0 || byteCounts[(int) idx] <= 0
+             || byteCounts[(int) idx] > Integer.MAX_VALUE ) {
+            return null;
+        }
+        byte[] bs = new byte[(int) byteCounts[(int) idx]];
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try {
+            raf.seek( offsets[(int) idx] );
+            raf.readFully( bs );
+        } finally {
+            raf.close();
+        }
+        return bs;
+    }
+
+    /**
+     * Reads a tile of a jpeg compressed image as self-contained jpeg image, merging in the shared jpeg tables, if any.
+     * 
+     * @param x
+     * @param y
+     * @return the jpeg image, or <code>null</code>, if the tile is not contained in the file
+     * @throws IOException
+     */
+    byte[] readJpeg( int x, int y )
+                            throws IOException {
+        byte[] tile = readTile( x, y );
+        if ( tile == null ) {
+            return null;
+        }
+        return toJpeg( tile, jpegTables, photometric == PHOTOMETRIC_RGB && samplesPerPixel == 3 );
+    }
+
+    /**
+     * @param tile
+     *            the (possibly abbreviated) jpeg stream of the tile
+     * @param tables
+     *            the tables only jpeg stream, may be <code>null</code>
+     * @param rgb
+     *            true, if the components are RGB instead of YCbCr encoded
+     * @return a self-contained jpeg stream
+     * @throws IOException
+     *             if the data is no jpeg stream
+     */
+    static byte[] toJpeg( byte[] tile, byte[] tables, boolean rgb )
+                            throws IOException {
+        if ( !isMarker( tile, 0, 0xd8 ) ) {
+            throw new IOException( "A jpeg compressed tile does not start with a SOI marker." );
+        }
+        int tablesLength = 0;
+        if ( tables != null && tables.length >= 4 ) {
+            if ( !isMarker( tables, 0, 0xd8 ) || !isMarker( tables, tables.length - 2, 0xd9 ) ) {
+                throw new IOException( "The jpeg tables are not a valid jpeg stream." );
+            }
+            // strip SOI and EOI of the tables stream
+            tablesLength = tables.length - 4;
+        }
+        int adobeLength = rgb ? ADOBE_RGB.length : 0;
+        if ( tablesLength == 0 && adobeLength == 0 ) {
+            return tile;
+        }
+        byte[] bs = new byte[tile.length + adobeLength + tablesLength];
+        bs[0] = (byte) 0xff;
+        bs[1] = (byte) 0xd8;
+        int pos = 2;
+        System.arraycopy( ADOBE_RGB, 0, bs, pos, adobeLength );
+        pos += adobeLength;
+        if ( tablesLength > 0 ) {
+            System.arraycopy( tables, 2, bs, pos, tablesLength );
+            pos += tablesLength;
+        }
+        System.arraycopy( tile, 2, bs, pos, tile.length - 2 );
+        return bs;
+    }
+
+    private static boolean isMarker( byte[] bs, int pos, int marker ) {
+        return bs.length >= pos + 2 && ( bs[pos] & 0xff ) == 0xff && ( bs[pos + 1] & 0xff ) == marker;
+    }
+
+    /**
+     * An image file directory entry.
+     */
+    private static class Entry {
+
+        final int tag, type;
+
+        final long count;
+
+        private final ByteBuffer value;
+
+        private final boolean big;
+
+        Entry( ByteBuffer entries, int pos, boolean big ) {
+            this.big = big;
+            tag = entries.getShort( pos ) & 0xffff;
+            type = entries.getShort( pos + 2 ) & 0xffff;
+            if ( big ) {
+                count = entries.getLong( pos + 4 );
+                value = slice( entries, pos + 12, 8 );
+            } else {
+                count = entries.getInt( pos + 4 ) & 0xffffffffl;
+                value = slice( entries, pos + 8, 4 );
+            }
+        }
+
+        private static ByteBuffer slice( ByteBuffer buf, int pos, int length ) {
+            ByteBuffer dup = buf.duplicate();
+            dup.position( pos );
+            dup.limit( pos + length );
+            return dup.slice().order( buf.order() );
+        }
+
+        private int getTypeSize()
+                                throws IOException {
+            switch ( type ) {
+            case 1: // BYTE
+            case 2: // ASCII
+            case 6: // SBYTE
+            case 7: // UNDEFINED
+                return 1;
+            case 3: // SHORT
+            case 8: // SSHORT
+                return 2;
+            case 4: // LONG
+            case 9: // SLONG
+            case 11: // FLOAT
+            case 13: // IFD
+                return 4;
+            case 5: // RATIONAL
+            case 10: // SRATIONAL
+            case 12: // DOUBLE
+            case 16: // LONG8
+            case 17: // SLONG8
+            case 18: // IFD8
+                return 8;
+            default:
+                throw new IOException( "Unknown TIFF field type " + type + " for tag " + tag + "." );
+            }
+        }
+
+        private ByteBuffer getData( FileChannel channel, ByteOrder order )
+                                throws IOException {
+            long length = count * getTypeSize();
+            if ( length > Integer.MAX_VALUE ) {
+                throw new IOException( "The TIFF field " + tag + " is too large." );
+            }
+            if ( length <= value.capacity() ) {
+                return value;
+            }
+            long offset = big ? value.getLong( 0 ) : value.getInt( 0 ) & 0xffffffffl;
+            return read( channel, offset, (int) length, order );
+        }
+
+        long[] readValues( FileChannel channel, ByteOrder order )
+                                throws IOException {
+            ByteBuffer data = getData( channel, order );
+            int size = getTypeSize();
+            long[] values = new long[(int) count];
+            for ( int i = 0; i < values.length; ++i ) {
+                switch ( type ) {
+                case 1:
+                case 7:
+                    values[i] = data.get( i ) & 0xff;
+                    break;
+                case 3:
+                    values[i] = data.getShort( i * size ) & 0xffff;
+                    break;
+                case 4:
+                case 13:
+                    values[i] = data.getInt( i * size ) & 0xffffffffl;
+                    break;
+                case 16:
+                case 18:
+                    values[i] = data.getLong( i * size );
+                    break;
+                default:
+                    throw new IOException( "The TIFF field " + tag + " does not contain unsigned integers." );
+                }
+            }
+            if ( values.length == 0 ) {
+                throw new IOException( "The TIFF field " + tag + " is empty." );
+            }
+            return values;
+        }
+
+        byte[] readBytes( FileChannel channel, ByteOrder order )
+                                throws IOException {
+            if ( getTypeSize() != 1 ) {
+                throw new IOException( "The TIFF field " + tag + " does not contain bytes." );
+            }
+            ByteBuffer data = getData( channel, order );
+            byte[] bs = new byte[(int) count];
+            data.duplicate().get( bs );
+            return bs;
+        }
+
+    }
+
+}
@@ -0,0 +1,166 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import static java.awt.image.BufferedImage.TYPE_3BYTE_BGR;
+import static javax.imageio.ImageIO.getImageWritersByMIMEType;
+import static javax.imageio.ImageWriteParam.MODE_EXPLICIT;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.deegree.commons.utils.io.PngEncoder;
+import org.deegree.commons.utils.io.PngEncoder.Filter;
+
+/**
+ * Encodes the tiles of a tile data set in its output format, with configurable compression. Everything but
+ * <code>image/jpeg</code> is encoded as png.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class TileEncoder {
+
+    static final String JPEG = "image/jpeg";
+
+    /** The jpeg quality used if none is configured. */
+    static final float DEFAULT_JPEG_QUALITY = 0.85f;
+
+    private final boolean jpeg;
+
+    private final float jpegQuality;
+
+    private final int pngLevel;
+
+    private final PngEncoder pngEncoder;
+
+    /**
+     * @param format
+     *            the output format, may be <code>null</code> (png)
+     * @param jpegQuality
+     *            the jpeg quality, 0 to 1
+     * @param pngLevel
+     *            the png deflate level, 0 to 9
+     */
+    TileEncoder( String format, float jpegQuality, int pngLevel ) {
+        this.jpeg = format != null && JPEG.equalsIgnoreCase( format.trim() );
+        this.jpegQuality = jpegQuality;
+        this.pngLevel = pngLevel;
+        // tiles from GeoTIFFs are usually imagery, which compresses best with adaptive filtering
+        this.pngEncoder = new PngEncoder( pngLevel, Filter.ADAPTIVE );
+    }
+
+    /**
+     * @return true, if the tiles are encoded as jpeg
+     */
+    boolean isJpeg() {
+        return jpeg;
+    }
+
+    /**
+     * @return the output format and the encoding parameters, to be included in the tile validators, never
+     *         <code>null</code>
+     */
+    String getSettings() {
+        if ( jpeg ) {
+            return "jpeg-q" + Math.round( jpegQuality * 100 );
+        }
+        return "png-l" + pngLevel;
+    }
+
+    /**
+     * @param img
+     *            the tile image, never <code>null</code>
+     * @param out
+     *            the stream to write to, will not be closed
+     * @throws IOException
+     */
+    void encode( BufferedImage img, OutputStream out )
+                            throws IOException {
+        if ( jpeg ) {
+            encodeJpeg( img, out );
+        } else {
+            pngEncoder.encode( img, out );
+        }
+    }
+
+    private void encodeJpeg( BufferedImage img, OutputStream out )
+                            throws IOException {
+        if ( img.getColorModel().hasAlpha() ) {
+            BufferedImage rgb = new BufferedImage( img.getWidth(), img.getHeight(), TYPE_3BYTE_BGR );
+            Graphics2D g = rgb.createGraphics();
+            g.drawImage( img, 0, 0, Color.WHITE, null );
+            g.dispose();
+            img = rgb;
+        }
+        Iterator<ImageWriter> writers = getImageWritersByMIMEType( JPEG );
+        if ( !writers.hasNext() ) {
+            throw new IOException( "No jpeg writer was found for imageio." );
+        }
+        ImageWriter writer = writers.next();
+        // avoid the temporary file cache of ImageIO
+        ImageOutputStream ios = new MemoryCacheImageOutputStream( out );
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode( MODE_EXPLICIT );
+            param.setCompressionQuality( jpegQuality );
+            writer.setOutput( ios );
+            writer.write( null, new IIOImage( img, null, null ), param );
+        } finally {
+            writer.dispose();
+            ios.close();
+        }
+    }
+
+}
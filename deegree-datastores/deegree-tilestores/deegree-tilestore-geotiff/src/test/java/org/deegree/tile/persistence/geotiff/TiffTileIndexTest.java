@@ -0,0 +1,235 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+/**
+ * Tests reading the tile structure of handcrafted (Big)TIFF files.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class TiffTileIndexTest {
+
+    @Test
+    public void testReadJpegTiles()
+                            throws IOException {
+        testReadJpegTiles( false, ByteOrder.LITTLE_ENDIAN );
+    }
+
+    @Test
+    public void testReadJpegTilesBigTiff()
+                            throws IOException {
+        testReadJpegTiles( true, ByteOrder.BIG_ENDIAN );
+    }
+
+    private void testReadJpegTiles( boolean big, ByteOrder order )
+                            throws IOException {
+        byte[] tile1 = createJpeg( 0xff0000 );
+        byte[] tile2 = createJpeg( 0x0000ff );
+        File file = writeTiff( big, order, tile1, tile2 );
+        try {
+            assertNull( TiffTileIndex.read( file, 1 ) );
+            TiffTileIndex index = TiffTileIndex.read( file, 0 );
+            assertNotNull( index );
+            assertEquals( TiffTileIndex.COMPRESSION_JPEG, index.getCompression() );
+            assertTrue( index.isJpegPassThrough( 16, 16 ) );
+            assertFalse( index.isJpegPassThrough( 32, 32 ) );
+            assertArrayEquals( tile1, index.readJpeg( 0, 0 ) );
+            assertArrayEquals( tile2, index.readJpeg( 1, 0 ) );
+            assertNull( index.readJpeg( 2, 0 ) );
+            assertNull( index.readJpeg( 0, 1 ) );
+            BufferedImage img = ImageIO.read( new ByteArrayInputStream( index.readJpeg( 1, 0 ) ) );
+            assertEquals( 16, img.getWidth() );
+            assertTrue( ( img.getRGB( 8, 8 ) & 0xff ) > 200 );
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testMergeJpegTables()
+                            throws IOException {
+        byte[] tables = bytes( 0xff, 0xd8, 0xff, 0xdb, 1, 2, 0xff, 0xd9 );
+        byte[] tile = bytes( 0xff, 0xd8, 0xff, 0xda, 3, 0xff, 0xd9 );
+        byte[] expected = bytes( 0xff, 0xd8, 0xff, 0xdb, 1, 2, 0xff, 0xda, 3, 0xff, 0xd9 );
+        assertArrayEquals( expected, TiffTileIndex.toJpeg( tile, tables, false ) );
+        assertArrayEquals( tile, TiffTileIndex.toJpeg( tile, null, false ) );
+        byte[] rgb = TiffTileIndex.toJpeg( tile, null, true );
+        assertEquals( tile.length + 16, rgb.length );
+        assertEquals( (byte) 0xee, rgb[3] );
+        assertEquals( 'A', rgb[6] );
+    }
+
+    @Test(expected = IOException.class)
+    public void testNoJpeg()
+                            throws IOException {
+        TiffTileIndex.toJpeg( bytes( 1, 2, 3 ), null, false );
+    }
+
+    private static byte[] bytes( int... values ) {
+        byte[] bs = new byte[values.length];
+        for ( int i = 0; i < values.length; ++i ) {
+            bs[i] = (byte) values[i];
+        }
+        return bs;
+    }
+
+    private static byte[] createJpeg( int rgb )
+                            throws IOException {
+        BufferedImage img = new BufferedImage( 16, 16, TYPE_INT_RGB );
+        for ( int y = 0; y < 16; ++y ) {
+            for ( int x = 0; x < 16; ++x ) {
+                img.setRGB( x, y, rgb );
+            }
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ImageIO.write( img, "jpeg", bos );
+        return bos.toByteArray();
+    }
+
+    /**
+     * Writes a 32x16 jpeg compressed YCbCr image consisting of two 16x16 tiles.
+     */
+    private static File writeTiff( boolean big, ByteOrder order, byte[] tile1, byte[] tile2 )
+                            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate( 1024 + tile1.length + tile2.length ).order( order );
+        buf.put( order == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M' );
+        buf.put( order == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M' );
+        int[][] entries = { { 256, 3, 1, 32 }, { 257, 3, 1, 16 }, { 258, 3, 3, -1 }, { 259, 3, 1, 7 },
+                           { 262, 3, 1, 6 }, { 277, 3, 1, 3 }, { 322, 3, 1, 16 }, { 323, 3, 1, 16 },
+                           { 324, big ? 16 : 4, 2, -2 }, { 325, big ? 16 : 4, 2, -3 } };
+        int entrySize = big ? 20 : 12;
+        int ifd = big ? 16 : 8;
+        int data = ifd + ( big ? 8 : 2 ) + entries.length * entrySize + ( big ? 8 : 4 );
+        int bits = data;
+        int offsets = bits + 8;
+        int counts = offsets + 16;
+        int tiles = counts + 16;
+        if ( big ) {
+            buf.putShort( (short) 43 ).putShort( (short) 8 ).putShort( (short) 0 ).putLong( ifd );
+            buf.putLong( entries.length );
+        } else {
+            buf.putShort( (short) 42 ).putInt( ifd );
+            buf.putShort( (short) entries.length );
+        }
+        for ( int[] e : entries ) {
+            buf.putShort( (short) e[0] ).putShort( (short) e[1] );
+            if ( big ) {
+                buf.putLong( e[2] );
+            } else {
+                buf.putInt( e[2] );
+            }
+            int pos = buf.position();
+            switch ( e[3] ) {
+            case -1:
+                if ( big ) {
+                    // fits into the entry
+                    buf.putShort( (short) 8 ).putShort( (short) 8 ).putShort( (short) 8 );
+                } else {
+                    putOffset( buf, bits, big );
+                }
+                break;
+            case -2:
+                putOffset( buf, offsets, big );
+                break;
+            case -3:
+                putOffset( buf, counts, big );
+                break;
+            default:
+                buf.putShort( (short) e[3] );
+            }
+            buf.position( pos + ( big ? 8 : 4 ) );
+        }
+        putOffset( buf, 0, big );
+        buf.position( bits );
+        buf.putShort( (short) 8 ).putShort( (short) 8 ).putShort( (short) 8 );
+        buf.position( offsets );
+        putOffset( buf, tiles, big );
+        putOffset( buf, tiles + tile1.length, big );
+        buf.position( counts );
+        putOffset( buf, tile1.length, big );
+        putOffset( buf, tile2.length, big );
+        buf.position( tiles );
+        buf.put( tile1 ).put( tile2 );
+
+        File file = File.createTempFile( "tiles", ".tif" );
+        FileOutputStream out = new FileOutputStream( file );
+        try {
+            out.write( buf.array(), 0, buf.position() );
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static void putOffset( ByteBuffer buf, long offset, boolean big ) {
+        if ( big ) {
+            buf.putLong( offset );
+        } else {
+            buf.putInt( (int) offset );
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.remotewms;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+import org.deegree.commons.utils.io.PngEncoder;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.Envelope;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileIOException;
+
+/**
+ * A {@link Tile} cut out of a meta tile fetched by {@link RemoteWMSTileDataLevel#getTiles(long, long, int, int)}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class MetaTileSlice implements Tile {
+
+    private static final PngEncoder PNG_ENCODER = new PngEncoder();
+
+    private final BufferedImage image;
+
+    private final Envelope envelope;
+
+    private final String format;
+
+    /**
+     * @param image
+     *            the part of the meta tile image, never <code>null</code>
+     * @param envelope
+     *            the envelope of the tile, never <code>null</code>
+     * @param format
+     *            the format to encode the tile with, ImageIO format name or mime type, never <code>null</code>
+     */
+    MetaTileSlice( BufferedImage image, Envelope envelope, String format ) {
+        this.image = image;
+        this.envelope = envelope;
+        this.format = format;
+    }
+
+    @Override
+    public BufferedImage getAsImage() {
+        return image;
+    }
+
+    @Override
+    public InputStream getAsStream()
+                            throws TileIOException {
+        String fmt = format;
+        // mime types like image/png; mode=8bit
+        if ( fmt.indexOf( ';' ) != -1 ) {
+            fmt = fmt.substring( 0, fmt.indexOf( ';' ) );
+        }
+        if ( fmt.indexOf( '/' ) != -1 ) {
+            fmt = fmt.substring( fmt.indexOf( '/' ) + 1 );
+        }
+        fmt = fmt.trim();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if ( "png".equalsIgnoreCase( fmt ) ) {
+                PNG_ENCODER.encode( image, out );
+            } else if ( !ImageIO.write( image, fmt, out ) ) {
+                throw new TileIOException( "No image writer was found for format " + format + "." );
+            }
+            return new ByteArrayInputStream( out.toByteArray() );
+        } catch ( IOException e ) {
+            throw new TileIOException( "Error encoding tile: " + e.getMessage(), e );
+        }
+    }
+
+    @Override
+    public String getETag() {
+        return null;
+    }
+
+    @Override
+    public long getLastModified() {
+        return -1;
+    }
+
+    @Override
+    public Envelope getEnvelope() {
+        return envelope;
+    }
+
+    @Override
+    public FeatureCollection getFeatures( int i, int j, int limit )
+                            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException( "Feature retrieval is not supported for meta tile slices." );
+    }
+
+}
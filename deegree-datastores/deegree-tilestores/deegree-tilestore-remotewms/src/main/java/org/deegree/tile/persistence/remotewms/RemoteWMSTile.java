@@ -58,6 +58,7 @@ import javax.imageio.ImageIO;
 import org.apache.commons.io.IOUtils;
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.commons.utils.RequestUtils;
+import org.deegree.commons.utils.io.PngEncoder;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
@@ -78,6 +79,8 @@ import org.deegree.tile.TileIOException;
  */
 class RemoteWMSTile implements Tile {
 
+    private static final PngEncoder PNG_ENCODER = new PngEncoder();
+
     private final WMSClient client;
 
     private final GetMap gm;
@@ -137,7 +140,11 @@ class RemoteWMSTile implements Tile {
             if ( outputFormat != null ) {
                 BufferedImage img = ImageIO.read( map );
                 ByteArrayOutputStream out = new ByteArrayOutputStream();
-                ImageIO.write( img, outputFormat, out );
+                if ( "png".equalsIgnoreCase( outputFormat ) ) {
+                    PNG_ENCODER.encode( img, out );
+                } else {
+                    ImageIO.write( img, outputFormat, out );
+                }
                 out.close();
                 return new ByteArrayInputStream( out.toByteArray() );
             }
@@ -155,6 +162,17 @@ class RemoteWMSTile implements Tile {
         }
     }
 
+    @Override
+    public String getETag() {
+        // the remote WMS would have to be asked
+        return null;
+    }
+
+    @Override
+    public long getLastModified() {
+        return -1;
+    }
+
     @Override
     public Envelope getEnvelope() {
         return gm.getBoundingBox();
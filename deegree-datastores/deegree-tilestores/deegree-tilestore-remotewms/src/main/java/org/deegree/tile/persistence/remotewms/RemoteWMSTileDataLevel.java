@@ -35,6 +35,8 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.tile.persistence.remotewms;
 
+import java.awt.image.BufferedImage;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -47,19 +49,23 @@ import org.deegree.geometry.GeometryFactory;
 import org.deegree.protocol.wms.Utils;
 import org.deegree.protocol.wms.client.WMSClient;
 import org.deegree.protocol.wms.ops.GetMap;
+import org.deegree.tile.MetaTilingDataLevel;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileIOException;
 import org.deegree.tile.TileMatrix;
+import org.deegree.tile.Tiles;
 
 /**
- * {@link TileDataLevel} that is backed by a {@link RemoteWMSTileStore}.
+ * {@link TileDataLevel} that is backed by a {@link RemoteWMSTileStore}. Blocks of tiles can be fetched with a single
+ * GetMap request.
  * 
  * @author <a href="mailto:schneider@occamlabs.de">Markus Schneider</a>
  * @author last edited by: $Author$
  * 
  * @version $Revision$, $Date$
  */
-class RemoteWMSTileDataLevel implements TileDataLevel {
+class RemoteWMSTileDataLevel implements MetaTilingDataLevel {
 
     private static final GeometryFactory fac = new GeometryFactory();
 
@@ -146,15 +152,60 @@ class RemoteWMSTileDataLevel implements TileDataLevel {
         double minx = width * x + env.getMin().get0();
         double miny = env.getMax().get1() - height * y;
         Envelope envelope = fac.createEnvelope( minx, miny - height, minx + width, miny, env.getCoordinateSystem() );
+        GetMap gm = createGetMap( envelope, (int) tileSizeX, (int) tileSizeY );
+        return new RemoteWMSTile( client, gm, recodedOutputFormat, defaultGetFeatureInfo, hardGetFeatureInfo );
+    }
+
+    @Override
+    public Tile[][] getTiles( long minx, long miny, int columns, int rows )
+                            throws TileIOException {
+        Tile[][] tiles = new Tile[rows][columns];
+        long x0 = Math.max( 0, minx );
+        long y0 = Math.max( 0, miny );
+        long x1 = Math.min( minx + columns, metadata.getNumTilesX() );
+        long y1 = Math.min( miny + rows, metadata.getNumTilesY() );
+        if ( x1 <= x0 || y1 <= y0 ) {
+            return tiles;
+        }
+        int cols = (int) ( x1 - x0 );
+        int rs = (int) ( y1 - y0 );
+
+        Envelope first = Tiles.calcTileEnvelope( metadata, x0, y0 );
+        Envelope last = Tiles.calcTileEnvelope( metadata, x1 - 1, y1 - 1 );
+        Envelope envelope = fac.createEnvelope( first.getMin().get0(), last.getMin().get1(), last.getMax().get0(),
+                                                first.getMax().get1(), first.getCoordinateSystem() );
+        GetMap gm = createGetMap( envelope, (int) tileSizeX * cols, (int) tileSizeY * rs );
+        RemoteWMSTile metaTile = new RemoteWMSTile( client, gm, null, defaultGetFeatureInfo, hardGetFeatureInfo );
+        BufferedImage img = metaTile.getAsImage();
+        if ( img == null ) {
+            throw new TileIOException( "The meta tile fetched from the remote WMS could not be decoded." );
+        }
+
+        String outputFormat = recodedOutputFormat != null ? recodedOutputFormat : format;
+        for ( int r = 0; r < rs; ++r ) {
+            for ( int c = 0; c < cols; ++c ) {
+                BufferedImage slice = img.getSubimage( c * (int) tileSizeX, r * (int) tileSizeY, (int) tileSizeX,
+                                                       (int) tileSizeY );
+                Envelope tileEnvelope = Tiles.calcTileEnvelope( metadata, x0 + c, y0 + r );
+                tiles[(int) ( y0 - miny ) + r][(int) ( x0 - minx ) + c] = new MetaTileSlice( slice, tileEnvelope,
+                                                                                             outputFormat );
+            }
+        }
+        return tiles;
+    }
+
+    private GetMap createGetMap( Envelope envelope, int width, int height ) {
         ICRS crs = this.crs;
         if ( crs == null ) {
             crs = envelope.getCoordinateSystem();
         }
+        Map<String, String> originals = RequestUtils.getCurrentThreadRequestParameters().get();
+        if ( originals == null ) {
+            // not called in the context of a request, eg. when seeding
+            originals = Collections.emptyMap();
+        }
         Map<String, String> overriddenParameters = new HashMap<String, String>();
-        RequestUtils.replaceParameters( overriddenParameters, RequestUtils.getCurrentThreadRequestParameters().get(),
-                                        defaultGetMap, hardGetMap );
-        GetMap gm = new GetMap( layers, styles, (int) tileSizeX, (int) tileSizeY, envelope, crs, format, true,
-                                overriddenParameters );
-        return new RemoteWMSTile( client, gm, recodedOutputFormat, defaultGetFeatureInfo, hardGetFeatureInfo );
+        RequestUtils.replaceParameters( overriddenParameters, originals, defaultGetMap, hardGetMap );
+        return new GetMap( layers, styles, width, height, envelope, crs, format, true, overriddenParameters );
     }
 }
@@ -169,6 +169,17 @@ class RemoteWMTSTile implements Tile {
         return new CloseRequiredInputStream( null, new ByteArrayInputStream( out.toByteArray() ) );
     }
 
+    @Override
+    public String getETag() {
+        // the remote WMTS would have to be asked
+        return null;
+    }
+
+    @Override
+    public long getLastModified() {
+        return -1;
+    }
+
     @Override
     public Envelope getEnvelope() {
         return envelope;
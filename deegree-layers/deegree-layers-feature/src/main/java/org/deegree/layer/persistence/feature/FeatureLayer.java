@@ -89,6 +89,10 @@ public class FeatureLayer extends AbstractLayer {
 
     private DimensionFilterBuilder dimFilterBuilder;
 
+    private List<QName> vectorTileProperties;
+
+    private boolean producerThread = true;
+
     public FeatureLayer( LayerMetadata md, FeatureStore featureStore, QName featureType, OperatorFilter filter,
                          List<SortProperty> sortBy, List<SortProperty> sortByFeatureInfo ) {
         super( md );
@@ -104,6 +108,23 @@ public class FeatureLayer extends AbstractLayer {
         dimFilterBuilder = new DimensionFilterBuilder( md.getDimensions() );
     }
 
+    /**
+     * @param vectorTileProperties
+     *            the properties to encode in vector tiles, if <code>null</code>, all simple properties are encoded
+     */
+    public void setVectorTileProperties( List<QName> vectorTileProperties ) {
+        this.vectorTileProperties = vectorTileProperties;
+    }
+
+    /**
+     * @param producerThread
+     *            if true (the default), features are fetched and the style is evaluated on a producer thread while
+     *            rendering
+     */
+    public void setProducerThread( boolean producerThread ) {
+        this.producerThread = producerThread;
+    }
+
     @Override
     public FeatureLayerData mapQuery( final LayerQuery query, List<String> headers )
                             throws OWSException {
@@ -153,7 +174,10 @@ public class FeatureLayer extends AbstractLayer {
         Integer maxFeats = query.getRenderingOptions().getMaxFeatures( getMetadata().getName() );
         final int maxFeatures = maxFeats == null ? -1 : maxFeats;
 
-        return new FeatureLayerData( queries, featureStore, maxFeatures, style, ftName );
+        FeatureLayerData data = new FeatureLayerData( queries, featureStore, maxFeatures, style, ftName,
+                                                      getMetadata().getName(), vectorTileProperties );
+        data.setProducerThread( producerThread );
+        return data;
     }
 
     @Override
@@ -37,13 +37,18 @@ package org.deegree.layer.persistence.feature;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import javax.xml.namespace.QName;
 
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.GenericFeatureCollection;
@@ -55,8 +60,10 @@ import org.deegree.feature.types.AppSchemas;
 import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.XPathEvaluator;
+import org.deegree.geometry.Geometry;
 import org.deegree.layer.LayerData;
 import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.rendering.r2d.context.VectorTileRenderContext;
 import org.deegree.style.se.unevaluated.Style;
 import org.slf4j.Logger;
 
@@ -81,6 +88,12 @@ public class FeatureLayerData implements LayerData {
 
     private final FeatureStore featureStore;
 
+    private String layerName;
+
+    private List<QName> vectorTileProperties;
+
+    private boolean producerThread = true;
+
     public FeatureLayerData( List<Query> queries, FeatureStore featureStore, int maxFeatures, Style style, QName ftName ) {
         this.queries = queries;
         this.featureStore = featureStore;
@@ -94,15 +107,50 @@ public class FeatureLayerData implements LayerData {
         evaluator = new TypedObjectNodeXPathEvaluator( bindings );
     }
 
+    /**
+     * @param queries
+     * @param featureStore
+     * @param maxFeatures
+     * @param style
+     * @param ftName
+     * @param layerName
+     *            the name of the layer in vector tiles
+     * @param vectorTileProperties
+     *            the properties to encode in vector tiles, if <code>null</code>, all simple properties are encoded
+     */
+    public FeatureLayerData( List<Query> queries, FeatureStore featureStore, int maxFeatures, Style style,
+                             QName ftName, String layerName, List<QName> vectorTileProperties ) {
+        this( queries, featureStore, maxFeatures, style, ftName );
+        this.layerName = layerName;
+        this.vectorTileProperties = vectorTileProperties;
+    }
+
+    /**
+     * @param producerThread
+     *            if true (the default), features are fetched and the style is evaluated on a producer thread while
+     *            rendering, else everything is done in the rendering thread
+     */
+    public void setProducerThread( boolean producerThread ) {
+        this.producerThread = producerThread;
+    }
+
     @Override
     public void render( RenderContext context ) {
         FeatureInputStream features = null;
         try {
             // TODO Should this always be done on this level? What about min and maxFill values?
             features = featureStore.query( queries.toArray( new Query[queries.size()] ) );
-            features = new ThreadedFeatureInputStream( features, 100, 20 );
 
-            FeatureStreamRenderer renderer = new FeatureStreamRenderer( context, maxFeatures, evaluator );
+            if ( context instanceof VectorTileRenderContext ) {
+                encodeFeatures( features, (VectorTileRenderContext) context );
+                return;
+            }
+
+            if ( !producerThread ) {
+                features = new ThreadedFeatureInputStream( features, 100, 20 );
+            }
+            FeatureStreamRenderer renderer = new FeatureStreamRenderer( context, maxFeatures, evaluator,
+                                                                        producerThread );
             renderer.renderFeatureStream( features, style );
         } catch ( FilterEvaluationException e ) {
             LOG.warn( "A filter could not be evaluated. The error was '{}'.", e.getLocalizedMessage() );
@@ -117,6 +165,54 @@ public class FeatureLayerData implements LayerData {
         }
     }
 
+    /**
+     * Adds the features to the vector tile as they are, without evaluating the style.
+     */
+    private void encodeFeatures( FeatureInputStream features, VectorTileRenderContext context ) {
+        int cnt = 0;
+        for ( Feature f : features ) {
+            if ( Thread.currentThread().isInterrupted() ) {
+                LOG.debug( "Encoding of layer '{}' was interrupted.", layerName );
+                break;
+            }
+            Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+            List<Geometry> geoms = new ArrayList<Geometry>();
+            for ( Property p : f.getProperties() ) {
+                TypedObjectNode value = p.getValue();
+                if ( value instanceof Geometry ) {
+                    geoms.add( (Geometry) value );
+                } else if ( value instanceof PrimitiveValue && isVectorTileProperty( p.getName() ) ) {
+                    PrimitiveValue pv = (PrimitiveValue) value;
+                    Object o = pv.getValue();
+                    if ( !( o instanceof Number || o instanceof Boolean ) ) {
+                        o = pv.getAsText();
+                    }
+                    attributes.put( p.getName().getLocalPart(), o );
+                }
+            }
+            for ( Geometry geom : geoms ) {
+                context.addFeature( layerName, geom, attributes );
+            }
+            if ( maxFeatures > 0 && ++cnt == maxFeatures ) {
+                LOG.debug( "Reached max features of {} for layer '{}', stopping.", maxFeatures, layerName );
+                break;
+            }
+        }
+    }
+
+    private boolean isVectorTileProperty( QName name ) {
+        if ( vectorTileProperties == null ) {
+            return true;
+        }
+        for ( QName n : vectorTileProperties ) {
+            if ( n.getLocalPart().equals( name.getLocalPart() )
+                 && ( n.getNamespaceURI().isEmpty() || n.getNamespaceURI().equals( name.getNamespaceURI() ) ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static FeatureCollection clearDuplicates( FeatureInputStream rs ) {
         FeatureCollection col = null;
         try {
@@ -41,11 +41,26 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.layer.persistence.feature;
 
+import static java.lang.Runtime.getRuntime;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.deegree.commons.utils.Triple;
+import org.deegree.commons.utils.ThreadContext;
 import org.deegree.feature.Feature;
 import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.filter.XPathEvaluator;
@@ -53,13 +68,21 @@ import org.deegree.geometry.Geometry;
 import org.deegree.rendering.r2d.Renderer;
 import org.deegree.rendering.r2d.TextRenderer;
 import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.style.se.unevaluated.CompiledStyle;
 import org.deegree.style.se.unevaluated.Style;
+import org.deegree.style.se.unevaluated.StylingCallback;
 import org.deegree.style.styling.Styling;
 import org.deegree.style.styling.TextStyling;
 import org.slf4j.Logger;
 
 /**
  * Responsible for using a renderer to evaluate and render a feature stream.
+ * <p>
+ * If enabled, fetching the features and evaluating the style is done by a producer thread, which hands the evaluated
+ * stylings to the rendering thread through a bounded queue. The producer blocks if the rendering thread falls behind,
+ * and stops once the maximum number of features has been reached or the rendering thread has been interrupted.
+ * Otherwise, everything is done in the rendering thread.
+ * </p>
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: stranger $
@@ -70,37 +93,106 @@ class FeatureStreamRenderer {
 
     private static final Logger LOG = getLogger( FeatureStreamRenderer.class );
 
+    // number of stylings handed over at once
+    private static final int BATCH_SIZE = 64;
+
+    // number of batches the producer may be ahead of the rendering thread
+    private static final int QUEUE_SIZE = 16;
+
+    private static final List<Item> END = new ArrayList<Item>( 0 );
+
+    private static final ExecutorService PRODUCERS = newFixedThreadPool( 2 * getRuntime().availableProcessors(),
+                                                                         new ProducerThreadFactory() );
+
     private RenderContext context;
 
     private int maxFeatures;
 
     private XPathEvaluator<?> evaluator;
 
-    FeatureStreamRenderer( RenderContext context, int maxFeatures, XPathEvaluator<?> evaluator ) {
+    private boolean producerThread;
+
+    FeatureStreamRenderer( RenderContext context, int maxFeatures, XPathEvaluator<?> evaluator,
+                           boolean producerThread ) {
         this.context = context;
         this.maxFeatures = maxFeatures;
         this.evaluator = evaluator;
+        this.producerThread = producerThread;
     }
 
     void renderFeatureStream( FeatureInputStream features, Style style ) {
-        int cnt = 0;
+        if ( !producerThread ) {
+            renderSequentially( features, style.compile() );
+            return;
+        }
+        BlockingQueue<List<Item>> queue = new ArrayBlockingQueue<List<Item>>( QUEUE_SIZE );
+        Producer producer = new Producer( features, style.compile(), queue );
+        Future<Void> result = PRODUCERS.submit( producer );
 
         Renderer renderer = context.getVectorRenderer();
         TextRenderer textRenderer = context.getTextRenderer();
 
-        for ( Feature f : features ) {
-            try {
-                LinkedList<Triple<Styling, LinkedList<Geometry>, String>> evalds = style.evaluate( f,
-                                                                                                   (XPathEvaluator<Feature>) evaluator );
-                for ( Triple<Styling, LinkedList<Geometry>, String> evald : evalds ) {
-                    if ( evald.first instanceof TextStyling ) {
-                        textRenderer.render( (TextStyling) evald.first, evald.third, evald.second );
-                    } else {
-                        renderer.render( evald.first, evald.second );
+        boolean interrupted = false;
+        try {
+            while ( true ) {
+                List<Item> batch;
+                try {
+                    batch = queue.poll( 100, MILLISECONDS );
+                } catch ( InterruptedException e ) {
+                    interrupted = true;
+                    LOG.debug( "Rendering was interrupted, stopping." );
+                    break;
+                }
+                if ( batch == END ) {
+                    break;
+                }
+                if ( batch == null ) {
+                    if ( result.isDone() && queue.isEmpty() ) {
+                        // producer failed before handing over the end marker
+                        break;
                     }
+                    continue;
+                }
+                for ( Item item : batch ) {
+                    render( renderer, textRenderer, item.styling, item.geometries, item.text );
                 }
+            }
+        } finally {
+            producer.cancelled = true;
+            queue.clear();
+            if ( producer.started.compareAndSet( false, true ) ) {
+                // the producer has not been started (the pool is busy) and never will, so it has not touched the
+                // stream and there is no need to wait for a free pool thread
+                result.cancel( false );
+            } else {
+                // the feature stream must not be closed while the producer is still reading it
+                interrupted |= await( result );
+            }
+            if ( interrupted ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void renderSequentially( FeatureInputStream features, CompiledStyle style ) {
+        final Renderer renderer = context.getVectorRenderer();
+        final TextRenderer textRenderer = context.getTextRenderer();
+        StylingCallback callback = new StylingCallback() {
+            @Override
+            public void styling( Styling styling, LinkedList<Geometry> geometries, String text ) {
+                render( renderer, textRenderer, styling, geometries, text );
+            }
+        };
+        int cnt = 0;
+        for ( Feature f : features ) {
+            if ( Thread.currentThread().isInterrupted() ) {
+                LOG.debug( "Rendering was interrupted, stopping." );
+                break;
+            }
+            try {
+                style.evaluate( f, (XPathEvaluator<Feature>) evaluator, callback );
             } catch ( Throwable e ) {
-                LOG.warn( "Unable to render feature, probably a curve had multiple/non-linear segments." );
+                LOG.warn( "Unable to evaluate the style for a feature." );
                 LOG.warn( "Error message was: {}", e.getLocalizedMessage() );
                 LOG.trace( "Stack trace:", e );
             }
@@ -111,4 +203,156 @@ class FeatureStreamRenderer {
         }
     }
 
+    private static void render( Renderer renderer, TextRenderer textRenderer, Styling styling,
+                                LinkedList<Geometry> geometries, String text ) {
+        try {
+            if ( styling instanceof TextStyling ) {
+                textRenderer.render( (TextStyling) styling, text, geometries );
+            } else {
+                renderer.render( styling, geometries );
+            }
+        } catch ( Throwable e ) {
+            LOG.warn( "Unable to render feature, probably a curve had multiple/non-linear segments." );
+            LOG.warn( "Error message was: {}", e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+        }
+    }
+
+    /**
+     * @return true, if the current thread was interrupted while waiting
+     */
+    private static boolean await( Future<Void> result ) {
+        boolean interrupted = false;
+        while ( true ) {
+            try {
+                result.get();
+                return interrupted;
+            } catch ( CancellationException e ) {
+                return interrupted;
+            } catch ( InterruptedException e ) {
+                interrupted = true;
+            } catch ( ExecutionException e ) {
+                Throwable cause = e.getCause();
+                if ( cause instanceof RuntimeException ) {
+                    throw (RuntimeException) cause;
+                }
+                if ( cause instanceof Error ) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException( cause );
+            }
+        }
+    }
+
+    private class Producer implements Callable<Void>, StylingCallback {
+
+        private final FeatureInputStream features;
+
+        private final CompiledStyle style;
+
+        private final BlockingQueue<List<Item>> queue;
+
+        // thread local state of the requesting thread, needed for evaluating the style
+        private final ThreadContext threadContext = ThreadContext.capture();
+
+        private volatile boolean cancelled;
+
+        // set by whoever comes first, the producer when starting or the rendering thread when stopping
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        private List<Item> batch = new ArrayList<Item>( BATCH_SIZE );
+
+        Producer( FeatureInputStream features, CompiledStyle style, BlockingQueue<List<Item>> queue ) {
+            this.features = features;
+            this.style = style;
+            this.queue = queue;
+        }
+
+        @Override
+        public Void call()
+                                throws Exception {
+            if ( !started.compareAndSet( false, true ) ) {
+                // rendering stopped before the producer was started
+                return null;
+            }
+            threadContext.apply();
+            try {
+                int cnt = 0;
+                for ( Feature f : features ) {
+                    if ( cancelled ) {
+                        LOG.debug( "Rendering has been stopped, not fetching any more features." );
+                        return null;
+                    }
+                    try {
+                        style.evaluate( f, (XPathEvaluator<Feature>) evaluator, this );
+                    } catch ( Throwable e ) {
+                        LOG.warn( "Unable to evaluate the style for a feature." );
+                        LOG.warn( "Error message was: {}", e.getLocalizedMessage() );
+                        LOG.trace( "Stack trace:", e );
+                    }
+                    if ( batch.size() >= BATCH_SIZE ) {
+                        hand( batch );
+                        batch = new ArrayList<Item>( BATCH_SIZE );
+                    }
+                    if ( maxFeatures > 0 && ++cnt == maxFeatures ) {
+                        LOG.debug( "Reached max features of {} for layer '{}', stopping.", maxFeatures,
+                                   FeatureStreamRenderer.this );
+                        break;
+                    }
+                }
+                if ( !batch.isEmpty() ) {
+                    hand( batch );
+                }
+                hand( END );
+            } finally {
+                threadContext.clear();
+            }
+            return null;
+        }
+
+        @Override
+        public void styling( Styling styling, LinkedList<Geometry> geometries, String text ) {
+            batch.add( new Item( styling, geometries, text ) );
+        }
+
+        private void hand( List<Item> items )
+                                throws InterruptedException {
+            while ( !cancelled ) {
+                if ( queue.offer( items, 100, MILLISECONDS ) ) {
+                    return;
+                }
+            }
+        }
+
+    }
+
+    private static class Item {
+
+        final Styling styling;
+
+        final LinkedList<Geometry> geometries;
+
+        final String text;
+
+        Item( Styling styling, LinkedList<Geometry> geometries, String text ) {
+            this.styling = styling;
+            this.geometries = geometries;
+            this.text = text;
+        }
+
+    }
+
+    private static class ProducerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, "feature-layer-producer-" + count.incrementAndGet() );
+            t.setDaemon( true );
+            return t;
+        }
+
+    }
+
 }
@@ -118,7 +118,13 @@ class ManualFeatureLayerBuilder {
             Pair<Map<String, Style>, Map<String, Style>> p = parseStyles( workspace, lay.getName(), lay.getStyleRef() );
             md.setStyles( p.first );
             md.setLegendStyles( p.second );
-            Layer l = new FeatureLayer( md, store, featureType, filter, sortBy, sortByFeatureInfo );
+            FeatureLayer l = new FeatureLayer( md, store, featureType, filter, sortBy, sortByFeatureInfo );
+            if ( !lay.getVectorTileProperty().isEmpty() ) {
+                l.setVectorTileProperties( lay.getVectorTileProperty() );
+            }
+            if ( lay.isProducerThread() != null ) {
+                l.setProducerThread( lay.isProducerThread() );
+            }
             map.put( lay.getName(), l );
         }
         return new MultipleLayerStore( map, metadata );
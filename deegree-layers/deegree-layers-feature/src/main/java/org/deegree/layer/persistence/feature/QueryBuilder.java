@@ -44,6 +44,7 @@ package org.deegree.layer.persistence.feature;
 import static org.deegree.commons.utils.CollectionUtils.clearNulls;
 import static org.deegree.commons.utils.CollectionUtils.map;
 import static org.deegree.commons.utils.math.MathUtils.round;
+import static org.deegree.feature.persistence.query.Query.QueryHint.HINT_DEADLINE;
 import static org.deegree.layer.persistence.feature.FilterBuilder.buildFilter;
 
 import java.util.ArrayList;
@@ -123,6 +124,12 @@ class QueryBuilder {
             queries.add( fquery );
         }
 
+        if ( query.getDeadline() != -1 ) {
+            for ( Query q : queries ) {
+                q.setHint( HINT_DEADLINE, query.getDeadline() );
+            }
+        }
+
         return queries;
     }
 
@@ -145,7 +145,7 @@ class RemoteWMSLayer extends AbstractLayer {
 
             GetMap gm = new GetMap( singletonList( originalName ), query.getWidth(), query.getHeight(),
                                     query.getEnvelope(), crs, format, transparent );
-            return new RemoteWMSLayerData( client, gm, extraParams );
+            return new RemoteWMSLayerData( client, gm, extraParams, query.getDeadline() );
         } catch ( Throwable e ) {
             LOG.warn( "Error when retrieving remote map: {}", e.getLocalizedMessage() );
             LOG.trace( "Stack trace:", e );
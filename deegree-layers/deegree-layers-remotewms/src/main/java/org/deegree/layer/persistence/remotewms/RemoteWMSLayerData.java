@@ -61,6 +61,8 @@ public class RemoteWMSLayerData implements LayerData {
 
     private static final Logger LOG = getLogger( RemoteWMSLayerData.class );
 
+    private static final int TIMEOUT = 30;
+
     private GetMap gm;
 
     private final WMSClient client;
@@ -69,12 +71,27 @@ public class RemoteWMSLayerData implements LayerData {
 
     private GetFeatureInfo gfi;
 
+    private long deadline = -1;
+
     public RemoteWMSLayerData( WMSClient client, GetMap gm, Map<String, String> extraParams ) {
         this.client = client;
         this.gm = gm;
         this.extraParams = extraParams;
     }
 
+    /**
+     * @param client
+     * @param gm
+     * @param extraParams
+     * @param deadline
+     *            the time (as in {@link System#currentTimeMillis()}) after which the remote request is aborted, -1 to
+     *            use the default timeout only
+     */
+    public RemoteWMSLayerData( WMSClient client, GetMap gm, Map<String, String> extraParams, long deadline ) {
+        this( client, gm, extraParams );
+        this.deadline = deadline;
+    }
+
     public RemoteWMSLayerData( WMSClient client, GetFeatureInfo gfi, Map<String, String> extraParams ) {
         this.client = client;
         this.gfi = gfi;
@@ -83,8 +100,18 @@ public class RemoteWMSLayerData implements LayerData {
 
     @Override
     public void render( RenderContext context ) {
+        int timeout = TIMEOUT;
+        if ( deadline != -1 ) {
+            long remaining = deadline - System.currentTimeMillis();
+            if ( remaining <= 0 ) {
+                LOG.debug( "Not requesting the remote map, the deadline has passed." );
+                return;
+            }
+            // the client's timeout is given in seconds
+            timeout = (int) Math.min( TIMEOUT, ( remaining + 999 ) / 1000 );
+        }
         try {
-            Pair<BufferedImage, String> map = client.getMap( gm, extraParams, 30 );
+            Pair<BufferedImage, String> map = client.getMap( gm, extraParams, timeout );
             if ( map.first != null ) {
                 context.paintImage( map.first );
             }
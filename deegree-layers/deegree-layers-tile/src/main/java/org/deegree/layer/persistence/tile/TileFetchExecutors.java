@@ -0,0 +1,128 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.layer.persistence.tile;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+
+/**
+ * Manages one bounded executor per tile store, used to fetch tiles concurrently. The size of an executor limits the
+ * number of tiles fetched at the same time from its tile store, across all layers and requests. Idle threads are
+ * stopped after a minute.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+final class TileFetchExecutors {
+
+    private static final Logger LOG = getLogger( TileFetchExecutors.class );
+
+    // maps tile store ids to executors
+    private static final ConcurrentMap<String, ThreadPoolExecutor> EXECUTORS = new ConcurrentHashMap<String, ThreadPoolExecutor>();
+
+    private TileFetchExecutors() {
+        // only static methods
+    }
+
+    /**
+     * @param tileStoreId
+     *            never <code>null</code>
+     * @param maxParallel
+     *            the number of tiles to fetch concurrently from the tile store, if an executor already exists for the
+     *            tile store, it is enlarged if necessary
+     * @return the executor for the tile store, never <code>null</code>
+     */
+    static ExecutorService getExecutor( String tileStoreId, int maxParallel ) {
+        ThreadPoolExecutor executor = EXECUTORS.get( tileStoreId );
+        if ( executor == null ) {
+            ThreadPoolExecutor created = new ThreadPoolExecutor( maxParallel, maxParallel, 60, SECONDS,
+                                                                 new LinkedBlockingQueue<Runnable>(),
+                                                                 new FetchThreadFactory( tileStoreId ) );
+            created.allowCoreThreadTimeOut( true );
+            executor = EXECUTORS.putIfAbsent( tileStoreId, created );
+            if ( executor == null ) {
+                LOG.debug( "Fetching up to {} tiles concurrently from tile store {}.", maxParallel, tileStoreId );
+                return created;
+            }
+        }
+        synchronized ( executor ) {
+            if ( executor.getMaximumPoolSize() < maxParallel ) {
+                LOG.debug( "Fetching up to {} tiles concurrently from tile store {}.", maxParallel, tileStoreId );
+                executor.setMaximumPoolSize( maxParallel );
+                executor.setCorePoolSize( maxParallel );
+            }
+        }
+        return executor;
+    }
+
+    private static class FetchThreadFactory implements ThreadFactory {
+
+        private final String tileStoreId;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        FetchThreadFactory( String tileStoreId ) {
+            this.tileStoreId = tileStoreId;
+        }
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, "tile-fetching-" + tileStoreId + "-" + count.incrementAndGet() );
+            t.setDaemon( true );
+            return t;
+        }
+
+    }
+
+}
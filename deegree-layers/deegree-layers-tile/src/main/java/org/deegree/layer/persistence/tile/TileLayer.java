@@ -43,10 +43,12 @@ package org.deegree.layer.persistence.tile;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.cs.coordinatesystems.ICRS;
@@ -75,6 +77,11 @@ public class TileLayer extends AbstractLayer {
     // maps crs to tile matrix set ids
     private Map<ICRS, String> coordinateSystems = new LinkedHashMap<ICRS, String>();
 
+    // maps tile matrix set ids to executors for concurrent fetching
+    private Map<String, ExecutorService> executors = new HashMap<String, ExecutorService>();
+
+    private long fetchTimeout;
+
     public TileLayer( LayerMetadata md, List<TileDataSet> datasets ) {
         super( md );
         for ( TileDataSet tds : datasets ) {
@@ -84,6 +91,20 @@ public class TileLayer extends AbstractLayer {
         }
     }
 
+    /**
+     * Enables fetching the tiles of a map request concurrently.
+     * 
+     * @param executors
+     *            maps tile matrix set ids to the executors to use for the corresponding tile data sets, tile data sets
+     *            without executor are fetched sequentially
+     * @param timeout
+     *            maximum time in milliseconds to wait for the tiles of one request
+     */
+    public void setConcurrentFetching( Map<String, ExecutorService> executors, long timeout ) {
+        this.executors = executors;
+        this.fetchTimeout = timeout;
+    }
+
     @Override
     public TileLayerData mapQuery( LayerQuery query, List<String> headers )
                             throws OWSException {
@@ -100,7 +121,7 @@ public class TileLayer extends AbstractLayer {
         TileDataSet data = tileDataSets.get( tds );
 
         Iterator<Tile> tiles = data.getTiles( env, query.getResolution() );
-        return new TileLayerData( tiles );
+        return new TileLayerData( tiles, executors.get( tds ), fetchTimeout );
     }
 
     @Override
@@ -46,9 +46,12 @@ import static org.deegree.geometry.metadata.SpatialMetadataConverter.fromJaxb;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import org.deegree.commons.ows.metadata.Description;
 import org.deegree.commons.utils.DoublePair;
@@ -59,6 +62,7 @@ import org.deegree.layer.config.ConfigUtils;
 import org.deegree.layer.metadata.LayerMetadata;
 import org.deegree.layer.persistence.base.jaxb.ScaleDenominatorsType;
 import org.deegree.layer.persistence.tile.jaxb.TileLayerType;
+import org.deegree.layer.persistence.tile.jaxb.TileLayerType.ConcurrentFetching;
 import org.deegree.tile.TileDataSet;
 import org.deegree.tile.persistence.TileStore;
 import org.deegree.tile.persistence.TileStoreProvider;
@@ -86,6 +90,8 @@ class TileLayerBuilder {
 
     TileLayer createLayer( TileLayerType cfg ) {
         List<TileDataSet> datasets = new ArrayList<TileDataSet>();
+        Map<String, ExecutorService> executors = new HashMap<String, ExecutorService>();
+        ConcurrentFetching concurrent = cfg.getConcurrentFetching();
         Envelope envelope = null;
         Set<ICRS> crsSet = new LinkedHashSet<ICRS>();
         for ( TileLayerType.TileDataSet tds : cfg.getTileDataSet() ) {
@@ -105,6 +111,10 @@ class TileLayerBuilder {
             }
 
             datasets.add( dataset );
+            if ( concurrent != null ) {
+                executors.put( dataset.getTileMatrixSet().getIdentifier(),
+                               TileFetchExecutors.getExecutor( id, Math.max( 1, concurrent.getMaxParallel() ) ) );
+            }
 
             SpatialMetadata smd = dataset.getTileMatrixSet().getSpatialMetadata();
             crsSet.addAll( smd.getCoordinateSystems() );
@@ -132,7 +142,11 @@ class TileLayerBuilder {
             md.setScaleDenominators( p );
         }
         md.setMetadataId( cfg.getMetadataSetId() );
-        return new TileLayer( md, datasets );
+        TileLayer layer = new TileLayer( md, datasets );
+        if ( concurrent != null ) {
+            layer.setConcurrentFetching( executors, concurrent.getTimeout() );
+        }
+        return layer;
     }
 
 }
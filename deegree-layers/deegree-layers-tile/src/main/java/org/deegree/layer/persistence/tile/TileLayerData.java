@@ -40,13 +40,29 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.layer.persistence.tile;
 
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 
 import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.Envelope;
 import org.deegree.layer.LayerData;
 import org.deegree.rendering.r2d.TileRenderer;
 import org.deegree.rendering.r2d.context.RenderContext;
 import org.deegree.tile.Tile;
+import org.deegree.tile.TileIOException;
+import org.slf4j.Logger;
 
 /**
  * <code>TileLayerData</code>
@@ -59,17 +75,77 @@ import org.deegree.tile.Tile;
 
 public class TileLayerData implements LayerData {
 
+    private static final Logger LOG = getLogger( TileLayerData.class );
+
     private final Iterator<Tile> tiles;
 
+    private final ExecutorService executor;
+
+    private final long timeout;
+
     public TileLayerData( Iterator<Tile> tiles ) {
+        this( tiles, null, -1 );
+    }
+
+    /**
+     * @param tiles
+     * @param executor
+     *            if not <code>null</code>, the tile images are fetched concurrently using this executor
+     * @param timeout
+     *            maximum time in milliseconds to wait for all tiles when fetching concurrently
+     */
+    public TileLayerData( Iterator<Tile> tiles, ExecutorService executor, long timeout ) {
         this.tiles = tiles;
+        this.executor = executor;
+        this.timeout = timeout;
     }
 
     @Override
     public void render( RenderContext context ) {
         TileRenderer renderer = context.getTileRenderer();
+        if ( executor == null ) {
+            while ( tiles.hasNext() ) {
+                renderer.render( tiles.next() );
+            }
+            return;
+        }
+
+        List<Tile> list = new ArrayList<Tile>();
+        List<Future<BufferedImage>> images = new ArrayList<Future<BufferedImage>>();
         while ( tiles.hasNext() ) {
-            renderer.render( tiles.next() );
+            final Tile tile = tiles.next();
+            list.add( tile );
+            if ( tile == null ) {
+                images.add( null );
+                continue;
+            }
+            images.add( executor.submit( new Callable<BufferedImage>() {
+                @Override
+                public BufferedImage call()
+                                        throws TileIOException {
+                    return tile.getAsImage();
+                }
+            } ) );
+        }
+
+        // draw in the order of the tile iterator, independent of the order the tiles are available
+        long deadline = currentTimeMillis() + timeout;
+        try {
+            for ( int i = 0; i < list.size(); ++i ) {
+                if ( Thread.currentThread().isInterrupted() ) {
+                    LOG.debug( "Rendering was interrupted, stopping." );
+                    break;
+                }
+                Tile tile = list.get( i );
+                Future<BufferedImage> image = images.get( i );
+                renderer.render( tile == null ? null : new FetchedTile( tile, image, deadline ) );
+            }
+        } finally {
+            for ( Future<BufferedImage> image : images ) {
+                if ( image != null ) {
+                    image.cancel( true );
+                }
+            }
         }
     }
 
@@ -78,4 +154,74 @@ public class TileLayerData implements LayerData {
         return null;
     }
 
+    /**
+     * Tile waiting for a concurrently fetched image.
+     */
+    private static class FetchedTile implements Tile {
+
+        private final Tile tile;
+
+        private final Future<BufferedImage> image;
+
+        private final long deadline;
+
+        FetchedTile( Tile tile, Future<BufferedImage> image, long deadline ) {
+            this.tile = tile;
+            this.image = image;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public BufferedImage getAsImage()
+                                throws TileIOException {
+            try {
+                return image.get( Math.max( 0, deadline - currentTimeMillis() ), MILLISECONDS );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new TileIOException( "Interrupted while waiting for the tile." );
+            } catch ( ExecutionException e ) {
+                Throwable cause = e.getCause();
+                if ( cause instanceof RuntimeException ) {
+                    throw (RuntimeException) cause;
+                }
+                if ( cause instanceof Error ) {
+                    throw (Error) cause;
+                }
+                throw new TileIOException( cause );
+            } catch ( TimeoutException e ) {
+                LOG.debug( "Tile was not available in time." );
+                throw new TileIOException( "Tile was not available in time." );
+            }
+        }
+
+        @Override
+        public InputStream getAsStream()
+                                throws TileIOException {
+            return tile.getAsStream();
+        }
+
+        @Override
+        public String getETag()
+                                throws TileIOException {
+            return tile.getETag();
+        }
+
+        @Override
+        public long getLastModified() {
+            return tile.getLastModified();
+        }
+
+        @Override
+        public Envelope getEnvelope() {
+            return tile.getEnvelope();
+        }
+
+        @Override
+        public FeatureCollection getFeatures( int i, int j, int limit )
+                                throws UnsupportedOperationException {
+            return tile.getFeatures( i, j, limit );
+        }
+
+    }
+
 }
@@ -70,6 +70,8 @@ public class RequestContext {
 
     private final String requestedEndpointUrl;
 
+    private final String authorization;
+
     /**
      * @param request
      *            request for which the context will be created, must not be <code>null</code>
@@ -85,6 +87,7 @@ public class RequestContext {
         this.hardcodedServicesUrl = hardcodedServicesUrl;
         this.hardcodedResourcesUrl = hardcodedResourcesUrl;
         this.credentials = credentials;
+        authorization = request.getHeader( "Authorization" );
         pathInfo = request.getPathInfo();
         requestedEndpointUrl = request.getRequestURL().toString();
         webappBaseUrl = deriveWebappBaseUrl( requestedEndpointUrl, request );
@@ -153,6 +156,13 @@ public class RequestContext {
         return credentials;
     }
 
+    /**
+     * @return the value of the Authorization header of the request, can be <code>null</code>
+     */
+    public String getAuthorization() {
+        return authorization;
+    }
+
     @Override
     public String toString() {
         return "{credentials=" + credentials + ",requestURL=" + requestedEndpointUrl + "}";
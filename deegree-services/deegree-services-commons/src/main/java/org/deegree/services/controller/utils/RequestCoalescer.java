@@ -0,0 +1,221 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.utils;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeoutException;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.services.controller.Credentials;
+import org.deegree.services.controller.OGCFrontController;
+import org.deegree.services.controller.RequestContext;
+import org.slf4j.Logger;
+
+/**
+ * Coalesces identical requests that are processed at the same time. The first request with a given key is executed in
+ * the calling thread, requests with the same key arriving while it is running wait for it and share its result (or
+ * exception). If the result is not available within the maximum waiting time, the waiting request is executed on its
+ * own.
+ * <p>
+ * The key must identify the response completely, including the credentials of the requester (see
+ * {@link #getCredentialsKey()}), and the result must not be modified after it has been returned, as it is shared.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @param <V>
+ *            the type of the shared result
+ */
+public class RequestCoalescer<V> {
+
+    private static final Logger LOG = getLogger( RequestCoalescer.class );
+
+    private final ConcurrentHashMap<String, FutureTask<V>> running = new ConcurrentHashMap<String, FutureTask<V>>();
+
+    private final long maxWait;
+
+    /**
+     * @param maxWait
+     *            the maximum number of milliseconds to wait for the result of an identical request
+     */
+    public RequestCoalescer( long maxWait ) {
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * @param key
+     *            identifies the result, never <code>null</code>
+     * @param task
+     *            produces the result, never <code>null</code>
+     * @return the result of the task, or of the identical task that was already running
+     * @throws OWSException
+     * @throws IOException
+     */
+    public V execute( String key, Callable<V> task )
+                            throws OWSException, IOException {
+        FutureTask<V> future = new FutureTask<V>( task );
+        FutureTask<V> existing = running.putIfAbsent( key, future );
+        if ( existing == null ) {
+            try {
+                future.run();
+                return future.get();
+            } catch ( InterruptedException e ) {
+                // cannot happen, the task has already completed
+                Thread.currentThread().interrupt();
+                throw new OWSException( "The request was interrupted.", NO_APPLICABLE_CODE );
+            } catch ( ExecutionException e ) {
+                throw rethrow( e.getCause() );
+            } finally {
+                running.remove( key, future );
+            }
+        }
+
+        // the key is not logged, as it identifies the credentials
+        LOG.debug( "Waiting for identical request." );
+        try {
+            V result = existing.get( maxWait, MILLISECONDS );
+            if ( isShareable( result ) ) {
+                return result;
+            }
+            LOG.debug( "Result of identical request cannot be shared, executing it separately." );
+        } catch ( TimeoutException e ) {
+            LOG.debug( "Identical request took too long, executing it separately." );
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new OWSException( "The request was interrupted.", NO_APPLICABLE_CODE );
+        } catch ( ExecutionException e ) {
+            throw rethrow( e.getCause() );
+        }
+        try {
+            return task.call();
+        } catch ( Exception e ) {
+            throw rethrow( e );
+        }
+    }
+
+    /**
+     * Called for the result of a request before it is handed to waiting identical requests. Override to execute the
+     * waiting requests separately instead, eg. if the result is incomplete.
+     * 
+     * @param result
+     *            the result of the first request
+     * @return true, if the waiting requests may use the result, true by default
+     */
+    protected boolean isShareable( V result ) {
+        return true;
+    }
+
+    private static OWSException rethrow( Throwable e )
+                            throws IOException {
+        if ( e instanceof OWSException ) {
+            return (OWSException) e;
+        }
+        if ( e instanceof IOException ) {
+            throw (IOException) e;
+        }
+        if ( e instanceof RuntimeException ) {
+            throw (RuntimeException) e;
+        }
+        if ( e instanceof Error ) {
+            throw (Error) e;
+        }
+        LOG.trace( "Stack trace:", e );
+        return new OWSException( e.getLocalizedMessage(), e, NO_APPLICABLE_CODE );
+    }
+
+    /**
+     * @return the number of requests currently being executed
+     */
+    public int getRunning() {
+        return running.size();
+    }
+
+    /**
+     * @return a digest identifying the credentials (the Authorization header and the deegree credentials) of the
+     *         current request, to be appended to the keys, never <code>null</code>
+     */
+    public static String getCredentialsKey() {
+        RequestContext context = OGCFrontController.getContext();
+        if ( context == null ) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        if ( context.getAuthorization() != null ) {
+            sb.append( context.getAuthorization() );
+        }
+        Credentials creds = context.getCredentials();
+        if ( creds != null ) {
+            sb.append( '|' ).append( creds.getUser() ).append( '|' ).append( creds.getPassword() );
+            sb.append( '|' ).append( creds.getSessionId() );
+        }
+        if ( sb.length() == 0 ) {
+            return "";
+        }
+        // the keys are kept in memory while requests are running, so do not keep the plain credentials
+        try {
+            byte[] hash = MessageDigest.getInstance( "SHA-1" ).digest( sb.toString().getBytes( "UTF-8" ) );
+            return new BigInteger( 1, hash ).toString( 16 );
+        } catch ( NoSuchAlgorithmException e ) {
+            // SHA-1 is required to be available on every Java platform
+            throw new IllegalStateException( e );
+        } catch ( UnsupportedEncodingException e ) {
+            // UTF-8 is required to be available on every Java platform
+            throw new IllegalStateException( e );
+        }
+    }
+
+}
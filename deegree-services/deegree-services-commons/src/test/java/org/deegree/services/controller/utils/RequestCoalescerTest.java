@@ -0,0 +1,232 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.junit.Test;
+
+/**
+ * Tests the sharing of results by the {@link RequestCoalescer}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class RequestCoalescerTest {
+
+    @Test
+    public void testIdenticalRequestsShareResult()
+                            throws Exception {
+        final RequestCoalescer<Object> coalescer = new RequestCoalescer<Object>( 10000 );
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final AtomicInteger executions = new AtomicInteger();
+        final Object value = new Object();
+        final Callable<Object> task = new Callable<Object>() {
+            @Override
+            public Object call()
+                                    throws Exception {
+                executions.incrementAndGet();
+                started.countDown();
+                release.await();
+                return value;
+            }
+        };
+        final Object[] results = new Object[2];
+        Thread first = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    results[0] = coalescer.execute( "key", task );
+                } catch ( Exception e ) {
+                    results[0] = e;
+                }
+            }
+        };
+        first.start();
+        started.await();
+        Thread second = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    results[1] = coalescer.execute( "key", task );
+                } catch ( Exception e ) {
+                    results[1] = e;
+                }
+            }
+        };
+        second.start();
+        // give the second request time to find the running one
+        Thread.sleep( 100 );
+        release.countDown();
+        first.join();
+        second.join();
+        assertSame( value, results[0] );
+        assertSame( value, results[1] );
+        assertEquals( 1, executions.get() );
+        assertEquals( 0, coalescer.getRunning() );
+    }
+
+    @Test
+    public void testTimeoutExecutesSeparately()
+                            throws Exception {
+        final RequestCoalescer<String> coalescer = new RequestCoalescer<String>( 50 );
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        Thread first = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    coalescer.execute( "key", new Callable<String>() {
+                        @Override
+                        public String call()
+                                                throws Exception {
+                            started.countDown();
+                            release.await();
+                            return "slow";
+                        }
+                    } );
+                } catch ( Exception e ) {
+                    // ignored
+                }
+            }
+        };
+        first.start();
+        started.await();
+        String result = coalescer.execute( "key", new Callable<String>() {
+            @Override
+            public String call() {
+                return "fast";
+            }
+        } );
+        release.countDown();
+        first.join();
+        assertEquals( "fast", result );
+    }
+
+    @Test
+    public void testUnshareableResultExecutesSeparately()
+                            throws Exception {
+        final RequestCoalescer<String> coalescer = new RequestCoalescer<String>( 10000 ) {
+            @Override
+            protected boolean isShareable( String result ) {
+                return !result.equals( "partial" );
+            }
+        };
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        Thread first = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    coalescer.execute( "key", new Callable<String>() {
+                        @Override
+                        public String call()
+                                                throws Exception {
+                            started.countDown();
+                            release.await();
+                            return "partial";
+                        }
+                    } );
+                } catch ( Exception e ) {
+                    // ignored
+                }
+            }
+        };
+        first.start();
+        started.await();
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    // give the second request time to find the running one
+                    Thread.sleep( 100 );
+                } catch ( InterruptedException e ) {
+                    // ignored
+                }
+                release.countDown();
+            }
+        }.start();
+        String result = coalescer.execute( "key", new Callable<String>() {
+            @Override
+            public String call() {
+                return "complete";
+            }
+        } );
+        first.join();
+        assertEquals( "complete", result );
+    }
+
+    @Test
+    public void testExceptionIsRethrown()
+                            throws Exception {
+        RequestCoalescer<String> coalescer = new RequestCoalescer<String>( 1000 );
+        try {
+            coalescer.execute( "key", new Callable<String>() {
+                @Override
+                public String call()
+                                        throws Exception {
+                    throw new OWSException( "failed", OWSException.NO_APPLICABLE_CODE );
+                }
+            } );
+            fail( "Expected an OWSException." );
+        } catch ( OWSException e ) {
+            assertEquals( "failed", e.getMessage() );
+        }
+        assertEquals( "again", coalescer.execute( "key", new Callable<String>() {
+            @Override
+            public String call() {
+                return "again";
+            }
+        } ) );
+    }
+
+}
@@ -0,0 +1,154 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2010 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+ http://www.occamlabs.de/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+
+package org.deegree.services.config.actions;
+
+import static java.lang.Double.parseDouble;
+import static java.lang.Integer.parseInt;
+import static org.deegree.commons.utils.kvp.KVPUtils.getNormalizedKVPMap;
+import static org.deegree.services.config.actions.Utils.getWorkspaceAndPath;
+import static org.deegree.tile.persistence.seeding.TileSeeder.parseArea;
+import static org.deegree.tile.persistence.seeding.TileSeeder.parseLevels;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.commons.config.DeegreeWorkspace;
+import org.deegree.commons.utils.Pair;
+import org.deegree.geometry.Geometry;
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.persistence.TileStore;
+import org.deegree.tile.persistence.TileStoreProvider;
+import org.deegree.tile.persistence.TileStoreTransaction;
+import org.deegree.tile.persistence.seeding.SeedingProgress;
+import org.deegree.tile.persistence.seeding.TileSeeder;
+import org.deegree.workspace.Workspace;
+
+/**
+ * <code>Seed</code>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+
+public class Seed {
+
+    public static void seed( String path, String qstring, HttpServletResponse resp )
+                            throws IOException {
+        Pair<DeegreeWorkspace, String> p = getWorkspaceAndPath( path );
+
+        resp.setContentType( "text/plain" );
+
+        String[] ps = path.split( "/" );
+        if ( ps.length < 2 ) {
+            resp.setStatus( 404 );
+            IOUtils.write( "No tile store and tile data set given.\n", resp.getOutputStream() );
+            return;
+        }
+        String id = ps[0];
+        String tdsid = ps[1];
+        Map<String, String> kvp = Collections.emptyMap();
+        if ( qstring != null ) {
+            kvp = getNormalizedKVPMap( qstring, "UTF-8" );
+        }
+
+        Workspace ws = p.first.getNewWorkspace();
+        TileStore target = ws.getResource( TileStoreProvider.class, id );
+        TileStore source = target;
+        if ( kvp.get( "SOURCE" ) != null ) {
+            source = ws.getResource( TileStoreProvider.class, kvp.get( "SOURCE" ) );
+        }
+        if ( target == null || source == null ) {
+            resp.setStatus( 404 );
+            IOUtils.write( "No such tile store.\n", resp.getOutputStream() );
+            return;
+        }
+        TileDataSet dataSet = source.getTileDataSet( tdsid );
+        if ( dataSet == null || target.getTileDataSet( tdsid ) == null ) {
+            resp.setStatus( 404 );
+            IOUtils.write( "No such tile data set.\n", resp.getOutputStream() );
+            return;
+        }
+
+        List<String> levels;
+        Geometry area;
+        int threads, metaTileSize;
+        double rate;
+        try {
+            levels = parseLevels( dataSet, kvp.get( "LEVELS" ) );
+            area = parseArea( dataSet, kvp.get( "AREA" ) );
+            threads = kvp.get( "THREADS" ) == null ? 1 : parseInt( kvp.get( "THREADS" ) );
+            rate = kvp.get( "RATE" ) == null ? 0 : parseDouble( kvp.get( "RATE" ) );
+            metaTileSize = kvp.get( "METATILE" ) == null ? 1 : parseInt( kvp.get( "METATILE" ) );
+        } catch ( Exception e ) {
+            resp.setStatus( 404 );
+            IOUtils.write( "A parameter value was invalid: " + e.getLocalizedMessage() + "\n", resp.getOutputStream() );
+            return;
+        }
+
+        // seeding a store from itself just fetches the tiles, eg. to fill a caching tile store
+        TileStoreTransaction ta = source == target ? null : target.acquireTransaction( tdsid );
+        SeedingProgress progress = new SeedingProgress();
+        try {
+            new TileSeeder( dataSet, ta, threads, rate, metaTileSize ).seed( levels, area, progress );
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            resp.setStatus( 500 );
+            IOUtils.write( "Seeding was interrupted.\n", resp.getOutputStream() );
+            return;
+        } catch ( IllegalArgumentException e ) {
+            resp.setStatus( 404 );
+            IOUtils.write( e.getLocalizedMessage() + "\n", resp.getOutputStream() );
+            return;
+        }
+        IOUtils.write( "Seeded " + progress.getSeeded() + " tiles, " + progress.getFailed() + " tiles failed.\n",
+                       resp.getOutputStream() );
+    }
+
+}
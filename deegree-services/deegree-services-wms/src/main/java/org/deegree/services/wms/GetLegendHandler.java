@@ -45,49 +45,89 @@ import static java.awt.RenderingHints.KEY_ANTIALIASING;
 import static java.awt.RenderingHints.KEY_TEXT_ANTIALIASING;
 import static java.awt.RenderingHints.VALUE_ANTIALIAS_ON;
 import static java.awt.RenderingHints.VALUE_TEXT_ANTIALIAS_ON;
+import static java.awt.image.DataBuffer.getDataTypeSize;
 import static org.deegree.style.utils.ImageUtils.postprocessPng8bit;
+import static org.deegree.style.utils.ImageUtils.prepareImage;
+import static org.slf4j.LoggerFactory.getLogger;
 
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
-import java.util.HashMap;
+import java.awt.image.DataBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import org.deegree.commons.utils.Pair;
 import org.deegree.layer.LayerRef;
+import org.deegree.layer.metadata.LayerMetadata;
 import org.deegree.protocol.wms.ops.GetLegendGraphic;
+import org.deegree.rendering.r2d.legends.LegendOptions;
 import org.deegree.rendering.r2d.legends.Legends;
 import org.deegree.style.StyleRef;
 import org.deegree.style.se.unevaluated.Style;
+import org.deegree.theme.Theme;
+import org.slf4j.Logger;
 
 /**
- * Produces legends for the map service.
+ * Produces legends for the map service. Rendered legends are kept in a cache bounded by the memory used by the
+ * images, and identical legends requested concurrently are only rendered once.
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: stranger $
  * 
  * @version $Revision: $, $Date: $
  */
-class GetLegendHandler {
+public class GetLegendHandler {
 
-    private HashMap<Style, Pair<Integer, Integer>> legendSizes = new HashMap<Style, Pair<Integer, Integer>>();
+    private static final Logger LOG = getLogger( GetLegendHandler.class );
 
-    private HashMap<Style, HashMap<String, BufferedImage>> legends = new HashMap<Style, HashMap<String, BufferedImage>>();
+    /** Default maximum number of bytes used by cached legend images, 16MB. */
+    public static final long DEFAULT_MAX_MEMORY = 16 * 1024 * 1024;
 
-    private MapService service;
+    private final ConcurrentHashMap<Style, Pair<Integer, Integer>> legendSizes = new ConcurrentHashMap<Style, Pair<Integer, Integer>>();
+
+    // guarded by this, in access order
+    private final LinkedHashMap<LegendKey, BufferedImage> legends = new LinkedHashMap<LegendKey, BufferedImage>( 16,
+                                                                                                             0.75f,
+                                                                                                             true );
+
+    private final ConcurrentHashMap<LegendKey, FutureTask<BufferedImage>> rendering = new ConcurrentHashMap<LegendKey, FutureTask<BufferedImage>>();
+
+    private final MapService service;
+
+    private long memory;
+
+    private long maxMemory = DEFAULT_MAX_MEMORY;
+
+    private Thread prerenderer;
 
     GetLegendHandler( MapService service ) {
         this.service = service;
     }
 
+    /**
+     * @param maxMemory
+     *            the maximum number of bytes used by cached legend images, zero disables the cache
+     */
+    synchronized void setMaxMemory( long maxMemory ) {
+        this.maxMemory = maxMemory;
+        evict();
+    }
+
     BufferedImage getLegend( GetLegendGraphic req ) {
-        Legends renderer = new Legends( req.getLegendOptions() );
+        LegendOptions opts = req.getLegendOptions();
 
         Style style = findLegendStyle( req.getLayer(), req.getStyle() );
 
         Pair<Integer, Integer> size;
-        if ( renderer.getLegendOptions().isDefault() ) {
+        if ( opts.isDefault() ) {
             size = getLegendSize( style );
         } else {
-            size = renderer.getLegendSize( style );
+            size = new Legends( opts ).getLegendSize( style );
         }
 
         if ( req.getWidth() == -1 ) {
@@ -97,19 +137,7 @@ class GetLegendHandler {
             req.setHeight( size.second );
         }
 
-        boolean originalSize = req.getWidth() == size.first && req.getHeight() == size.second
-                               && renderer.getLegendOptions().isDefault();
-
-        HashMap<String, BufferedImage> legendMap = legends.get( style );
-        if ( originalSize && legendMap != null && legendMap.get( req.getFormat() ) != null ) {
-            return legendMap.get( req.getFormat() );
-        }
-        if ( legendMap == null ) {
-            legendMap = new HashMap<String, BufferedImage>();
-            legends.put( style, legendMap );
-        }
-
-        return buildLegend( req, renderer, style, originalSize, legendMap );
+        return getLegend( style, opts, req.getWidth(), req.getHeight(), req.getFormat() );
     }
 
     Pair<Integer, Integer> getLegendSize( Style style ) {
@@ -118,8 +146,59 @@ class GetLegendHandler {
             return res;
         }
 
-        legendSizes.put( style, res = new Legends().getLegendSize( style ) );
-        return res;
+        res = new Legends().getLegendSize( style );
+        Pair<Integer, Integer> old = legendSizes.putIfAbsent( style, res );
+        return old == null ? res : old;
+    }
+
+    /**
+     * Renders the default legends of all styles of all themes in the background.
+     * 
+     * @param format
+     *            the image format to render the legends in
+     */
+    synchronized void prerender( final String format ) {
+        if ( service.themeMap == null || prerenderer != null ) {
+            return;
+        }
+        prerenderer = new Thread( "legend-prerenderer" ) {
+            @Override
+            public void run() {
+                int cnt = 0;
+                for ( Theme theme : service.themeMap.values() ) {
+                    LayerMetadata md = theme.getLayerMetadata();
+                    for ( String name : md.getStyles().keySet() ) {
+                        if ( isInterrupted() ) {
+                            return;
+                        }
+                        Style style = md.getLegendStyles().get( name );
+                        if ( style == null ) {
+                            style = md.getStyles().get( name );
+                        }
+                        try {
+                            Pair<Integer, Integer> size = getLegendSize( style );
+                            getLegend( style, new LegendOptions(), size.first, size.second, format );
+                            ++cnt;
+                        } catch ( Throwable e ) {
+                            LOG.warn( "Could not render the legend of style {} of layer {}: {}",
+                                      new Object[] { name, md.getName(), e.getLocalizedMessage() } );
+                            LOG.trace( "Stack trace:", e );
+                        }
+                    }
+                }
+                LOG.debug( "Rendered {} legends in advance.", cnt );
+            }
+        };
+        prerenderer.setDaemon( true );
+        prerenderer.start();
+    }
+
+    synchronized void destroy() {
+        if ( prerenderer != null ) {
+            prerenderer.interrupt();
+        }
+        legends.clear();
+        memory = 0;
     }
 
     private Style findLegendStyle( LayerRef layer, StyleRef styleRef ) {
@@ -131,26 +210,145 @@ class GetLegendHandler {
         return style;
     }
 
-    private BufferedImage buildLegend( GetLegendGraphic req, Legends renderer, Style style, boolean originalSize,
-                                       HashMap<String, BufferedImage> legendMap ) {
-        BufferedImage img = MapService.prepareImage( req );
+    private BufferedImage getLegend( final Style style, final LegendOptions opts, final int width, final int height,
+                                     final String format ) {
+        final LegendKey key = new LegendKey( style, opts, width, height, format );
+        synchronized ( this ) {
+            BufferedImage img = legends.get( key );
+            if ( img != null ) {
+                return img;
+            }
+        }
+
+        FutureTask<BufferedImage> task = new FutureTask<BufferedImage>( new Callable<BufferedImage>() {
+            @Override
+            public BufferedImage call() {
+                synchronized ( GetLegendHandler.this ) {
+                    // may have been finished by someone else in the meantime
+                    BufferedImage img = legends.get( key );
+                    if ( img != null ) {
+                        return img;
+                    }
+                }
+                BufferedImage img = buildLegend( style, opts, width, height, format );
+                cache( key, img );
+                return img;
+            }
+        } );
+        FutureTask<BufferedImage> running = rendering.putIfAbsent( key, task );
+        if ( running == null ) {
+            running = task;
+            try {
+                task.run();
+            } finally {
+                rendering.remove( key, task );
+            }
+        }
+
+        try {
+            return running.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            return buildLegend( style, opts, width, height, format );
+        } catch ( ExecutionException e ) {
+            if ( e.getCause() instanceof Error ) {
+                throw (Error) e.getCause();
+            }
+            if ( e.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException( e.getCause() );
+        }
+    }
+
+    private synchronized void cache( LegendKey key, BufferedImage img ) {
+        long size = sizeOf( img );
+        if ( size > maxMemory ) {
+            return;
+        }
+        BufferedImage old = legends.put( key, img );
+        if ( old != null ) {
+            memory -= sizeOf( old );
+        }
+        memory += size;
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Entry<LegendKey, BufferedImage>> it = legends.entrySet().iterator();
+        while ( memory > maxMemory && it.hasNext() ) {
+            memory -= sizeOf( it.next().getValue() );
+            it.remove();
+        }
+    }
+
+    private static long sizeOf( BufferedImage img ) {
+        DataBuffer buf = img.getRaster().getDataBuffer();
+        return (long) buf.getSize() * buf.getNumBanks() * getDataTypeSize( buf.getDataType() ) / 8;
+    }
+
+    private static BufferedImage buildLegend( Style style, LegendOptions opts, int width, int height, String format ) {
+        BufferedImage img = prepareImage( format, width, height, true, null );
         Graphics2D g = img.createGraphics();
         g.setRenderingHint( KEY_ANTIALIASING, VALUE_ANTIALIAS_ON );
         g.setRenderingHint( KEY_TEXT_ANTIALIASING, VALUE_TEXT_ANTIALIAS_ON );
 
-        renderer.paintLegend( style, req.getWidth(), req.getHeight(), g );
+        new Legends( opts ).paintLegend( style, width, height, g );
 
         g.dispose();
 
-        if ( req.getFormat().equals( "image/png; mode=8bit" ) || req.getFormat().equals( "image/png; subtype=8bit" )
-             || req.getFormat().equals( "image/gif" ) ) {
+        if ( format.equals( "image/gif" ) ) {
             img = postprocessPng8bit( img );
         }
 
-        if ( originalSize ) {
-            legendMap.put( req.getFormat(), img );
-        }
         return img;
     }
 
+    /**
+     * Identifies a rendered legend. Styles are compared by identity, the legend options by value.
+     */
+    private static class LegendKey {
+
+        private final Style style;
+
+        private final int width, height, spacing, textSize, baseWidth, baseHeight;
+
+        private final String format;
+
+        LegendKey( Style style, LegendOptions opts, int width, int height, String format ) {
+            this.style = style;
+            this.width = width;
+            this.height = height;
+            this.format = format;
+            this.spacing = opts.spacing;
+            this.textSize = opts.textSize;
+            this.baseWidth = opts.baseWidth;
+            this.baseHeight = opts.baseHeight;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if ( !( obj instanceof LegendKey ) ) {
+                return false;
+            }
+            LegendKey k = (LegendKey) obj;
+            return k.style == style && k.width == width && k.height == height && k.spacing == spacing
+                   && k.textSize == textSize && k.baseWidth == baseWidth && k.baseHeight == baseHeight
+                   && k.format.equals( format );
+        }
+
+        @Override
+        public int hashCode() {
+            int res = System.identityHashCode( style );
+            res = 31 * res + width;
+            res = 31 * res + height;
+            res = 31 * res + spacing;
+            res = 31 * res + textSize;
+            res = 31 * res + baseWidth;
+            res = 31 * res + baseHeight;
+            return 31 * res + format.hashCode();
+        }
+
+    }
+
 }
@@ -47,10 +47,14 @@ import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
 
 import org.deegree.commons.annotations.LoggingNotes;
 import org.deegree.commons.ows.exception.OWSException;
@@ -67,6 +71,7 @@ import org.deegree.layer.LayerRef;
 import org.deegree.protocol.wms.filter.ScaleFunction;
 import org.deegree.protocol.wms.ops.GetFeatureInfoSchema;
 import org.deegree.protocol.wms.ops.GetLegendGraphic;
+import org.deegree.rendering.r2d.context.DefaultRenderContext;
 import org.deegree.rendering.r2d.context.MapOptions;
 import org.deegree.rendering.r2d.context.MapOptionsMaps;
 import org.deegree.rendering.r2d.context.RenderContext;
@@ -115,6 +120,12 @@ public class MapService {
 
     private GetLegendHandler getLegendHandler;
 
+    private ParallelLayerRenderer parallelRenderer;
+
+    private RenderingTimeout renderingTimeout;
+
+    private boolean deferredLabelPlacement;
+
     /**
      * @param conf
      * @param adapter
@@ -126,6 +137,10 @@ public class MapService {
         MapServiceBuilder builder = new MapServiceBuilder( conf );
 
         defaultLayerOptions = builder.buildMapOptions();
+        parallelRenderer = builder.buildParallelRenderer();
+        renderingTimeout = builder.buildRenderingTimeout();
+        deferredLabelPlacement = builder.buildDeferredLabelPlacement();
+        builder.configureSymbolCache();
 
         if ( conf != null && conf.getThemeId() != null && !conf.getThemeId().isEmpty() ) {
             themes = new ArrayList<Theme>();
@@ -207,10 +222,16 @@ public class MapService {
             queries.add( query );
         }
 
+        long deadline = renderingTimeout == null ? -1 : renderingTimeout.getDeadline();
+        for ( LayerQuery query : queries ) {
+            query.setDeadline( deadline );
+        }
+
         ListIterator<LayerQuery> queryIter = queries.listIterator();
 
         ScaleFunction.getCurrentScaleValue().set( scale );
 
+        List<String> names = new ArrayList<String>();
         for ( LayerRef lr : gm.getLayers() ) {
             LayerQuery query = queryIter.next();
             for ( org.deegree.layer.Layer l : Themes.getAllLayers( themeMap.get( lr.getName() ) ) ) {
@@ -219,15 +240,32 @@ public class MapService {
                     continue;
                 }
                 list.add( l.mapQuery( query, headers ) );
+                names.add( l.getMetadata().getName() );
             }
         }
-        Iterator<MapOptions> optIter = mapOptions.iterator();
-        for ( LayerData d : list ) {
-            ctx.applyOptions( optIter.next() );
-            d.render( ctx );
+        if ( deferredLabelPlacement && ctx instanceof DefaultRenderContext ) {
+            ( (DefaultRenderContext) ctx ).getTextRenderer().setDeferredPlacement( true );
+        }
+        try {
+            if ( parallelRenderer != null && list.size() > 1 && ctx instanceof DefaultRenderContext ) {
+                parallelRenderer.render( list, names, mapOptions, (DefaultRenderContext) ctx, scale,
+                                         renderingTimeout, deadline, headers );
+            } else {
+                Iterator<MapOptions> optIter = mapOptions.iterator();
+                Iterator<String> nameIter = names.iterator();
+                for ( LayerData d : list ) {
+                    ctx.applyOptions( optIter.next() );
+                    String name = nameIter.next();
+                    if ( renderingTimeout == null ) {
+                        d.render( ctx );
+                    } else if ( !renderingTimeout.render( d, ctx, deadline ) ) {
+                        renderingTimeout.timedOut( name, headers );
+                    }
+                }
+            }
+        } finally {
+            ScaleFunction.getCurrentScaleValue().remove();
         }
-
-        ScaleFunction.getCurrentScaleValue().remove();
     }
 
     private LayerQuery buildQuery( StyleRef style, LayerRef lr, MapOptionsMaps options, List<MapOptions> mapOptions,
@@ -305,10 +343,28 @@ public class MapService {
 
     private void getFeatureTypes( Collection<FeatureType> types, String name ) {
         for ( org.deegree.layer.Layer l : Themes.getAllLayers( themeMap.get( name ) ) ) {
-            types.addAll( l.getMetadata().getFeatureTypes() );
+            if ( l.getMetadata().getFeatureTypes() != null ) {
+                types.addAll( l.getMetadata().getFeatureTypes() );
+            }
         }
     }
 
+    /**
+     * @param gm
+     * @return the names of the feature types that may contribute to the requested map, never <code>null</code>
+     */
+    public Set<QName> getFeatureTypeNames( org.deegree.protocol.wms.ops.GetMap gm ) {
+        Set<QName> names = new HashSet<QName>();
+        List<FeatureType> types = new LinkedList<FeatureType>();
+        for ( LayerRef lr : gm.getLayers() ) {
+            getFeatureTypes( types, lr.getName() );
+        }
+        for ( FeatureType ft : types ) {
+            names.add( ft.getName() );
+        }
+        return names;
+    }
+
     /**
      * @param fis
      * @return an application schema object
@@ -340,6 +396,20 @@ public class MapService {
         return getLegendHandler.getLegend( req );
     }
 
+    /**
+     * @param maxMemory
+     *            the maximum number of bytes used by cached legend images, zero disables caching
+     * @param prerenderFormat
+     *            if not <code>null</code>, the default legends of all styles are rendered in this format in the
+     *            background
+     */
+    public void configureLegendCache( long maxMemory, String prerenderFormat ) {
+        getLegendHandler.setMaxMemory( maxMemory );
+        if ( prerenderFormat != null ) {
+            getLegendHandler.prerender( prerenderFormat );
+        }
+    }
+
     /**
      * @return the extensions object with default extension parameter settings
      */
@@ -361,4 +431,17 @@ public class MapService {
         return defaultLayerOptions.getMaxFeatures();
     }
 
+    /**
+     * Releases resources held by the map service, such as rendering threads.
+     */
+    public void destroy() {
+        if ( parallelRenderer != null ) {
+            parallelRenderer.destroy();
+        }
+        if ( renderingTimeout != null ) {
+            renderingTimeout.destroy();
+        }
+        getLegendHandler.destroy();
+    }
+
 }
@@ -46,12 +46,14 @@ import static org.deegree.rendering.r2d.context.MapOptions.Interpolation.NEAREST
 import static org.deegree.rendering.r2d.context.MapOptions.Quality.NORMAL;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import org.deegree.rendering.r2d.SymbolCache;
 import org.deegree.rendering.r2d.context.MapOptions;
 import org.deegree.rendering.r2d.context.MapOptions.Antialias;
 import org.deegree.rendering.r2d.context.MapOptions.Interpolation;
 import org.deegree.rendering.r2d.context.MapOptions.Quality;
 import org.deegree.services.jaxb.wms.LayerOptionsType;
 import org.deegree.services.jaxb.wms.ServiceConfigurationType;
+import org.deegree.services.wms.RenderingTimeout.Policy;
 import org.deegree.workspace.Workspace;
 import org.slf4j.Logger;
 
@@ -109,6 +111,35 @@ class MapServiceBuilder {
         return null;
     }
 
+    ParallelLayerRenderer buildParallelRenderer() {
+        if ( conf == null || conf.getRenderingThreads() == null || conf.getRenderingThreads() < 2 ) {
+            LOG.debug( "Rendering layers sequentially." );
+            return null;
+        }
+        return new ParallelLayerRenderer( conf.getRenderingThreads() );
+    }
+
+    boolean buildDeferredLabelPlacement() {
+        return conf != null && conf.isDeferredLabelPlacement() != null && conf.isDeferredLabelPlacement();
+    }
+
+    void configureSymbolCache() {
+        if ( conf == null || conf.getSymbolCacheMaxBytes() == null ) {
+            return;
+        }
+        long maxBytes = Math.max( 0, conf.getSymbolCacheMaxBytes() );
+        LOG.debug( "Limiting the symbol cache to {} bytes.", maxBytes );
+        SymbolCache.getInstance().setMaxBytes( maxBytes );
+    }
+
+    RenderingTimeout buildRenderingTimeout() {
+        if ( conf == null || conf.getRenderingTimeout() == null || conf.getRenderingTimeout() <= 0 ) {
+            return null;
+        }
+        Policy policy = handleDefaultValue( conf.getRenderingTimeoutPolicy(), Policy.class, Policy.PARTIAL );
+        return new RenderingTimeout( conf.getRenderingTimeout(), policy );
+    }
+
     private static <T extends Enum<T>> T handleDefaultValue( String val, Class<T> enumType, T defaultValue ) {
         if ( val == null ) {
             return defaultValue;
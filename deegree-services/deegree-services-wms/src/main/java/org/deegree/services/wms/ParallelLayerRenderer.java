@@ -0,0 +1,205 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms;
+
+import static java.lang.Math.max;
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.commons.utils.RequestUtils;
+import org.deegree.layer.LayerData;
+import org.deegree.protocol.wms.filter.ScaleFunction;
+import org.deegree.rendering.r2d.context.DefaultRenderContext;
+import org.deegree.rendering.r2d.context.MapOptions;
+import org.slf4j.Logger;
+
+/**
+ * Renders the layers of a GetMap request concurrently into separate off-screen buffers, and composites the buffers in
+ * request order afterwards.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class ParallelLayerRenderer {
+
+    private static final Logger LOG = getLogger( ParallelLayerRenderer.class );
+
+    private final ExecutorService executor;
+
+    /**
+     * @param threads
+     *            the maximum number of layers rendered at the same time, must be greater than zero
+     */
+    ParallelLayerRenderer( int threads ) {
+        executor = Executors.newFixedThreadPool( threads, new RenderingThreadFactory() );
+        LOG.debug( "Rendering layers using {} threads.", threads );
+    }
+
+    /**
+     * Renders the layers and paints the results onto the given context. The options are applied in the same way as in
+     * sequential rendering, ie. the n-th layer uses the n-th options.
+     * 
+     * @param layers
+     *            the layers to render, in painting order, never <code>null</code>
+     * @param names
+     *            the names of the layers, never <code>null</code>
+     * @param options
+     *            the options to apply, never <code>null</code>
+     * @param ctx
+     *            the target context, never <code>null</code>
+     * @param scale
+     *            the scale of the request, used for the scale function in the worker threads
+     * @param timeout
+     *            the time limit, may be <code>null</code>
+     * @param deadline
+     *            the deadline of the request, ignored if there's no time limit
+     * @param headers
+     *            the warning headers of the response
+     * @throws OWSException
+     *             if rendering a layer failed or was interrupted, or took too long and the time limit says so
+     */
+    void render( List<LayerData> layers, List<String> names, List<MapOptions> options, final DefaultRenderContext ctx,
+                 final double scale, RenderingTimeout timeout, long deadline, List<String> headers )
+                            throws OWSException {
+        final Map<String, String> params = RequestUtils.getCurrentThreadRequestParameters().get();
+        List<Future<DefaultRenderContext>> results = new ArrayList<Future<DefaultRenderContext>>( layers.size() );
+        Iterator<MapOptions> optIter = options.iterator();
+        try {
+            for ( final LayerData d : layers ) {
+                final MapOptions opts = optIter.next();
+                results.add( executor.submit( new Callable<DefaultRenderContext>() {
+                    @Override
+                    public DefaultRenderContext call()
+                                            throws Exception {
+                        ScaleFunction.getCurrentScaleValue().set( scale );
+                        RequestUtils.getCurrentThreadRequestParameters().set( params );
+                        DefaultRenderContext layerCtx = ctx.createOffscreenContext();
+                        try {
+                            layerCtx.applyOptions( opts );
+                            d.render( layerCtx );
+                        } finally {
+                            layerCtx.close();
+                            ScaleFunction.getCurrentScaleValue().remove();
+                            RequestUtils.getCurrentThreadRequestParameters().remove();
+                        }
+                        return layerCtx;
+                    }
+                } ) );
+            }
+            Iterator<String> nameIter = names.iterator();
+            for ( Future<DefaultRenderContext> f : results ) {
+                String name = nameIter.next();
+                DefaultRenderContext layerCtx;
+                if ( timeout == null ) {
+                    layerCtx = f.get();
+                } else {
+                    try {
+                        layerCtx = f.get( max( 0, deadline - currentTimeMillis() ), MILLISECONDS );
+                    } catch ( TimeoutException e ) {
+                        // the layer may still be drawing into its image, so it's not released
+                        f.cancel( true );
+                        timeout.timedOut( name, headers );
+                        continue;
+                    }
+                }
+                // labels are placed once for all layers, if deferred label placement is enabled
+                layerCtx.getTextRenderer().moveLabels( ctx.getTextRenderer() );
+                ctx.paintImage( layerCtx.getImage() );
+                layerCtx.release();
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new OWSException( "Rendering of the map was interrupted.", NO_APPLICABLE_CODE );
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            LOG.trace( "Stack trace:", cause );
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            throw new OWSException( "Error while rendering a layer: " + cause.getLocalizedMessage(), cause,
+                                    NO_APPLICABLE_CODE );
+        } finally {
+            for ( Future<DefaultRenderContext> f : results ) {
+                f.cancel( true );
+            }
+        }
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    void destroy() {
+        executor.shutdownNow();
+    }
+
+    private static class RenderingThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, "wms-layer-rendering-" + count.incrementAndGet() );
+            t.setDaemon( true );
+            return t;
+        }
+
+    }
+
+}
@@ -0,0 +1,214 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms;
+
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.layer.LayerData;
+import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.services.wms.cache.CachedMapResponse;
+import org.slf4j.Logger;
+
+/**
+ * Enforces the time limit for rendering the layers of a GetMap request. Layers still rendering when the deadline has
+ * passed are interrupted, and either reported with a warning or as an exception, depending on the policy. Layers
+ * rendered sequentially keep what they have drawn until interrupted, layers rendered in parallel are left out.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class RenderingTimeout {
+
+    private static final Logger LOG = getLogger( RenderingTimeout.class );
+
+    /**
+     * What to do with layers that could not be rendered in time.
+     */
+    enum Policy {
+        /** Returns the map as rendered so far, and a warning header for each missing or incomplete layer. */
+        PARTIAL,
+        /** Returns an exception. */
+        EXCEPTION
+    }
+
+    private final long timeout;
+
+    private final Policy policy;
+
+    private final ScheduledExecutorService timer = newSingleThreadScheduledExecutor( new ThreadFactory() {
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, "wms-rendering-timeout" );
+            t.setDaemon( true );
+            return t;
+        }
+    } );
+
+    /**
+     * @param timeout
+     *            the time limit in milliseconds, must be greater than zero
+     * @param policy
+     *            never <code>null</code>
+     */
+    RenderingTimeout( long timeout, Policy policy ) {
+        this.timeout = timeout;
+        this.policy = policy;
+        LOG.debug( "Rendering of layers is limited to {} ms, policy is {}.", timeout, policy );
+    }
+
+    /**
+     * @return the deadline for a request starting now
+     */
+    long getDeadline() {
+        return currentTimeMillis() + timeout;
+    }
+
+    /**
+     * Renders the layer in the calling thread, and interrupts it when the deadline passes.
+     * 
+     * @param layer
+     *            the layer to render, never <code>null</code>
+     * @param ctx
+     *            the context to render to, never <code>null</code>
+     * @param deadline
+     *            as returned by {@link #getDeadline()}
+     * @return true, if the layer was rendered completely
+     */
+    boolean render( LayerData layer, RenderContext ctx, long deadline ) {
+        long remaining = deadline - currentTimeMillis();
+        if ( remaining <= 0 ) {
+            return false;
+        }
+        Alarm alarm = new Alarm( Thread.currentThread() );
+        ScheduledFuture<?> future = timer.schedule( alarm, remaining, MILLISECONDS );
+        boolean fired = false;
+        try {
+            layer.render( ctx );
+        } finally {
+            // disarm before cancelling, an alarm running right now must not report the finished layer as incomplete
+            fired = alarm.finish();
+            future.cancel( false );
+            if ( fired ) {
+                // clear our own interrupt, but keep one that was there before
+                Thread.interrupted();
+                if ( alarm.foreign ) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        return !fired;
+    }
+
+    /**
+     * Applies the policy to a layer that was not rendered in time.
+     * 
+     * @param layer
+     *            the name of the layer
+     * @param headers
+     *            the warning headers of the response
+     * @throws OWSException
+     *             if the policy is {@link Policy#EXCEPTION}
+     */
+    void timedOut( String layer, List<String> headers )
+                            throws OWSException {
+        LOG.debug( "Rendering of layer {} exceeded the time limit of {} ms.", layer, timeout );
+        if ( policy == Policy.EXCEPTION ) {
+            throw new OWSException( "Rendering of layer " + layer + " exceeded the time limit of " + timeout + " ms.",
+                                    NO_APPLICABLE_CODE );
+        }
+        headers.add( "99 Layer " + layer + CachedMapResponse.TIMEOUT_WARNING + timeout + " ms" );
+    }
+
+    /**
+     * Stops the timer thread.
+     */
+    void destroy() {
+        timer.shutdownNow();
+    }
+
+    private static class Alarm implements Runnable {
+
+        private final Thread thread;
+
+        private boolean fired, finished;
+
+        // the thread had already been interrupted by someone else when the alarm went off
+        private boolean foreign;
+
+        Alarm( Thread thread ) {
+            this.thread = thread;
+        }
+
+        @Override
+        public synchronized void run() {
+            if ( !finished ) {
+                fired = true;
+                foreign = thread.isInterrupted();
+                thread.interrupt();
+            }
+        }
+
+        /**
+         * Marks the rendering as finished, the alarm does nothing afterwards.
+         * 
+         * @return true, if the alarm has interrupted the thread before
+         */
+        synchronized boolean finish() {
+            finished = true;
+            return fired;
+        }
+
+    }
+
+}
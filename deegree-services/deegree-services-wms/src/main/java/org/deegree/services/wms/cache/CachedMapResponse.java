@@ -0,0 +1,167 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms.cache;
+
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.geometry.Envelope;
+
+/**
+ * An encoded GetMap response held by the {@link MapResponseCache}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CachedMapResponse {
+
+    /**
+     * Part of the warning header added for each layer that is missing or incomplete because its rendering exceeded the
+     * time limit.
+     */
+    public static final String TIMEOUT_WARNING = " is missing or incomplete, rendering exceeded the time limit of ";
+
+    private final byte[] data;
+
+    private final String contentType;
+
+    private final List<String> warnings;
+
+    private final Envelope envelope;
+
+    private final Set<QName> featureTypes;
+
+    private final long created;
+
+    /**
+     * @param data
+     *            the encoded image, never <code>null</code>
+     * @param contentType
+     *            the content type of the image, never <code>null</code>
+     * @param warnings
+     *            the warning headers of the response, never <code>null</code>
+     * @param envelope
+     *            the requested bbox, never <code>null</code>
+     * @param featureTypes
+     *            the names of the feature types rendered into the image, never <code>null</code>
+     */
+    public CachedMapResponse( byte[] data, String contentType, List<String> warnings, Envelope envelope,
+                              Set<QName> featureTypes ) {
+        this( data, contentType, warnings, envelope, featureTypes, System.currentTimeMillis() );
+    }
+
+    private CachedMapResponse( byte[] data, String contentType, List<String> warnings, Envelope envelope,
+                               Set<QName> featureTypes, long created ) {
+        this.data = data;
+        this.contentType = contentType;
+        this.warnings = warnings;
+        this.envelope = envelope;
+        this.featureTypes = featureTypes;
+        this.created = created;
+    }
+
+    /**
+     * @return the encoded image, may be <code>null</code> for entries of the disk tier
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return the content type
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return the warning headers
+     */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * @return the requested bbox
+     */
+    public Envelope getEnvelope() {
+        return envelope;
+    }
+
+    /**
+     * @return the names of the rendered feature types
+     */
+    public Set<QName> getFeatureTypes() {
+        return featureTypes;
+    }
+
+    /**
+     * @return creation time in milliseconds
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * Incomplete responses must not be cached or shared with other requests, the missing layers may well be available
+     * for the next request.
+     * 
+     * @return false, if layers are missing or incomplete because their rendering exceeded the time limit
+     */
+    public boolean isComplete() {
+        for ( String warning : warnings ) {
+            if ( warning.contains( TIMEOUT_WARNING ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    CachedMapResponse withData( byte[] data ) {
+        return new CachedMapResponse( data, contentType, warnings, envelope, featureTypes, created );
+    }
+
+}
@@ -0,0 +1,564 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms.cache;
+
+import static org.deegree.services.controller.utils.RequestCoalescer.getCredentialsKey;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.namespace.QName;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreChangeListener;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryTransformer;
+import org.deegree.layer.LayerRef;
+import org.deegree.protocol.wms.ops.GetMap;
+import org.deegree.style.StyleRef;
+import org.slf4j.Logger;
+
+/**
+ * Caches encoded GetMap responses in a memory tier and an optional disk tier, both bounded by their size in bytes.
+ * Least recently used entries are moved from memory to disk, and from disk out of the cache. Entries are invalidated
+ * when committed feature store changes intersect the bbox of a cached map rendering the changed feature types.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class MapResponseCache implements FeatureStoreChangeListener {
+
+    private static final Logger LOG = getLogger( MapResponseCache.class );
+
+    private static final String SUFFIX = ".map";
+
+    // parameters that are part of the key in their normalized form
+    private static final String[] NORMALIZED_PARAMS = { "REQUEST", "SERVICE", "VERSION", "LAYERS", "STYLES", "BBOX",
+                                                       "WIDTH", "HEIGHT", "CRS", "SRS", "FORMAT", "TRANSPARENT",
+                                                       "BGCOLOR" };
+
+    private final LinkedHashMap<String, CachedMapResponse> memory = new LinkedHashMap<String, CachedMapResponse>(
+                                                                                                                  16,
+                                                                                                                  0.75f,
+                                                                                                                  true );
+
+    private final LinkedHashMap<String, DiskEntry> disk = new LinkedHashMap<String, DiskEntry>( 16, 0.75f, true );
+
+    private final long maxMemoryBytes;
+
+    private final File directory;
+
+    private final long maxDiskBytes;
+
+    private final long timeToLive;
+
+    private long memoryBytes;
+
+    private long diskBytes;
+
+    // incremented on every invalidation, used to discard responses rendered before a change was committed
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong diskHits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // makes the file names unique, so concurrent spills of the same key do not write to the same file
+    private final AtomicLong fileCounter = new AtomicLong();
+
+    /**
+     * @param maxMemoryBytes
+     *            maximum size of the memory tier in bytes
+     * @param directory
+     *            the directory of the disk tier, may be <code>null</code> if no disk tier is to be used
+     * @param maxDiskBytes
+     *            maximum size of the disk tier in bytes
+     * @param timeToLive
+     *            maximum age of entries in milliseconds, entries never expire if not positive
+     */
+    public MapResponseCache( long maxMemoryBytes, File directory, long maxDiskBytes, long timeToLive ) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.timeToLive = timeToLive;
+        if ( directory != null ) {
+            if ( !directory.isDirectory() && !directory.mkdirs() ) {
+                throw new IllegalArgumentException( "Could not create cache directory " + directory );
+            }
+            // the index of the disk tier is not persistent, so leftovers are useless
+            deleteFiles();
+        }
+    }
+
+    /**
+     * Creates a cache key from the normalized request. Parameters which are not covered by the normalized request
+     * (such as SLD, SLD_BODY, dimensions or vendor specific parameters) are included verbatim. The credentials of the
+     * current request are part of the key as well, as a secured service may render different maps for different
+     * users.
+     * 
+     * @param gm
+     *            the parsed request, never <code>null</code>
+     * @param params
+     *            the request parameters with upper case names, never <code>null</code>
+     * @return a key suitable for {@link #get(String)} and {@link #put(String, CachedMapResponse, long)}
+     */
+    public static String createKey( GetMap gm, Map<String, String> params ) {
+        StringBuilder sb = new StringBuilder();
+        for ( LayerRef l : gm.getLayers() ) {
+            sb.append( l.getName() ).append( ',' );
+        }
+        sb.append( '|' );
+        for ( StyleRef s : gm.getStyles() ) {
+            sb.append( s == null ? "" : s.getName() ).append( ',' );
+        }
+        Envelope bbox = gm.getBoundingBox();
+        sb.append( '|' ).append( bbox.getMin().get0() ).append( ',' ).append( bbox.getMin().get1() );
+        sb.append( ',' ).append( bbox.getMax().get0() ).append( ',' ).append( bbox.getMax().get1() );
+        ICRS crs = gm.getCoordinateSystem();
+        sb.append( '|' ).append( crs == null ? "" : crs.getAlias() );
+        sb.append( '|' ).append( gm.getWidth() ).append( 'x' ).append( gm.getHeight() );
+        sb.append( '|' ).append( gm.getFormat() ).append( '|' ).append( gm.getTransparent() );
+        Color bg = gm.getBgColor();
+        sb.append( '|' ).append( bg == null ? "" : Integer.toHexString( bg.getRGB() ) );
+
+        TreeMap<String, String> rest = new TreeMap<String, String>( params );
+        for ( String p : NORMALIZED_PARAMS ) {
+            rest.remove( p );
+        }
+        for ( Entry<String, String> e : rest.entrySet() ) {
+            sb.append( '|' ).append( e.getKey() ).append( '=' ).append( e.getValue() );
+        }
+        sb.append( '|' ).append( getCredentialsKey() );
+        return digest( sb.toString() );
+    }
+
+    private static String digest( String key ) {
+        try {
+            byte[] bs = MessageDigest.getInstance( "SHA-1" ).digest( key.getBytes( "UTF-8" ) );
+            StringBuilder sb = new StringBuilder( bs.length * 2 );
+            for ( byte b : bs ) {
+                sb.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) ).append( Character.forDigit( b & 0xf, 16 ) );
+            }
+            return sb.toString();
+        } catch ( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( e );
+        } catch ( UnsupportedEncodingException e ) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * @return the current generation, to be passed to {@link #put(String, CachedMapResponse, long)}
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @param key
+     * @return the cached response, or <code>null</code> if the request has not been cached (or has been invalidated)
+     */
+    public CachedMapResponse get( String key ) {
+        DiskEntry diskEntry;
+        synchronized ( this ) {
+            CachedMapResponse res = memory.get( key );
+            if ( res != null ) {
+                if ( !isExpired( res ) ) {
+                    hits.incrementAndGet();
+                    return res;
+                }
+                memory.remove( key );
+                memoryBytes -= res.getData().length;
+            }
+            diskEntry = disk.get( key );
+            if ( diskEntry != null && isExpired( diskEntry.response ) ) {
+                removeFromDisk( key );
+                diskEntry = null;
+            }
+        }
+        if ( diskEntry != null ) {
+            byte[] data = read( diskEntry.file );
+            // a file of different length is being replaced concurrently
+            if ( data != null && data.length == diskEntry.length ) {
+                diskHits.incrementAndGet();
+                return diskEntry.response.withData( data );
+            }
+        }
+        if ( misses.incrementAndGet() % 1000 == 0 ) {
+            LOG.debug( "GetMap cache statistics: {}", getStatistics() );
+        }
+        return null;
+    }
+
+    /**
+     * Adds a response to the memory tier, moving least recently used entries to the disk tier if necessary.
+     * 
+     * @param key
+     *            see {@link #createKey(GetMap, Map)}
+     * @param response
+     *            never <code>null</code>
+     * @param generation
+     *            the generation obtained before rendering the response, if the cache has been invalidated in the
+     *            meantime the response is discarded
+     */
+    public void put( String key, CachedMapResponse response, long generation ) {
+        List<Entry<String, CachedMapResponse>> spilled = new ArrayList<Entry<String, CachedMapResponse>>();
+        synchronized ( this ) {
+            if ( generation != this.generation ) {
+                return;
+            }
+            removeFromMemory( key );
+            removeFromDisk( key );
+            if ( response.getData().length > maxMemoryBytes ) {
+                spilled.add( new AbstractMap.SimpleEntry<String, CachedMapResponse>( key, response ) );
+            } else {
+                memory.put( key, response );
+                memoryBytes += response.getData().length;
+                Iterator<Entry<String, CachedMapResponse>> it = memory.entrySet().iterator();
+                while ( memoryBytes > maxMemoryBytes && it.hasNext() ) {
+                    Entry<String, CachedMapResponse> e = it.next();
+                    it.remove();
+                    memoryBytes -= e.getValue().getData().length;
+                    spilled.add( e );
+                }
+            }
+        }
+        for ( Entry<String, CachedMapResponse> e : spilled ) {
+            spill( e.getKey(), e.getValue(), generation );
+        }
+    }
+
+    private void spill( String key, CachedMapResponse response, long generation ) {
+        byte[] data = response.getData();
+        if ( directory == null || data.length > maxDiskBytes ) {
+            evictions.incrementAndGet();
+            return;
+        }
+        File file = new File( directory, key + "_" + fileCounter.incrementAndGet() + SUFFIX );
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream( file );
+            out.write( data );
+        } catch ( IOException e ) {
+            LOG.warn( "Could not write cached map to {}: {}", file, e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+            evictions.incrementAndGet();
+            IOUtils.closeQuietly( out );
+            file.delete();
+            return;
+        } finally {
+            IOUtils.closeQuietly( out );
+        }
+        synchronized ( this ) {
+            if ( generation != this.generation || memory.containsKey( key ) ) {
+                file.delete();
+                return;
+            }
+            removeFromDisk( key );
+            disk.put( key, new DiskEntry( file, data.length, response.withData( null ) ) );
+            diskBytes += data.length;
+            Iterator<Entry<String, DiskEntry>> it = disk.entrySet().iterator();
+            while ( diskBytes > maxDiskBytes && it.hasNext() ) {
+                DiskEntry e = it.next().getValue();
+                it.remove();
+                diskBytes -= e.length;
+                e.file.delete();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static byte[] read( File file ) {
+        InputStream in = null;
+        try {
+            in = new FileInputStream( file );
+            return IOUtils.toByteArray( in );
+        } catch ( IOException e ) {
+            // may have been evicted concurrently
+            LOG.debug( "Could not read cached map from {}: {}", file, e.getLocalizedMessage() );
+            return null;
+        } finally {
+            IOUtils.closeQuietly( in );
+        }
+    }
+
+    private boolean isExpired( CachedMapResponse res ) {
+        return timeToLive > 0 && System.currentTimeMillis() - res.getCreated() > timeToLive;
+    }
+
+    private void removeFromMemory( String key ) {
+        CachedMapResponse res = memory.remove( key );
+        if ( res != null ) {
+            memoryBytes -= res.getData().length;
+        }
+    }
+
+    private void removeFromDisk( String key ) {
+        DiskEntry e = disk.remove( key );
+        if ( e != null ) {
+            diskBytes -= e.length;
+            e.file.delete();
+        }
+    }
+
+    @Override
+    public void changesCommitted( FeatureStore store, Map<QName, Envelope> changes ) {
+        if ( changes == null ) {
+            changes = new HashMap<QName, Envelope>();
+            for ( FeatureType ft : store.getSchema().getFeatureTypes() ) {
+                changes.put( ft.getName(), null );
+            }
+        }
+        if ( changes.isEmpty() ) {
+            return;
+        }
+        changes = checkCoordinateSystems( changes );
+        int count = 0;
+        synchronized ( this ) {
+            ++generation;
+            Map<ICRS, Map<QName, Envelope>> transformed = new HashMap<ICRS, Map<QName, Envelope>>();
+            Iterator<Entry<String, CachedMapResponse>> it = memory.entrySet().iterator();
+            while ( it.hasNext() ) {
+                CachedMapResponse res = it.next().getValue();
+                if ( isAffected( res, changes, transformed ) ) {
+                    it.remove();
+                    memoryBytes -= res.getData().length;
+                    ++count;
+                }
+            }
+            Iterator<DiskEntry> dit = disk.values().iterator();
+            while ( dit.hasNext() ) {
+                DiskEntry e = dit.next();
+                if ( isAffected( e.response, changes, transformed ) ) {
+                    dit.remove();
+                    diskBytes -= e.length;
+                    e.file.delete();
+                    ++count;
+                }
+            }
+        }
+        invalidations.addAndGet( count );
+        LOG.debug( "Invalidated {} cached maps after changes to {}.", count, changes.keySet() );
+    }
+
+    // an extent without a coordinate system cannot be compared to the cached maps, so it is treated as unknown
+    private static Map<QName, Envelope> checkCoordinateSystems( Map<QName, Envelope> changes ) {
+        Map<QName, Envelope> checked = null;
+        for ( Entry<QName, Envelope> e : changes.entrySet() ) {
+            if ( e.getValue() != null && e.getValue().getCoordinateSystem() == null ) {
+                LOG.warn( "The extent of the changes to {} has no coordinate system, invalidating all cached maps of "
+                          + "the feature type.", e.getKey() );
+                if ( checked == null ) {
+                    checked = new HashMap<QName, Envelope>( changes );
+                }
+                checked.put( e.getKey(), null );
+            }
+        }
+        return checked == null ? changes : checked;
+    }
+
+    private static boolean isAffected( CachedMapResponse res, Map<QName, Envelope> changes,
+                                       Map<ICRS, Map<QName, Envelope>> transformed ) {
+        for ( QName ft : res.getFeatureTypes() ) {
+            if ( !changes.containsKey( ft ) ) {
+                continue;
+            }
+            Envelope bbox = res.getEnvelope();
+            Envelope change = transform( ft, changes.get( ft ), bbox.getCoordinateSystem(), transformed );
+            if ( change == null || change.intersects( bbox ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // returns null if the extent of the change is unknown
+    private static Envelope transform( QName ft, Envelope change, ICRS crs,
+                                       Map<ICRS, Map<QName, Envelope>> transformed ) {
+        if ( change == null || crs == null ) {
+            // a map without a coordinate system cannot be compared either
+            return null;
+        }
+        if ( change.getCoordinateSystem().equals( crs ) ) {
+            return change;
+        }
+        Map<QName, Envelope> envs = transformed.get( crs );
+        if ( envs == null ) {
+            envs = new HashMap<QName, Envelope>();
+            transformed.put( crs, envs );
+        }
+        if ( envs.containsKey( ft ) ) {
+            return envs.get( ft );
+        }
+        Envelope env = null;
+        try {
+            env = new GeometryTransformer( crs ).transform( change );
+        } catch ( Throwable e ) {
+            LOG.debug( "Could not transform changed extent to {}: {}", crs.getAlias(), e.getLocalizedMessage() );
+        }
+        envs.put( ft, env );
+        return env;
+    }
+
+    /**
+     * @return a summary of the hit/miss/eviction counters and the current size of the cache
+     */
+    public synchronized String getStatistics() {
+        StringBuilder sb = new StringBuilder();
+        sb.append( "hits: " ).append( hits.get() ).append( ", disk hits: " ).append( diskHits.get() );
+        sb.append( ", misses: " ).append( misses.get() ).append( ", evictions: " ).append( evictions.get() );
+        sb.append( ", invalidations: " ).append( invalidations.get() );
+        sb.append( ", memory: " ).append( memory.size() ).append( " maps/" ).append( memoryBytes ).append( " bytes" );
+        if ( directory != null ) {
+            sb.append( ", disk: " ).append( disk.size() ).append( " maps/" ).append( diskBytes ).append( " bytes" );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return number of requests answered from the memory tier
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of requests answered from the disk tier
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * @return number of requests that were not cached
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of entries dropped because of the size limits
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return number of entries dropped because of feature store changes
+     */
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * Logs the statistics and removes all entries.
+     */
+    public synchronized void destroy() {
+        LOG.info( "GetMap cache statistics: {}", getStatistics() );
+        memory.clear();
+        memoryBytes = 0;
+        disk.clear();
+        diskBytes = 0;
+        if ( directory != null ) {
+            deleteFiles();
+        }
+    }
+
+    private void deleteFiles() {
+        File[] files = directory.listFiles();
+        if ( files != null ) {
+            for ( File f : files ) {
+                if ( f.getName().endsWith( SUFFIX ) ) {
+                    f.delete();
+                }
+            }
+        }
+    }
+
+    private static class DiskEntry {
+
+        final File file;
+
+        final long length;
+
+        final CachedMapResponse response;
+
+        DiskEntry( File file, long length, CachedMapResponse response ) {
+            this.file = file;
+            this.length = length;
+            this.response = response;
+        }
+
+    }
+
+}
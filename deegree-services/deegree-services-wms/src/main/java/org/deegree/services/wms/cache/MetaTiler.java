@@ -0,0 +1,368 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms.cache;
+
+import static org.deegree.cs.components.Unit.METRE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.commons.utils.io.PngEncoder;
+import org.deegree.cs.components.Axis;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreChangeListener;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.protocol.wms.ops.GetMap;
+import org.deegree.rendering.r2d.context.DefaultRenderContext;
+import org.deegree.rendering.r2d.context.ImagePool;
+import org.deegree.rendering.r2d.context.RenderingInfo;
+import org.deegree.services.wms.MapService;
+import org.deegree.style.utils.ColorQuantizer;
+import org.slf4j.Logger;
+
+/**
+ * Serves GetMap requests that are aligned to a tile grid by rendering a meta tile of several columns and rows of tiles
+ * at once. The meta tile is sliced into the individual tiles, which are kept for a short time to answer the follow-up
+ * requests of tiling clients. Concurrent requests for tiles of the same meta tile wait for a single rendering.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class MetaTiler implements FeatureStoreChangeListener {
+
+    private static final Logger LOG = getLogger( MetaTiler.class );
+
+    private static final GeometryFactory fac = new GeometryFactory();
+
+    // tolerated misalignment to the grid, in pixels
+    private static final double TOLERANCE = 0.01;
+
+    private final MapService service;
+
+    private final PngEncoder pngEncoder;
+
+    private final ColorQuantizer quantizer;
+
+    private final ImagePool pool;
+
+    private final int tileWidth, tileHeight, columns, rows, buffer;
+
+    private final double originX, originY;
+
+    private final long timeToLive;
+
+    private final int maxTiles;
+
+    private final ConcurrentHashMap<String, FutureTask<CachedMapResponse[][]>> pending = new ConcurrentHashMap<String, FutureTask<CachedMapResponse[][]>>();
+
+    private final LinkedHashMap<String, CachedMapResponse> tiles = new LinkedHashMap<String, CachedMapResponse>();
+
+    private long generation;
+
+    /**
+     * @param service
+     *            used to render the meta tiles, never <code>null</code>
+     * @param pngEncoder
+     *            used to encode png tiles, never <code>null</code>
+     * @param quantizer
+     *            used to reduce the colors of 8bit png tiles, never <code>null</code>
+     * @param pool
+     *            used for the images of the meta tiles and tiles, may be <code>null</code>
+     * @param tileWidth
+     *            width of the grid tiles in pixels
+     * @param tileHeight
+     *            height of the grid tiles in pixels
+     * @param columns
+     *            number of tile columns of a meta tile
+     * @param rows
+     *            number of tile rows of a meta tile
+     * @param buffer
+     *            number of pixels rendered around the meta tile, to avoid clipped labels and symbols at its border
+     * @param originX
+     *            x coordinate of the grid origin
+     * @param originY
+     *            y coordinate of the grid origin
+     * @param timeToLive
+     *            milliseconds to keep the sliced tiles
+     * @param maxTiles
+     *            maximum number of sliced tiles to keep
+     */
+    public MetaTiler( MapService service, PngEncoder pngEncoder, ColorQuantizer quantizer, ImagePool pool,
+                      int tileWidth, int tileHeight, int columns, int rows, int buffer, double originX, double originY,
+                      long timeToLive, int maxTiles ) {
+        this.service = service;
+        this.pngEncoder = pngEncoder;
+        this.quantizer = quantizer;
+        this.pool = pool;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.columns = columns;
+        this.rows = rows;
+        this.buffer = buffer;
+        this.originX = originX;
+        this.originY = originY;
+        this.timeToLive = timeToLive;
+        this.maxTiles = maxTiles;
+    }
+
+    /**
+     * @param gm
+     * @param map
+     *            the request parameters with upper case names, never <code>null</code>
+     * @return the requested tile, or <code>null</code> if the request is not aligned to the grid
+     * @throws OWSException
+     * @throws IOException
+     */
+    public CachedMapResponse getTile( GetMap gm, Map<String, String> map )
+                            throws OWSException, IOException {
+        if ( gm.getWidth() != tileWidth || gm.getHeight() != tileHeight || !isEastingNorthing( gm.getCoordinateSystem() ) ) {
+            return null;
+        }
+        Envelope bbox = gm.getBoundingBox();
+        double spanX = bbox.getSpan0(), spanY = bbox.getSpan1();
+        double col = ( bbox.getMin().get0() - originX ) / spanX;
+        double row = ( bbox.getMin().get1() - originY ) / spanY;
+        long c = Math.round( col ), r = Math.round( row );
+        if ( Math.abs( col - c ) * tileWidth > TOLERANCE || Math.abs( row - r ) * tileHeight > TOLERANCE ) {
+            return null;
+        }
+
+        String key = MapResponseCache.createKey( new GetMap( gm, getTileEnvelope( gm, c, r ), tileWidth, tileHeight ),
+                                                 map );
+        CachedMapResponse tile = getCachedTile( key );
+        if ( tile != null ) {
+            return tile;
+        }
+
+        long metaCol = floorDiv( c, columns ), metaRow = floorDiv( r, rows );
+        GetMap meta = getMetaRequest( gm, metaCol, metaRow );
+        String metaKey = MapResponseCache.createKey( meta, map );
+        FutureTask<CachedMapResponse[][]> task = new FutureTask<CachedMapResponse[][]>( new MetaTileRenderer( gm, map,
+                                                                                                              meta,
+                                                                                                              metaCol,
+                                                                                                              metaRow ) );
+        FutureTask<CachedMapResponse[][]> existing = pending.putIfAbsent( metaKey, task );
+        try {
+            if ( existing == null ) {
+                LOG.debug( "Rendering meta tile {}/{} for tile {}/{}.", new Object[] { metaCol, metaRow, c, r } );
+                task.run();
+            } else {
+                task = existing;
+            }
+            int i = (int) ( c - metaCol * columns ), j = (int) ( r - metaRow * rows );
+            CachedMapResponse result = task.get()[i][j];
+            if ( existing != null && !result.isComplete() ) {
+                // layers are missing in the shared meta tile, render our own
+                result = new MetaTileRenderer( gm, map, meta, metaCol, metaRow ).call()[i][j];
+            }
+            return result;
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while waiting for meta tile." );
+        } catch ( ExecutionException e ) {
+            Throwable t = e.getCause();
+            if ( t instanceof OWSException ) {
+                throw (OWSException) t;
+            }
+            if ( t instanceof IOException ) {
+                throw (IOException) t;
+            }
+            if ( t instanceof RuntimeException ) {
+                throw (RuntimeException) t;
+            }
+            throw new RuntimeException( t );
+        } finally {
+            if ( existing == null ) {
+                pending.remove( metaKey, task );
+            }
+        }
+    }
+
+    private static boolean isEastingNorthing( ICRS crs ) {
+        // same condition as in RenderHelper#getWorldToScreenTransform, images of other crs are rotated
+        return crs == null || crs.getAlias().equals( "CRS:1" ) || crs.getUnits()[0].equals( METRE )
+               || crs.getAxis()[0].getOrientation() == Axis.AO_EAST;
+    }
+
+    private static long floorDiv( long a, int b ) {
+        long d = a / b;
+        return ( a % b != 0 && a < 0 ) ? d - 1 : d;
+    }
+
+    private Envelope getTileEnvelope( GetMap gm, long c, long r ) {
+        double spanX = gm.getBoundingBox().getSpan0(), spanY = gm.getBoundingBox().getSpan1();
+        double minx = originX + c * spanX, miny = originY + r * spanY;
+        return fac.createEnvelope( minx, miny, minx + spanX, miny + spanY, gm.getCoordinateSystem() );
+    }
+
+    private GetMap getMetaRequest( GetMap gm, long metaCol, long metaRow ) {
+        Envelope first = getTileEnvelope( gm, metaCol * columns, metaRow * rows );
+        double resX = first.getSpan0() / tileWidth, resY = first.getSpan1() / tileHeight;
+        double minx = first.getMin().get0() - buffer * resX;
+        double miny = first.getMin().get1() - buffer * resY;
+        int width = columns * tileWidth + 2 * buffer;
+        int height = rows * tileHeight + 2 * buffer;
+        Envelope env = fac.createEnvelope( minx, miny, minx + width * resX, miny + height * resY,
+                                           gm.getCoordinateSystem() );
+        return new GetMap( gm, env, width, height );
+    }
+
+    private synchronized CachedMapResponse getCachedTile( String key ) {
+        CachedMapResponse tile = tiles.get( key );
+        if ( tile != null && System.currentTimeMillis() - tile.getCreated() > timeToLive ) {
+            tiles.remove( key );
+            return null;
+        }
+        return tile;
+    }
+
+    private synchronized void addTiles( Map<String, CachedMapResponse> map, long generation ) {
+        if ( generation != this.generation ) {
+            return;
+        }
+        tiles.putAll( map );
+        // oldest first
+        while ( tiles.size() > maxTiles ) {
+            tiles.remove( tiles.keySet().iterator().next() );
+        }
+    }
+
+    private synchronized long getGeneration() {
+        return generation;
+    }
+
+    @Override
+    public synchronized void changesCommitted( FeatureStore store, Map<QName, Envelope> changes ) {
+        ++generation;
+        tiles.clear();
+    }
+
+    private class MetaTileRenderer implements Callable<CachedMapResponse[][]> {
+
+        private final GetMap gm;
+
+        private final Map<String, String> map;
+
+        private final GetMap meta;
+
+        private final long metaCol, metaRow;
+
+        MetaTileRenderer( GetMap gm, Map<String, String> map, GetMap meta, long metaCol, long metaRow ) {
+            this.gm = gm;
+            this.map = map;
+            this.meta = meta;
+            this.metaCol = metaCol;
+            this.metaRow = metaRow;
+        }
+
+        @Override
+        public CachedMapResponse[][] call()
+                                throws OWSException, IOException {
+            long generation = getGeneration();
+            RenderingInfo info = new RenderingInfo( meta.getFormat(), meta.getWidth(), meta.getHeight(),
+                                                    meta.getTransparent(), meta.getBgColor(), meta.getBoundingBox(),
+                                                    meta.getPixelSize(), meta.getParameterMap() );
+            DefaultRenderContext ctx = new DefaultRenderContext( info, pngEncoder, quantizer, pool );
+            LinkedList<String> headers = new LinkedList<String>();
+            service.getMap( meta, headers, ctx );
+            ctx.close();
+            BufferedImage img = ctx.getImage();
+
+            Set<QName> featureTypes = service.getFeatureTypeNames( gm );
+            List<String> warnings = new ArrayList<String>( headers );
+            CachedMapResponse[][] result = new CachedMapResponse[columns][rows];
+            Map<String, CachedMapResponse> siblings = new LinkedHashMap<String, CachedMapResponse>();
+            for ( int i = 0; i < columns; ++i ) {
+                for ( int j = 0; j < rows; ++j ) {
+                    Envelope env = getTileEnvelope( gm, metaCol * columns + i, metaRow * rows + j );
+                    GetMap tile = new GetMap( gm, env, tileWidth, tileHeight );
+                    // image rows start at the top
+                    BufferedImage sub = img.getSubimage( buffer + i * tileWidth, buffer + ( rows - 1 - j ) * tileHeight,
+                                                         tileWidth, tileHeight );
+                    result[i][j] = new CachedMapResponse( encode( tile, sub ), gm.getFormat(), warnings, env,
+                                                          featureTypes );
+                    siblings.put( MapResponseCache.createKey( tile, map ), result[i][j] );
+                }
+            }
+            // the tiles have been encoded, so the sub images are not needed anymore
+            ctx.release();
+            if ( result[0][0].isComplete() ) {
+                addTiles( siblings, generation );
+            }
+            return result;
+        }
+
+        private byte[] encode( GetMap tile, BufferedImage img )
+                                throws IOException {
+            RenderingInfo info = new RenderingInfo( tile.getFormat(), tileWidth, tileHeight, tile.getTransparent(),
+                                                    tile.getBgColor(), tile.getBoundingBox(), tile.getPixelSize(),
+                                                    tile.getParameterMap() );
+            DefaultRenderContext ctx = new DefaultRenderContext( info, pngEncoder, quantizer, pool );
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ctx.setOutput( out );
+            ctx.paintImage( img );
+            ctx.close();
+            return out.toByteArray();
+        }
+
+    }
+
+}
@@ -43,14 +43,18 @@ import static org.deegree.commons.utils.ArrayUtils.join;
 import static org.deegree.commons.utils.CollectionUtils.getStringJoiner;
 import static org.deegree.commons.utils.CollectionUtils.map;
 import static org.deegree.commons.utils.CollectionUtils.reduce;
+import static org.deegree.rendering.r2d.context.VectorTileRenderContext.isVectorTileFormat;
 import static org.deegree.protocol.wms.WMSConstants.VERSION_111;
 import static org.deegree.protocol.wms.WMSConstants.VERSION_130;
 import static org.deegree.services.controller.OGCFrontController.getHttpGetURL;
 import static org.deegree.services.i18n.Messages.get;
 import static org.deegree.services.metadata.MetadataUtils.convertFromJAXB;
+import static org.deegree.services.wms.GetLegendHandler.DEFAULT_MAX_MEMORY;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -61,6 +65,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -80,11 +85,14 @@ import org.deegree.commons.tom.ReferenceResolvingException;
 import org.deegree.commons.tom.ows.Version;
 import org.deegree.commons.utils.CollectionUtils;
 import org.deegree.commons.utils.Pair;
+import org.deegree.commons.utils.io.PngEncoder;
+import org.deegree.commons.utils.io.PngEncoder.Filter;
 import org.deegree.commons.xml.NamespaceBindings;
 import org.deegree.commons.xml.XMLAdapter;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.refs.coordinatesystem.CRSRef;
 import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.persistence.FeatureStoreChanges;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.featureinfo.FeatureInfoManager;
 import org.deegree.featureinfo.FeatureInfoParams;
@@ -98,8 +106,10 @@ import org.deegree.protocol.wms.WMSException.MissingDimensionValue;
 import org.deegree.protocol.wms.ops.GetFeatureInfoSchema;
 import org.deegree.protocol.wms.ops.GetLegendGraphic;
 import org.deegree.rendering.r2d.context.DefaultRenderContext;
+import org.deegree.rendering.r2d.context.ImagePool;
 import org.deegree.rendering.r2d.context.RenderContext;
 import org.deegree.rendering.r2d.context.RenderingInfo;
+import org.deegree.rendering.r2d.context.VectorTileRenderContext;
 import org.deegree.services.OWS;
 import org.deegree.services.OWSProvider;
 import org.deegree.services.OwsManager;
@@ -108,18 +118,29 @@ import org.deegree.services.controller.ImplementationMetadata;
 import org.deegree.services.controller.OGCFrontController;
 import org.deegree.services.controller.exception.serializer.XMLExceptionSerializer;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
+import org.deegree.services.controller.utils.RequestCoalescer;
 import org.deegree.services.jaxb.controller.DeegreeServiceControllerType;
 import org.deegree.services.jaxb.metadata.DeegreeServicesMetadataType;
 import org.deegree.services.jaxb.wms.DeegreeWMS;
 import org.deegree.services.jaxb.wms.DeegreeWMS.ExtendedCapabilities;
+import org.deegree.services.jaxb.wms.DeegreeWMS.GetMapCache;
+import org.deegree.services.jaxb.wms.DeegreeWMS.LegendCache;
+import org.deegree.services.jaxb.wms.DeegreeWMS.MetaTiling;
+import org.deegree.services.jaxb.wms.DeegreeWMS.PngEncoding;
 import org.deegree.services.jaxb.wms.FeatureInfoFormatsType.GetFeatureInfoFormat;
 import org.deegree.services.jaxb.wms.FeatureInfoFormatsType.GetFeatureInfoFormat.XSLTFile;
 import org.deegree.services.jaxb.wms.ServiceConfigurationType;
 import org.deegree.services.metadata.OWSMetadataProvider;
 import org.deegree.services.metadata.provider.OWSMetadataProviderProvider;
 import org.deegree.services.wms.MapService;
+import org.deegree.services.wms.cache.CachedMapResponse;
+import org.deegree.services.wms.cache.MapResponseCache;
+import org.deegree.services.wms.cache.MetaTiler;
 import org.deegree.services.wms.controller.plugins.ImageSerializer;
+import org.deegree.services.wms.controller.plugins.PngImageSerializer;
+import org.deegree.services.wms.controller.plugins.QuantizingPngSerializer;
 import org.deegree.style.StyleRef;
+import org.deegree.style.utils.ColorQuantizer;
 import org.deegree.workspace.ResourceInitException;
 import org.deegree.workspace.ResourceMetadata;
 import org.deegree.workspace.Workspace;
@@ -143,6 +164,9 @@ public class WMSController extends AbstractOWS {
     /** The list of supported image formats. */
     public final LinkedList<String> supportedImageFormats = new LinkedList<String>();
 
+    /** The list of supported GetMap formats, the image formats and vector tiles. */
+    public final LinkedList<String> supportedMapFormats = new LinkedList<String>();
+
     protected MapService service;
 
     protected ServiceIdentification identification;
@@ -161,6 +185,18 @@ public class WMSController extends AbstractOWS {
 
     private OWSMetadataProvider metadataProvider;
 
+    private PngEncoder pngEncoder = new PngEncoder();
+
+    private ColorQuantizer quantizer = new ColorQuantizer( 256, false );
+
+    private ImagePool imagePool;
+
+    private MapResponseCache mapCache;
+
+    private MetaTiler metaTiler;
+
+    private RequestCoalescer<CachedMapResponse> coalescer;
+
     public WMSController( ResourceMetadata<OWS> metadata, Workspace workspace, Object jaxbConfig ) {
         super( metadata, workspace, jaxbConfig );
         featureInfoManager = new FeatureInfoManager( true );
@@ -214,6 +250,28 @@ public class WMSController extends AbstractOWS {
             supportedImageFormats.add( "image/jpeg" );
             supportedImageFormats.add( "image/tiff" );
             supportedImageFormats.add( "image/x-ms-bmp" );
+            // vector tiles are not images, so they're not available for legends or image exceptions
+            supportedMapFormats.addAll( supportedImageFormats );
+            supportedMapFormats.add( VectorTileRenderContext.FORMAT );
+
+            if ( conf.getPngEncoding() != null ) {
+                PngEncoding enc = conf.getPngEncoding();
+                boolean dither = enc.isDithering() != null && enc.isDithering();
+                quantizer = new ColorQuantizer( 256, dither );
+                pngEncoder = buildPngEncoder( enc );
+            }
+            long poolMemory = 32 * 1024 * 1024;
+            if ( conf.getImagePool() != null && conf.getImagePool().getMaxMemoryBytes() != null ) {
+                poolMemory = conf.getImagePool().getMaxMemoryBytes();
+            }
+            if ( poolMemory > 0 ) {
+                imagePool = new ImagePool( poolMemory );
+            }
+
+            imageSerializers.put( "image/png", new PngImageSerializer( pngEncoder ) );
+            ImageSerializer png8bit = new QuantizingPngSerializer( quantizer, pngEncoder );
+            imageSerializers.put( "image/png; subtype=8bit", png8bit );
+            imageSerializers.put( "image/png; mode=8bit", png8bit );
 
             if ( conf.getFeatureInfoFormats() != null ) {
                 for ( GetFeatureInfoFormat t : conf.getFeatureInfoFormats().getGetFeatureInfoFormat() ) {
@@ -232,6 +290,11 @@ public class WMSController extends AbstractOWS {
 
             featureInfoManager.finalizeConfiguration();
 
+            if ( conf.getGetMapCache() != null ) {
+                mapCache = buildMapCache( conf.getGetMapCache() );
+                FeatureStoreChanges.addListener( mapCache );
+            }
+
             // if ( pi.getImageFormat() != null ) {
             // for ( ImageFormat f : pi.getImageFormat() ) {
             // instantiateSerializer( imageSerializers, f.getFormat(), f.getClazz(), ImageSerializer.class );
@@ -265,6 +328,27 @@ public class WMSController extends AbstractOWS {
             ServiceConfigurationType sc = conf.getServiceConfiguration();
             service = new MapService( sc, workspace );
 
+            if ( conf.getLegendCache() != null ) {
+                LegendCache lc = conf.getLegendCache();
+                long maxMemory = lc.getMaxMemoryBytes() == null ? DEFAULT_MAX_MEMORY : lc.getMaxMemoryBytes();
+                service.configureLegendCache( maxMemory, lc.getPrerenderFormat() );
+            }
+
+            if ( conf.getRequestCoalescing() != null ) {
+                Integer maxWait = conf.getRequestCoalescing().getMaxWait();
+                coalescer = new RequestCoalescer<CachedMapResponse>( maxWait == null ? 30000 : maxWait ) {
+                    @Override
+                    protected boolean isShareable( CachedMapResponse result ) {
+                        return result.isComplete();
+                    }
+                };
+            }
+
+            if ( conf.getMetaTiling() != null ) {
+                metaTiler = buildMetaTiler( conf.getMetaTiling() );
+                FeatureStoreChanges.addListener( metaTiler );
+            }
+
             // after the service knows what layers are available:
             handleMetadata( conf.getMetadataURLTemplate(), conf.getMetadataStoreId() );
 
@@ -276,6 +360,50 @@ public class WMSController extends AbstractOWS {
 
     }
 
+    private MapResponseCache buildMapCache( GetMapCache conf ) {
+        long maxMemory = conf.getMaxMemoryBytes() == null ? 64 * 1024 * 1024 : conf.getMaxMemoryBytes();
+        long maxDisk = conf.getMaxDiskBytes() == null ? 512 * 1024 * 1024 : conf.getMaxDiskBytes();
+        long ttl = conf.getTimeToLive() == null ? -1 : conf.getTimeToLive() * 1000L;
+        File dir = null;
+        if ( conf.getDiskDirectory() != null ) {
+            dir = metadata.getLocation().resolveToFile( conf.getDiskDirectory() );
+        }
+        return new MapResponseCache( maxMemory, dir, maxDisk, ttl );
+    }
+
+    private MetaTiler buildMetaTiler( MetaTiling conf ) {
+        int tileWidth = conf.getTileWidth() == null ? 256 : conf.getTileWidth();
+        int tileHeight = conf.getTileHeight() == null ? 256 : conf.getTileHeight();
+        int columns = conf.getColumns() == null ? 4 : conf.getColumns();
+        int rows = conf.getRows() == null ? 4 : conf.getRows();
+        int buffer = conf.getBuffer() == null ? 32 : conf.getBuffer();
+        double originX = conf.getOriginX() == null ? 0 : conf.getOriginX();
+        double originY = conf.getOriginY() == null ? 0 : conf.getOriginY();
+        long ttl = conf.getTimeToLive() == null ? 60000 : conf.getTimeToLive() * 1000L;
+        int maxTiles = conf.getMaxTiles() == null ? 1024 : conf.getMaxTiles();
+        return new MetaTiler( service, pngEncoder, quantizer, imagePool, tileWidth, tileHeight, columns, rows, buffer,
+                              originX, originY, ttl, maxTiles );
+    }
+
+    private static PngEncoder buildPngEncoder( PngEncoding conf ) {
+        int level = conf.getCompressionLevel() == null ? PngEncoder.DEFAULT_LEVEL : conf.getCompressionLevel();
+        Filter filter = Filter.NONE;
+        if ( conf.getFilter() != null ) {
+            try {
+                filter = Filter.valueOf( conf.getFilter().toUpperCase() );
+            } catch ( IllegalArgumentException e ) {
+                LOG.warn( "'{}' is not a valid png filter. Using default value '{}' instead.", conf.getFilter(),
+                          filter );
+            }
+        }
+        try {
+            return new PngEncoder( level, filter );
+        } catch ( IllegalArgumentException e ) {
+            LOG.warn( "Invalid png compression level {}, using the default level.", level );
+            return new PngEncoder( PngEncoder.DEFAULT_LEVEL, filter );
+        }
+    }
+
     @Override
     public void doKVP( Map<String, String> map, HttpServletRequest request, HttpResponseBuffer response,
                        List<FileItem> multiParts )
@@ -487,16 +615,39 @@ public class WMSController extends AbstractOWS {
         }
     }
 
-    protected void getMap( Map<String, String> map, HttpResponseBuffer response, Version version )
+    protected void getMap( final Map<String, String> map, HttpResponseBuffer response, Version version )
                             throws OWSException, IOException, MissingDimensionValue, InvalidDimensionValue {
-        org.deegree.protocol.wms.ops.GetMap gm2 = new org.deegree.protocol.wms.ops.GetMap( map, version,
-                                                                                           service.getExtensions() );
+        final org.deegree.protocol.wms.ops.GetMap gm2 = new org.deegree.protocol.wms.ops.GetMap( map, version,
+                                                                                                 service.getExtensions() );
 
         checkGetMap( version, gm2 );
 
+        if ( mapCache != null ) {
+            getCachedMap( gm2, map, response );
+            return;
+        }
+        if ( metaTiler != null && !isVectorTileFormat( gm2.getFormat() ) ) {
+            CachedMapResponse tile = metaTiler.getTile( gm2, map );
+            if ( tile != null ) {
+                sendMap( tile, response );
+                return;
+            }
+        }
+
+        if ( coalescer != null ) {
+            sendMap( coalesce( MapResponseCache.createKey( gm2, map ), new Callable<CachedMapResponse>() {
+                @Override
+                public CachedMapResponse call()
+                                        throws OWSException, IOException {
+                    return renderMap( gm2, map );
+                }
+            } ), response );
+            return;
+        }
+
         RenderingInfo info = new RenderingInfo( gm2.getFormat(), gm2.getWidth(), gm2.getHeight(), gm2.getTransparent(),
                                                 gm2.getBgColor(), gm2.getBoundingBox(), gm2.getPixelSize(), map );
-        RenderContext ctx = new DefaultRenderContext( info );
+        RenderContext ctx = createRenderContext( info );
         ctx.setOutput( response.getOutputStream() );
         LinkedList<String> headers = new LinkedList<String>();
         service.getMap( gm2, headers, ctx );
@@ -505,6 +656,78 @@ public class WMSController extends AbstractOWS {
         addHeaders( response, headers );
     }
 
+    private void getCachedMap( final org.deegree.protocol.wms.ops.GetMap gm, final Map<String, String> map,
+                               HttpResponseBuffer response )
+                            throws OWSException, IOException {
+        final String key = MapResponseCache.createKey( gm, map );
+        CachedMapResponse cached = mapCache.get( key );
+        if ( cached == null ) {
+            if ( coalescer == null ) {
+                cached = renderAndCacheMap( key, gm, map );
+            } else {
+                cached = coalesce( key, new Callable<CachedMapResponse>() {
+                    @Override
+                    public CachedMapResponse call()
+                                            throws OWSException, IOException {
+                        return renderAndCacheMap( key, gm, map );
+                    }
+                } );
+            }
+        }
+        sendMap( cached, response );
+    }
+
+    private CachedMapResponse renderAndCacheMap( String key, org.deegree.protocol.wms.ops.GetMap gm,
+                                                 Map<String, String> map )
+                            throws OWSException, IOException {
+        long generation = mapCache.getGeneration();
+        CachedMapResponse cached = null;
+        if ( metaTiler != null && !isVectorTileFormat( gm.getFormat() ) ) {
+            cached = metaTiler.getTile( gm, map );
+        }
+        if ( cached == null ) {
+            cached = renderMap( gm, map );
+        }
+        if ( cached.isComplete() ) {
+            mapCache.put( key, cached, generation );
+        }
+        return cached;
+    }
+
+    private CachedMapResponse coalesce( String key, Callable<CachedMapResponse> task )
+                            throws OWSException, IOException {
+        // the key contains the credentials, so responses are never shared between different credentials
+        return coalescer.execute( key, task );
+    }
+
+    private CachedMapResponse renderMap( org.deegree.protocol.wms.ops.GetMap gm, Map<String, String> map )
+                            throws OWSException, IOException {
+        RenderingInfo info = new RenderingInfo( gm.getFormat(), gm.getWidth(), gm.getHeight(), gm.getTransparent(),
+                                                gm.getBgColor(), gm.getBoundingBox(), gm.getPixelSize(), map );
+        RenderContext ctx = createRenderContext( info );
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ctx.setOutput( out );
+        LinkedList<String> headers = new LinkedList<String>();
+        service.getMap( gm, headers, ctx );
+        ctx.close();
+        return new CachedMapResponse( out.toByteArray(), gm.getFormat(), new ArrayList<String>( headers ),
+                                      gm.getBoundingBox(), service.getFeatureTypeNames( gm ) );
+    }
+
+    private RenderContext createRenderContext( RenderingInfo info ) {
+        if ( isVectorTileFormat( info.getFormat() ) ) {
+            return new VectorTileRenderContext( info );
+        }
+        return new DefaultRenderContext( info, pngEncoder, quantizer, imagePool );
+    }
+
+    private static void sendMap( CachedMapResponse map, HttpResponseBuffer response )
+                            throws IOException {
+        response.setContentType( map.getContentType() );
+        response.getOutputStream().write( map.getData() );
+        addHeaders( response, new LinkedList<String>( map.getWarnings() ) );
+    }
+
     private void checkGetFeatureInfo( Version version, org.deegree.protocol.wms.ops.GetFeatureInfo gfi )
                             throws OWSException {
         if ( gfi.getInfoFormat() != null && !gfi.getInfoFormat().equals( "" )
@@ -538,7 +761,7 @@ public class WMSController extends AbstractOWS {
 
     private void checkGetMap( Version version, org.deegree.protocol.wms.ops.GetMap gm )
                             throws OWSException {
-        if ( !supportedImageFormats.contains( gm.getFormat() ) ) {
+        if ( !supportedMapFormats.contains( gm.getFormat() ) ) {
             throw new OWSException( get( "WMS.UNSUPPORTED_IMAGE_FORMAT", gm.getFormat() ), OWSException.INVALID_FORMAT );
         }
         for ( LayerRef lr : gm.getLayers() ) {
@@ -625,9 +848,6 @@ public class WMSController extends AbstractOWS {
         if ( format.equals( "x-ms-bmp" ) ) {
             format = "bmp";
         }
-        if ( format.equals( "png; subtype=8bit" ) || format.equals( "png; mode=8bit" ) ) {
-            format = "png";
-        }
         LOG.debug( "Sending in format " + format );
         if ( !write( img, format, response.getOutputStream() ) ) {
             throw new OWSException( get( "WMS.CANNOT_ENCODE_IMAGE", format ), OWSException.NO_APPLICABLE_CODE );
@@ -744,7 +964,19 @@ public class WMSController extends AbstractOWS {
 
     @Override
     public void destroy() {
-        // nothing to do
+        if ( mapCache != null ) {
+            FeatureStoreChanges.removeListener( mapCache );
+            mapCache.destroy();
+        }
+        if ( metaTiler != null ) {
+            FeatureStoreChanges.removeListener( metaTiler );
+        }
+        if ( service != null ) {
+            service.destroy();
+        }
+        if ( imagePool != null ) {
+            imagePool.clear();
+        }
     }
 
 }
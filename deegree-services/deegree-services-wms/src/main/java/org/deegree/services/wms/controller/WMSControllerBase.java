@@ -42,6 +42,7 @@ import static java.lang.Integer.parseInt;
 import static java.util.Arrays.asList;
 import static javax.xml.stream.XMLOutputFactory.IS_REPAIRING_NAMESPACES;
 import static org.deegree.commons.utils.math.MathUtils.round;
+import static org.deegree.rendering.r2d.context.VectorTileRenderContext.isVectorTileFormat;
 import static org.deegree.services.i18n.Messages.get;
 import static org.deegree.style.utils.ImageUtils.prepareImage;
 
@@ -132,7 +133,8 @@ public abstract class WMSControllerBase implements Controller {
     private void sendException( OWSException ex, HttpResponseBuffer response, String type, int width, int height,
                                 Color color, boolean transparent, String format, WMSController controller )
                             throws ServletException {
-        if ( type.equalsIgnoreCase( EXCEPTION_DEFAULT ) ) {
+        if ( type.equalsIgnoreCase( EXCEPTION_DEFAULT ) || isVectorTileFormat( format ) ) {
+            // vector tiles can't carry an image
             controller.sendException( null, exceptionSerializer, ex, response );
         } else if ( type.equalsIgnoreCase( EXCEPTION_INIMAGE ) ) {
             BufferedImage img = prepareImage( format, width, height, transparent, color );
@@ -126,7 +126,7 @@ class WmsCapabilities111MetadataWriter {
         writer.writeEndElement();
 
         writer.writeStartElement( "GetMap" );
-        writeImageFormats( writer );
+        writeMapFormats( writer );
         writeDCP( writer, true, false );
         writer.writeEndElement();
 
@@ -143,6 +143,13 @@ class WmsCapabilities111MetadataWriter {
         writer.writeEndElement();
     }
 
+    void writeMapFormats( XMLStreamWriter writer )
+                            throws XMLStreamException {
+        for ( String f : controller.supportedMapFormats ) {
+            writeElement( writer, "Format", f );
+        }
+    }
+
     void writeImageFormats( XMLStreamWriter writer )
                             throws XMLStreamException {
         for ( String f : controller.supportedImageFormats ) {
@@ -124,7 +124,7 @@ class WmsCapabilities130MetadataWriter {
         writer.writeEndElement();
 
         writer.writeStartElement( WMSNS, "GetMap" );
-        writeImageFormats( writer );
+        writeMapFormats( writer );
         writeDCP( writer, true, false );
         writer.writeEndElement();
 
@@ -141,6 +141,13 @@ class WmsCapabilities130MetadataWriter {
         writer.writeEndElement();
     }
 
+    private void writeMapFormats( XMLStreamWriter writer )
+                            throws XMLStreamException {
+        for ( String f : controller.supportedMapFormats ) {
+            writeElement( writer, "Format", f );
+        }
+    }
+
     private void writeImageFormats( XMLStreamWriter writer )
                             throws XMLStreamException {
         for ( String f : controller.supportedImageFormats ) {
@@ -36,6 +36,7 @@
 package org.deegree.services.wms.controller.plugins;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.io.OutputStream;
 
 /**
@@ -51,7 +52,9 @@ public interface ImageSerializer {
     /**
      * @param img
      * @param out
+     * @throws IOException
      */
-    void serialize( BufferedImage img, OutputStream out );
+    void serialize( BufferedImage img, OutputStream out )
+                            throws IOException;
 
 }
@@ -0,0 +1,101 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms.controller.plugins;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.deegree.commons.utils.io.PngEncoder;
+import org.deegree.style.utils.ColorQuantizer;
+
+/**
+ * Writes images as palette based (8bit) png, reducing the colors using a {@link ColorQuantizer}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class QuantizingPngSerializer implements ImageSerializer {
+
+    private final ColorQuantizer quantizer;
+
+    private final PngEncoder encoder;
+
+    /**
+     * Uses a full 256 color palette without dithering, and the default png encoder settings.
+     */
+    public QuantizingPngSerializer() {
+        this( 256, false, new PngEncoder() );
+    }
+
+    /**
+     * @param maxColors
+     *            the maximum palette size, between 2 and 256
+     * @param dither
+     *            true, if dithering should be applied
+     * @param encoder
+     *            the encoder to write the quantized image with, never <code>null</code>
+     */
+    public QuantizingPngSerializer( int maxColors, boolean dither, PngEncoder encoder ) {
+        this( new ColorQuantizer( maxColors, dither ), encoder );
+    }
+
+    /**
+     * @param quantizer
+     *            the quantizer to reduce the colors with, never <code>null</code>
+     * @param encoder
+     *            the encoder to write the quantized image with, never <code>null</code>
+     */
+    public QuantizingPngSerializer( ColorQuantizer quantizer, PngEncoder encoder ) {
+        this.quantizer = quantizer;
+        this.encoder = encoder;
+    }
+
+    @Override
+    public void serialize( BufferedImage img, OutputStream out )
+                            throws IOException {
+        encoder.encode( quantizer.quantize( img ), out );
+    }
+
+}
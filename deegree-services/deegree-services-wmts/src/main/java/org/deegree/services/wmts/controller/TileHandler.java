@@ -41,28 +41,46 @@
 
 package org.deegree.services.wmts.controller;
 
+import static java.lang.Boolean.TRUE;
+import static java.nio.channels.Channels.newChannel;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
 import static org.apache.commons.io.IOUtils.closeQuietly;
 import static org.apache.commons.io.IOUtils.copy;
+import static org.apache.commons.io.IOUtils.toByteArray;
 import static org.deegree.commons.ows.exception.OWSException.INVALID_PARAMETER_VALUE;
 import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
+import static org.deegree.services.controller.utils.RequestCoalescer.getCredentialsKey;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
 
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.layer.Layer;
 import org.deegree.layer.persistence.tile.TileLayer;
 import org.deegree.protocol.wmts.ops.GetTile;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
+import org.deegree.services.controller.utils.LoggingHttpResponseWrapper;
+import org.deegree.services.controller.utils.RequestCoalescer;
 import org.deegree.theme.Theme;
 import org.deegree.theme.Themes;
+import org.deegree.tile.FileTile;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileDataSet;
+import org.deegree.tile.TileIOException;
 
 /**
  * Responsible for handling GetTile requests.
@@ -77,7 +95,37 @@ class TileHandler {
 
     private Map<String, TileLayer> layers;
 
-    TileHandler( List<Theme> themes ) {
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private RequestCoalescer<byte[]> coalescer;
+
+    private final int defaultMaxAge;
+
+    private final Map<String, Integer> maxAges;
+
+    /**
+     * @param themes
+     *            the themes containing the tile layers, never <code>null</code>
+     * @param coalescingMaxWait
+     *            the maximum number of milliseconds to wait for identical requests, -1 to process all requests on
+     *            their own
+     * @param defaultMaxAge
+     *            the Cache-Control max-age in seconds for layers without a specific one, -1 for none
+     * @param maxAges
+     *            the Cache-Control max-age in seconds of specific layers, never <code>null</code>
+     */
+    TileHandler( List<Theme> themes, long coalescingMaxWait, int defaultMaxAge, Map<String, Integer> maxAges ) {
+        this.defaultMaxAge = defaultMaxAge;
+        this.maxAges = maxAges;
+        if ( coalescingMaxWait >= 0 ) {
+            coalescer = new RequestCoalescer<byte[]>( coalescingMaxWait );
+        }
         layers = new HashMap<String, TileLayer>();
         for ( Theme theme : themes ) {
             for ( Layer l : Themes.getAllLayers( theme ) ) {
@@ -88,13 +136,14 @@ class TileHandler {
         }
     }
 
-    void getTile( Map<String, String> map, HttpResponseBuffer response )
+    void getTile( Map<String, String> map, HttpServletRequest request, HttpResponseBuffer response )
                             throws OWSException, ServletException {
         GetTile op = new GetTile( map );
-        getTile( op, response );
+        getTile( op, map, request, response );
     }
 
-    private void getTile( GetTile op, HttpResponseBuffer response )
+    private void getTile( GetTile op, Map<String, String> map, HttpServletRequest request,
+                          HttpResponseBuffer response )
                             throws OWSException, ServletException {
         TileLayer layer = layers.get( op.getLayer() );
         if ( layer == null ) {
@@ -120,12 +169,55 @@ class TileHandler {
                                     + op.getTileMatrixSet() + ".", INVALID_PARAMETER_VALUE );
         }
 
-        Tile t = level.getTile( op.getTileCol(), op.getTileRow() );
+        final Tile t = level.getTile( op.getTileCol(), op.getTileRow() );
         if ( t == null ) {
             // exception or empty tile?
             throw new OWSException( "No such tile found.", INVALID_PARAMETER_VALUE );
         }
 
+        String etag;
+        long lastModified;
+        try {
+            etag = t.getETag();
+            lastModified = t.getLastModified();
+        } catch ( TileIOException e ) {
+            throw new OWSException( e.getMessage(), e, NO_APPLICABLE_CODE );
+        }
+        addCacheHeaders( op.getLayer(), etag, lastModified, response );
+        if ( isNotModified( request, etag, lastModified ) ) {
+            response.setStatus( SC_NOT_MODIFIED );
+            return;
+        }
+        response.setContentType( format );
+
+        if ( t instanceof FileTile ) {
+            // reading a file is cheap, so file tiles are never coalesced
+            try {
+                sendFile( (FileTile) t, request, response );
+            } catch ( IOException e ) {
+                throw new OWSException( e.getMessage(), e, NO_APPLICABLE_CODE );
+            }
+            return;
+        }
+
+        if ( coalescer != null ) {
+            try {
+                byte[] bs = coalescer.execute( createKey( map ), new Callable<byte[]>() {
+                    @Override
+                    public byte[] call()
+                                            throws OWSException, IOException {
+                        return readTile( t );
+                    }
+                } );
+                response.getOutputStream().write( bs );
+            } catch ( OWSException e ) {
+                throw e;
+            } catch ( Throwable e ) {
+                throw new OWSException( e.getMessage(), e, NO_APPLICABLE_CODE );
+            }
+            return;
+        }
+
         InputStream in = null;
         try {
             in = t.getAsStream();
@@ -140,4 +232,121 @@ class TileHandler {
         }
     }
 
+    /**
+     * Lets the container send the file if it supports it (Tomcat's sendfile), else the file is transferred to the
+     * unbuffered response stream using {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+     */
+    private static void sendFile( FileTile t, HttpServletRequest request, HttpResponseBuffer response )
+                            throws OWSException, IOException {
+        File file = t.getFile();
+        if ( !file.isFile() ) {
+            throw new OWSException( "Tile yielded no data.", NO_APPLICABLE_CODE );
+        }
+        long start = t.getFileOffset();
+        long end = start + t.getFileLength();
+        response.disableBuffering();
+        response.setHeader( "Content-Length", Long.toString( end - start ) );
+
+        // the request logging needs to see the response data
+        if ( TRUE.equals( request.getAttribute( SENDFILE_SUPPORT ) )
+             && !( response.getWrappee() instanceof LoggingHttpResponseWrapper ) ) {
+            request.setAttribute( SENDFILE_FILENAME, file.getCanonicalPath() );
+            request.setAttribute( SENDFILE_START, start );
+            request.setAttribute( SENDFILE_END, end );
+            return;
+        }
+
+        FileInputStream in = new FileInputStream( file );
+        try {
+            FileChannel channel = in.getChannel();
+            WritableByteChannel out = newChannel( response.getOutputStream() );
+            long pos = start;
+            while ( pos < end ) {
+                long written = channel.transferTo( pos, end - pos, out );
+                if ( written <= 0 ) {
+                    throw new IOException( "Tile file '" + file + "' was truncated." );
+                }
+                pos += written;
+            }
+        } finally {
+            closeQuietly( in );
+        }
+    }
+
+    private void addCacheHeaders( String layer, String etag, long lastModified, HttpResponseBuffer response ) {
+        if ( etag != null ) {
+            response.setHeader( "ETag", "\"" + etag + "\"" );
+        }
+        if ( lastModified >= 0 ) {
+            response.setDateHeader( "Last-Modified", lastModified );
+        }
+        Integer maxAge = maxAges.get( layer );
+        if ( maxAge == null && defaultMaxAge >= 0 ) {
+            maxAge = defaultMaxAge;
+        }
+        if ( maxAge != null ) {
+            response.setHeader( "Cache-Control", "max-age=" + maxAge );
+        }
+    }
+
+    /**
+     * Evaluates the conditional request headers, If-None-Match takes precedence over If-Modified-Since.
+     */
+    private static boolean isNotModified( HttpServletRequest request, String etag, long lastModified ) {
+        String match = request.getHeader( "If-None-Match" );
+        if ( match != null ) {
+            if ( etag == null ) {
+                return false;
+            }
+            String quoted = "\"" + etag + "\"";
+            for ( String tag : match.split( "," ) ) {
+                tag = tag.trim();
+                // weak comparison is used for conditional GET requests
+                if ( tag.startsWith( "W/" ) ) {
+                    tag = tag.substring( 2 );
+                }
+                if ( tag.equals( "*" ) || tag.equals( quoted ) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if ( lastModified < 0 ) {
+            return false;
+        }
+        long since;
+        try {
+            since = request.getDateHeader( "If-Modified-Since" );
+        } catch ( IllegalArgumentException e ) {
+            return false;
+        }
+        // http dates have a resolution of seconds
+        return since >= 0 && lastModified / 1000 <= since / 1000;
+    }
+
+    private static byte[] readTile( Tile t )
+                            throws OWSException, IOException {
+        InputStream in = null;
+        try {
+            in = t.getAsStream();
+            if ( in == null ) {
+                throw new OWSException( "Tile yielded no data.", NO_APPLICABLE_CODE );
+            }
+            return toByteArray( in );
+        } catch ( TileIOException e ) {
+            throw new OWSException( e.getMessage(), e, NO_APPLICABLE_CODE );
+        } finally {
+            closeQuietly( in );
+        }
+    }
+
+    private static String createKey( Map<String, String> map ) {
+        StringBuilder sb = new StringBuilder();
+        for ( Entry<String, String> e : new TreeMap<String, String>( map ).entrySet() ) {
+            sb.append( e.getKey() ).append( '=' ).append( e.getValue() ).append( '&' );
+        }
+        // responses are never shared between different credentials
+        return sb.append( '|' ).append( getCredentialsKey() ).toString();
+    }
+
 }
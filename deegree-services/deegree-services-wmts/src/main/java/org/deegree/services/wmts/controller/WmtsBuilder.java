@@ -44,9 +44,13 @@ package org.deegree.services.wmts.controller;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.deegree.services.wmts.jaxb.DeegreeWMTS;
+import org.deegree.services.wmts.jaxb.DeegreeWMTS.CacheControl;
+import org.deegree.services.wmts.jaxb.DeegreeWMTS.CacheControl.LayerMaxAge;
 import org.deegree.services.wmts.jaxb.FeatureInfoFormatsType;
 import org.deegree.theme.Theme;
 import org.deegree.theme.persistence.ThemeProvider;
@@ -72,6 +76,12 @@ class WmtsBuilder {
 
     private FeatureInfoFormatsType featureInfoConf;
 
+    private long coalescingMaxWait = -1;
+
+    private int defaultMaxAge = -1;
+
+    private Map<String, Integer> maxAges = new HashMap<String, Integer>();
+
     WmtsBuilder( Workspace workspace, DeegreeWMTS conf ) {
         this.metadataUrlTemplate = conf.getMetadataURLTemplate();
 
@@ -88,6 +98,21 @@ class WmtsBuilder {
         }
 
         featureInfoConf = conf.getFeatureInfoFormats();
+
+        if ( conf.getRequestCoalescing() != null ) {
+            Integer maxWait = conf.getRequestCoalescing().getMaxWait();
+            coalescingMaxWait = maxWait == null ? 30000 : maxWait;
+        }
+
+        CacheControl cc = conf.getCacheControl();
+        if ( cc != null ) {
+            if ( cc.getMaxAge() != null ) {
+                defaultMaxAge = cc.getMaxAge();
+            }
+            for ( LayerMaxAge age : cc.getLayerMaxAge() ) {
+                maxAges.put( age.getLayer(), age.getValue() );
+            }
+        }
     }
 
     String getMetadataUrlTemplate() {
@@ -102,4 +127,27 @@ class WmtsBuilder {
         return featureInfoConf;
     }
 
+    /**
+     * @return the maximum number of milliseconds to wait for identical GetTile requests, -1 if requests are not
+     *         coalesced
+     */
+    long getCoalescingMaxWait() {
+        return coalescingMaxWait;
+    }
+
+    /**
+     * @return the Cache-Control max-age in seconds for layers without a specific max-age, -1 if none has been
+     *         configured
+     */
+    int getDefaultMaxAge() {
+        return defaultMaxAge;
+    }
+
+    /**
+     * @return the Cache-Control max-age in seconds for specific layers, never <code>null</code>
+     */
+    Map<String, Integer> getMaxAges() {
+        return maxAges;
+    }
+
 }
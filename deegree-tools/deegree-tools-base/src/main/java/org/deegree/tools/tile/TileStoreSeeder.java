@@ -0,0 +1,213 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tools.tile;
+
+import static java.lang.Double.parseDouble;
+import static java.lang.Integer.parseInt;
+import static org.deegree.tile.persistence.seeding.TileSeeder.parseArea;
+import static org.deegree.tile.persistence.seeding.TileSeeder.parseLevels;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.deegree.commons.annotations.Tool;
+import org.deegree.commons.tools.CommandUtils;
+import org.deegree.geometry.Geometry;
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.persistence.TileStore;
+import org.deegree.tile.persistence.TileStoreProvider;
+import org.deegree.tile.persistence.TileStoreTransaction;
+import org.deegree.tile.persistence.seeding.SeedingProgress;
+import org.deegree.tile.persistence.seeding.TileSeeder;
+import org.deegree.tools.i18n.Messages;
+import org.deegree.workspace.Workspace;
+import org.deegree.workspace.standard.DefaultWorkspace;
+
+/**
+ * Pre-generates the tiles of a tile store, see {@link TileSeeder}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+@Tool("Pre-generates (seeds) the tiles of a tile store, can resume interrupted seeding jobs")
+public class TileStoreSeeder {
+
+    // command line parameters
+    private static final String OPT_WORKSPACE = "workspace";
+
+    private static final String OPT_TILESTORE = "tilestore";
+
+    private static final String OPT_TILEDATASET = "tiledataset";
+
+    private static final String OPT_SOURCE = "source";
+
+    private static final String OPT_LEVELS = "levels";
+
+    private static final String OPT_AREA = "area";
+
+    private static final String OPT_THREADS = "threads";
+
+    private static final String OPT_RATE = "rate";
+
+    private static final String OPT_METATILE = "metatile";
+
+    private static final String OPT_PROGRESS = "progress";
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main( String[] args )
+                            throws Exception {
+
+        // for the moment, using the CLI API there is no way to respond to a help argument; see
+        // https://issues.apache.org/jira/browse/CLI-179
+        if ( args.length == 0 || ( args.length > 0 && ( args[0].contains( "help" ) || args[0].contains( "?" ) ) ) ) {
+            CommandUtils.printHelp( initOptions(), TileStoreSeeder.class.getSimpleName(), null, null );
+        }
+
+        CommandLine cmdline;
+        try {
+            cmdline = new PosixParser().parse( initOptions(), args );
+        } catch ( ParseException exp ) {
+            System.err.println( Messages.getMessage( "TOOL_COMMANDLINE_ERROR", exp.getMessage() ) );
+            return;
+        }
+
+        String storeId = cmdline.getOptionValue( OPT_TILESTORE );
+        String sourceId = cmdline.getOptionValue( OPT_SOURCE, storeId );
+        String dataSetId = cmdline.getOptionValue( OPT_TILEDATASET );
+        String levelsArg = cmdline.getOptionValue( OPT_LEVELS );
+        String areaArg = cmdline.getOptionValue( OPT_AREA );
+        int threads = parseInt( cmdline.getOptionValue( OPT_THREADS, "1" ) );
+        double rate = parseDouble( cmdline.getOptionValue( OPT_RATE, "0" ) );
+        int metaTileSize = parseInt( cmdline.getOptionValue( OPT_METATILE, "1" ) );
+
+        Workspace ws = new DefaultWorkspace( new File( cmdline.getOptionValue( OPT_WORKSPACE ) ) );
+        ws.initAll();
+        try {
+            TileStore target = ws.getResource( TileStoreProvider.class, storeId );
+            TileStore source = ws.getResource( TileStoreProvider.class, sourceId );
+            if ( target == null || source == null ) {
+                System.err.println( "No such tile store: " + ( target == null ? storeId : sourceId ) );
+                return;
+            }
+            TileDataSet dataSet = source.getTileDataSet( dataSetId );
+            if ( dataSet == null || target.getTileDataSet( dataSetId ) == null ) {
+                System.err.println( "No such tile data set: " + dataSetId );
+                return;
+            }
+
+            List<String> levels = parseLevels( dataSet, levelsArg );
+            Geometry area = parseArea( dataSet, areaArg );
+
+            SeedingProgress progress;
+            if ( cmdline.hasOption( OPT_PROGRESS ) ) {
+                // the rows recorded in the progress file depend on all of these
+                String signature = sourceId + " " + storeId + " " + dataSetId + " levels=" + levelsArg + " area="
+                                   + areaArg + " metatile=" + metaTileSize;
+                progress = new SeedingProgress( new File( cmdline.getOptionValue( OPT_PROGRESS ) ), signature );
+            } else {
+                progress = new SeedingProgress();
+            }
+
+            // seeding a store from itself just fetches the tiles, eg. to fill a caching tile store
+            TileStoreTransaction ta = source == target ? null : target.acquireTransaction( dataSetId );
+            System.out.println( "- Seeding tile data set '" + dataSetId + "' of tile store '" + storeId + "'..." );
+            long start = System.currentTimeMillis();
+            try {
+                new TileSeeder( dataSet, ta, threads, rate, metaTileSize ).seed( levels, area, progress );
+            } finally {
+                progress.close();
+            }
+            System.out.println( "- Seeded " + progress.getSeeded() + " tiles in "
+                                + ( System.currentTimeMillis() - start ) / 1000 + "s, " + progress.getFailed()
+                                + " tiles failed, " + progress.getSkipped() + " tiles skipped (done before)." );
+            if ( progress.getFailed() > 0 ) {
+                System.out.println( "- Run again with the same progress file to retry the failed tiles." );
+            }
+        } finally {
+            ws.destroy();
+        }
+    }
+
+    private static Options initOptions() {
+        Options opts = new Options();
+
+        Option opt = new Option( OPT_WORKSPACE, true, "workspace directory" );
+        opt.setRequired( true );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_TILESTORE, true, "id of the tile store to seed" );
+        opt.setRequired( true );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_TILEDATASET, true, "id of the tile data set to seed" );
+        opt.setRequired( true );
+        opts.addOption( opt );
+
+        opts.addOption( OPT_SOURCE, true, "id of a tile store to fetch the tiles from, they are put into the tile "
+                                          + "store then. If omitted, the tiles are fetched from the tile store "
+                                          + "itself (to fill a caching tile store)" );
+        opts.addOption( OPT_LEVELS, true, "levels to seed, comma separated identifiers or ranges like 0..10, "
+                                          + "default is all levels" );
+        opts.addOption( OPT_AREA, true, "area to seed, a bbox (minx,miny,maxx,maxy) or a WKT geometry in the crs "
+                                        + "of the tile matrix set, default is the whole extent" );
+        opts.addOption( OPT_THREADS, true, "number of tiles to generate in parallel, default is 1" );
+        opts.addOption( OPT_RATE, true, "maximum number of backend requests per second, default is no limit" );
+        opts.addOption( OPT_METATILE, true, "number of tiles per side of a meta tile (fetched with one "
+                                            + "request from a remote WMS), default is 1" );
+        opts.addOption( OPT_PROGRESS, true, "progress file, an interrupted job is resumed when run again with the "
+                                            + "same progress file" );
+
+        CommandUtils.addDefaultOptions( opts );
+        return opts;
+    }
+
+}